@@ -0,0 +1,37 @@
+package GUI;
+
+import java.time.LocalTime;
+
+/**
+ * 予定1件。所有者（owner）は User か Group。
+ */
+public class Appointment {
+    private String title, details;
+    private Object owner;
+    // 開始・終了時刻。終日の予定（時刻の指定なし）はどちらも null
+    private LocalTime start, end;
+    public Appointment(String title, String details, Object owner) { this(title, details, owner, null, null); }
+    public Appointment(String title, String details, Object owner, LocalTime start, LocalTime end) {
+        this.title = title;
+        this.details = details;
+        this.owner = owner;
+        setTimes(start, end);
+    }
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+    public String getDetails() { return details; }
+    public void setDetails(String details) { this.details = details; }
+    public Object getOwner() { return owner; }
+    public void setOwner(Object owner) { this.owner = owner; }
+    public LocalTime getStart() { return start; }
+    public LocalTime getEnd() { return end; }
+    public boolean hasTime() { return start != null; }
+    /** 開始・終了時刻を設定する。どちらも null なら終日の予定。終了は開始より後にすること。 */
+    public void setTimes(LocalTime start, LocalTime end) {
+        if ((start == null) != (end == null) || (start != null && !end.isAfter(start))) {
+            throw new IllegalArgumentException("予定の時刻が不正です: " + start + " - " + end);
+        }
+        this.start = start;
+        this.end = end;
+    }
+}
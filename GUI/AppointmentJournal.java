@@ -0,0 +1,486 @@
+package GUI;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 予定の変更を永続化する先行書き込みジャーナル。
+ * 追加・削除のたびにレコードをキューに積み、専用スレッドが溜まった分をまとめて書き込んで
+ * 1回だけ fsync する（グループコミット）。そのため EDT は書き込み完了を待たない。
+ *
+ * <p>一定件数ごとに全予定のスナップショットを作り、ジャーナルを新しい世代に切り替える。
+ * snapshot-N.bin は journal-N.log の先頭時点の状態を表すので、起動時は最新のスナップショットを読み、
+ * その世代以降のジャーナルだけを再生すればよい。</p>
+ */
+public class AppointmentJournal implements Closeable {
+
+    /** 保存されている所有者の種別とIDから、User または Group を引くための関数。 */
+    public interface OwnerResolver {
+        /** @return 所有者。見つからなければ null */
+        Object resolve(char kind, String id);
+    }
+
+    private static final int SNAPSHOT_MAGIC = 0x41505053; // "APPS"
+    // 2 で繰り返し予定のレコードを、3 で予定の開始・終了時刻を追加した。古いスナップショットもそのまま読める
+    private static final int FORMAT_VERSION = 3;
+    // ジャーナルのレコードの先頭に置く版の印（0x80 | 版）。印のないレコードは壊れたものとして扱う
+    private static final int RECORD_VERSION_FLAG = 0x80;
+    private static final byte OP_UPSERT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_SERIES_PUT = 3;
+    private static final byte OP_SERIES_REMOVE = 4;
+    private static final int NO_UNTIL = Integer.MIN_VALUE;
+    private static final short NO_TIME = -1;
+    private static final char OWNER_USER = 'U';
+    private static final char OWNER_GROUP = 'G';
+    // この件数の変更を書いたらスナップショットを作り直す
+    private static final int SNAPSHOT_INTERVAL = 50_000;
+    private static final int MAX_BATCH = 4096;
+    // 書き込みに失敗したときの再試行の間隔（失敗が続くたびに倍にする）
+    private static final long MIN_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+
+    private static final Object STOP = new Object();
+
+    private final Path directory;
+    private final AppointmentStore store;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private FileChannel journalChannel;
+    private long journalSize;
+    private int generation;
+    private int recordsSinceSnapshot;
+    private int restoredCount;
+
+    private AppointmentJournal(Path directory, AppointmentStore store) {
+        this.directory = directory;
+        this.store = store;
+        this.writerThread = new Thread(this::writeLoop, "appointment-journal");
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * スナップショットとジャーナルから store に予定を復元し、書き込みスレッドを開始する。
+     */
+    public static AppointmentJournal open(Path directory, AppointmentStore store, OwnerResolver resolver) throws IOException {
+        Files.createDirectories(directory);
+        AppointmentJournal journal = new AppointmentJournal(directory, store);
+        journal.restore(resolver);
+        journal.writerThread.start();
+        return journal;
+    }
+
+    /** 起動時に復元した予定の数。 */
+    public int getRestoredCount() {
+        return restoredCount;
+    }
+
+    /** 予定の追加・更新を記録する。store を更新したスレッド（EDT）から呼ぶ。 */
+    public void recordUpsert(LocalDate date, Appointment appointment) {
+        enqueue(frame(encodeUpsert(date, appointment)));
+    }
+
+    /** 予定の削除を記録する。store を更新したスレッド（EDT）から呼ぶ。 */
+    public void recordRemove(LocalDate date, Appointment appointment) {
+        enqueue(frame(encode(OP_REMOVE, date, appointment)));
+    }
+
+    /** 繰り返し予定の追加・変更を記録する。store を更新したスレッド（EDT）から呼ぶ。 */
+    public void recordSeries(Appointment appointment, RecurrenceRule rule) {
+        enqueue(frame(encodeSeries(appointment, rule)));
+    }
+
+    /** 繰り返し予定の削除を記録する。store を更新したスレッド（EDT）から呼ぶ。 */
+    public void recordSeriesRemove(Appointment appointment) {
+        enqueue(frame(encode(OP_SERIES_REMOVE, LocalDate.ofEpochDay(0), appointment)));
+    }
+
+    /**
+     * 現在の store の内容でスナップショットを作るよう書き込みスレッドに依頼する。
+     * 内容のコピーは呼び出し時点で取るので、store を更新するスレッドから呼ぶこと。
+     */
+    public void requestSnapshot() {
+        List<LocalDate> dates = new ArrayList<>(store.size());
+        List<Appointment> appointments = new ArrayList<>(store.size());
+        for (Map.Entry<LocalDate, Collection<Appointment>> entry : store.range(LocalDate.MIN, LocalDate.MAX).entrySet()) {
+            for (Appointment appointment : entry.getValue()) {
+                dates.add(entry.getKey());
+                appointments.add(appointment);
+            }
+        }
+        recordsSinceSnapshot = 0;
+        queue.add(new SnapshotRequest(dates, appointments, new ArrayList<>(store.allSeries())));
+    }
+
+    /** キューに残っている記録を書き切ってからファイルを閉じる。 */
+    @Override
+    public void close() throws IOException {
+        queue.add(STOP);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(byte[] record) {
+        queue.add(record);
+        if (++recordsSinceSnapshot >= SNAPSHOT_INTERVAL) {
+            requestSnapshot();
+        }
+    }
+
+    // --- 書き込みスレッド ---
+
+    // 書き込みに失敗したバッチは捨てずに、同じ位置から書き直す。書けるまで後ろのレコードは書かない
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        long retryDelay = MIN_RETRY_MILLIS;
+        boolean stop = false;
+        boolean running = true;
+        while (running) {
+            // batch のうち pending に移したか書き終えた数
+            int done = 0;
+            try {
+                if (batch.isEmpty() && pending.size() == 0 && !stop) batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH);
+                for (; done < batch.size() && !stop; done++) {
+                    Object item = batch.get(done);
+                    if (item instanceof byte[]) {
+                        pending.write((byte[]) item);
+                    } else if (item instanceof SnapshotRequest) {
+                        flush(pending);
+                        snapshot((SnapshotRequest) item);
+                    } else if (item == STOP) {
+                        stop = true;
+                    }
+                }
+                flush(pending);
+                batch.clear();
+                retryDelay = MIN_RETRY_MILLIS;
+                running = !stop;
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                batch.subList(0, done).clear();
+                if (retryDelay == MIN_RETRY_MILLIS) {
+                    System.err.println("エラー: 予定のジャーナルへの書き込みに失敗しました。書き込めるまで再試行します。" + e.getMessage());
+                }
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException interrupted) {
+                    running = false;
+                }
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_MILLIS);
+            }
+        }
+        try {
+            journalChannel.force(false);
+            journalChannel.close();
+        } catch (IOException e) {
+            System.err.println("エラー: 予定のジャーナルを閉じられませんでした。" + e.getMessage());
+        }
+    }
+
+    // pending を journalSize の位置に書いて fsync する。失敗したら書きかけの部分を切り詰め、pending は残す
+    private void flush(ByteArrayOutputStream pending) throws IOException {
+        if (pending.size() == 0) return;
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        long position = journalSize;
+        try {
+            while (buffer.hasRemaining()) {
+                position += journalChannel.write(buffer, position);
+            }
+            journalChannel.force(false);
+        } catch (IOException e) {
+            try {
+                journalChannel.truncate(journalSize);
+            } catch (IOException ignored) {
+                // 切り詰められなくても、次の書き直しは同じ位置から上書きする
+            }
+            throw e;
+        }
+        journalSize = position;
+        pending.reset();
+    }
+
+    // スナップショットは起動を速くするためだけのもの。作れなくてもジャーナルは続いているので、記録は続ける
+    private void snapshot(SnapshotRequest request) {
+        try {
+            rotate(request);
+        } catch (IOException e) {
+            System.err.println("エラー: 予定のスナップショットを作れませんでした。" + e.getMessage());
+        }
+    }
+
+    // 新しい世代のジャーナルに切り替え、その先頭時点の状態をスナップショットとして書く
+    // 新しいジャーナルを開けてから古い方を閉じるので、途中で失敗しても書き込み先のジャーナルは開いたまま
+    private void rotate(SnapshotRequest request) throws IOException {
+        int next = generation + 1;
+        FileChannel previous = journalChannel;
+        openJournal(next);
+        previous.close();
+        Path temp = directory.resolve(snapshotName(next) + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(request.dates.size() + request.series.size());
+            for (int i = 0; i < request.dates.size(); i++) {
+                out.write(encodeUpsert(request.dates.get(i), request.appointments.get(i)));
+            }
+            for (AppointmentStore.Series series : request.series) {
+                out.write(encodeSeries(series.getAppointment(), series.getRule()));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(snapshotName(next)), StandardCopyOption.ATOMIC_MOVE);
+        // 新しいスナップショットが確定したので古い世代は不要
+        for (int old : generations("journal-", ".log")) {
+            if (old < next) Files.deleteIfExists(directory.resolve(journalName(old)));
+        }
+        for (int old : generations("snapshot-", ".bin")) {
+            if (old < next) Files.deleteIfExists(directory.resolve(snapshotName(old)));
+        }
+    }
+
+    // --- 起動時の復元 ---
+
+    private void restore(OwnerResolver resolver) throws IOException {
+        TreeSet<Integer> snapshots = generations("snapshot-", ".bin");
+        int base = snapshots.isEmpty() ? 0 : snapshots.last();
+        if (!snapshots.isEmpty()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(snapshotName(base)))))) {
+                int magic = in.readInt();
+                int version = in.readInt();
+                if (magic != SNAPSHOT_MAGIC || version < 1 || version > FORMAT_VERSION) {
+                    throw new IOException("スナップショットの形式が不正です: " + snapshotName(base));
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    apply(in, resolver, version >= 3);
+                }
+            }
+        }
+        int active = base;
+        for (int gen : generations("journal-", ".log")) {
+            if (gen < base) continue;
+            replay(directory.resolve(journalName(gen)), resolver);
+            active = gen;
+        }
+        restoredCount = store.size() + store.seriesCount();
+        openJournal(active);
+    }
+
+    // フレームを順に適用し、途中で切れたレコードがあればそこでファイルを切り詰める
+    private void replay(Path path, OwnerResolver resolver) throws IOException {
+        long valid = 0;
+        long fileSize = Files.size(path);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                // 書きかけで壊れた長さは、途中で切れたレコードと同じく扱う
+                if (length <= 0 || length > fileSize - valid - 4) break;
+                byte[] payload = new byte[length];
+                try {
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                // 版の印のないレコードは壊れている。途中で切れたレコードと同じく、そこから後ろを捨てる
+                if ((payload[0] & RECORD_VERSION_FLAG) == 0) break;
+                int version = payload[0] & ~RECORD_VERSION_FLAG & 0xFF;
+                if (version > FORMAT_VERSION) {
+                    throw new IOException("ジャーナルのレコードの形式が新しすぎます（版 " + version + "）: " + path.getFileName());
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload, 1, length - 1)), resolver, version >= 3);
+                valid += 4 + length;
+            }
+        }
+        if (fileSize > valid) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    /** @param withTimes 追加・繰り返し予定のレコードの末尾に時刻があるかどうか */
+    private void apply(DataInputStream in, OwnerResolver resolver, boolean withTimes) throws IOException {
+        byte op = in.readByte();
+        LocalDate date = LocalDate.ofEpochDay(in.readInt());
+        char kind = (char) in.readByte();
+        String ownerId = readString(in);
+        String title = readString(in);
+        String details = readString(in);
+        RecurrenceRule rule = op == OP_SERIES_PUT ? readRule(in, date) : null;
+        LocalTime start = null, end = null;
+        if ((op == OP_UPSERT || op == OP_SERIES_PUT) && withTimes) {
+            short startMinute = in.readShort();
+            short endMinute = in.readShort();
+            if (startMinute != NO_TIME) {
+                start = LocalTime.ofSecondOfDay(startMinute * 60L);
+                end = LocalTime.ofSecondOfDay(endMinute * 60L);
+            }
+        }
+        Object owner = resolver.resolve(kind, ownerId);
+        if (owner == null) {
+            System.err.println("警告: 所有者 " + kind + ":" + ownerId + " が見つからないため予定「" + title + "」を読み飛ばしました。");
+            return;
+        }
+        if (op == OP_UPSERT) {
+            store.addOrUpdate(date, new Appointment(title, details, owner, start, end));
+        } else if (op == OP_REMOVE) {
+            store.remove(date, owner, title);
+        } else if (op == OP_SERIES_PUT) {
+            store.putSeries(new Appointment(title, details, owner, start, end), rule);
+        } else if (op == OP_SERIES_REMOVE) {
+            store.removeSeries(owner, title);
+        }
+    }
+
+    private static RecurrenceRule readRule(DataInputStream in, LocalDate start) throws IOException {
+        int frequency = in.readByte();
+        int interval = in.readInt();
+        int until = in.readInt();
+        int count = in.readInt();
+        RecurrenceRule rule = new RecurrenceRule(frequency, interval, start)
+                .withUntil(until == NO_UNTIL ? null : LocalDate.ofEpochDay(until))
+                .withCount(count);
+        int exceptions = in.readInt();
+        for (int i = 0; i < exceptions; i++) {
+            rule = rule.withException(LocalDate.ofEpochDay(in.readInt()));
+        }
+        return rule;
+    }
+
+    private void openJournal(int gen) throws IOException {
+        journalChannel = FileChannel.open(directory.resolve(journalName(gen)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journalSize = journalChannel.size();
+        generation = gen;
+    }
+
+    private TreeSet<Integer> generations(String prefix, String suffix) throws IOException {
+        TreeSet<Integer> result = new TreeSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                result.add(Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length())));
+            }
+        }
+        return result;
+    }
+
+    private static String journalName(int gen) {
+        return String.format("journal-%06d.log", gen);
+    }
+
+    private static String snapshotName(int gen) {
+        return String.format("snapshot-%06d.bin", gen);
+    }
+
+    // --- レコードの符号化 ---
+    // [byte 操作][int エポック日][byte 所有者種別][文字列 所有者ID][文字列 タイトル][文字列 詳細]
+    // 文字列は [int バイト数][UTF-8]
+    // 繰り返し予定はエポック日に開始日を入れ、続けて
+    // [byte 種類][int 間隔][int 終了日のエポック日][int 回数][int 除外日の数][int 除外日のエポック日]... を置く
+    // 追加と繰り返し予定のレコードは最後に [short 開始時刻（0時からの分）][short 終了時刻] を置く（終日なら -1）
+    // ジャーナルではレコードの前に版の印を置く（frame）。スナップショットはファイルの先頭の版に従う
+
+    private static byte[] encodeUpsert(LocalDate date, Appointment appointment) {
+        return appendTimes(encode(OP_UPSERT, date, appointment), appointment);
+    }
+
+    private static byte[] encode(byte op, LocalDate date, Appointment appointment) {
+        Object owner = appointment.getOwner();
+        char kind = owner instanceof Group ? OWNER_GROUP : OWNER_USER;
+        String ownerId = owner instanceof Group ? ((Group) owner).getId() : ((User) owner).getId();
+        byte[] id = ownerId.getBytes(StandardCharsets.UTF_8);
+        byte[] title = appointment.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] details = (op == OP_UPSERT || op == OP_SERIES_PUT ? appointment.getDetails() : "").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 1 + 12 + id.length + title.length + details.length);
+        buffer.put(op).putInt((int) date.toEpochDay()).put((byte) kind);
+        buffer.putInt(id.length).put(id);
+        buffer.putInt(title.length).put(title);
+        buffer.putInt(details.length).put(details);
+        return buffer.array();
+    }
+
+    private static byte[] encodeSeries(Appointment appointment, RecurrenceRule rule) {
+        byte[] head = encode(OP_SERIES_PUT, rule.getStart(), appointment);
+        ByteBuffer buffer = ByteBuffer.allocate(head.length + 1 + 4 * 4 + 4 * rule.getExceptions().size());
+        buffer.put(head);
+        buffer.put((byte) rule.getFrequency()).putInt(rule.getInterval());
+        buffer.putInt(rule.getUntil() == null ? NO_UNTIL : (int) rule.getUntil().toEpochDay());
+        buffer.putInt(rule.getCount());
+        buffer.putInt(rule.getExceptions().size());
+        for (LocalDate exception : rule.getExceptions()) buffer.putInt((int) exception.toEpochDay());
+        return appendTimes(buffer.array(), appointment);
+    }
+
+    private static byte[] appendTimes(byte[] record, Appointment appointment) {
+        ByteBuffer buffer = ByteBuffer.allocate(record.length + 4).put(record);
+        if (appointment.hasTime()) {
+            buffer.putShort((short) (appointment.getStart().toSecondOfDay() / 60)).putShort((short) (appointment.getEnd().toSecondOfDay() / 60));
+        } else {
+            buffer.putShort(NO_TIME).putShort(NO_TIME);
+        }
+        return buffer.array();
+    }
+
+    // [int 長さ][byte 0x80 | 版][レコード]
+    private static byte[] frame(byte[] payload) {
+        return ByteBuffer.allocate(4 + 1 + payload.length).putInt(1 + payload.length)
+                .put((byte) (RECORD_VERSION_FLAG | FORMAT_VERSION)).put(payload).array();
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class SnapshotRequest {
+        final List<LocalDate> dates;
+        final List<Appointment> appointments;
+        final List<AppointmentStore.Series> series;
+
+        SnapshotRequest(List<LocalDate> dates, List<Appointment> appointments, List<AppointmentStore.Series> series) {
+            this.dates = dates;
+            this.appointments = appointments;
+            this.series = series;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package GUI;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 予定を日付順のインデックスで保持するストア。
+ * 月表示に必要な期間の予定を一度の範囲問い合わせで取り出せるため、
+ * 表示にかかる時間は履歴全体ではなく表示する予定の数に比例する。
+ *
+ * <p>予定は（日付, 所有者, タイトル）をキーとするハッシュ索引でも引けるので、
+ * 追加・更新・削除の費用はその日の予定の数によらない。</p>
+ *
+ * <p>繰り返し予定は（所有者, タイトル）ごとに規則を1つだけ保持し、各回は保存しない。
+ * 各回は月を問い合わせたときにその月の分だけ展開して月ごとに覚えておき、
+ * 規則が変わったときはその規則の期間にかかる月の分だけを捨てる。</p>
+ */
+public class AppointmentStore {
+
+    // 予定を一意に決めるキー（日付, 所有者, タイトル）
+    private static final class Key {
+        final LocalDate date;
+        final Object owner;
+        final String title;
+        private final int hash;
+
+        Key(LocalDate date, Object owner, String title) {
+            this.date = date;
+            this.owner = owner;
+            this.title = title;
+            this.hash = (date.hashCode() * 31 + Objects.hashCode(owner)) * 31 + title.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && date.equals(key.date) && Objects.equals(owner, key.owner) && title.equals(key.title);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // 1日分の予定。追加した順に並び、置き換えても位置は変わらない
+    private static final class Day extends AbstractCollection<Appointment> {
+        final Map<Key, Appointment> entries = new LinkedHashMap<>();
+        private final Collection<Appointment> view = Collections.unmodifiableCollection(entries.values());
+
+        @Override
+        public Iterator<Appointment> iterator() {
+            return view.iterator();
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    }
+
+    /** 繰り返し予定1件。予定の内容と繰り返しの規則の組。 */
+    public static final class Series {
+        private final Appointment appointment;
+        private final RecurrenceRule rule;
+
+        Series(Appointment appointment, RecurrenceRule rule) {
+            this.appointment = appointment;
+            this.rule = rule;
+        }
+
+        /** 各回として表示する予定。 */
+        public Appointment getAppointment() { return appointment; }
+        public RecurrenceRule getRule() { return rule; }
+    }
+
+    private final Map<Key, Appointment> byKey = new HashMap<>();
+    // 繰り返し予定。キーの日付は使わない（LocalDate.MIN）
+    private final Map<Key, Series> series = new LinkedHashMap<>();
+    // 月ごとに展開した繰り返し予定の各回
+    private final NavigableMap<YearMonth, Map<LocalDate, List<Appointment>>> expanded = new TreeMap<>();
+    private final NavigableMap<LocalDate, Day> byDate = new TreeMap<>();
+    // 所有者（User または Group）ごとの予定インデックス
+    private final Map<Object, NavigableMap<LocalDate, Day>> byOwner = new HashMap<>();
+
+    /**
+     * 同じ所有者・同じタイトルの予定があれば置き換え、なければ追加する。
+     * @return 既存の予定を置き換えた場合は true
+     */
+    public boolean addOrUpdate(LocalDate date, Appointment appointment) {
+        return put(date, appointment) != null;
+    }
+
+    /**
+     * addOrUpdate と同じく追加または置き換えを行い、置き換えた予定を返す。
+     * @return 置き換えた既存の予定。新しく追加した場合は null
+     */
+    public Appointment put(LocalDate date, Appointment appointment) {
+        Object owner = appointment.getOwner();
+        Key key = new Key(date, owner, appointment.getTitle());
+        Appointment previous = byKey.put(key, appointment);
+        byDate.computeIfAbsent(date, k -> new Day()).entries.put(key, appointment);
+        byOwner.computeIfAbsent(owner, k -> new TreeMap<>()).computeIfAbsent(date, k -> new Day()).entries.put(key, appointment);
+        return previous;
+    }
+
+    /**
+     * 指定日の予定を削除する。その日の予定が空になれば日付ごと取り除く。
+     * @return 削除した場合は true
+     */
+    public boolean remove(LocalDate date, Appointment appointment) {
+        Key key = new Key(date, appointment.getOwner(), appointment.getTitle());
+        if (byKey.get(key) != appointment) return false;
+        removeKey(key);
+        return true;
+    }
+
+    /**
+     * 指定日の、所有者とタイトルが一致する予定を削除する。
+     * @return 削除した予定。なければ null
+     */
+    public Appointment remove(LocalDate date, Object owner, String title) {
+        Key key = new Key(date, owner, title);
+        return byKey.containsKey(key) ? removeKey(key) : null;
+    }
+
+    private Appointment removeKey(Key key) {
+        Appointment removed = byKey.remove(key);
+        Day day = byDate.get(key.date);
+        day.entries.remove(key);
+        if (day.entries.isEmpty()) byDate.remove(key.date);
+        NavigableMap<LocalDate, Day> ownerDates = byOwner.get(key.owner);
+        Day ownerDay = ownerDates.get(key.date);
+        ownerDay.entries.remove(key);
+        if (ownerDay.entries.isEmpty()) ownerDates.remove(key.date);
+        if (ownerDates.isEmpty()) byOwner.remove(key.owner);
+        return removed;
+    }
+
+    /** 指定日の、所有者とタイトルが一致する予定。なければ null。 */
+    public Appointment find(LocalDate date, Object owner, String title) {
+        return byKey.get(new Key(date, owner, title));
+    }
+
+    /** 指定日の予定一覧（読み取り専用、追加した順）。予定がなければ空。 */
+    public Collection<Appointment> get(LocalDate date) {
+        Day day = byDate.get(date);
+        return day == null ? Collections.emptyList() : day;
+    }
+
+    /** from から to まで（両端を含む）の予定を日付順に返す。 */
+    public NavigableMap<LocalDate, Collection<Appointment>> range(LocalDate from, LocalDate to) {
+        return Collections.unmodifiableNavigableMap(byDate.subMap(from, true, to, true));
+    }
+
+    /** 指定月の1日から末日までの予定を返す。 */
+    public NavigableMap<LocalDate, Collection<Appointment>> month(YearMonth yearMonth) {
+        return range(yearMonth.atDay(1), yearMonth.atEndOfMonth());
+    }
+
+    /** 指定した所有者の予定のうち from から to まで（両端を含む）のものを日付順に返す。 */
+    public NavigableMap<LocalDate, Collection<Appointment>> rangeForOwner(Object owner, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, Day> ownerDates = byOwner.get(owner);
+        if (ownerDates == null) return Collections.emptyNavigableMap();
+        return Collections.unmodifiableNavigableMap(ownerDates.subMap(from, true, to, true));
+    }
+
+    /** date より後で予定がある最初の日付。なければ null。 */
+    public LocalDate nextDateWithAppointments(LocalDate date) {
+        return byDate.higherKey(date);
+    }
+
+    /** date より前で予定がある最後の日付。なければ null。 */
+    public LocalDate previousDateWithAppointments(LocalDate date) {
+        return byDate.lowerKey(date);
+    }
+
+    /** 予定がある次の月（yearMonth より後）。なければ null。 */
+    public YearMonth nextMonthWithAppointments(YearMonth yearMonth) {
+        LocalDate next = byDate.higherKey(yearMonth.atEndOfMonth());
+        return next == null ? null : YearMonth.from(next);
+    }
+
+    /** 予定がある前の月（yearMonth より前）。なければ null。 */
+    public YearMonth previousMonthWithAppointments(YearMonth yearMonth) {
+        Map.Entry<LocalDate, Day> prev = byDate.lowerEntry(yearMonth.atDay(1));
+        return prev == null ? null : YearMonth.from(prev.getKey());
+    }
+
+    // --- 繰り返し予定 ---
+
+    /**
+     * 繰り返し予定を追加する。同じ所有者・同じタイトルの繰り返し予定があれば置き換える。
+     * @return 置き換えた繰り返し予定。新しく追加した場合は null
+     */
+    public Series putSeries(Appointment appointment, RecurrenceRule rule) {
+        Series previous = series.put(seriesKey(appointment.getOwner(), appointment.getTitle()), new Series(appointment, rule));
+        if (previous != null) invalidate(previous.rule);
+        invalidate(rule);
+        return previous;
+    }
+
+    /**
+     * 所有者とタイトルが一致する繰り返し予定を削除する。
+     * @return 削除した繰り返し予定。なければ null
+     */
+    public Series removeSeries(Object owner, String title) {
+        Series removed = series.remove(seriesKey(owner, title));
+        if (removed != null) invalidate(removed.rule);
+        return removed;
+    }
+
+    /** 所有者とタイトルが一致する繰り返し予定。なければ null。 */
+    public Series findSeries(Object owner, String title) {
+        return series.get(seriesKey(owner, title));
+    }
+
+    /** すべての繰り返し予定（読み取り専用、追加した順）。 */
+    public Collection<Series> allSeries() {
+        return Collections.unmodifiableCollection(series.values());
+    }
+
+    /**
+     * 指定月の繰り返し予定の各回を日付ごとに返す（読み取り専用）。
+     * 初めて問い合わせた月だけを展開し、以後は規則が変わるまで同じ結果を返す。
+     */
+    public Map<LocalDate, List<Appointment>> occurrences(YearMonth yearMonth) {
+        Map<LocalDate, List<Appointment>> month = expanded.get(yearMonth);
+        if (month != null) return month;
+        LocalDate from = yearMonth.atDay(1);
+        LocalDate to = yearMonth.atEndOfMonth();
+        Map<LocalDate, List<Appointment>> dates = new HashMap<>();
+        for (Series entry : series.values()) {
+            if (!entry.rule.overlaps(from, to)) continue;
+            for (LocalDate date : entry.rule.occurrences(from, to)) {
+                dates.computeIfAbsent(date, k -> new ArrayList<>()).add(entry.appointment);
+            }
+        }
+        month = dates.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(dates);
+        expanded.put(yearMonth, month);
+        return month;
+    }
+
+    /** 指定日の繰り返し予定の各回（読み取り専用）。 */
+    public List<Appointment> occurrencesOn(LocalDate date) {
+        List<Appointment> list = occurrences(YearMonth.from(date)).get(date);
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    // 規則の期間にかかる月の展開結果を捨てる
+    private void invalidate(RecurrenceRule rule) {
+        YearMonth first = YearMonth.from(rule.getStart());
+        if (rule.getLast() == null) expanded.tailMap(first, true).clear();
+        else expanded.subMap(first, true, YearMonth.from(rule.getLast()), true).clear();
+    }
+
+    private static Key seriesKey(Object owner, String title) {
+        return new Key(LocalDate.MIN, owner, title);
+    }
+
+    /** 繰り返し予定の数。 */
+    public int seriesCount() {
+        return series.size();
+    }
+
+    /** 保持している予定の総数（繰り返し予定は含まない）。 */
+    public int size() {
+        return byKey.size();
+    }
+}
@@ -0,0 +1,47 @@
+package GUI;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同じ大きさのダイレクト ByteBuffer を使い回すためのプール。
+ * 送受信のたびにバッファを確保しないようにする。どのスレッドから使ってもよい。
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * @param bufferSize 1つのバッファの大きさ
+     * @param maxPooled  プールに保持するバッファの最大数
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * minSize バイト以上のバッファを借りる。プールの大きさを超える場合はその場で確保する。
+     */
+    public ByteBuffer acquire(int minSize) {
+        if (minSize > bufferSize) return ByteBuffer.allocate(minSize);
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) return ByteBuffer.allocateDirect(bufferSize);
+        pooled.decrementAndGet();
+        return buffer.clear();
+    }
+
+    /** 借りたバッファを返す。プールの大きさと違うバッファは捨てる。 */
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect() || buffer.capacity() != bufferSize) return;
+        if (pooled.incrementAndGet() <= maxPooled) {
+            free.add(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package GUI;
+
+import java.awt.Color;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.stream.Stream;
+
+/**
+ * 予定・グループ・メンバー・チャットの状態を持つ、画面に依存しないモデル。
+ * 変更はすべてこのクラスを通して行い、変更の種類ごとの通知を Listener に送る。
+ * 画面はどの日付のどの予定が変わったかを通知から知り、そのセルだけを描き直す。
+ * Swing を使わないので、サーバーやベンチマークからもそのまま使える。
+ *
+ * <p>スレッドセーフではない。変更と問い合わせは1つのスレッド（画面があれば EDT）から行うこと。</p>
+ */
+public class CalendarModel {
+
+    /**
+     * モデルの変更通知を受け取る。変更したスレッドで、変更の直後に呼ばれる。
+     * 必要な通知だけを実装すればよい。
+     */
+    public interface Listener {
+        /** date に予定が追加された。 */
+        default void appointmentAdded(LocalDate date, Appointment appointment) {}
+        /** date の予定（所有者とタイトルが同じもの）が previous から current に置き換えられた。 */
+        default void appointmentUpdated(LocalDate date, Appointment previous, Appointment current) {}
+        /** date の予定が削除された。 */
+        default void appointmentRemoved(LocalDate date, Appointment appointment) {}
+        /**
+         * 繰り返し予定が追加・変更・削除された。追加なら previous が、削除なら current が null。
+         * @param appointment 変更後の予定（削除なら削除した予定）
+         */
+        default void recurrenceChanged(Appointment appointment, RecurrenceRule previous, RecurrenceRule current) {}
+        /** group に user が加わった。 */
+        default void memberJoined(Group group, User user) {}
+        /** importAll で entries がまとめて追加・置き換えられた。個々の予定の通知は送られない。 */
+        default void appointmentsImported(List<Entry> entries) {}
+        /** group のチャット履歴の末尾に messages が追加された。 */
+        default void messagesAppended(Group group, List<ChatMessage> messages) {}
+    }
+
+    /** まとめて取り込む予定1件（日付と予定の組）。 */
+    public static final class Entry {
+        private final LocalDate date;
+        private final Appointment appointment;
+
+        public Entry(LocalDate date, Appointment appointment) {
+            this.date = date;
+            this.appointment = appointment;
+        }
+
+        public LocalDate getDate() { return date; }
+        public Appointment getAppointment() { return appointment; }
+    }
+
+    private final User myUser;
+    private final AppointmentStore appointments = new AppointmentStore();
+    private final List<Group> groups = new ArrayList<>();
+    private final VisibilityIndex visibilityIndex;
+    private final List<Listener> listeners = new ArrayList<>();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final FreeSlotFinder freeSlotFinder = new FreeSlotFinder(this);
+
+    public CalendarModel(User myUser) {
+        this.myUser = myUser;
+        this.visibilityIndex = new VisibilityIndex(myUser, groups);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public User getMyUser() { return myUser; }
+    /** 予定のストア。通知なしで読み書きするのは、通知先がまだないとき（保存データの復元など）に限る。 */
+    public AppointmentStore getAppointments() { return appointments; }
+    public List<Group> getGroups() { return Collections.unmodifiableList(groups); }
+    public VisibilityIndex getVisibilityIndex() { return visibilityIndex; }
+    public SearchIndex getSearchIndex() { return searchIndex; }
+
+    /**
+     * グループを追加する。以後のメンバー追加とチャットの追加は、このモデルの通知として届く。
+     */
+    public void addGroup(Group group) {
+        groups.add(group);
+        group.attachModel(this);
+        visibilityIndex.membershipChanged();
+    }
+
+    public Group findGroupById(String id) {
+        for (Group group : groups) {
+            if (group.getId().equals(id)) return group;
+        }
+        return null;
+    }
+
+    /**
+     * 所有者の種類（'G' ならグループ、それ以外は利用者）と ID から所有者を探す。
+     * @return 見つからなければ null
+     */
+    public Object resolveOwner(char kind, String id) {
+        if (kind == 'G') return findGroupById(id);
+        if (myUser.getId().equals(id)) return myUser;
+        for (Group group : groups) {
+            for (User user : group.getUsers()) {
+                if (user.getId().equals(id)) return user;
+            }
+        }
+        return null;
+    }
+
+    /** owner の予定を同期するグループ。グループの予定はそのグループ、個人の予定は本人が所属する全グループ。 */
+    public List<Group> groupsSharing(Object owner) {
+        List<Group> sharing = new ArrayList<>();
+        for (Group group : groups) {
+            if (owner == group || (owner instanceof User && group.hasMember((User) owner))) {
+                sharing.add(group);
+            }
+        }
+        return sharing;
+    }
+
+    /**
+     * 同じ所有者・同じタイトルの予定があれば置き換え、なければ追加する。
+     * @return 既存の予定を置き換えた場合は true
+     */
+    public boolean upsert(LocalDate date, Appointment appointment) {
+        Appointment previous = appointments.put(date, appointment);
+        searchIndex.putAppointment(date, appointment);
+        freeSlotFinder.invalidate(YearMonth.from(date));
+        for (Listener listener : listeners) {
+            if (previous != null) listener.appointmentUpdated(date, previous, appointment);
+            else listener.appointmentAdded(date, appointment);
+        }
+        return previous != null;
+    }
+
+    /**
+     * 予定をまとめて取り込む。entries を1回だけ走査して追加・置き換えを行い、
+     * 予定ごとの通知の代わりに最後に appointmentsImported を1回だけ送る。
+     * @return 取り込んだ予定（読み取り専用）
+     */
+    public List<Entry> importAll(Stream<Entry> entries) {
+        List<Entry> imported = new ArrayList<>();
+        entries.forEachOrdered(entry -> {
+            appointments.put(entry.getDate(), entry.getAppointment());
+            searchIndex.putAppointment(entry.getDate(), entry.getAppointment());
+            freeSlotFinder.invalidate(YearMonth.from(entry.getDate()));
+            imported.add(entry);
+        });
+        if (!imported.isEmpty()) {
+            for (Listener listener : listeners) listener.appointmentsImported(imported);
+        }
+        return Collections.unmodifiableList(imported);
+    }
+
+    /**
+     * 指定日の予定を削除する。
+     * @return 削除した場合は true
+     */
+    public boolean remove(LocalDate date, Appointment appointment) {
+        if (!appointments.remove(date, appointment)) return false;
+        searchIndex.removeAppointment(date, appointment);
+        freeSlotFinder.invalidate(YearMonth.from(date));
+        for (Listener listener : listeners) listener.appointmentRemoved(date, appointment);
+        return true;
+    }
+
+    /**
+     * 所有者とタイトルが一致する予定を削除する。他のメンバーから届いた削除のように、同じインスタンスを持っていないときに使う。
+     * @return 削除した予定。なければ null
+     */
+    public Appointment remove(LocalDate date, Object owner, String title) {
+        Appointment removed = appointments.remove(date, owner, title);
+        if (removed == null) return null;
+        searchIndex.removeAppointment(date, removed);
+        freeSlotFinder.invalidate(YearMonth.from(date));
+        for (Listener listener : listeners) listener.appointmentRemoved(date, removed);
+        return removed;
+    }
+
+    /**
+     * 繰り返し予定を追加する。同じ所有者・同じタイトルの繰り返し予定があれば置き換える。
+     * @return 置き換える前の規則。新しく追加した場合は null
+     */
+    public RecurrenceRule putRecurring(Appointment appointment, RecurrenceRule rule) {
+        AppointmentStore.Series previous = appointments.putSeries(appointment, rule);
+        RecurrenceRule previousRule = previous != null ? previous.getRule() : null;
+        searchIndex.putSeries(appointment, rule);
+        freeSlotFinder.invalidateAll();
+        for (Listener listener : listeners) listener.recurrenceChanged(appointment, previousRule, rule);
+        return previousRule;
+    }
+
+    /**
+     * 繰り返し予定をすべての回とともに削除する。
+     * @return 削除した場合は true
+     */
+    public boolean removeRecurring(Appointment appointment) {
+        AppointmentStore.Series removed = appointments.removeSeries(appointment.getOwner(), appointment.getTitle());
+        if (removed == null) return false;
+        searchIndex.removeSeries(removed.getAppointment());
+        freeSlotFinder.invalidateAll();
+        for (Listener listener : listeners) listener.recurrenceChanged(removed.getAppointment(), removed.getRule(), null);
+        return true;
+    }
+
+    /**
+     * 繰り返し予定の date の回だけを除外する。
+     * @return 除外した場合は true。appointment が繰り返し予定でなければ false
+     */
+    public boolean skipOccurrence(Appointment appointment, LocalDate date) {
+        RecurrenceRule rule = getRecurrence(appointment);
+        if (rule == null) return false;
+        putRecurring(appointment, rule.withException(date));
+        return true;
+    }
+
+    /** appointment が繰り返し予定の各回として表示しているものなら、その規則。そうでなければ null。 */
+    public RecurrenceRule getRecurrence(Appointment appointment) {
+        AppointmentStore.Series entry = appointments.findSeries(appointment.getOwner(), appointment.getTitle());
+        return entry != null && entry.getAppointment() == appointment ? entry.getRule() : null;
+    }
+
+    /** 指定月の繰り返し予定の各回を日付ごとに返す（月ごとに覚えておく）。 */
+    public Map<LocalDate, List<Appointment>> occurrences(YearMonth yearMonth) {
+        return appointments.occurrences(yearMonth);
+    }
+
+    /** 指定日の繰り返し予定の各回。 */
+    public List<Appointment> occurrencesOn(LocalDate date) {
+        return appointments.occurrencesOn(date);
+    }
+
+    /** 繰り返し予定を除く全予定を日付順に（日付, 予定）の組にしたコピー。別のスレッドで書き出すときなどに使う。 */
+    public List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(appointments.size());
+        for (Map.Entry<LocalDate, Collection<Appointment>> day : appointments.range(LocalDate.MIN, LocalDate.MAX).entrySet()) {
+            for (Appointment appointment : day.getValue()) entries.add(new Entry(day.getKey(), appointment));
+        }
+        return entries;
+    }
+
+    /** 指定日の予定一覧（読み取り専用）。 */
+    public Collection<Appointment> get(LocalDate date) {
+        return appointments.get(date);
+    }
+
+    /** 指定月の予定を日付順に返す。 */
+    public NavigableMap<LocalDate, Collection<Appointment>> month(YearMonth yearMonth) {
+        return appointments.month(yearMonth);
+    }
+
+    /**
+     * 予定のストアの内容で検索索引の予定を作り直し、空き時間探しで覚えている枠を捨てる。
+     * 通知なしでストアに読み込んだ後（保存データの復元など）に呼ぶ。
+     */
+    public void reindexAppointments() {
+        freeSlotFinder.invalidateAll();
+        searchIndex.clearAppointments();
+        for (Map.Entry<LocalDate, Collection<Appointment>> day : appointments.range(LocalDate.MIN, LocalDate.MAX).entrySet()) {
+            for (Appointment appointment : day.getValue()) searchIndex.putAppointment(day.getKey(), appointment);
+        }
+        for (AppointmentStore.Series series : appointments.allSeries()) {
+            searchIndex.putSeries(series.getAppointment(), series.getRule());
+        }
+    }
+
+    /**
+     * group のチャットログに保存済みのメッセージを、バックグラウンドで検索索引に入れる。
+     * チャットログを割り当てた直後、メッセージを追加する前に呼ぶ。
+     */
+    public void indexChatHistory(Group group) {
+        if (group.getChatLog() != null) searchIndex.indexHistory(group, group.getChatLog(), group.getMessageCount());
+    }
+
+    /**
+     * チャットと予定を全文検索し、日付の新しい順に limit 件まで返す。
+     * @param contextGroup null でなければ、そのグループのチャットとその画面に表示する予定に絞る
+     * @param from         null でなければ、この日以降に絞る
+     * @param to           null でなければ、この日以前に絞る
+     */
+    public List<SearchIndex.Hit> search(String query, Group contextGroup, LocalDate from, LocalDate to, int limit) {
+        return searchIndex.search(query, contextGroup,
+                contextGroup != null ? visibilityIndex.visibleOwners(contextGroup) : null, from, to, limit);
+    }
+
+    /**
+     * group のメンバー全員が続けて minutes 分空いている時間帯を、from から to までの dayStart〜dayEnd の中で
+     * 早いものから limit 件まで探す。時刻のない（終日の）予定は空き時間を妨げない。
+     */
+    public List<FreeSlotFinder.Slot> findFreeSlots(Group group, LocalDate from, LocalDate to,
+                                                   LocalTime dayStart, LocalTime dayEnd, boolean weekdaysOnly,
+                                                   int minutes, int limit) {
+        return freeSlotFinder.find(group, from, to, dayStart, dayEnd, weekdaysOnly, minutes, limit);
+    }
+
+    /**
+     * 指定した画面で owner の予定を表示するかどうか。
+     * @param contextGroup 表示中のグループ。マイページの場合は null
+     */
+    public boolean isVisible(Object owner, Group contextGroup) {
+        return visibilityIndex.isVisible(owner, contextGroup);
+    }
+
+    /** グループ ID とユーザー ID からメンバーを探す。見つからなければ仮の利用者を返す。 */
+    public User resolveUser(String groupId, String userId) {
+        Group group = findGroupById(groupId);
+        return group != null ? group.findUserById(userId) : new User(userId, userId, Color.LIGHT_GRAY, false);
+    }
+
+    // --- Group から呼ばれる ---
+
+    void fireMemberJoined(Group group, User user) {
+        visibilityIndex.membershipChanged();
+        for (Listener listener : listeners) listener.memberJoined(group, user);
+    }
+
+    void fireMessagesAppended(Group group, List<ChatMessage> messages) {
+        searchIndex.addMessages(group, group.getMessageCount() - messages.size(), messages);
+        for (Listener listener : listeners) listener.messagesAppended(group, messages);
+    }
+}
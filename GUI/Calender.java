@@ -4,41 +4,89 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.YearMonth;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Map;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.Objects;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 public class Calender {
 
     // --- 定数 ---
-    private static final int CALENDAR_ROWS = 6;
-    private static final int CALENDAR_COLS = 7;
     private static final String MY_PAGE_ID = "MY_PAGE";
+    private static final Path CHAT_LOG_DIR = Paths.get("data", "chat");
+    private static final Path APPOINTMENT_DIR = Paths.get("data", "appointments");
+    private static final Path SYNC_STATE_DIR = Paths.get("data", "sync");
+    // 同期サーバーから予定の差分を受け取る範囲（表示中の月の前後何か月分か）
+    private static final int SYNC_WINDOW_MONTHS = 1;
+    // 表示内容を覚えておく（月, 画面）の組の数
+    private static final int RENDER_CACHE_CAPACITY = 12;
+    // 検索結果として表示する最大件数
+    private static final int SEARCH_LIMIT = 100;
+    // 空き時間を探す期間（今日から何日分か）・時間帯・表示する候補の数
+    private static final int FREE_SLOT_DAYS = 90;
+    private static final LocalTime WORK_START = LocalTime.of(9, 0);
+    private static final LocalTime WORK_END = LocalTime.of(18, 0);
+    private static final int FREE_SLOT_LIMIT = 20;
+    private static final LatencyHistogram UPDATE_CALENDAR_LATENCY = Metrics.latency("calendar.updateCalendar");
+    private static final LatencyHistogram UPDATE_CELL_LATENCY = Metrics.latency("calendar.updateDateCellView");
+    private static final LatencyHistogram APPEND_MESSAGES_LATENCY = Metrics.latency("chat.appendMessages");
 
     // --- UIコンポーネントなど ---
     private JFrame frame;
-    private final List<JPanel> datePanels = new ArrayList<>();
+    private MonthGridView monthGrid;
+    private final RenderModelCache renderCache = new RenderModelCache(RENDER_CACHE_CAPACITY);
     private JPanel monthDisplayPanel;
     private JPanel centerCardPanel;
     private CardLayout centerCardLayout;
     private JPanel sidebarPanel;
-    private final Map<LocalDate, List<Appointment>> appointments = new HashMap<>();
+    private GroupSidebarView sidebarView;
     private LocalDate currentDate;
-    private final List<Group> groups = new ArrayList<>();
     private User myUser;
     private Group currentGroup;
+    private final CalendarModel model;
+    private final CalendarView calendarView = new CalendarView();
+    // 日付セルに表示中の月と、その1日のセルの位置
+    private YearMonth shownMonth;
+    private int firstCellOffset;
+    private AppointmentJournal journal;
+    private SyncState syncState;
+    private OfflineSync offlineSync;
+    private YearMonth subscribedMonth;
+    // グループごとのチャットの画面と受信キュー（グループ自体は画面を知らない）
+    private final Map<Group, ChatView> chatViews = new HashMap<>();
+    private final Map<Group, ChatIngestQueue> ingestQueues = new ConcurrentHashMap<>();
 
     // ★ コンストラクタは User 型を直接受け取る
     public Calender(User user) {
         this.myUser = user;
+        this.model = new CalendarModel(user);
+        model.addListener(calendarView);
     }
     
     // (以降のメソッドは、以前の完全なコードと同じです)
@@ -56,7 +104,48 @@ public class Calender {
         frame.setVisible(true);
         startConsoleListener();
     }
+    /**
+     * ウィンドウもファイルも使わずに、画面の部品とグループだけを用意した Calender を作る。
+     * java.awt.headless で動かすベンチマーク用で、チャットログと予定のジャーナルは開かない。
+     */
+    static Calender createHeadless(User user, List<Group> groups) {
+        Calender calender = new Calender(user);
+        calender.currentDate = LocalDate.now();
+        for (Group group : groups) calender.model.addGroup(group);
+        calender.createMainLayout();
+        calender.updateHeader();
+        calender.updateCalendar();
+        return calender;
+    }
     private void initializeData() {
+        openSyncState();
+        // 前回保存したグループとメンバーの一覧があれば、サーバーを待たずにそれで画面を作る
+        List<Group> cachedGroups = syncState != null ? syncState.loadRoster(myUser) : List.of();
+        if (cachedGroups.stream().anyMatch(group -> group.hasMember(myUser))) {
+            for (Group group : cachedGroups) model.addGroup(group);
+        } else {
+            addDefaultGroups();
+        }
+        if (syncState != null) {
+            syncState.saveRoster(model.getGroups());
+            model.addListener(new RosterRecorder());
+        }
+        openChatLogs();
+        openAppointmentJournal();
+        registerShutdownHook();
+        // 保存済みの予定がなければサンプルの予定を入れる
+        if (journal != null && journal.getRestoredCount() > 0) return;
+        Group group1 = model.findGroupById("G01");
+        Group group2 = model.findGroupById("G02");
+        LocalDate today = LocalDate.now();
+        addOrUpdateAppointment(today.withDayOfMonth(10), new Appointment("個人タスク", "レポート作成", myUser));
+        if (group1 != null) {
+            addOrUpdateAppointment(today.withDayOfMonth(10), new Appointment("【共有】進捗確認", "定例の進捗確認", group1));
+            addOrUpdateAppointment(today.withDayOfMonth(12), new Appointment("田中さんタスク", "サーバ移行", group1.findUserById("002")));
+        }
+        if (group2 != null) addOrUpdateAppointment(today.withDayOfMonth(20), new Appointment("営業部MTG", "戦略会議", group2));
+    }
+    private void addDefaultGroups() {
         Group group1 = new Group("G01", "技術部", '技');
         User userTanaka = new User("002", "田中", new Color(220, 220, 220), false);
         User userSato = new User("004", "佐藤", new Color(200, 220, 200), false);
@@ -68,13 +157,48 @@ public class Calender {
         group2.addUser(myUser);
         group2.addUser(userSuzuki);
         group2.addUser(userTanaka);
-        groups.add(group1);
-        groups.add(group2);
-        LocalDate today = LocalDate.now();
-        addOrUpdateAppointment(today.withDayOfMonth(10), new Appointment("個人タスク", "レポート作成", myUser));
-        addOrUpdateAppointment(today.withDayOfMonth(10), new Appointment("【共有】進捗確認", "定例の進捗確認", group1));
-        addOrUpdateAppointment(today.withDayOfMonth(12), new Appointment("田中さんタスク", "サーバ移行", userTanaka));
-        addOrUpdateAppointment(today.withDayOfMonth(20), new Appointment("営業部MTG", "戦略会議", group2));
+        model.addGroup(group1);
+        model.addGroup(group2);
+    }
+    private void openSyncState() {
+        try {
+            syncState = SyncState.open(SYNC_STATE_DIR);
+        } catch (IOException e) {
+            System.err.println("エラー: 同期の状態を開けませんでした。" + e.getMessage());
+        }
+    }
+    private void openChatLogs() {
+        for (Group group : model.getGroups()) {
+            try {
+                group.attachChatLog(ChatLog.open(CHAT_LOG_DIR.resolve(group.getId()), group::findUserById));
+                model.indexChatHistory(group);
+            } catch (IOException e) {
+                System.err.println("エラー: " + group.getName() + " のチャットログを開けませんでした。" + e.getMessage());
+            }
+        }
+    }
+    private void openAppointmentJournal() {
+        try {
+            journal = AppointmentJournal.open(APPOINTMENT_DIR, model.getAppointments(), model::resolveOwner);
+            model.reindexAppointments();
+            model.addListener(new JournalRecorder());
+        } catch (IOException e) {
+            System.err.println("エラー: 予定のジャーナルを開けませんでした。" + e.getMessage());
+        }
+    }
+    private void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                if (offlineSync != null) offlineSync.close();
+                if (syncState != null) syncState.close();
+                if (journal != null) journal.close();
+                for (Group group : model.getGroups()) {
+                    if (group.getChatLog() != null) group.getChatLog().close();
+                }
+            } catch (IOException e) {
+                System.err.println("エラー: 保存ファイルを閉じられませんでした。" + e.getMessage());
+            }
+        }));
     }
     private JPanel createMainLayout() {
         JPanel mainPanel = new JPanel(new GridBagLayout());
@@ -83,7 +207,7 @@ public class Calender {
         centerCardLayout = new CardLayout();
         centerCardPanel = new JPanel(centerCardLayout);
         centerCardPanel.add(createMyPagePanel(), MY_PAGE_ID);
-        for (Group group : groups) {
+        for (Group group : model.getGroups()) {
             centerCardPanel.add(createChatPanel(group), group.getId());
         }
         JPanel calenderPanel = createCalendarView();
@@ -97,56 +221,33 @@ public class Calender {
         return mainPanel;
     }
     private JPanel createSidebarPanel() {
-        JPanel panel = new JPanel();
-        panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+        JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createTitledBorder("Groups"));
         panel.setBackground(new Color(240, 240, 240));
-        panel.add(createGroupIcon(MY_PAGE_ID, "マイページ", myUser.getName().charAt(0)));
-        panel.add(Box.createRigidArea(new Dimension(0, 10)));
-        for (Group group : groups) {
-            panel.add(createGroupIcon(group.getId(), group.getName(), group.getIconChar()));
+        sidebarView = new GroupSidebarView(this::selectPage);
+        List<GroupSidebarView.Entry> entries = new ArrayList<>();
+        entries.add(new GroupSidebarView.Entry(MY_PAGE_ID, "マイページ", myUser.getName().charAt(0), GroupSidebarView.DEFAULT_COLOR));
+        for (Group group : model.getGroups()) {
+            entries.add(new GroupSidebarView.Entry(group.getId(), group.getName(), group.getIconChar(), GroupSidebarView.DEFAULT_COLOR));
         }
-        panel.add(Box.createVerticalGlue());
+        sidebarView.setEntries(entries);
+        sidebarView.setSelectedId(MY_PAGE_ID);
+        JScrollPane scrollPane = new JScrollPane(sidebarView, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder());
+        panel.add(scrollPane, BorderLayout.CENTER);
         return panel;
     }
-    private Component createGroupIcon(String id, String tooltip, char iconChar) {
-        JLabel iconLabel = new JLabel(String.valueOf(iconChar), SwingConstants.CENTER) {
-            @Override
-            protected void paintComponent(Graphics g) {
-                Graphics2D g2 = (Graphics2D) g.create();
-                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                boolean isSelected = id.equals(MY_PAGE_ID) ? currentGroup == null : (currentGroup != null && id.equals(currentGroup.getId()));
-                if (isSelected) g2.setColor(new Color(66, 133, 244));
-                else g2.setColor(Color.LIGHT_GRAY);
-                g2.fillOval(5, 5, getWidth() - 10, getHeight() - 10);
-                super.paintComponent(g);
-                g2.dispose();
-            }
-        };
-        Dimension iconSize = new Dimension(50, 50);
-        iconLabel.setPreferredSize(iconSize);
-        iconLabel.setMaximumSize(new Dimension(Short.MAX_VALUE, iconSize.height));
-        iconLabel.setFont(new Font("SansSerif", Font.BOLD, 24));
-        iconLabel.setForeground(Color.WHITE);
-        iconLabel.setToolTipText(tooltip);
-        iconLabel.setCursor(new Cursor(Cursor.HAND_CURSOR));
-        iconLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-        iconLabel.setBorder(new EmptyBorder(5, 0, 5, 0));
-        iconLabel.addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseClicked(MouseEvent e) {
-                if (id.equals(MY_PAGE_ID)) {
-                    currentGroup = null;
-                    centerCardLayout.show(centerCardPanel, MY_PAGE_ID);
-                } else {
-                    currentGroup = findGroupById(id);
-                    centerCardLayout.show(centerCardPanel, id);
-                }
-                sidebarPanel.repaint();
-                updateCalendar();
-            }
-        });
-        return iconLabel;
+    // マイページ（MY_PAGE_ID）またはグループの画面に切り替える
+    private void selectPage(String id) {
+        if (id.equals(MY_PAGE_ID)) {
+            currentGroup = null;
+            centerCardLayout.show(centerCardPanel, MY_PAGE_ID);
+        } else {
+            currentGroup = model.findGroupById(id);
+            centerCardLayout.show(centerCardPanel, id);
+        }
+        sidebarView.setSelectedId(id);
+        updateCalendar();
     }
     private JPanel createMyPagePanel() {
         JPanel myPagePanel = new JPanel(new GridBagLayout());
@@ -160,15 +261,21 @@ public class Calender {
     private JPanel createChatPanel(Group group) {
         JPanel chatPanel = new JPanel(new BorderLayout());
         chatPanel.setBorder(BorderFactory.createTitledBorder(group.getName() + " - Chat"));
-        JPanel messageArea = new JPanel();
-        messageArea.setLayout(new BoxLayout(messageArea, BoxLayout.Y_AXIS));
-        messageArea.setBackground(Color.WHITE);
-        group.setMessageArea(messageArea);
-        for (ChatMessage message : group.getChatHistory()) {
-            addMessageToUI(message, group);
-        }
-        JScrollPane scrollPane = new JScrollPane(messageArea);
+        ChatView chatView = new ChatView(group.getChatHistory(), myUser);
+        chatViews.put(group, chatView);
+        JScrollPane scrollPane = new JScrollPane(chatView);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
+        JScrollBar verticalScrollBar = scrollPane.getVerticalScrollBar();
+        verticalScrollBar.addAdjustmentListener(e -> {
+            // 一番上までスクロールしたら古いメッセージを読み込む
+            if (e.getValue() == verticalScrollBar.getMinimum() && group.hasOlderMessages()) {
+                SwingUtilities.invokeLater(() -> {
+                    if (verticalScrollBar.getValue() != verticalScrollBar.getMinimum()) return;
+                    int loaded = group.loadOlderMessages();
+                    if (loaded > 0) chatView.messagesPrepended(loaded);
+                });
+            }
+        });
         JPanel inputPanel = new JPanel(new BorderLayout(5, 5));
         inputPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
         JTextField inputField = new JTextField();
@@ -179,8 +286,8 @@ public class Calender {
                 String text = inputField.getText();
                 if (!text.trim().isEmpty()) {
                     ChatMessage message = new ChatMessage(myUser, text, LocalDateTime.now());
-                    group.addMessage(message);
-                    addMessageToUI(message, group);
+                    ingestQueue(group).submit(message);
+                    if (offlineSync != null) offlineSync.publishChat(group.getId(), message);
                     inputField.setText("");
                 }
             }
@@ -193,85 +300,144 @@ public class Calender {
         chatPanel.add(inputPanel, BorderLayout.SOUTH);
         return chatPanel;
     }
-    private void addMessageToUI(ChatMessage message, Group group) {
-        JPanel messageArea = group.getMessageArea();
-        if (messageArea == null) return;
-        JPanel messageBubble = createMessageBubble(message);
-        JPanel wrapper = new JPanel(new BorderLayout());
-        wrapper.setOpaque(false);
-        wrapper.setBorder(new EmptyBorder(2, 5, 2, 5));
-        if (message.getSender().isMe()) {
-            wrapper.add(messageBubble, BorderLayout.EAST);
-        } else {
-            wrapper.add(messageBubble, BorderLayout.WEST);
-        }
-        messageArea.add(wrapper);
-        messageArea.revalidate();
-        messageArea.repaint();
-        JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, messageArea);
-        if (scrollPane != null) {
-            JScrollBar verticalScrollBar = scrollPane.getVerticalScrollBar();
-            SwingUtilities.invokeLater(() -> verticalScrollBar.setValue(verticalScrollBar.getMaximum()));
-        }
-    }
-    private JPanel createMessageBubble(ChatMessage message) {
-        JPanel bubble = new JPanel(new BorderLayout(5, 2));
-        bubble.setBorder(new EmptyBorder(5, 10, 5, 10));
-        JLabel senderLabel = new JLabel(message.getSender().getName());
-        senderLabel.setFont(new Font("SansSerif", Font.PLAIN, 12));
-        senderLabel.setForeground(Color.DARK_GRAY);
-        JTextArea messageText = new JTextArea(message.getText());
-        messageText.setEditable(false);
-        messageText.setLineWrap(true);
-        messageText.setWrapStyleWord(true);
-        messageText.setFont(new Font("SansSerif", Font.PLAIN, 14));
-        messageText.setOpaque(false);
-        if (message.getSender().isMe()) {
-            bubble.setBackground(myUser.getColor());
-            bubble.add(messageText, BorderLayout.CENTER);
-        } else {
-            bubble.setBackground(message.getSender().getColor());
-            bubble.add(senderLabel, BorderLayout.NORTH);
-            bubble.add(messageText, BorderLayout.CENTER);
-        }
-        JPanel wrapper = new JPanel();
-        wrapper.add(bubble);
-        wrapper.setOpaque(false);
-        wrapper.setMaximumSize(new Dimension(350, Short.MAX_VALUE));
-        return wrapper;
-    }
-    private Group findGroupById(String id) {
-        return groups.stream().filter(g -> g.getId().equals(id)).findFirst().orElse(null);
-    }
     private JPanel createCalendarView() {
         JPanel calendarContainer = new JPanel(new BorderLayout(0, 10));
         calendarContainer.setBorder(new EmptyBorder(5, 5, 5, 5));
-        calendarContainer.add(createHeaderPanel(), BorderLayout.NORTH);
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(createSearchPanel(), BorderLayout.NORTH);
+        northPanel.add(createHeaderPanel(), BorderLayout.CENTER);
+        calendarContainer.add(northPanel, BorderLayout.NORTH);
         calendarContainer.add(createCalendarGridPanel(), BorderLayout.CENTER);
         calendarContainer.add(createFooterPanel(), BorderLayout.SOUTH);
         return calendarContainer;
     }
+    private JPanel createSearchPanel() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        JTextField queryField = new JTextField(16);
+        JCheckBox pageOnlyBox = new JCheckBox("この画面のみ");
+        JCheckBox monthOnlyBox = new JCheckBox("表示中の月のみ");
+        JButton searchButton = new JButton("検索");
+        JButton freeSlotButton = new JButton("空き時間");
+        ActionListener searchAction = e -> {
+            String query = queryField.getText().trim();
+            if (query.isEmpty()) return;
+            LocalDate from = null, to = null;
+            if (monthOnlyBox.isSelected()) {
+                from = YearMonth.from(currentDate).atDay(1);
+                to = YearMonth.from(currentDate).atEndOfMonth();
+            }
+            showSearchResults(query, model.search(query, pageOnlyBox.isSelected() ? currentGroup : null, from, to, SEARCH_LIMIT));
+        };
+        queryField.addActionListener(searchAction);
+        searchButton.addActionListener(searchAction);
+        freeSlotButton.addActionListener(e -> askFreeSlots());
+        panel.add(new JLabel("検索:"));
+        panel.add(queryField);
+        panel.add(pageOnlyBox);
+        panel.add(monthOnlyBox);
+        panel.add(searchButton);
+        panel.add(freeSlotButton);
+        return panel;
+    }
+    // 表示中のグループの全員が空いている時間帯を探して一覧にし、選んだ時間帯でグループの予定を作る
+    private void askFreeSlots() {
+        if (currentGroup == null) {
+            JOptionPane.showMessageDialog(frame, "空き時間を探すグループを選択してください。");
+            return;
+        }
+        String input = JOptionPane.showInputDialog(frame, "会議の長さ（分）:", "60");
+        if (input == null) return;
+        int minutes;
+        try {
+            minutes = Integer.parseInt(input.trim());
+        } catch (NumberFormatException e) {
+            minutes = 0;
+        }
+        if (minutes <= 0 || minutes > WORK_END.toSecondOfDay() / 60 - WORK_START.toSecondOfDay() / 60) {
+            JOptionPane.showMessageDialog(frame, "会議の長さは 1 分から勤務時間内の長さまでで指定してください。", "入力エラー", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Group group = currentGroup;
+        LocalDate today = LocalDate.now();
+        List<FreeSlotFinder.Slot> slots = model.findFreeSlots(group, today, today.plusDays(FREE_SLOT_DAYS - 1),
+                WORK_START, WORK_END, true, minutes, FREE_SLOT_LIMIT);
+        JDialog dialog = new JDialog(frame, group.getName() + " の空き時間（" + minutes + " 分, " + slots.size() + " 件）", false);
+        JList<FreeSlotFinder.Slot> list = new JList<>(slots.toArray(new FreeSlotFinder.Slot[0]));
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                FreeSlotFinder.Slot slot = list.getSelectedValue();
+                if (e.getClickCount() != 2 || slot == null) return;
+                showMonth(YearMonth.from(slot.getDate()));
+                editAppointment(slot.getDate(), null, new Appointment("", "", group, slot.getStart(), slot.getEnd()));
+            }
+        });
+        dialog.add(new JScrollPane(list));
+        dialog.setSize(300, 400);
+        dialog.setLocationRelativeTo(frame);
+        dialog.setVisible(true);
+    }
+    // 検索結果を一覧にし、ダブルクリックか Enter で予定を開くかチャットのグループに切り替える
+    private void showSearchResults(String query, List<SearchIndex.Hit> hits) {
+        JDialog dialog = new JDialog(frame, "検索結果: " + query + "（" + hits.size() + " 件）", false);
+        JList<SearchIndex.Hit> list = new JList<>(hits.toArray(new SearchIndex.Hit[0]));
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, describeHit((SearchIndex.Hit) value), index, isSelected, cellHasFocus);
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && list.getSelectedValue() != null) openHit(list.getSelectedValue());
+            }
+        });
+        list.getInputMap().put(KeyStroke.getKeyStroke("ENTER"), "openHit");
+        list.getActionMap().put("openHit", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (list.getSelectedValue() != null) openHit(list.getSelectedValue());
+            }
+        });
+        dialog.add(new JScrollPane(list));
+        dialog.setSize(500, 400);
+        dialog.setLocationRelativeTo(frame);
+        dialog.setVisible(true);
+    }
+    private String describeHit(SearchIndex.Hit hit) {
+        if (hit.getKind() == SearchIndex.CHAT) {
+            ChatMessage message = hit.getMessage();
+            return hit.getDate() + " [" + hit.getGroup().getName() + "] " + message.getSender().getName() + ": " + message.getText();
+        }
+        return hit.getDate() + " [予定] " + hit.getAppointment().getTitle();
+    }
+    private void openHit(SearchIndex.Hit hit) {
+        if (hit.getKind() == SearchIndex.CHAT) {
+            selectPage(hit.getGroup().getId());
+            return;
+        }
+        showMonth(YearMonth.from(hit.getDate()));
+        showAppointmentDialog(hit.getDate(), hit.getAppointment(), hit.getAppointment().getOwner());
+    }
     private JPanel createHeaderPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(new EmptyBorder(5, 5, 5, 5));
         JButton prevButton = new JButton("<");
-        prevButton.addActionListener(e -> {
-            currentDate = currentDate.minusMonths(1);
-            updateHeader();
-            updateCalendar();
-        });
+        prevButton.addActionListener(e -> showMonth(YearMonth.from(currentDate).minusMonths(1)));
         JButton nextButton = new JButton(">");
-        nextButton.addActionListener(e -> {
-            currentDate = currentDate.plusMonths(1);
-            updateHeader();
-            updateCalendar();
-        });
+        nextButton.addActionListener(e -> showMonth(YearMonth.from(currentDate).plusMonths(1)));
         monthDisplayPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 0));
         panel.add(prevButton, BorderLayout.WEST);
         panel.add(monthDisplayPanel, BorderLayout.CENTER);
         panel.add(nextButton, BorderLayout.EAST);
         return panel;
     }
+    void showMonth(YearMonth yearMonth) {
+        currentDate = yearMonth.atDay(Math.min(currentDate.getDayOfMonth(), yearMonth.lengthOfMonth()));
+        updateHeader();
+        updateCalendar();
+    }
     private void updateHeader() {
         monthDisplayPanel.removeAll();
         int year = currentDate.getYear();
@@ -284,7 +450,7 @@ public class Calender {
     }
     private Component createCalendarGridPanel() {
         JPanel gridContainer = new JPanel(new BorderLayout());
-        JPanel dayOfWeekPanel = new JPanel(new GridLayout(1, CALENDAR_COLS));
+        JPanel dayOfWeekPanel = new JPanel(new GridLayout(1, MonthGridView.COLS));
         String[] days = {"日", "月", "火", "水", "木", "金", "土"};
         for (String day : days) {
             JLabel dayLabel = new JLabel(day, JLabel.CENTER);
@@ -292,16 +458,19 @@ public class Calender {
             if (day.equals("土")) dayLabel.setForeground(Color.BLUE);
             dayOfWeekPanel.add(dayLabel);
         }
-        JPanel dateGridPanel = new JPanel(new GridLayout(CALENDAR_ROWS, CALENDAR_COLS, 2, 2));
-        datePanels.clear();
-        for (int i = 0; i < CALENDAR_ROWS * CALENDAR_COLS; i++) {
-            JPanel dateCell = new JPanel(new BorderLayout());
-            dateCell.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
-            dateGridPanel.add(dateCell);
-            datePanels.add(dateCell);
-        }
+        monthGrid = new MonthGridView(new MonthGridView.Listener() {
+            @Override
+            public void addRequested(int index) {
+                Object owner = (currentGroup != null) ? (Object) currentGroup : (Object) myUser;
+                showAppointmentDialog(cellDate(index), null, owner);
+            }
+            @Override
+            public void appointmentClicked(int index, Appointment appointment) {
+                showAppointmentDialog(cellDate(index), appointment, appointment.getOwner());
+            }
+        });
         gridContainer.add(dayOfWeekPanel, BorderLayout.NORTH);
-        gridContainer.add(dateGridPanel, BorderLayout.CENTER);
+        gridContainer.add(monthGrid, BorderLayout.CENTER);
         return gridContainer;
     }
     private JPanel createFooterPanel() {
@@ -320,58 +489,53 @@ public class Calender {
         footerPanel.add(addButton);
         return footerPanel;
     }
-    private void updateCalendar() {
+    void updateCalendar() {
+        long start = System.nanoTime();
+        try {
+            showCurrentMonth();
+        } finally {
+            UPDATE_CALENDAR_LATENCY.recordSince(start);
+        }
+    }
+    private void showCurrentMonth() {
         YearMonth yearMonth = YearMonth.from(currentDate);
-        int daysInMonth = yearMonth.lengthOfMonth();
-        LocalDate firstOfMonth = currentDate.withDayOfMonth(1);
-        int startDayOfWeek = firstOfMonth.getDayOfWeek().getValue() % 7; 
-        for (int i = 0; i < datePanels.size(); i++) {
-            JPanel dateCell = datePanels.get(i);
-            dateCell.removeAll();
-            dateCell.setBackground(Color.WHITE);
-            dateCell.setName(null);
-            int day = i - startDayOfWeek + 1;
-            if (day > 0 && day <= daysInMonth) {
-                LocalDate cellDate = LocalDate.of(currentDate.getYear(), currentDate.getMonthValue(), day);
-                buildDateCell(dateCell, cellDate);
-                if (cellDate.equals(LocalDate.now())) {
-                    dateCell.setBackground(new Color(220, 240, 255));
-                }
-                updateDateCellView(cellDate, currentGroup);
-            }
-            dateCell.revalidate();
-            dateCell.repaint();
-        }
-    }
-    private void buildDateCell(JPanel dateCell, LocalDate cellDate) {
-        dateCell.setName(cellDate.toString());
-        JLabel dateLabel = new JLabel(String.valueOf(cellDate.getDayOfMonth()), SwingConstants.RIGHT);
-        dateLabel.setBorder(new EmptyBorder(2, 0, 0, 4));
-        dateCell.add(dateLabel, BorderLayout.NORTH);
-        JPanel appointmentContainer = new JPanel();
-        appointmentContainer.setName("appointmentContainer");
-        appointmentContainer.setLayout(new BoxLayout(appointmentContainer, BoxLayout.Y_AXIS));
-        appointmentContainer.setOpaque(false);
-        dateCell.add(appointmentContainer, BorderLayout.CENTER);
-        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
-        buttonPanel.setOpaque(false);
-        JButton addButton = new JButton("+");
-        addButton.setMargin(new Insets(0, 0, 0, 0));
-        addButton.setFont(new Font("SansSerif", Font.BOLD, 12));
-        addButton.setFocusable(false);
-        SwingUtilities.invokeLater(() -> {
-            int height = addButton.getPreferredSize().height;
-            if (height > 0) {
-                addButton.setPreferredSize(new Dimension(height, height));
-                buttonPanel.revalidate();
+        LocalDate today = LocalDate.now();
+        MonthRenderModel renderModel = renderCache.get(yearMonth, currentGroup, today);
+        if (renderModel == null) {
+            // 表示する月の予定を一度の範囲問い合わせでまとめて取得する
+            renderModel = MonthRenderModel.build(yearMonth, currentGroup, today, model.month(yearMonth),
+                    model.occurrences(yearMonth), model.getVisibilityIndex().visibleOwners(currentGroup));
+            renderCache.put(renderModel);
+        }
+        shownMonth = yearMonth;
+        firstCellOffset = renderModel.getFirstCellOffset();
+        monthGrid.show(renderModel);
+        prefetchAdjacentMonths(yearMonth, today);
+        updateSyncWindow();
+    }
+    // 前後の月の表示内容をバックグラウンドで作っておく。予定の一覧はここ（EDT）で写し取ってから渡す。
+    // 繰り返し予定の展開結果と表示する所有者の集合は作り直されるだけで変更されないので、そのまま渡してよい
+    private void prefetchAdjacentMonths(YearMonth yearMonth, LocalDate today) {
+        Group contextGroup = currentGroup;
+        Set<Object> visibleOwners = model.getVisibilityIndex().visibleOwners(contextGroup);
+        for (YearMonth month : new YearMonth[]{yearMonth.minusMonths(1), yearMonth.plusMonths(1)}) {
+            if (renderCache.contains(month, contextGroup)) continue;
+            Map<LocalDate, List<Appointment>> appointments = new HashMap<>();
+            for (Map.Entry<LocalDate, Collection<Appointment>> day : model.month(month).entrySet()) {
+                appointments.put(day.getKey(), new ArrayList<>(day.getValue()));
             }
-        });
-        addButton.addActionListener(e -> {
-            Object owner = (currentGroup != null) ? (Object) currentGroup : (Object) myUser;
-            showAppointmentDialog(cellDate, null, owner);
-        });
-        buttonPanel.add(addButton);
-        dateCell.add(buttonPanel, BorderLayout.SOUTH);
+            Map<LocalDate, List<Appointment>> occurrences = model.occurrences(month);
+            renderCache.prefetch(month, contextGroup,
+                    () -> MonthRenderModel.build(month, contextGroup, today, appointments, occurrences, visibleOwners));
+        }
+    }
+    // 表示中の月が変わったら、同期サーバーの購読範囲をその月と前後の月に移す
+    private void updateSyncWindow() {
+        YearMonth yearMonth = YearMonth.from(currentDate);
+        if (offlineSync == null || yearMonth.equals(subscribedMonth)) return;
+        subscribedMonth = yearMonth;
+        offlineSync.subscribe(yearMonth.minusMonths(SYNC_WINDOW_MONTHS).atDay(1),
+                yearMonth.plusMonths(SYNC_WINDOW_MONTHS).atEndOfMonth());
     }
     private void handleAddAppointmentFromFooter(JTextField monthField, JTextField dayField, JTextField titleField) {
         try {
@@ -395,94 +559,93 @@ public class Calender {
             JOptionPane.showMessageDialog(frame, "月日やタイトルを正しく入力してください。\n(例: 2月30日は無効です)", "エラー", JOptionPane.ERROR_MESSAGE);
         }
     }
+    /**
+     * 予定をまとめて取り込み、カレンダーの再描画を最後に1回だけ行う。同期サーバーに接続していれば各予定を送る。
+     * @return 取り込んだ件数
+     */
+    public int importAppointments(Stream<CalendarModel.Entry> entries) {
+        List<CalendarModel.Entry> imported = model.importAll(entries);
+        for (CalendarModel.Entry entry : imported) publishUpsert(entry.getDate(), entry.getAppointment());
+        return imported.size();
+    }
     public void addOrUpdateAppointment(LocalDate date, Appointment appointment) {
-        List<Appointment> appointmentList = appointments.computeIfAbsent(date, k -> new ArrayList<>());
-        boolean updated = false;
-        for (int i = 0; i < appointmentList.size(); i++) {
-            Appointment existingApp = appointmentList.get(i);
-            if (Objects.equals(existingApp.getOwner(), appointment.getOwner()) && existingApp.getTitle().equals(appointment.getTitle())) {
-                appointmentList.set(i, appointment);
-                updated = true;
-                break;
-            }
-        }
-        if (!updated) {
-            appointmentList.add(appointment);
-        }
-        updateDateCellView(date, currentGroup);
+        model.upsert(date, appointment);
+        publishUpsert(date, appointment);
+    }
+    private void publishUpsert(LocalDate date, Appointment appointment) {
+        if (offlineSync != null) offlineSync.localUpsert(date, appointment);
     }
     public void removeAppointment(LocalDate date, Appointment appointment) {
-        List<Appointment> appointmentList = appointments.get(date);
-        if (appointmentList != null) {
-            appointmentList.remove(appointment);
-            if (appointmentList.isEmpty()) {
-                appointments.remove(date);
-            }
-        }
-        updateDateCellView(date, currentGroup);
-    }
-    private void updateDateCellView(LocalDate date, Group contextGroup) {
-        for (JPanel dateCell : datePanels) {
-            if (date.toString().equals(dateCell.getName())) {
-                Component[] components = dateCell.getComponents();
-                JPanel appointmentContainer = null;
-                for (Component c : components) {
-                    if (c instanceof JPanel && "appointmentContainer".equals(c.getName())) {
-                        appointmentContainer = (JPanel) c;
-                        break;
-                    }
-                }
-                if (appointmentContainer == null) return;
-                appointmentContainer.removeAll();
-                List<Appointment> appointmentList = appointments.get(date);
-                if (appointmentList != null) {
-                    for (Appointment app : appointmentList) {
-                        Object owner = app.getOwner();
-                        boolean shouldDisplay = false;
-                        if (contextGroup == null) {
-                            if (owner.equals(myUser)) {
-                                shouldDisplay = true;
-                            } else if (owner instanceof Group) {
-                                if (((Group) owner).getUsers().contains(myUser)) {
-                                    shouldDisplay = true;
-                                }
-                            }
-                        } else {
-                            if (owner.equals(myUser)) {
-                                shouldDisplay = true;
-                            } else if (owner.equals(contextGroup)) {
-                                shouldDisplay = true;
-                            } else if (owner instanceof User) {
-                                if (contextGroup.getUsers().contains(owner)) {
-                                    shouldDisplay = true;
-                                }
-                            }
-                        }
-                        if (shouldDisplay) {
-                            JButton appButton = new JButton("<html>" + app.getTitle() + "</html>");
-                            if (owner instanceof User) {
-                                appButton.setBackground(((User) owner).getColor());
-                            } else if (owner instanceof Group) {
-                                appButton.setBackground(new Color(144, 238, 144));
-                            }
-                            appButton.setOpaque(true);
-                            appButton.addActionListener(e -> showAppointmentDialog(date, app, app.getOwner()));
-                            appointmentContainer.add(appButton);
-                        }
-                    }
-                }
-                appointmentContainer.revalidate();
-                appointmentContainer.repaint();
-                break;
-            }
+        if (model.remove(date, appointment) && offlineSync != null) offlineSync.localRemove(date, appointment);
+    }
+    /**
+     * システムプロパティ sync.server（例: localhost:5555）が指定されていれば、
+     * バックグラウンドで同期サーバーに接続し、他のメンバーの変更を受け取り始める。
+     * 画面はローカルに保存した内容で先に表示しておき、接続できない間の変更は未送信として残して、つながったときに送る。
+     * 最初の接続だけ session のパスワードでログインし、接続し直すときはサーバーが発行したトークンを使う。
+     * 同期サーバーを使わない場合は session のパスワードをすぐに消去する。
+     */
+    public void connectSyncServer(SyncClient.Session session) {
+        String server = System.getProperty("sync.server");
+        if (server == null || syncState == null) {
+            session.discard();
+            return;
         }
+        String[] hostPort = server.split(":", 2);
+        offlineSync = new OfflineSync(model, syncState, SwingUtilities::invokeLater);
+        offlineSync.start(() -> {
+            SyncClient client = SyncClient.connect(hostPort[0], Integer.parseInt(hostPort[1]), session);
+            client.startReceiving(new SyncListener());
+            return client;
+        }, server);
+        updateSyncWindow();
+    }
+    void updateDateCellView(LocalDate date, Group contextGroup) {
+        int index = cellIndex(date);
+        if (index < 0) return;
+        long start = System.nanoTime();
+        monthGrid.showItems(index, MonthRenderModel.items(model.get(date), model.occurrencesOn(date),
+                model.getVisibilityIndex().visibleOwners(contextGroup)));
+        UPDATE_CELL_LATENCY.recordSince(start);
+    }
+    MonthGridView getMonthGrid() {
+        return monthGrid;
+    }
+    // 表示内容のキャッシュを空にする（ベンチマークでキャッシュなしの費用を測るため）
+    void clearRenderCache() {
+        renderCache.invalidateAll();
+    }
+    // 表示中の月で index のセルが表す日付
+    private LocalDate cellDate(int index) {
+        return shownMonth.atDay(index - firstCellOffset + 1);
+    }
+    // 表示中の月の日付なら、その日付セルの位置。表示していなければ -1
+    private int cellIndex(LocalDate date) {
+        if (shownMonth == null || date.getYear() != shownMonth.getYear() || date.getMonthValue() != shownMonth.getMonthValue()) return -1;
+        return firstCellOffset + date.getDayOfMonth() - 1;
     }
     private void showAppointmentDialog(LocalDate date, Appointment appointment, Object owner) {
+        editAppointment(date, appointment, appointment != null ? appointment : new Appointment("", "", owner));
+    }
+    // appointment が null なら template を初期値にして新規作成する
+    private void editAppointment(LocalDate date, Appointment appointment, Appointment template) {
         boolean isNew = (appointment == null);
-        Appointment targetApp = isNew ? new Appointment("", "", owner) : appointment;
+        Appointment targetApp = isNew ? template : appointment;
         AppointmentDialog dialog = new AppointmentDialog(frame, targetApp, isNew);
         dialog.setVisible(true);
         int result = dialog.getResult();
+        if (isNew && result == AppointmentDialog.OPTION_SAVE && dialog.getRecurrence(date) != null) {
+            model.putRecurring(dialog.getAppointment(), dialog.getRecurrence(date));
+            return;
+        }
+        // 繰り返し予定の回を編集・削除したときは、その回だけを除外する（保存なら1回限りの予定で置き換える）
+        if (!isNew && model.getRecurrence(appointment) != null) {
+            if (result == AppointmentDialog.OPTION_SAVE || result == AppointmentDialog.OPTION_DELETE) {
+                model.skipOccurrence(appointment, date);
+            }
+            if (result == AppointmentDialog.OPTION_SAVE) addOrUpdateAppointment(date, dialog.getAppointment());
+            return;
+        }
         if (result == AppointmentDialog.OPTION_SAVE) {
             if(!isNew) {
                 removeAppointment(date, appointment);
@@ -498,7 +661,22 @@ public class Calender {
             System.out.println("コマンド一覧:");
             System.out.println("  chat <相手名> <メッセージ>           ... 指定した相手としてチャット送信");
             System.out.println("  appoint <相手名> <月> <日> <タイトル> ... 指定した相手の予定を追加");
+            System.out.println("  repeat <相手名> <daily|weekly|monthly> <月> <日> <回数> <タイトル> ... 繰り返し予定を追加（回数 0 で無期限）");
+            System.out.println("  stats                              ... チャット受信キュー・キャッシュ・検索索引の統計と処理時間の計測値を表示");
+            System.out.println("  replay <ファイル>                    ... ファイルのコマンドをまとめて実行");
+            System.out.println("  import <ファイル>                    ... .ics ファイルの予定を取り込む");
+            System.out.println("  export <ファイル>                    ... 全予定を .ics ファイルに書き出す");
+            System.out.println("  search <語>                          ... チャットと予定を全文検索");
+            System.out.println("  free <分> [日数]                     ... 表示中のグループの全員が空いている時間帯を探す");
             System.out.println("  exit                               ... 入力を終了");
+            // -Dconsole.replay=- なら標準入力のパイプを、ファイル名ならそのファイルを最初にリプレイする
+            String replaySource = System.getProperty("console.replay");
+            if ("-".equals(replaySource)) {
+                replayCommands(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 64 * 1024));
+                System.out.println("コンソールリスナーを終了しました。");
+                return;
+            }
+            if (replaySource != null) replayCommandFile(replaySource);
             Scanner scanner = new Scanner(System.in);
             while (true) {
                 String groupName = (this.currentGroup != null) ? this.currentGroup.getName() : "マイページ";
@@ -508,7 +686,22 @@ public class Calender {
                 if (line.trim().isEmpty()) continue;
                 String[] parts = line.split(" ", 2);
                 String command = parts[0].toLowerCase();
+                if (command.equals("replay")) {
+                    if (parts.length < 2) System.out.println("エラー: 引数が不足しています。例: replay commands.txt");
+                    else replayCommandFile(parts[1].trim());
+                    continue;
+                }
+                if (command.equals("import") || command.equals("export")) {
+                    if (parts.length < 2) System.out.println("エラー: 引数が不足しています。例: " + command + " calendar.ics");
+                    else if (command.equals("import")) importIcsFile(parts[1].trim());
+                    else exportIcsFile(parts[1].trim());
+                    continue;
+                }
                 SwingUtilities.invokeLater(() -> {
+                    if (command.equals("stats")) {
+                        printStats();
+                        return;
+                    }
                     if (parts.length < 2) {
                         System.out.println("エラー: 引数が不足しています。");
                         return;
@@ -516,6 +709,9 @@ public class Calender {
                     switch (command) {
                         case "chat": handleChatCommand(parts[1]); break;
                         case "appoint": handleAppointmentCommand(parts[1]); break;
+                        case "repeat": handleRepeatCommand(parts[1]); break;
+                        case "search": handleSearchCommand(parts[1]); break;
+                        case "free": handleFreeCommand(parts[1]); break;
                         default: System.out.println("エラー: 不明なコマンドです。'" + command + "'"); break;
                     }
                 });
@@ -526,6 +722,97 @@ public class Calender {
         consoleListenerThread.setDaemon(true);
         consoleListenerThread.start();
     }
+    // コンソールのスレッドで呼ばれ、リプレイが終わるまで戻らない
+    private void replayCommandFile(String fileName) {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            replayCommands(reader);
+        } catch (IOException e) {
+            System.out.println("エラー: " + fileName + " を読み込めませんでした。" + e.getMessage());
+        }
+    }
+    // コンソールのスレッドで呼ばれる。解析はワーカーで行い、取り込みは EDT で1回にまとめる
+    private void importIcsFile(String fileName) {
+        try {
+            long start = System.nanoTime();
+            IcsCodec.ImportResult result = IcsCodec.read(Paths.get(fileName), model::resolveOwner, myUser,
+                    Runtime.getRuntime().availableProcessors());
+            SwingUtilities.invokeAndWait(() -> importAppointments(result.getEntries().stream()));
+            System.out.printf("（%s から %d 件の予定を取り込みました。読み飛ばし %d 件, %.0f ms）%n",
+                    fileName, result.getEntries().size(), result.getSkipped(), (System.nanoTime() - start) / 1e6);
+        } catch (IOException e) {
+            System.out.println("エラー: " + fileName + " を読み込めませんでした。" + e.getMessage());
+        } catch (InvocationTargetException e) {
+            System.out.println("エラー: 予定を取り込めませんでした。" + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    // コンソールのスレッドで呼ばれる。EDT で予定の一覧を写し取り、書き出しはこのスレッドで行う
+    private void exportIcsFile(String fileName) {
+        try {
+            AtomicReference<List<CalendarModel.Entry>> snapshot = new AtomicReference<>();
+            SwingUtilities.invokeAndWait(() -> snapshot.set(model.entries()));
+            int written = IcsCodec.write(Paths.get(fileName), snapshot.get());
+            System.out.println("（" + written + " 件の予定を " + fileName + " に書き出しました）");
+        } catch (IOException e) {
+            System.out.println("エラー: " + fileName + " に書き出せませんでした。" + e.getMessage());
+        } catch (InvocationTargetException e) {
+            System.out.println("エラー: 予定を書き出せませんでした。" + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    private void replayCommands(BufferedReader reader) {
+        try {
+            new CommandReplayer(this::applyCommandBatch).run(reader);
+        } catch (IOException e) {
+            System.out.println("エラー: コマンドの読み込みに失敗しました。" + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    /**
+     * リプレイのコマンドをまとめて適用する（EDT 上で呼ばれる）。
+     * チャットはグループごとに1回で履歴に追加し、予定が変わった日付セルはバッチの最後に1回ずつ描き直す。
+     * @return 適用できなかったコマンドの数
+     */
+    private int applyCommandBatch(List<CommandReplayer.Command> batch) {
+        int failed = 0;
+        Map<String, User> usersByName = new HashMap<>();
+        List<ChatMessage> chats = new ArrayList<>();
+        calendarView.beginBatch();
+        try {
+            for (CommandReplayer.Command command : batch) {
+                if (command.getType() == CommandReplayer.STATS) {
+                    printStats();
+                    continue;
+                }
+                User user = usersByName.computeIfAbsent(command.getUserName(), this::findUserInCurrentGroup);
+                if (user == null) {
+                    failed++;
+                    continue;
+                }
+                if (command.getType() == CommandReplayer.CHAT) {
+                    chats.add(new ChatMessage(user, command.getText(), LocalDateTime.now()));
+                    continue;
+                }
+                LocalDate date;
+                try {
+                    date = LocalDate.of(currentDate.getYear(), command.getMonth(), command.getDay());
+                } catch (DateTimeException e) {
+                    failed++;
+                    continue;
+                }
+                Appointment appointment = new Appointment(command.getText(), "", user);
+                model.upsert(date, appointment);
+                publishUpsert(date, appointment);
+            }
+        } finally {
+            calendarView.endBatch();
+        }
+        if (!chats.isEmpty()) currentGroup.addMessages(chats);
+        return failed;
+    }
     private void handleChatCommand(String argsString) {
         if (this.currentGroup == null) {
             System.out.println("エラー: チャットを送信するグループを選択してください。");
@@ -540,14 +827,68 @@ public class Calender {
         String message = args[1];
         User opponent = findUserInCurrentGroup(opponentName);
         if (opponent != null) {
-            ChatMessage chatMessage = new ChatMessage(opponent, message, LocalDateTime.now());
-            this.currentGroup.addMessage(chatMessage);
-            this.addMessageToUI(chatMessage, this.currentGroup);
+            ingestQueue(currentGroup).submit(new ChatMessage(opponent, message, LocalDateTime.now()));
             System.out.println("（" + opponent.getName() + "としてメッセージを送信しました）");
         } else {
             System.out.println("エラー: グループ内に「" + opponentName + "」さんはいません。");
         }
     }
+    /** group のチャットの受信キュー。どのスレッドから呼んでもよい。 */
+    private ChatIngestQueue ingestQueue(Group group) {
+        return ingestQueues.computeIfAbsent(group, g -> new ChatIngestQueue(g, new FrameScheduler()));
+    }
+    /** 1フレーム（約 60fps）待ってから EDT で処理を実行する。待っている間に次の処理が来たら、待ち直してそちらを実行する。 */
+    private static final class FrameScheduler implements Executor {
+        private static final int FRAME_MILLIS = 16;
+        private final Timer timer;
+        // EDT からだけ触る
+        private Runnable task;
+        FrameScheduler() {
+            timer = new Timer(FRAME_MILLIS, e -> task.run());
+            timer.setRepeats(false);
+        }
+        @Override
+        public void execute(Runnable command) {
+            SwingUtilities.invokeLater(() -> {
+                task = command;
+                timer.restart();
+            });
+        }
+    }
+    private void printStats() {
+        for (Group group : model.getGroups()) {
+            System.out.println(group.getName() + ": " + ingestQueue(group).describeMetrics());
+        }
+        System.out.println(renderCache.describeMetrics());
+        System.out.println(model.getSearchIndex().describeMetrics());
+        if (offlineSync != null) System.out.println(offlineSync.describe());
+        System.out.print(Metrics.describe());
+    }
+    private void handleSearchCommand(String query) {
+        long start = System.nanoTime();
+        List<SearchIndex.Hit> hits = model.search(query, null, null, null, 20);
+        for (SearchIndex.Hit hit : hits) System.out.println("  " + describeHit(hit));
+        System.out.printf("（%d 件, %.1f ms）%n", hits.size(), (System.nanoTime() - start) / 1e6);
+    }
+    private void handleFreeCommand(String argsString) {
+        if (this.currentGroup == null) {
+            System.out.println("エラー: 空き時間を探すグループを選択してください。");
+            return;
+        }
+        String[] args = argsString.trim().split(" ");
+        try {
+            int minutes = Integer.parseInt(args[0]);
+            int days = args.length > 1 ? Integer.parseInt(args[1]) : FREE_SLOT_DAYS;
+            long start = System.nanoTime();
+            LocalDate today = LocalDate.now();
+            List<FreeSlotFinder.Slot> slots = model.findFreeSlots(currentGroup, today, today.plusDays(days - 1),
+                    WORK_START, WORK_END, true, minutes, FREE_SLOT_LIMIT);
+            for (FreeSlotFinder.Slot slot : slots) System.out.println("  " + slot);
+            System.out.printf("（%d 人, %d 件, %.1f ms）%n", currentGroup.getUsers().size(), slots.size(), (System.nanoTime() - start) / 1e6);
+        } catch (NumberFormatException e) {
+            System.out.println("エラー: 分と日数は数字で指定してください。例: free 60 30");
+        }
+    }
     private void handleAppointmentCommand(String argsString) {
         String[] args = argsString.split(" ", 4);
         if (args.length < 4) {
@@ -576,6 +917,35 @@ public class Calender {
             System.out.println("エラー: 無効な日付またはコマンドです。");
         }
     }
+    private void handleRepeatCommand(String argsString) {
+        String[] args = argsString.split(" ", 6);
+        if (args.length < 6) {
+            System.out.println("エラー: 引数が不足しています。例: repeat 田中 weekly 12 1 10 定例");
+            return;
+        }
+        int frequency;
+        switch (args[1].toLowerCase()) {
+            case "daily": frequency = RecurrenceRule.DAILY; break;
+            case "weekly": frequency = RecurrenceRule.WEEKLY; break;
+            case "monthly": frequency = RecurrenceRule.MONTHLY; break;
+            default:
+                System.out.println("エラー: 繰り返しは daily, weekly, monthly のいずれかです。");
+                return;
+        }
+        try {
+            User opponent = findUserInCurrentGroup(args[0]);
+            if (opponent == null) {
+                System.out.println("エラー: グループ内に「" + args[0] + "」さんはいません。");
+                return;
+            }
+            LocalDate start = LocalDate.of(currentDate.getYear(), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            RecurrenceRule rule = new RecurrenceRule(frequency, 1, start).withCount(Integer.parseInt(args[4]));
+            model.putRecurring(new Appointment(args[5], "", opponent), rule);
+            System.out.println("（" + opponent.getName() + "の繰り返し予定として「" + args[5] + "」を追加しました）");
+        } catch (RuntimeException e) {
+            System.out.println("エラー: 無効な日付またはコマンドです。");
+        }
+    }
     private User findUserInCurrentGroup(String name) {
         if (currentGroup == null) return null;
         return currentGroup.getUsers().stream()
@@ -588,55 +958,204 @@ public class Calender {
     // 内部クラス定義
     // =================================================================
 
-    static class Group {
-        private final String id, name;
-        private final char iconChar;
-        private final List<User> users = new ArrayList<>();
-        private final List<ChatMessage> chatHistory = new ArrayList<>();
-        private JPanel messageArea;
-        public Group(String id, String name, char iconChar) { this.id = id; this.name = name; this.iconChar = iconChar; }
-        public String getId() { return id; }
-        public String getName() { return name; }
-        public char getIconChar() { return iconChar; }
-        public List<User> getUsers() { return users; }
-        public List<ChatMessage> getChatHistory() { return chatHistory; }
-        public void addUser(User user) { users.add(user); }
-        public void addMessage(ChatMessage message) { chatHistory.add(message); }
-        public JPanel getMessageArea() { return messageArea; }
-        public void setMessageArea(JPanel messageArea) { this.messageArea = messageArea; }
-    }
-    static class ChatMessage {
-        private final User sender;
-        private final String text;
-        private final LocalDateTime timestamp;
-        public ChatMessage(User sender, String text, LocalDateTime timestamp) { this.sender = sender; this.text = text; this.timestamp = timestamp; }
-        public User getSender() { return sender; }
-        public String getText() { return text; }
-        public LocalDateTime getTimestamp() { return timestamp; }
-    }
-    static class Appointment {
-        private String title, details;
-        private Object owner;
-        public Appointment(String title, String details, Object owner) { this.title = title; this.details = details; this.owner = owner; }
-        public String getTitle() { return title; }
-        public void setTitle(String title) { this.title = title; }
-        public String getDetails() { return details; }
-        public void setDetails(String details) { this.details = details; }
-        public Object getOwner() { return owner; }
-        public void setOwner(Object owner) { this.owner = owner; }
+    /**
+     * 同期サーバーから届いた他のメンバーの変更を画面に反映する。受信スレッドから呼ばれる。
+     * 予定の変更は OfflineSync がローカルの版と比べてから反映する。
+     */
+    private class SyncListener implements SyncClient.Listener {
+        // グループとメンバーは起動後に変わらないので受信スレッドから参照してよい
+        @Override
+        public User resolveUser(String groupId, String userId) {
+            return model.resolveUser(groupId, userId);
+        }
+        @Override
+        public Object resolveOwner(char kind, String id) {
+            return model.resolveOwner(kind, id);
+        }
+        @Override
+        public void chatReceived(String groupId, ChatMessage message) {
+            Group group = model.findGroupById(groupId);
+            if (group != null) ingestQueue(group).submit(message);
+        }
+        @Override
+        public void appointmentUpserted(String groupId, LocalDate date, Appointment appointment, VersionVector version) {
+            offlineSync.receive(date, appointment, version, false);
+        }
+        @Override
+        public void appointmentRemoved(String groupId, LocalDate date, Appointment appointment, VersionVector version) {
+            offlineSync.receive(date, appointment, version, true);
+        }
+        @Override
+        public void resyncNeeded(String groupId) {
+            Group group = model.findGroupById(groupId);
+            System.err.println("警告: 受信が遅れたため、" + (group != null ? group.getName() : groupId) + " のチャットの一部を受信できませんでした。");
+        }
+        @Override
+        public void connectionLost() {
+            offlineSync.connectionLost();
+        }
+    }
+    /**
+     * モデルの変更通知を、表示中の月の該当する日付セルの再描画に変換する。
+     * 日付からセルの位置を計算で求めるので、セルを走査して探すことはない。
+     * バッチ中は描き直すセルを記録しておき、バッチの終わりにそれぞれ1回だけ描き直す。
+     */
+    private class CalendarView implements CalendarModel.Listener {
+        private final BitSet dirtyCells = new BitSet(MonthRenderModel.CELL_COUNT);
+        private int batchDepth;
+
+        void beginBatch() {
+            batchDepth++;
+        }
+        void endBatch() {
+            if (--batchDepth > 0) return;
+            for (int i = dirtyCells.nextSetBit(0); i >= 0; i = dirtyCells.nextSetBit(i + 1)) {
+                updateDateCellView(cellDate(i), currentGroup);
+            }
+            dirtyCells.clear();
+        }
+        @Override
+        public void appointmentAdded(LocalDate date, Appointment appointment) {
+            renderCache.invalidate(YearMonth.from(date));
+            invalidate(date, appointment.getOwner());
+        }
+        @Override
+        public void appointmentUpdated(LocalDate date, Appointment previous, Appointment current) {
+            renderCache.invalidate(YearMonth.from(date));
+            invalidate(date, current.getOwner());
+        }
+        @Override
+        public void appointmentRemoved(LocalDate date, Appointment appointment) {
+            renderCache.invalidate(YearMonth.from(date));
+            invalidate(date, appointment.getOwner());
+        }
+        // 変更前と変更後の規則の、表示中の月の回だけを描き直す
+        @Override
+        public void recurrenceChanged(Appointment appointment, RecurrenceRule previous, RecurrenceRule current) {
+            for (RecurrenceRule rule : new RecurrenceRule[]{previous, current}) {
+                if (rule != null) {
+                    renderCache.invalidate(YearMonth.from(rule.getStart()), rule.getLast() == null ? null : YearMonth.from(rule.getLast()));
+                }
+            }
+            if (shownMonth == null) return;
+            LocalDate from = shownMonth.atDay(1);
+            LocalDate to = shownMonth.atEndOfMonth();
+            beginBatch();
+            try {
+                for (RecurrenceRule rule : new RecurrenceRule[]{previous, current}) {
+                    if (rule == null) continue;
+                    for (LocalDate date : rule.occurrences(from, to)) invalidate(date, appointment.getOwner());
+                }
+            } finally {
+                endBatch();
+            }
+        }
+        // 表示中の画面で新しく見えるようになった所有者の予定がある日だけ描き直す
+        @Override
+        public void memberJoined(Group group, User user) {
+            renderCache.invalidateAll();
+            Object newlyVisible = null;
+            if (group == currentGroup) newlyVisible = user;
+            else if (currentGroup == null && user == myUser) newlyVisible = group;
+            if (newlyVisible == null || shownMonth == null) return;
+            beginBatch();
+            try {
+                for (LocalDate date : model.getAppointments().rangeForOwner(newlyVisible, shownMonth.atDay(1), shownMonth.atEndOfMonth()).keySet()) {
+                    invalidate(date, newlyVisible);
+                }
+                for (Map.Entry<LocalDate, List<Appointment>> day : model.occurrences(shownMonth).entrySet()) {
+                    for (Appointment occurrence : day.getValue()) {
+                        if (newlyVisible.equals(occurrence.getOwner())) invalidate(day.getKey(), newlyVisible);
+                    }
+                }
+            } finally {
+                endBatch();
+            }
+        }
+        @Override
+        public void appointmentsImported(List<CalendarModel.Entry> entries) {
+            Set<YearMonth> months = new HashSet<>();
+            for (CalendarModel.Entry entry : entries) {
+                if (months.add(YearMonth.from(entry.getDate()))) renderCache.invalidate(YearMonth.from(entry.getDate()));
+            }
+            beginBatch();
+            try {
+                for (CalendarModel.Entry entry : entries) invalidate(entry.getDate(), entry.getAppointment().getOwner());
+            } finally {
+                endBatch();
+            }
+        }
+        @Override
+        public void messagesAppended(Group group, List<ChatMessage> messages) {
+            ChatView chatView = chatViews.get(group);
+            if (chatView == null) return;
+            long start = System.nanoTime();
+            chatView.messagesAppended();
+            APPEND_MESSAGES_LATENCY.recordSince(start);
+        }
+        // 表示中の画面で見えない所有者の予定なら、セルの表示は変わらない
+        private void invalidate(LocalDate date, Object owner) {
+            int index = cellIndex(date);
+            if (index < 0 || !model.isVisible(owner, currentGroup)) return;
+            if (batchDepth > 0) dirtyCells.set(index);
+            else updateDateCellView(date, currentGroup);
+        }
+    }
+    /**
+     * モデルの予定の変更をジャーナルに記録する。
+     */
+    private class JournalRecorder implements CalendarModel.Listener {
+        @Override
+        public void appointmentAdded(LocalDate date, Appointment appointment) {
+            journal.recordUpsert(date, appointment);
+        }
+        @Override
+        public void appointmentUpdated(LocalDate date, Appointment previous, Appointment current) {
+            journal.recordUpsert(date, current);
+        }
+        @Override
+        public void appointmentRemoved(LocalDate date, Appointment appointment) {
+            journal.recordRemove(date, appointment);
+        }
+        @Override
+        public void appointmentsImported(List<CalendarModel.Entry> entries) {
+            for (CalendarModel.Entry entry : entries) journal.recordUpsert(entry.getDate(), entry.getAppointment());
+        }
+        @Override
+        public void recurrenceChanged(Appointment appointment, RecurrenceRule previous, RecurrenceRule current) {
+            if (current != null) journal.recordSeries(appointment, current);
+            else journal.recordSeriesRemove(appointment);
+        }
+    }
+    /** メンバーが加わったら、起動時に使うグループとメンバーの一覧を保存し直す。 */
+    private class RosterRecorder implements CalendarModel.Listener {
+        @Override
+        public void memberJoined(Group group, User user) {
+            syncState.saveRoster(model.getGroups());
+        }
     }
     static class AppointmentDialog extends JDialog {
+        private static final long serialVersionUID = 1L;
+
         public static final int OPTION_SAVE = 1, OPTION_DELETE = 2, OPTION_CANCEL = 0;
         private int result = OPTION_CANCEL;
         private JTextField titleField;
         private JTextArea detailsArea;
         private Object owner;
+        // 新規作成のときだけ使う繰り返しの指定。選択肢の順に RecurrenceRule の種類に対応する
+        private static final int[] REPEAT_FREQUENCIES = {0, RecurrenceRule.DAILY, RecurrenceRule.WEEKLY, RecurrenceRule.MONTHLY};
+        private JComboBox<String> repeatBox;
+        private JTextField repeatCountField;
+        private JTextField startField, endField;
+        private LocalTime start, end;
 
         public AppointmentDialog(Frame ownerFrame, Appointment appointment, boolean isNew) {
             super(ownerFrame, true);
             this.owner = appointment.getOwner();
             setTitle(isNew ? "予定の新規作成" : "予定の編集/削除");
             titleField = new JTextField(appointment.getTitle(), 20);
+            startField = new JTextField(appointment.hasTime() ? appointment.getStart().toString() : "", 5);
+            endField = new JTextField(appointment.hasTime() ? appointment.getEnd().toString() : "", 5);
             detailsArea = new JTextArea(appointment.getDetails(), 5, 20);
             detailsArea.setLineWrap(true);
             detailsArea.setWrapStyleWord(true);
@@ -656,7 +1175,14 @@ public class Calender {
             JButton deleteButton = new JButton("削除");
             JButton cancelButton = new JButton("キャンセル");
             deleteButton.setVisible(!isNew);
-            saveButton.addActionListener(e -> { result = OPTION_SAVE; dispose(); });
+            saveButton.addActionListener(e -> {
+                if (!readTimes()) {
+                    JOptionPane.showMessageDialog(this, "時刻は HH:mm で、終了を開始より後にしてください（両方空欄なら終日）。", "入力エラー", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                result = OPTION_SAVE;
+                dispose();
+            });
             deleteButton.addActionListener(e -> {
                 if (JOptionPane.showConfirmDialog(this, "この予定を削除しますか？", "確認", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                     result = OPTION_DELETE;
@@ -668,6 +1194,13 @@ public class Calender {
             JPanel textPanel = new JPanel(new BorderLayout(5, 5));
             textPanel.add(new JLabel("タイトル:"), BorderLayout.NORTH);
             textPanel.add(titleField, BorderLayout.CENTER);
+            JPanel timePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+            timePanel.add(new JLabel("時刻:"));
+            timePanel.add(startField);
+            timePanel.add(new JLabel("〜"));
+            timePanel.add(endField);
+            timePanel.add(new JLabel("（HH:mm、空欄で終日）"));
+            textPanel.add(timePanel, BorderLayout.SOUTH);
             
             JPanel mainPanel = new JPanel(new BorderLayout(5, 5));
             mainPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
@@ -675,6 +1208,16 @@ public class Calender {
             JPanel centerPanel = new JPanel(new BorderLayout(5, 5));
             centerPanel.add(new JLabel("詳細:"), BorderLayout.NORTH);
             centerPanel.add(new JScrollPane(detailsArea), BorderLayout.CENTER);
+            if (isNew) {
+                JPanel repeatPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+                repeatBox = new JComboBox<>(new String[]{"なし", "毎日", "毎週", "毎月"});
+                repeatCountField = new JTextField(3);
+                repeatPanel.add(new JLabel("繰り返し:"));
+                repeatPanel.add(repeatBox);
+                repeatPanel.add(new JLabel("回数（空欄で無期限）:"));
+                repeatPanel.add(repeatCountField);
+                centerPanel.add(repeatPanel, BorderLayout.SOUTH);
+            }
             mainPanel.add(centerPanel, BorderLayout.CENTER);
             
             JPanel footerPanel = new JPanel(new BorderLayout());
@@ -691,6 +1234,31 @@ public class Calender {
             setLocationRelativeTo(ownerFrame);
         }
         public int getResult() { return result; }
-        public Appointment getAppointment() { return new Appointment(titleField.getText(), detailsArea.getText(), this.owner); }
+        public Appointment getAppointment() { return new Appointment(titleField.getText(), detailsArea.getText(), this.owner, start, end); }
+        // 時刻の欄を読む。両方空欄なら終日、そうでなければ両方が時刻で終了が開始より後のときだけ true
+        private boolean readTimes() {
+            String startText = startField.getText().trim(), endText = endField.getText().trim();
+            if (startText.isEmpty() && endText.isEmpty()) {
+                start = end = null;
+                return true;
+            }
+            try {
+                start = LocalTime.parse(startText);
+                end = LocalTime.parse(endText);
+            } catch (DateTimeException e) {
+                return false;
+            }
+            return end.isAfter(start);
+        }
+        /** 繰り返しが指定されていれば start から始まる規則、なければ null。回数が数でなければ無期限とする。 */
+        public RecurrenceRule getRecurrence(LocalDate start) {
+            if (repeatBox == null || repeatBox.getSelectedIndex() == 0) return null;
+            RecurrenceRule rule = new RecurrenceRule(REPEAT_FREQUENCIES[repeatBox.getSelectedIndex()], 1, start);
+            try {
+                return rule.withCount(Math.max(0, Integer.parseInt(repeatCountField.getText().trim())));
+            } catch (NumberFormatException e) {
+                return rule;
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package GUI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * グループに届くチャットメッセージを受け付けるキュー。
+ * どのスレッドからでも投入でき、溜まったメッセージは frameScheduler が実行する1回の処理でまとめて履歴に追加される。
+ * 画面では frameScheduler を「1フレーム待ってから EDT で実行する」ものにし、レイアウトとスクロールをバッチごとに1回だけ行う。
+ */
+public class ChatIngestQueue {
+
+    private final Group group;
+    private final ConcurrentLinkedQueue<ChatMessage> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Executor frameScheduler;
+
+    // --- 計測値 ---
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private volatile long batchCount;
+    private volatile long messageCount;
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+
+    /**
+     * @param frameScheduler 溜まったメッセージを履歴に追加する処理を、モデルを更新するスレッドで実行する Executor。
+     *                       少し待ってから実行すると、その間に届いたメッセージが同じバッチにまとまる
+     */
+    public ChatIngestQueue(Group group, Executor frameScheduler) {
+        this.group = group;
+        this.frameScheduler = frameScheduler;
+    }
+
+    /**
+     * メッセージを投入する。どのスレッドから呼んでもよい。
+     */
+    public void submit(ChatMessage message) {
+        pending.add(message);
+        int current = depth.incrementAndGet();
+        maxDepth.accumulateAndGet(current, Math::max);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            frameScheduler.execute(this::drain);
+        }
+    }
+
+    // frameScheduler から呼ばれる。キューにあるメッセージをすべて履歴に追加する。画面はモデルの通知で1回だけ更新される
+    private void drain() {
+        List<ChatMessage> batch = new ArrayList<>();
+        ChatMessage message;
+        while ((message = pending.poll()) != null) {
+            batch.add(message);
+        }
+        depth.addAndGet(-batch.size());
+        if (!batch.isEmpty()) {
+            group.addMessages(batch);
+            batchCount++;
+            messageCount += batch.size();
+            lastBatchSize = batch.size();
+            maxBatchSize = Math.max(maxBatchSize, batch.size());
+        }
+        drainScheduled.set(false);
+        // drain 中に投入されたメッセージがあれば次のフレームで処理する
+        if (!pending.isEmpty()) scheduleDrain();
+    }
+
+    /** まだ履歴に反映されていないメッセージ数。 */
+    public int getQueueDepth() { return depth.get(); }
+    /** これまでの最大キュー長。 */
+    public int getMaxQueueDepth() { return maxDepth.get(); }
+    /** 処理したバッチ数。 */
+    public long getBatchCount() { return batchCount; }
+    /** 処理したメッセージ数。 */
+    public long getMessageCount() { return messageCount; }
+    /** 直近のバッチのメッセージ数。 */
+    public int getLastBatchSize() { return lastBatchSize; }
+    /** 最大のバッチのメッセージ数。 */
+    public int getMaxBatchSize() { return maxBatchSize; }
+
+    /** 1バッチあたりの平均メッセージ数。 */
+    public double getAverageBatchSize() {
+        long batches = batchCount;
+        return batches == 0 ? 0 : (double) messageCount / batches;
+    }
+
+    /** 計測値を1行にまとめた文字列。 */
+    public String describeMetrics() {
+        return String.format("キュー長=%d (最大 %d), バッチ数=%d, メッセージ数=%d, バッチサイズ 直近=%d 平均=%.1f 最大=%d",
+                getQueueDepth(), getMaxQueueDepth(), getBatchCount(), getMessageCount(),
+                getLastBatchSize(), getAverageBatchSize(), getMaxBatchSize());
+    }
+}
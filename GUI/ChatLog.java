@@ -0,0 +1,358 @@
+package GUI;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * グループのチャット履歴をディスクに保存する追記専用のログ。
+ * メッセージはセグメントファイル（*.log）に追記され、各メッセージの開始位置は
+ * 対になるインデックスファイル（*.idx）に4バイトずつ記録される。
+ * 読み出しはメモリマップした領域から行うため、必要なページ分しかヒープを使わない。
+ * 書き込み中のセグメントはファイルを上限サイズまで先に伸ばしておき、追記のたびにマップし直さずに済むようにする。
+ * 伸ばした分（末尾の0）は次に開いたときの recover で切り詰める。
+ *
+ * <p>レコード形式: [int 長さ][long エポックミリ秒][short 送信者IDの長さ][送信者ID (UTF-8)][本文 (UTF-8)]</p>
+ */
+public class ChatLog implements Closeable {
+
+    // 1セグメントの上限サイズ。これを超えると新しいセグメントに切り替える
+    private static final long SEGMENT_BYTES = 8L * 1024 * 1024;
+    private static final int HEADER_BYTES = 4 + 8 + 2;
+    // 1セグメントに入るレコード数の上限（最小のレコードで埋めた場合）分のインデックスの大きさ
+    private static final long INDEX_BYTES = (SEGMENT_BYTES / HEADER_BYTES + 1) * 4;
+
+    private final Path directory;
+    private final Function<String, User> senderResolver;
+    private final List<Segment> segments = new ArrayList<>();
+    // segments.get(i) の最初のメッセージの通し番号
+    private final List<Integer> segmentStarts = new ArrayList<>();
+    private int size;
+
+    private ChatLog(Path directory, Function<String, User> senderResolver) {
+        this.directory = directory;
+        this.senderResolver = senderResolver;
+    }
+
+    /**
+     * ディレクトリ内のセグメントを読み込んでログを開く。ディレクトリがなければ作成する。
+     * @param senderResolver 保存されている送信者IDから User を引く関数
+     */
+    public static ChatLog open(Path directory, Function<String, User> senderResolver) throws IOException {
+        Files.createDirectories(directory);
+        ChatLog log = new ChatLog(directory, senderResolver);
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                numbers.add(Integer.parseInt(name.substring("segment-".length(), name.length() - ".log".length())));
+            }
+        }
+        numbers.sort(null);
+        for (int number : numbers) {
+            Segment segment = new Segment(directory, number);
+            segment.load();
+            segment.recover();
+            log.segmentStarts.add(log.size);
+            log.segments.add(segment);
+            log.size += segment.count;
+        }
+        if (log.segments.isEmpty()) {
+            log.startSegment(0);
+        } else {
+            log.segments.get(log.segments.size() - 1).openForAppend();
+        }
+        return log;
+    }
+
+    /** 保存されているメッセージ数。 */
+    public synchronized int size() {
+        return size;
+    }
+
+    /** メッセージを1件追記する。 */
+    public synchronized void append(ChatMessage message) throws IOException {
+        appendAll(List.of(message));
+    }
+
+    /**
+     * 複数のメッセージをまとめて追記する。同じセグメントに入る分は1回の書き込みで済ませる。
+     */
+    public synchronized void appendAll(List<ChatMessage> messages) throws IOException {
+        int i = 0;
+        while (i < messages.size()) {
+            Segment active = segments.get(segments.size() - 1);
+            List<byte[]> records = new ArrayList<>();
+            long bytes = 0;
+            while (i < messages.size()) {
+                byte[] record = encode(messages.get(i));
+                if (active.count + records.size() > 0 && active.logSize + bytes + record.length > SEGMENT_BYTES) break;
+                records.add(record);
+                bytes += record.length;
+                i++;
+            }
+            if (records.isEmpty()) {
+                active.seal();
+                startSegment(active.number + 1);
+                continue;
+            }
+            active.write(records, bytes);
+            size += records.size();
+        }
+    }
+
+    /**
+     * 通し番号 from から to の直前までのメッセージを読み出す。
+     */
+    public synchronized List<ChatMessage> read(int from, int to) throws IOException {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("from=" + from + ", to=" + to + ", size=" + size);
+        }
+        List<ChatMessage> result = new ArrayList<>(to - from);
+        int segmentIndex = segmentFor(from);
+        int index = from;
+        while (index < to) {
+            Segment segment = segments.get(segmentIndex);
+            int local = index - segmentStarts.get(segmentIndex);
+            int end = Math.min(segment.count, local + (to - index));
+            ByteBuffer logView = segment.logView();
+            ByteBuffer idxView = segment.idxView();
+            for (int j = local; j < end; j++) {
+                result.add(decode(logView, idxView.getInt(j * 4)));
+            }
+            index += end - local;
+            segmentIndex++;
+        }
+        return result;
+    }
+
+    /** forEachText に渡すメッセージ1件分の内容。 */
+    public interface TextVisitor {
+        void visit(int sequence, long epochMillis, String text);
+    }
+
+    /**
+     * 通し番号 from から to の直前までのメッセージの時刻と本文を順に visitor に渡す。
+     * 送信者を引かず ChatMessage も作らないので、検索索引の作成など本文だけが要るときに使う。
+     */
+    public synchronized void forEachText(int from, int to, TextVisitor visitor) throws IOException {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("from=" + from + ", to=" + to + ", size=" + size);
+        }
+        int segmentIndex = segmentFor(from);
+        int index = from;
+        while (index < to) {
+            Segment segment = segments.get(segmentIndex);
+            int local = index - segmentStarts.get(segmentIndex);
+            int end = Math.min(segment.count, local + (to - index));
+            ByteBuffer logView = segment.logView();
+            ByteBuffer idxView = segment.idxView();
+            for (int j = local; j < end; j++) {
+                int offset = idxView.getInt(j * 4);
+                int length = logView.getInt(offset);
+                int senderLength = logView.getShort(offset + 12);
+                byte[] text = new byte[length - 10 - senderLength];
+                logView.get(offset + HEADER_BYTES + senderLength, text);
+                visitor.visit(index + j - local, logView.getLong(offset + 4), new String(text, StandardCharsets.UTF_8));
+            }
+            index += end - local;
+            segmentIndex++;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments.get(segments.size() - 1).seal();
+    }
+
+    private void startSegment(int number) throws IOException {
+        Segment segment = new Segment(directory, number);
+        segment.openForAppend();
+        segmentStarts.add(size);
+        segments.add(segment);
+    }
+
+    private int segmentFor(int index) {
+        int low = 0, high = segmentStarts.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segmentStarts.get(mid) <= index) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    private static byte[] encode(ChatMessage message) {
+        byte[] sender = message.getSender().getId().getBytes(StandardCharsets.UTF_8);
+        byte[] text = message.getText().getBytes(StandardCharsets.UTF_8);
+        long millis = message.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + sender.length + text.length);
+        buffer.putInt(buffer.capacity() - 4);
+        buffer.putLong(millis);
+        buffer.putShort((short) sender.length);
+        buffer.put(sender);
+        buffer.put(text);
+        return buffer.array();
+    }
+
+    private ChatMessage decode(ByteBuffer logView, int offset) {
+        int length = logView.getInt(offset);
+        long millis = logView.getLong(offset + 4);
+        int senderLength = logView.getShort(offset + 12);
+        byte[] sender = new byte[senderLength];
+        logView.get(offset + HEADER_BYTES, sender);
+        byte[] text = new byte[length - 10 - senderLength];
+        logView.get(offset + HEADER_BYTES + senderLength, text);
+        LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        User user = senderResolver.apply(new String(sender, StandardCharsets.UTF_8));
+        return new ChatMessage(user, new String(text, StandardCharsets.UTF_8), timestamp);
+    }
+
+    /**
+     * 1つのセグメント（ログファイルとインデックスファイルの組）。
+     * 書き込み中のセグメントだけがチャネルを開いたままにする。
+     */
+    private static final class Segment {
+        final int number;
+        final Path logPath;
+        final Path idxPath;
+        int count;
+        long logSize;
+        private FileChannel logChannel;
+        private FileChannel idxChannel;
+        private MappedByteBuffer logMap;
+        private MappedByteBuffer idxMap;
+
+        Segment(Path directory, int number) {
+            this.number = number;
+            this.logPath = directory.resolve(String.format("segment-%06d.log", number));
+            this.idxPath = directory.resolve(String.format("segment-%06d.idx", number));
+        }
+
+        void load() throws IOException {
+            logSize = Files.size(logPath);
+            count = Files.exists(idxPath) ? (int) (Files.size(idxPath) / 4) : 0;
+        }
+
+        // 先に伸ばしておいた末尾の0と、異常終了で途中まで書かれたレコードやインデックスを切り捨てる
+        void recover() throws IOException {
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileChannel idx = FileChannel.open(idxPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // 2件目以降の開始位置は必ず正なので、最初に0になる位置が書き込まれたインデックスの終わり
+                int low = 1, high = count;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (readInt(idx, mid * 4L) > 0) low = mid + 1;
+                    else high = mid;
+                }
+                count = Math.min(count, low);
+                long end = 0;
+                while (count > 0) {
+                    int offset = readInt(idx, (count - 1) * 4L);
+                    if (offset >= 0 && offset + (long) HEADER_BYTES <= logSize) {
+                        long recordEnd = offset + 4L + readInt(log, offset);
+                        // 長さが壊れていて負やヘッダーより短いレコードも途中までしか書かれていないものとして扱う
+                        if (recordEnd >= offset + (long) HEADER_BYTES && recordEnd <= logSize) {
+                            end = recordEnd;
+                            break;
+                        }
+                    }
+                    count--;
+                }
+                idx.truncate(count * 4L);
+                log.truncate(end);
+                logSize = end;
+            }
+        }
+
+        void openForAppend() throws IOException {
+            logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            idxChannel = FileChannel.open(idxPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            preallocate(logChannel, SEGMENT_BYTES);
+            preallocate(idxChannel, INDEX_BYTES);
+        }
+
+        void write(List<byte[]> records, long bytes) throws IOException {
+            ByteBuffer logBuffer = ByteBuffer.allocate((int) bytes);
+            ByteBuffer idxBuffer = ByteBuffer.allocate(records.size() * 4);
+            long offset = logSize;
+            for (byte[] record : records) {
+                idxBuffer.putInt((int) offset);
+                logBuffer.put(record);
+                offset += record.length;
+            }
+            // ログ本体を先に書き、インデックスは後から書く（途中で落ちても recover で整合が取れる）
+            writeFully(logChannel, logBuffer.flip(), logSize);
+            writeFully(idxChannel, idxBuffer.flip(), count * 4L);
+            logSize = offset;
+            count += records.size();
+        }
+
+        void seal() throws IOException {
+            if (logChannel != null) {
+                logChannel.force(false);
+                idxChannel.force(false);
+                logChannel.close();
+                idxChannel.close();
+                logChannel = null;
+                idxChannel = null;
+            }
+        }
+
+        // ファイル全体（書き込み中なら上限サイズまで）を1度だけマップする。
+        // 上限を超える大きなレコードを書いた場合だけマップし直す
+        ByteBuffer logView() throws IOException {
+            if (logMap == null || logMap.capacity() < logSize) {
+                logMap = map(logPath);
+            }
+            return logMap;
+        }
+
+        ByteBuffer idxView() throws IOException {
+            if (idxMap == null || idxMap.capacity() < count * 4L) {
+                idxMap = map(idxPath);
+            }
+            return idxMap;
+        }
+
+        private static MappedByteBuffer map(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        // 末尾に0を1バイト書いてファイルを size まで伸ばす（すでに大きければ何もしない）
+        private static void preallocate(FileChannel channel, long size) throws IOException {
+            if (channel.size() < size) {
+                writeFully(channel, ByteBuffer.allocate(1), size - 1);
+            }
+        }
+
+        private static int readInt(FileChannel channel, long position) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) return 0;
+            }
+            return buffer.flip().getInt();
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+}
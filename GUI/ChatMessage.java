@@ -0,0 +1,16 @@
+package GUI;
+
+import java.time.LocalDateTime;
+
+/**
+ * チャットの1メッセージ。変更不可。
+ */
+public class ChatMessage {
+    private final User sender;
+    private final String text;
+    private final LocalDateTime timestamp;
+    public ChatMessage(User sender, String text, LocalDateTime timestamp) { this.sender = sender; this.text = text; this.timestamp = timestamp; }
+    public User getSender() { return sender; }
+    public String getText() { return text; }
+    public LocalDateTime getTimestamp() { return timestamp; }
+}
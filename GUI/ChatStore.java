@@ -0,0 +1,221 @@
+package GUI;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * グループのチャット履歴を、列ごとのプリミティブ配列で持つリスト。
+ * ChatMessage のまま持つと、1件ごとに ChatMessage・String（と中の byte[]）・LocalDateTime（と LocalDate・LocalTime）の
+ * オブジェクトができ、本文が短くても1件あたり 150 バイト以上になる。
+ * ここでは1件を 送信者表の番号（int）・エポックミリ秒（long）・本文の位置（long）と長さ（int）の 24 バイトで持ち、
+ * 本文は UTF-8 のまま共有のバイト領域（最大 1 MiB のチャンクの並び）に詰める。
+ *
+ * <p>get は呼ばれるたびにその行の ChatMessage を作って返すので、ChatMessage は表示する行の分しか作られない。
+ * 同じ行でも毎回別のインスタンスになる。本文や時刻だけが要るときは getText / getEpochMillis を使えば ChatMessage を作らずに済む。</p>
+ *
+ * <p>追加できるのは末尾（add, addAll）と先頭（addAll(0, ...)。古いページの読み込み）だけで、
+ * 途中への挿入・置き換え・1件ずつの削除は UnsupportedOperationException になる（clear は使える）。
+ * スレッドセーフではない。Group と同じく EDT から使うこと。</p>
+ */
+public class ChatStore extends AbstractList<ChatMessage> implements RandomAccess {
+
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_BYTES = 1 << CHUNK_BITS;
+    // 新しいチャンクは小さく作り、足りなくなるたびに倍にする（メッセージの少ないグループで 1 MiB を取らないため）
+    private static final int MIN_CHUNK_BYTES = 4096;
+    private static final int MIN_ROWS = 16;
+
+    private final ZoneId zone;
+
+    // 送信者表。行には表の番号だけを持つ
+    private final List<User> senderTable = new ArrayList<>();
+    private final Map<User, Integer> senderIndex = new HashMap<>();
+
+    // 行は配列の [head, head + size) に並ぶ。先頭に古いページを足せるよう、head の前を空けておく
+    private int[] senders = new int[0];
+    private long[] millis = new long[0];
+    private long[] textAddresses = new long[0];
+    private int[] textLengths = new int[0];
+    private int head, size;
+
+    // 本文の領域。アドレスは (チャンク番号 << CHUNK_BITS) | チャンク内の位置。1チャンクより長い本文はそれだけで1チャンクにする
+    private final List<byte[]> chunks = new ArrayList<>();
+    // 最後のチャンクの使用済みバイト数
+    private int chunkUsed;
+
+    public ChatStore() {
+        this(ZoneId.systemDefault());
+    }
+
+    /** @param zone 時刻をエポックミリ秒と LocalDateTime の間で変換するときのタイムゾーン */
+    public ChatStore(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** index 番目のメッセージを、列の値から作って返す。 */
+    @Override
+    public ChatMessage get(int index) {
+        int row = row(index);
+        return new ChatMessage(senderTable.get(senders[row]), text(row),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(millis[row]), zone));
+    }
+
+    public User getSender(int index) {
+        return senderTable.get(senders[row(index)]);
+    }
+
+    public String getText(int index) {
+        return text(row(index));
+    }
+
+    public long getEpochMillis(int index) {
+        return millis[row(index)];
+    }
+
+    @Override
+    public boolean add(ChatMessage message) {
+        reserve(0, 1);
+        store(head + size, message);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, ChatMessage message) {
+        addAll(index, List.of(message));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends ChatMessage> messages) {
+        return addAll(size, messages);
+    }
+
+    /** 末尾（index == size）か先頭（index == 0）にまとめて追加する。 */
+    @Override
+    public boolean addAll(int index, Collection<? extends ChatMessage> messages) {
+        if (index != size && index != 0) {
+            throw new UnsupportedOperationException("チャット履歴には先頭か末尾にしか追加できません: " + index);
+        }
+        int count = messages.size();
+        if (count == 0) return false;
+        int row;
+        if (index == size) {
+            reserve(0, count);
+            row = head + size;
+        } else {
+            reserve(count, 0);
+            head -= count;
+            row = head;
+        }
+        for (ChatMessage message : messages) store(row++, message);
+        size += count;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        senderTable.clear();
+        senderIndex.clear();
+        senders = new int[0];
+        millis = new long[0];
+        textAddresses = new long[0];
+        textLengths = new int[0];
+        head = 0;
+        size = 0;
+        chunks.clear();
+        chunkUsed = 0;
+        modCount++;
+    }
+
+    /** 列の配列と本文の領域が使っているバイト数（確保済みの容量。配列のヘッダは含まない）。 */
+    public long footprintBytes() {
+        long bytes = (long) senders.length * (4 + 8 + 8 + 4);
+        for (byte[] chunk : chunks) bytes += chunk.length;
+        return bytes;
+    }
+
+    private int row(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        return head + index;
+    }
+
+    private String text(int row) {
+        long address = textAddresses[row];
+        byte[] chunk = chunks.get((int) (address >>> CHUNK_BITS));
+        return new String(chunk, (int) (address & (CHUNK_BYTES - 1)), textLengths[row], StandardCharsets.UTF_8);
+    }
+
+    private void store(int row, ChatMessage message) {
+        Integer sender = senderIndex.get(message.getSender());
+        if (sender == null) {
+            sender = senderTable.size();
+            senderTable.add(message.getSender());
+            senderIndex.put(message.getSender(), sender);
+        }
+        byte[] text = message.getText().getBytes(StandardCharsets.UTF_8);
+        senders[row] = sender;
+        millis[row] = message.getTimestamp().atZone(zone).toInstant().toEpochMilli();
+        textAddresses[row] = appendText(text);
+        textLengths[row] = text.length;
+    }
+
+    private long appendText(byte[] text) {
+        int length = text.length;
+        int last = chunks.size() - 1;
+        byte[] chunk = last >= 0 ? chunks.get(last) : null;
+        if (chunk == null || chunkUsed + length > CHUNK_BYTES) {
+            chunk = new byte[Math.max(length, MIN_CHUNK_BYTES)];
+            chunks.add(chunk);
+            last++;
+            chunkUsed = 0;
+        } else if (chunkUsed + length > chunk.length) {
+            chunk = Arrays.copyOf(chunk, Math.min(CHUNK_BYTES, Math.max(chunk.length * 2, chunkUsed + length)));
+            chunks.set(last, chunk);
+        }
+        System.arraycopy(text, 0, chunk, chunkUsed, length);
+        long address = ((long) last << CHUNK_BITS) | chunkUsed;
+        chunkUsed += length;
+        return address;
+    }
+
+    // 先頭に front 行、末尾に back 行を書ける空きを作る。足りない側は今の行数の半分（ArrayList と同じ 1.5 倍）空けるので、追加は償却 O(1)
+    private void reserve(int front, int back) {
+        int tail = senders.length - head - size;
+        if (head >= front && tail >= back) return;
+        int newHead = head >= front ? head : Math.max(front, Math.max(size / 2, MIN_ROWS));
+        int newTail = tail >= back ? tail : Math.max(back, Math.max(size / 2, MIN_ROWS));
+        long capacity = (long) newHead + size + newTail;
+        if (capacity > Integer.MAX_VALUE - 8) throw new OutOfMemoryError("チャット履歴の行数が上限を超えました");
+        int newCapacity = (int) capacity;
+        int[] newSenders = new int[newCapacity];
+        long[] newMillis = new long[newCapacity];
+        long[] newAddresses = new long[newCapacity];
+        int[] newLengths = new int[newCapacity];
+        System.arraycopy(senders, head, newSenders, newHead, size);
+        System.arraycopy(millis, head, newMillis, newHead, size);
+        System.arraycopy(textAddresses, head, newAddresses, newHead, size);
+        System.arraycopy(textLengths, head, newLengths, newHead, size);
+        senders = newSenders;
+        millis = newMillis;
+        textAddresses = newAddresses;
+        textLengths = newLengths;
+        head = newHead;
+    }
+}
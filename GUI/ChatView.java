@@ -0,0 +1,339 @@
+package GUI;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * グループのチャット履歴を表示するコンポーネント。
+ * メッセージごとにパネルを作らず、1組のレンダラー部品を使い回して見えている吹き出しだけを描画する。
+ * 吹き出しの高さは計測したものを幅ごとにキャッシュし、まだ計測していない行は推定値で代用する。
+ */
+public class ChatView extends JComponent implements Scrollable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int ESTIMATED_ROW_HEIGHT = 50;
+    private static final int MAX_BUBBLE_WIDTH = 350;
+    // 行の外側の余白（旧実装の EmptyBorder(2, 5, 2, 5) と FlowLayout の間隔 5 の合計）
+    private static final int ROW_INSET_X = 10;
+    private static final int ROW_INSET_Y = 7;
+    // 吹き出しの内側の余白（EmptyBorder(5, 10, 5, 10)）
+    private static final int BUBBLE_INSET_X = 10;
+    private static final int BUBBLE_INSET_Y = 5;
+    private static final int SENDER_GAP = 2;
+
+    private final List<ChatMessage> messages;
+    private final User myUser;
+
+    // --- 描画専用のレンダラー部品（全メッセージで共有） ---
+    private final CellRendererPane rendererPane = new CellRendererPane();
+    private final JPanel bubble = new JPanel(new BorderLayout(5, SENDER_GAP));
+    private final JLabel senderLabel = new JLabel();
+    private final JTextArea messageText = new JTextArea();
+
+    // --- 行の高さのキャッシュ ---
+    private int rowCount;
+    private int[] measuredHeights = new int[16];
+    private int[] bubbleWidths = new int[16];
+    private final RowOffsets offsets = new RowOffsets();
+    private int measuredForWidth = -1;
+    private boolean revalidatePending;
+
+    public ChatView(List<ChatMessage> messages, User myUser) {
+        this.messages = messages;
+        this.myUser = myUser;
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        bubble.setBorder(new EmptyBorder(BUBBLE_INSET_Y, BUBBLE_INSET_X, BUBBLE_INSET_Y, BUBBLE_INSET_X));
+        senderLabel.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        senderLabel.setForeground(Color.DARK_GRAY);
+        messageText.setEditable(false);
+        messageText.setLineWrap(true);
+        messageText.setWrapStyleWord(true);
+        messageText.setFont(new Font("SansSerif", Font.PLAIN, 14));
+        messageText.setOpaque(false);
+        add(rendererPane);
+        syncRowCount();
+    }
+
+    /**
+     * 履歴リストに追加されたメッセージを取り込み、最下部までスクロールする。
+     */
+    public void messagesAppended() {
+        syncRowCount();
+        measureTail();
+        revalidate();
+        repaint();
+        SwingUtilities.invokeLater(this::scrollToBottom);
+    }
+
+    /**
+     * 履歴リストの先頭に count 件の古いメッセージが挿入されたことを反映する。
+     * 表示中のメッセージが画面上で動かないよう、挿入した分だけスクロール位置をずらす。
+     */
+    public void messagesPrepended(int count) {
+        int newCount = rowCount + count;
+        int capacity = Math.max(newCount, measuredHeights.length);
+        int[] heights = new int[capacity];
+        int[] widths = new int[capacity];
+        System.arraycopy(measuredHeights, 0, heights, count, rowCount);
+        System.arraycopy(bubbleWidths, 0, widths, count, rowCount);
+        measuredHeights = heights;
+        bubbleWidths = widths;
+        rowCount = newCount;
+        offsets.load(measuredHeights, rowCount, ESTIMATED_ROW_HEIGHT);
+        if (getWidth() > 0) {
+            for (int row = 0; row < count; row++) {
+                measureRow(row);
+            }
+        }
+        long inserted = offsets.sumBefore(count);
+        if (getParent() instanceof JViewport) {
+            JViewport viewport = (JViewport) getParent();
+            setSize(getWidth(), getPreferredSize().height);
+            Point position = viewport.getViewPosition();
+            position.y += (int) inserted;
+            viewport.setViewPosition(position);
+        }
+        revalidate();
+        repaint();
+    }
+
+    /** 最新のメッセージが見えるようにスクロールする。 */
+    public void scrollToBottom() {
+        int height = getPreferredSize().height;
+        scrollRectToVisible(new Rectangle(0, Math.max(0, height - 1), 1, 1));
+    }
+
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        super.setBounds(x, y, width, height);
+        if (width != measuredForWidth) {
+            // 幅が変わると折り返し位置が変わるので、計測済みの高さを破棄する
+            measuredForWidth = width;
+            Arrays.fill(measuredHeights, 0, rowCount, 0);
+            offsets.reset(rowCount, ESTIMATED_ROW_HEIGHT);
+            measureTail();
+            revalidate();
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        long total = offsets.total();
+        return new Dimension(MAX_BUBBLE_WIDTH + ROW_INSET_X * 2, (int) Math.min(Integer.MAX_VALUE, total));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (rowCount == 0 || getWidth() <= 0) return;
+
+        int row = Math.min(offsets.rowAt(clip.y), rowCount - 1);
+        long y = offsets.sumBefore(row);
+        boolean measuredNew = false;
+        while (row < rowCount && y < clip.y + clip.height) {
+            if (measuredHeights[row] == 0) {
+                measureRow(row);
+                measuredNew = true;
+            }
+            paintRow(g, row, (int) y);
+            y += measuredHeights[row];
+            row++;
+        }
+        if (measuredNew) scheduleRevalidate();
+    }
+
+    private void paintRow(Graphics g, int row, int y) {
+        ChatMessage message = messages.get(row);
+        configureBubble(message);
+        int width = bubbleWidths[row];
+        int height = measuredHeights[row] - ROW_INSET_Y * 2;
+        int x = message.getSender().isMe() ? getWidth() - ROW_INSET_X - width : ROW_INSET_X;
+        rendererPane.paintComponent(g, bubble, this, x, y + ROW_INSET_Y, width, height, true);
+    }
+
+    private void configureBubble(ChatMessage message) {
+        bubble.removeAll();
+        if (message.getSender().isMe()) {
+            bubble.setBackground(myUser.getColor());
+        } else {
+            bubble.setBackground(message.getSender().getColor());
+            senderLabel.setText(message.getSender().getName());
+            bubble.add(senderLabel, BorderLayout.NORTH);
+        }
+        messageText.setText(message.getText());
+        bubble.add(messageText, BorderLayout.CENTER);
+    }
+
+    private void measureRow(int row) {
+        ChatMessage message = messages.get(row);
+        configureBubble(message);
+        int maxTextWidth = Math.max(1, Math.min(MAX_BUBBLE_WIDTH, getWidth() - ROW_INSET_X * 2) - BUBBLE_INSET_X * 2);
+        Insets textInsets = messageText.getInsets();
+        FontMetrics fm = messageText.getFontMetrics(messageText.getFont());
+        int naturalWidth = 0;
+        for (String line : message.getText().split("\n", -1)) {
+            naturalWidth = Math.max(naturalWidth, fm.stringWidth(line));
+        }
+        int textWidth = Math.min(maxTextWidth, naturalWidth + textInsets.left + textInsets.right + 1);
+        messageText.setSize(textWidth, Short.MAX_VALUE);
+        int contentWidth = textWidth;
+        int contentHeight = messageText.getPreferredSize().height;
+        if (!message.getSender().isMe()) {
+            Dimension labelSize = senderLabel.getPreferredSize();
+            contentWidth = Math.max(contentWidth, Math.min(maxTextWidth, labelSize.width));
+            contentHeight += labelSize.height + SENDER_GAP;
+        }
+        bubbleWidths[row] = contentWidth + BUBBLE_INSET_X * 2;
+        measuredHeights[row] = contentHeight + BUBBLE_INSET_Y * 2 + ROW_INSET_Y * 2;
+        offsets.set(row, measuredHeights[row]);
+    }
+
+    // 最下部にスクロールしたとき推定値でずれないよう、末尾の1画面分だけ先に計測する
+    private void measureTail() {
+        if (getWidth() <= 0) return;
+        int visible = getParent() instanceof JViewport ? getParent().getHeight() : getHeight();
+        int filled = 0;
+        for (int row = rowCount - 1; row >= 0 && filled < visible; row--) {
+            if (measuredHeights[row] == 0) measureRow(row);
+            filled += measuredHeights[row];
+        }
+    }
+
+    private void syncRowCount() {
+        int newCount = messages.size();
+        if (newCount > measuredHeights.length) {
+            int capacity = Math.max(newCount, measuredHeights.length * 2);
+            measuredHeights = Arrays.copyOf(measuredHeights, capacity);
+            bubbleWidths = Arrays.copyOf(bubbleWidths, capacity);
+        }
+        for (int row = rowCount; row < newCount; row++) {
+            offsets.append(row, ESTIMATED_ROW_HEIGHT);
+        }
+        rowCount = newCount;
+    }
+
+    // 描画中に計測した行の高さを、描画が終わってからまとめてレイアウトに反映する
+    private void scheduleRevalidate() {
+        if (revalidatePending) return;
+        revalidatePending = true;
+        SwingUtilities.invokeLater(() -> {
+            revalidatePending = false;
+            revalidate();
+        });
+    }
+
+    // --- Scrollable ---
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(MAX_BUBBLE_WIDTH + ROW_INSET_X * 2, ESTIMATED_ROW_HEIGHT * 8);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return 16;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+
+    /**
+     * 行の高さの累積和を Fenwick 木で保持する。
+     * 1行の高さの更新と、y 座標から行番号を求める処理がどちらも O(log n) で済む。
+     */
+    private static final class RowOffsets {
+        private long[] tree = new long[17];
+        private int[] values = new int[16];
+        private int size;
+
+        void append(int row, int height) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+                rebuild();
+            }
+            size = row + 1;
+            set(row, height);
+        }
+
+        void set(int row, int height) {
+            long delta = height - values[row];
+            values[row] = height;
+            for (int i = row + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        /** 計測済みの高さ（0 は未計測として estimate を使う）から作り直す。 */
+        void load(int[] measured, int rows, int estimate) {
+            if (rows > values.length) {
+                values = new int[Math.max(rows, values.length * 2)];
+            }
+            for (int row = 0; row < rows; row++) {
+                values[row] = measured[row] > 0 ? measured[row] : estimate;
+            }
+            size = rows;
+            rebuild();
+        }
+
+        void reset(int rows, int height) {
+            Arrays.fill(values, 0, rows, height);
+            rebuild();
+        }
+
+        /** 先頭から count 行分の高さの合計。 */
+        long sumBefore(int count) {
+            long sum = 0;
+            for (int i = count; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        long total() {
+            return sumBefore(size);
+        }
+
+        /** y 座標を含む行の番号。 */
+        int rowAt(long y) {
+            int pos = 0;
+            long remaining = y;
+            for (int step = Integer.highestOneBit(values.length); step > 0; step >>= 1) {
+                int next = pos + step;
+                if (next < tree.length && tree[next] <= remaining) {
+                    pos = next;
+                    remaining -= tree[next];
+                }
+            }
+            return pos;
+        }
+
+        private void rebuild() {
+            tree = new long[values.length + 1];
+            for (int i = 1; i < tree.length; i++) {
+                tree[i] += values[i - 1];
+                int parent = i + (i & -i);
+                if (parent < tree.length) tree[parent] += tree[i];
+            }
+        }
+    }
+}
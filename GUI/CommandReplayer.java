@@ -0,0 +1,222 @@
+package GUI;
+
+import javax.swing.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * コマンドファイルや標準入力のパイプから大量のコンソールコマンドを流し込むリプレイモード。
+ * 読み込みスレッドが行を分解して Command にし、EDT には同時に1つだけタスクを投げて
+ * 溜まったコマンドをまとめて適用させる。EDT のイベントキューがコマンドで溢れることはない。
+ *
+ * <p>コマンドの書式はコンソールと同じ（chat / appoint / stats）。空行と # で始まる行は読み飛ばし、exit で終わる。
+ * 最後にスループットと、読み込んでから適用されるまでの遅延の分布を表示する。</p>
+ */
+public class CommandReplayer {
+
+    // 1回の EDT のタスクで適用する最大件数と、読み込み済みで未適用のコマンドの上限
+    private static final int MAX_BATCH = 4096;
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+
+    public static final int CHAT = 1;
+    public static final int APPOINT = 2;
+    public static final int STATS = 3;
+
+    /** 分解済みのコマンド1件。 */
+    public static final class Command {
+        final int type;
+        final String userName;
+        final int month;
+        final int day;
+        final String text;
+        final long readAt;
+
+        Command(int type, String userName, int month, int day, String text, long readAt) {
+            this.type = type;
+            this.userName = userName;
+            this.month = month;
+            this.day = day;
+            this.text = text;
+            this.readAt = readAt;
+        }
+
+        public int getType() { return type; }
+        public String getUserName() { return userName; }
+        public int getMonth() { return month; }
+        public int getDay() { return day; }
+        /** chat の本文、appoint のタイトル。 */
+        public String getText() { return text; }
+    }
+
+    /** コマンドを適用する側。EDT 上で呼ばれる。 */
+    public interface Target {
+        /**
+         * まとめて適用する。
+         * @return 適用できなかったコマンドの数
+         */
+        int apply(List<Command> batch);
+    }
+
+    // 読み込みの終わりを EDT に知らせる印
+    private static final Command END = new Command(0, null, 0, 0, null, 0);
+
+    private final Target target;
+    private final BlockingQueue<Command> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Object finishedLock = new Object();
+    private boolean finished;
+
+    // --- 計測値（EDT 上でだけ更新する） ---
+    private long[] latencies = new long[1024];
+    private int applied;
+    private int failed;
+    private int batches;
+    private int maxBatch;
+    // 読み込みスレッドで数える
+    private int rejected;
+
+    public CommandReplayer(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * reader の終わりまでコマンドを流し込み、すべて適用されるのを待ってから統計を表示する。
+     * EDT 以外のスレッドから呼ぶこと。
+     */
+    public void run(BufferedReader reader) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.equalsIgnoreCase("exit")) break;
+            Command command = parse(line, System.nanoTime());
+            if (command == null) continue;
+            queue.put(command);
+            scheduleDrain();
+        }
+        queue.put(END);
+        scheduleDrain();
+        synchronized (finishedLock) {
+            while (!finished) finishedLock.wait();
+        }
+        printStats(System.nanoTime() - start);
+    }
+
+    // 1行をコマンドにする。空行・コメントは null、書式の誤りは数えて null を返す
+    private Command parse(String line, long now) {
+        int length = line.length();
+        int start = skipSpaces(line, 0);
+        if (start == length || line.charAt(start) == '#') return null;
+        int end = nextSpace(line, start);
+        String name = line.substring(start, end);
+        if (name.equalsIgnoreCase("stats")) return new Command(STATS, null, 0, 0, null, now);
+        boolean chat = name.equalsIgnoreCase("chat");
+        if (!chat && !name.equalsIgnoreCase("appoint")) {
+            rejected++;
+            return null;
+        }
+        int userStart = skipSpaces(line, end);
+        int userEnd = nextSpace(line, userStart);
+        if (userStart == userEnd) {
+            rejected++;
+            return null;
+        }
+        String user = line.substring(userStart, userEnd);
+        if (chat) {
+            int textStart = userEnd + 1;
+            if (textStart >= length) {
+                rejected++;
+                return null;
+            }
+            return new Command(CHAT, user, 0, 0, line.substring(textStart), now);
+        }
+        int monthStart = skipSpaces(line, userEnd);
+        int monthEnd = nextSpace(line, monthStart);
+        int dayStart = skipSpaces(line, monthEnd);
+        int dayEnd = nextSpace(line, dayStart);
+        int month = parseSmallInt(line, monthStart, monthEnd);
+        int day = parseSmallInt(line, dayStart, dayEnd);
+        int titleStart = dayEnd + 1;
+        if (month < 0 || day < 0 || titleStart >= length) {
+            rejected++;
+            return null;
+        }
+        return new Command(APPOINT, user, month, day, line.substring(titleStart), now);
+    }
+
+    private static int skipSpaces(String line, int from) {
+        while (from < line.length() && line.charAt(from) == ' ') from++;
+        return from;
+    }
+
+    private static int nextSpace(String line, int from) {
+        int space = line.indexOf(' ', from);
+        return space < 0 ? line.length() : space;
+    }
+
+    // 1〜4桁の数字を読む。数字でなければ -1
+    private static int parseSmallInt(String line, int start, int end) {
+        if (start == end || end - start > 4) return -1;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::drain);
+        }
+    }
+
+    // EDT 上で呼ばれる。溜まっているコマンドを最大 MAX_BATCH 件まとめて適用する
+    private void drain() {
+        List<Command> batch = new ArrayList<>(Math.min(queue.size(), MAX_BATCH));
+        queue.drainTo(batch, MAX_BATCH);
+        boolean end = !batch.isEmpty() && batch.get(batch.size() - 1) == END;
+        if (end) batch.remove(batch.size() - 1);
+        if (!batch.isEmpty()) {
+            failed += target.apply(batch);
+            long now = System.nanoTime();
+            if (applied + batch.size() > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(applied + batch.size(), latencies.length * 2));
+            }
+            for (Command command : batch) latencies[applied++] = now - command.readAt;
+            batches++;
+            maxBatch = Math.max(maxBatch, batch.size());
+        }
+        drainScheduled.set(false);
+        if (end) {
+            synchronized (finishedLock) {
+                finished = true;
+                finishedLock.notifyAll();
+            }
+        } else if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void printStats(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("リプレイ完了: %d 件 (%.2f 秒, %.0f 件/秒), 失敗 %d 件, 書式エラー %d 件%n",
+                applied, seconds, applied / seconds, failed, rejected);
+        if (applied == 0) return;
+        long[] sorted = Arrays.copyOf(latencies, applied);
+        Arrays.sort(sorted);
+        System.out.printf("バッチ: %d 回 (平均 %.1f 件, 最大 %d 件)%n", batches, (double) applied / batches, maxBatch);
+        System.out.printf("適用までの遅延: p50=%.2f ms, p99=%.2f ms, 最大=%.2f ms%n",
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,143 @@
+package GUI;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ユーザー名とパスワードのハッシュをローカルファイルに保存する認証情報ストア。
+ * パスワードはユーザーごとのソルトを付けて PBKDF2 (HMAC-SHA256) で時間をかけてハッシュ化し、平文では保存しない。
+ *
+ * <p>ファイルは1行1ユーザーで「ユーザー名:反復回数:ソルト:ハッシュ」（ソルトとハッシュは Base64）。
+ * 書き換えるときは一時ファイルに書いてから置き換える。</p>
+ *
+ * <p>verify() は1回に数百ミリ秒かかるので EDT から呼ばないこと（LoginService を使う）。
+ * どのスレッドから呼んでもよい。</p>
+ */
+public class CredentialStore {
+
+    public static final int DEFAULT_ITERATIONS = 210_000;
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final Path file;
+    private final int iterations;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    // 存在しないユーザーでも同じだけ時間をかけ、ユーザー名の有無を応答時間から推測させない
+    private final Entry dummy;
+
+    private CredentialStore(Path file, int iterations) {
+        this.file = file;
+        this.iterations = iterations;
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        this.dummy = new Entry(iterations, salt, new byte[HASH_BITS / 8]);
+    }
+
+    /**
+     * ファイルから読み込む。ファイルがなければ空のストアを返す（最初の register() で作られる）。
+     * @throws IOException ファイルが読めないか形式が壊れている場合
+     */
+    public static CredentialStore open(Path file, int iterations) throws IOException {
+        CredentialStore store = new CredentialStore(file, iterations);
+        if (Files.exists(file)) {
+            int lineNumber = 0;
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                String[] parts = line.split(":");
+                if (parts.length != 4) throw new IOException(file + " の " + lineNumber + " 行目の形式が不正です。");
+                try {
+                    Base64.Decoder decoder = Base64.getDecoder();
+                    store.entries.put(parts[0], new Entry(Integer.parseInt(parts[1]), decoder.decode(parts[2]), decoder.decode(parts[3])));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + " の " + lineNumber + " 行目の形式が不正です。", e);
+                }
+            }
+        }
+        return store;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public boolean contains(String username) {
+        return entries.containsKey(username);
+    }
+
+    /**
+     * ユーザーを登録するかパスワードを変更し、ファイルに保存する。
+     */
+    public void register(String username, char[] password) throws IOException {
+        if (username.isEmpty() || username.indexOf(':') >= 0) {
+            throw new IllegalArgumentException("ユーザー名に使えない文字が含まれています: " + username);
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        entries.put(username, new Entry(iterations, salt, hash(password, salt, iterations)));
+        save();
+    }
+
+    /**
+     * パスワードが正しいか確かめる。時間のかかる処理なので EDT から呼ばないこと。
+     */
+    public boolean verify(String username, char[] password) {
+        Entry entry = entries.get(username);
+        Entry target = entry != null ? entry : dummy;
+        boolean matches = MessageDigest.isEqual(hash(password, target.salt, target.iterations), target.hash);
+        return entry != null && matches;
+    }
+
+    private static byte[] hash(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " が使用できません。", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private synchronized void save() throws IOException {
+        Base64.Encoder encoder = Base64.getEncoder();
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            lines.add(e.getKey() + ":" + entry.iterations + ":" + encoder.encodeToString(entry.salt) + ":" + encoder.encodeToString(entry.hash));
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, "credentials", ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class Entry {
+        final int iterations;
+        final byte[] salt;
+        final byte[] hash;
+
+        Entry(int iterations, byte[] salt, byte[] hash) {
+            this.iterations = iterations;
+            this.salt = Arrays.copyOf(salt, salt.length);
+            this.hash = hash;
+        }
+    }
+}
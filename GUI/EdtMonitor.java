@@ -0,0 +1,144 @@
+package GUI;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InputEvent;
+import java.awt.event.InvocationEvent;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EDT のイベント処理を計測するイベントキュー。システムのイベントキューの上に積み（install）、
+ * イベントごとの処理時間（edt.dispatch）とキューで待った時間（edt.queueWait、時刻を持つイベントだけ、ミリ秒単位）を記録する。
+ *
+ * <p>監視スレッドが一定間隔で EDT の様子を見て、1つのイベントの処理が閾値を超えても終わらなければ、
+ * 停止として数え（edt.stalls）、その時点の EDT のスタックトレースを標準エラーに書き出す。
+ * モーダルダイアログの表示中のように処理の中で次のイベントを待っている間は、停止として扱わない。</p>
+ */
+public class EdtMonitor extends EventQueue implements Metrics.EdtMonitorMXBean {
+
+    public static final long DEFAULT_STALL_MILLIS = 500;
+
+    private static final LatencyHistogram DISPATCH_LATENCY = Metrics.latency("edt.dispatch");
+    private static final LatencyHistogram QUEUE_WAIT_LATENCY = Metrics.latency("edt.queueWait");
+    private static final Metrics.Counter EVENTS = Metrics.counter("edt.events");
+    private static final Metrics.Counter STALLS = Metrics.counter("edt.stalls");
+
+    private static EdtMonitor installed;
+
+    private volatile long stallNanos;
+    private volatile Thread dispatchThread;
+    // 今のイベントを処理し始めた時刻（System.nanoTime）。処理中でなければ 0
+    private volatile long busySince;
+    // 次のイベントを待っている間は true（モーダルダイアログの中で待っている場合を含む）
+    private volatile boolean waiting;
+    // 停止として書き出した処理の busySince。同じ処理を2回書き出さない
+    private volatile long reportedSince;
+    // --- EDT だけが触る ---
+    private int depth;
+    private long dispatched;
+
+    private EdtMonitor(long stallMillis) {
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+    }
+
+    /**
+     * システムのイベントキューの上に監視用のキューを積み、JMX に登録する。2回目以降は何もせず同じものを返す。
+     * @param stallMillis 停止とみなす処理時間。0 以下なら停止の監視はせず、処理時間だけを記録する
+     */
+    public static synchronized EdtMonitor install(long stallMillis) {
+        if (installed != null) return installed;
+        EdtMonitor monitor = new EdtMonitor(stallMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(monitor);
+        Metrics.register("EdtMonitor", "edt", monitor);
+        if (stallMillis > 0) monitor.startWatchdog(Math.max(10, Math.min(250, stallMillis / 4)));
+        installed = monitor;
+        return monitor;
+    }
+
+    private void startWatchdog(long periodMillis) {
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "edt-stall-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleAtFixedRate(this::checkStall, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public AWTEvent getNextEvent() throws InterruptedException {
+        waiting = true;
+        try {
+            return super.getNextEvent();
+        } finally {
+            waiting = false;
+        }
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        long when = event instanceof InvocationEvent ? ((InvocationEvent) event).getWhen()
+                : event instanceof InputEvent ? ((InputEvent) event).getWhen() : 0;
+        if (when > 0) QUEUE_WAIT_LATENCY.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - when)));
+        if (dispatchThread == null) dispatchThread = Thread.currentThread();
+        long start = System.nanoTime();
+        long sequence = ++dispatched;
+        depth++;
+        busySince = start;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            depth--;
+            long since = busySince;
+            if (since != 0 && since == reportedSince) {
+                System.err.printf("（EDT の停止が解消しました: %.0f ms）%n", (System.nanoTime() - since) / 1e6);
+            }
+            // 処理の中で別のイベントを処理した（モーダルダイアログなど）場合は、その間の時間を含むので記録しない
+            if (sequence == dispatched) DISPATCH_LATENCY.recordSince(start);
+            EVENTS.increment();
+            busySince = depth > 0 ? System.nanoTime() : 0;
+        }
+    }
+
+    // 監視スレッドで呼ばれる
+    private void checkStall() {
+        long since = busySince;
+        if (since == 0 || waiting || since == reportedSince) return;
+        long elapsed = System.nanoTime() - since;
+        if (elapsed < stallNanos) return;
+        reportedSince = since;
+        STALLS.increment();
+        StringBuilder text = new StringBuilder(String.format("警告: EDT が %.0f ms 応答していません。", elapsed / 1e6));
+        Thread thread = dispatchThread;
+        if (thread != null) {
+            text.append(" EDT のスタックトレース:\n");
+            for (StackTraceElement element : thread.getStackTrace()) text.append("\tat ").append(element).append('\n');
+        } else {
+            text.append('\n');
+        }
+        System.err.print(text);
+    }
+
+    @Override
+    public long getStallThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(stallNanos);
+    }
+
+    @Override
+    public void setStallThresholdMillis(long millis) {
+        stallNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long getStallCount() {
+        return STALLS.getValue();
+    }
+
+    @Override
+    public long getCurrentBusyMillis() {
+        long since = busySince;
+        return since == 0 || waiting ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since);
+    }
+}
@@ -0,0 +1,239 @@
+package GUI;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * グループのメンバー全員が空いている時間帯を探す。
+ * 期間を 15 分ごとの枠に区切り、メンバーごとの予定が入っている枠を long 配列のビット集合にして、
+ * メンバー間の和（＝全員の空きの積の補集合）を 64 枠ずつのビット演算で求める。メンバーごとの集計は並列に行う。
+ *
+ * <p>時刻のある予定だけを予定ありとして扱い、終日の予定（時刻なし）は空き時間を妨げない。
+ * メンバー本人の予定に加えて、本人が所属するグループの予定もその人の予定として数える。</p>
+ *
+ * <p>所有者ごとの予定ありの枠は月ごとに覚えておき、予定が変わった月の分だけを捨てる（invalidate）。
+ * 月の分を作るのと捨てるのは呼び出したスレッド（EDT）で行い、並列の集計は作り終えたビット集合を読むだけにする。</p>
+ */
+public class FreeSlotFinder {
+
+    public static final int SLOT_MINUTES = 15;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+
+    /** 空いている時間帯の候補1件。 */
+    public static final class Slot {
+        private final LocalDate date;
+        private final LocalTime start;
+        private final LocalTime end;
+
+        Slot(LocalDate date, LocalTime start, LocalTime end) {
+            this.date = date;
+            this.start = start;
+            this.end = end;
+        }
+
+        public LocalDate getDate() { return date; }
+        public LocalTime getStart() { return start; }
+        public LocalTime getEnd() { return end; }
+
+        @Override
+        public String toString() {
+            return date + " " + start + "-" + end;
+        }
+    }
+
+    private final CalendarModel model;
+    // 月ごとの、所有者 → その月の予定ありの枠（1日の 0:00 がビット 0）。時刻のある予定がない所有者は入れない
+    private final Map<YearMonth, Map<Object, long[]>> months = new HashMap<>();
+
+    public FreeSlotFinder(CalendarModel model) {
+        this.model = model;
+    }
+
+    /** 予定が変わった月の覚えている枠を捨てる。 */
+    public void invalidate(YearMonth yearMonth) {
+        months.remove(yearMonth);
+    }
+
+    /** 覚えている枠をすべて捨てる（繰り返し予定が変わったとき、通知なしでストアを読み込んだ後など）。 */
+    public void invalidateAll() {
+        months.clear();
+    }
+
+    /**
+     * group のメンバー全員が続けて minutes 分空いている時間帯を、早いものから limit 件まで返す。
+     * 1つの空き時間から複数の候補を返すときは、重ならないように minutes 分ずつずらす。
+     * @param from         探す期間の最初の日
+     * @param to           探す期間の最後の日（その日を含む）
+     * @param dayStart     1日のうち探す時間帯の始まり（15 分単位に切り上げる）
+     * @param dayEnd       1日のうち探す時間帯の終わり（15 分単位に切り下げる）
+     * @param weekdaysOnly true なら土日を除く
+     */
+    public List<Slot> find(Group group, LocalDate from, LocalDate to, LocalTime dayStart, LocalTime dayEnd,
+                           boolean weekdaysOnly, int minutes, int limit) {
+        int days = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        int length = (minutes + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        if (days <= 0 || length <= 0 || limit <= 0) return new ArrayList<>();
+        int slotCount = days * SLOTS_PER_DAY;
+        int words = (slotCount + 63) >>> 6;
+
+        List<Map<Object, long[]>> monthBusy = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            monthBusy.add(months.computeIfAbsent(month, this::buildMonth));
+            offsets.add((int) ChronoUnit.DAYS.between(from, month.atDay(1)) * SLOTS_PER_DAY);
+        }
+        // グループの予定は、そのグループに所属するメンバー全員の予定として数える
+        List<Group> groups = new ArrayList<>();
+        List<long[]> groupBusy = new ArrayList<>();
+        for (Group other : model.getGroups()) {
+            long[] bits = new long[words];
+            if (addBusy(bits, other, monthBusy, offsets)) {
+                groups.add(other);
+                groupBusy.add(bits);
+            }
+        }
+        long[] busy = group.getUsers().parallelStream().collect(() -> new long[words], (bits, member) -> {
+            addBusy(bits, member, monthBusy, offsets);
+            for (int i = 0; i < groups.size(); i++) {
+                if (groups.get(i).hasMember(member)) orInto(bits, groupBusy.get(i));
+            }
+        }, FreeSlotFinder::orInto);
+
+        long[] free = workingSlots(from, days, words, dayStart, dayEnd, weekdaysOnly);
+        for (int i = 0; i < words; i++) free[i] &= ~busy[i];
+        long[] fits = runsOf(free, length);
+        return candidates(fits, from, length, limit);
+    }
+
+    // 1か月分の時刻のある予定（繰り返し予定の回を含む）を、所有者ごとの予定ありの枠にする
+    private Map<Object, long[]> buildMonth(YearMonth month) {
+        Map<Object, long[]> busy = new HashMap<>();
+        int words = (month.lengthOfMonth() * SLOTS_PER_DAY + 63) >>> 6;
+        for (Map.Entry<LocalDate, Collection<Appointment>> day : model.month(month).entrySet()) {
+            addMonthBusy(busy, words, day.getKey(), day.getValue());
+        }
+        for (Map.Entry<LocalDate, List<Appointment>> day : model.occurrences(month).entrySet()) {
+            addMonthBusy(busy, words, day.getKey(), day.getValue());
+        }
+        return busy;
+    }
+
+    private static void addMonthBusy(Map<Object, long[]> busy, int words, LocalDate date, Collection<Appointment> appointments) {
+        int base = (date.getDayOfMonth() - 1) * SLOTS_PER_DAY;
+        for (Appointment appointment : appointments) {
+            if (!appointment.hasTime()) continue;
+            int start = appointment.getStart().toSecondOfDay() / 60 / SLOT_MINUTES;
+            int end = (appointment.getEnd().toSecondOfDay() / 60 + SLOT_MINUTES - 1) / SLOT_MINUTES;
+            setRange(busy.computeIfAbsent(appointment.getOwner(), owner -> new long[words]), base + start, base + end);
+        }
+    }
+
+    // owner の各月の予定ありの枠を、期間の先頭からの位置にずらして bits に重ねる。重ねた月があれば true
+    private static boolean addBusy(long[] bits, Object owner, List<Map<Object, long[]>> monthBusy, List<Integer> offsets) {
+        boolean any = false;
+        for (int i = 0; i < monthBusy.size(); i++) {
+            long[] month = monthBusy.get(i).get(owner);
+            if (month == null) continue;
+            orShifted(bits, month, offsets.get(i));
+            any = true;
+        }
+        return any;
+    }
+
+    // 探す時間帯に当たる枠のビット集合
+    private static long[] workingSlots(LocalDate from, int days, int words, LocalTime dayStart, LocalTime dayEnd, boolean weekdaysOnly) {
+        long[] bits = new long[words];
+        int start = (dayStart.toSecondOfDay() / 60 + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        int end = dayEnd.equals(LocalTime.MAX) ? SLOTS_PER_DAY : dayEnd.toSecondOfDay() / 60 / SLOT_MINUTES;
+        if (start >= end) return bits;
+        LocalDate date = from;
+        for (int day = 0; day < days; day++, date = date.plusDays(1)) {
+            if (weekdaysOnly && (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY)) continue;
+            setRange(bits, day * SLOTS_PER_DAY + start, day * SLOTS_PER_DAY + end);
+        }
+        return bits;
+    }
+
+    // ビット i が立っているのは、枠 i から length 枠がすべて空いているとき（ずらして積を取るのを倍々に行う）
+    private static long[] runsOf(long[] free, int length) {
+        long[] fits = free.clone();
+        int covered = 1;
+        while (covered < length) {
+            int shift = Math.min(covered, length - covered);
+            andShifted(fits, fits.clone(), shift);
+            covered += shift;
+        }
+        return fits;
+    }
+
+    // target[i] &= source を shift ビット下位へずらしたもの（ビット i に source のビット i + shift）
+    private static void andShifted(long[] target, long[] source, int shift) {
+        int wordShift = shift >>> 6, bitShift = shift & 63;
+        for (int i = 0; i < target.length; i++) {
+            int j = i + wordShift;
+            long low = j < source.length ? source[j] : 0;
+            long high = j + 1 < source.length ? source[j + 1] : 0;
+            long shifted = bitShift == 0 ? low : (low >>> bitShift) | (high << (64 - bitShift));
+            target[i] &= shifted;
+        }
+    }
+
+    private static List<Slot> candidates(long[] fits, LocalDate from, int length, int limit) {
+        List<Slot> slots = new ArrayList<>();
+        int next = 0;
+        for (int word = 0; word < fits.length && slots.size() < limit; word++) {
+            long bits = fits[word];
+            while (bits != 0 && slots.size() < limit) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                // 前の候補と重なるもの、日をまたぐものは飛ばす
+                if (slot < next || slot / SLOTS_PER_DAY != (slot + length - 1) / SLOTS_PER_DAY) continue;
+                LocalDate date = from.plusDays(slot / SLOTS_PER_DAY);
+                int startMinute = slot % SLOTS_PER_DAY * SLOT_MINUTES;
+                int endMinute = startMinute + length * SLOT_MINUTES;
+                LocalTime end = endMinute >= 24 * 60 ? LocalTime.MAX : LocalTime.ofSecondOfDay(endMinute * 60L);
+                slots.add(new Slot(date, LocalTime.ofSecondOfDay(startMinute * 60L), end));
+                next = slot + length;
+            }
+        }
+        return slots;
+    }
+
+    private static void setRange(long[] bits, int from, int to) {
+        if (from >= to) return;
+        int first = from >>> 6, last = (to - 1) >>> 6;
+        long firstMask = -1L << (from & 63);
+        long lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if (first == last) {
+            bits[first] |= firstMask & lastMask;
+            return;
+        }
+        bits[first] |= firstMask;
+        for (int i = first + 1; i < last; i++) bits[i] = -1L;
+        bits[last] |= lastMask;
+    }
+
+    // target の (ビット i + offset) に source のビット i を重ねる。target の外に出るビットは捨てる
+    private static void orShifted(long[] target, long[] source, int offset) {
+        int wordShift = Math.floorDiv(offset, 64), bitShift = Math.floorMod(offset, 64);
+        for (int i = 0; i < source.length; i++) {
+            long word = source[i];
+            if (word == 0) continue;
+            int j = i + wordShift;
+            if (j >= 0 && j < target.length) target[j] |= word << bitShift;
+            if (bitShift != 0 && j + 1 >= 0 && j + 1 < target.length) target[j + 1] |= word >>> (64 - bitShift);
+        }
+    }
+
+    private static void orInto(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) target[i] |= source[i];
+    }
+}
@@ -0,0 +1,105 @@
+package GUI;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * グループ（メンバーとチャットの履歴）。画面には依存せず、変更は CalendarModel の通知として届く。
+ * チャットの画面や受信キューは画面の側（Calender）がグループごとに持つ。
+ */
+public class Group {
+    // 起動時やスクロール時にチャットログから一度に読み込むメッセージ数
+    private static final int CHAT_PAGE_SIZE = 200;
+    private final String id, name;
+    private final char iconChar;
+    private final List<User> users = new ArrayList<>();
+    private final Set<User> members = new HashSet<>();
+    private int membershipVersion;
+    // 読み込んだ分の履歴。ChatMessage は表示する行の分だけ ChatStore.get で作る
+    private final ChatStore chatHistory = new ChatStore();
+    private ChatLog chatLog;
+    // chatHistory の先頭がチャットログ上の何番目のメッセージか
+    private int firstLoadedIndex;
+    private CalendarModel model;
+    public Group(String id, String name, char iconChar) { this.id = id; this.name = name; this.iconChar = iconChar; }
+    public String getId() { return id; }
+    public String getName() { return name; }
+    public char getIconChar() { return iconChar; }
+    public List<User> getUsers() { return users; }
+    public List<ChatMessage> getChatHistory() { return chatHistory; }
+    public void addUser(User user) {
+        if (!members.add(user)) return;
+        users.add(user);
+        membershipVersion++;
+        if (model != null) model.fireMemberJoined(this, user);
+    }
+    public boolean hasMember(User user) { return members.contains(user); }
+    public int getMembershipVersion() { return membershipVersion; }
+    public void addMessage(ChatMessage message) { addMessages(List.of(message)); }
+    public void addMessages(List<ChatMessage> messages) {
+        chatHistory.addAll(messages);
+        if (chatLog != null) {
+            try {
+                chatLog.appendAll(messages);
+            } catch (IOException e) {
+                System.err.println("エラー: チャットログへの書き込みに失敗しました。" + e.getMessage());
+            }
+        }
+        if (model != null) model.fireMessagesAppended(this, messages);
+    }
+    /** このグループの変更をモデルの通知として送るようにする。CalendarModel.addGroup から呼ばれる。 */
+    void attachModel(CalendarModel model) { this.model = model; }
+    public User findUserById(String userId) {
+        for (User user : users) {
+            if (user.getId().equals(userId)) return user;
+        }
+        return new User(userId, userId, Color.LIGHT_GRAY, false);
+    }
+    /** チャットログを割り当て、最新の1ページ分だけを履歴として読み込む。 */
+    public void attachChatLog(ChatLog chatLog) throws IOException {
+        this.chatLog = chatLog;
+        int size = chatLog.size();
+        firstLoadedIndex = Math.max(0, size - CHAT_PAGE_SIZE);
+        chatHistory.clear();
+        chatHistory.addAll(chatLog.read(firstLoadedIndex, size));
+    }
+    public ChatLog getChatLog() { return chatLog; }
+    /** チャットログに保存されている分も含めたメッセージの総数。次に追加するメッセージの通し番号になる。 */
+    public int getMessageCount() { return firstLoadedIndex + chatHistory.size(); }
+    /**
+     * 通し番号 sequence のメッセージ。読み込んでいなければチャットログから読む。
+     * @return 読めなければ null
+     */
+    public ChatMessage getMessage(int sequence) {
+        if (sequence >= firstLoadedIndex) {
+            int index = sequence - firstLoadedIndex;
+            return index < chatHistory.size() ? chatHistory.get(index) : null;
+        }
+        if (chatLog == null) return null;
+        try {
+            return chatLog.read(sequence, sequence + 1).get(0);
+        } catch (IOException e) {
+            System.err.println("エラー: チャットログの読み込みに失敗しました。" + e.getMessage());
+            return null;
+        }
+    }
+    public boolean hasOlderMessages() { return firstLoadedIndex > 0; }
+    /** 1ページ分の古いメッセージを履歴の先頭に読み込み、読み込んだ件数を返す。 */
+    public int loadOlderMessages() {
+        if (chatLog == null || firstLoadedIndex == 0) return 0;
+        int from = Math.max(0, firstLoadedIndex - CHAT_PAGE_SIZE);
+        try {
+            chatHistory.addAll(0, chatLog.read(from, firstLoadedIndex));
+        } catch (IOException e) {
+            System.err.println("エラー: チャットログの読み込みに失敗しました。" + e.getMessage());
+            return 0;
+        }
+        int loaded = firstLoadedIndex - from;
+        firstLoadedIndex = from;
+        return loaded;
+    }
+}
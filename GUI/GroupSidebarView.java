@@ -0,0 +1,274 @@
+package GUI;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * サイドバーのマイページとグループのアイコンの一覧を1つの部品で描く。
+ * 項目ごとに部品を作らず、スクロールして見えている行のアイコンだけを描き、クリックの位置から項目を判定する。
+ * アイコン（丸と文字）は文字・色・選択状態ごとに一度だけ画像に描いてキャッシュし、描画のたびには画像を貼るだけにする。
+ * 選択を変えたときは、選択が外れた行と選ばれた行の2行だけを描き直す。
+ */
+public class GroupSidebarView extends JComponent implements Scrollable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 項目の選択を受け取る。 */
+    public interface Listener {
+        void entrySelected(String id);
+    }
+
+    /** 一覧の1項目。先頭の項目（マイページ）とグループの間には少し間を空ける。 */
+    public static final class Entry {
+        private final String id;
+        private final String tooltip;
+        private final char iconChar;
+        private final Color color;
+
+        /** @param color 選択していないときの丸の色 */
+        public Entry(String id, String tooltip, char iconChar, Color color) {
+            this.id = id;
+            this.tooltip = tooltip;
+            this.iconChar = iconChar;
+            this.color = color;
+        }
+
+        public String getId() { return id; }
+        public String getTooltip() { return tooltip; }
+        public char getIconChar() { return iconChar; }
+        public Color getColor() { return color; }
+    }
+
+    public static final Color DEFAULT_COLOR = Color.LIGHT_GRAY;
+    private static final Color SELECTED_COLOR = new Color(66, 133, 244);
+    private static final Font ICON_FONT = new Font("SansSerif", Font.BOLD, 24);
+    private static final int ROW_HEIGHT = 50;
+    private static final int ICON_SIZE = 40;
+    // 先頭の項目のあとに空ける間
+    private static final int SEPARATOR = 10;
+    private static final int PREFERRED_WIDTH = 60;
+
+    private final Listener listener;
+    private final IconCache icons = new IconCache(256);
+    private final List<Entry> entries = new ArrayList<>();
+    private int selectedIndex = -1;
+
+    public GroupSidebarView(Listener listener) {
+        this.listener = listener;
+        setOpaque(true);
+        setBackground(new Color(240, 240, 240));
+        setToolTipText("");
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = rowAt(e.getY());
+                if (index >= 0 && SwingUtilities.isLeftMouseButton(e)) listener.entrySelected(entries.get(index).getId());
+            }
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setCursor(rowAt(e.getY()) >= 0 ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR) : null);
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+    }
+
+    /** 一覧の項目をすべて入れ替える。選択は外れる。 */
+    public void setEntries(List<Entry> newEntries) {
+        entries.clear();
+        entries.addAll(newEntries);
+        selectedIndex = -1;
+        revalidate();
+        repaint();
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /** id の項目を選択した状態にする。選択が外れた行と選ばれた行だけを描き直す。 */
+    public void setSelectedId(String id) {
+        int index = indexOf(id);
+        if (index == selectedIndex) return;
+        int previous = selectedIndex;
+        selectedIndex = index;
+        if (previous >= 0) repaint(rowBounds(previous));
+        if (index >= 0) repaint(rowBounds(index));
+    }
+
+    private int indexOf(String id) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).getId().equals(id)) return i;
+        }
+        return -1;
+    }
+
+    // --- 配置の計算 ---
+
+    private static int rowY(int index) {
+        return index * ROW_HEIGHT + (index > 0 ? SEPARATOR : 0);
+    }
+
+    Rectangle rowBounds(int index) {
+        return new Rectangle(0, rowY(index), getWidth(), ROW_HEIGHT);
+    }
+
+    // y の位置の項目。項目の間や末尾より下なら -1
+    private int rowAt(int y) {
+        if (y < 0) return -1;
+        int index = y < ROW_HEIGHT ? 0 : y < ROW_HEIGHT + SEPARATOR ? -1 : (y - SEPARATOR) / ROW_HEIGHT;
+        return index >= 0 && index < entries.size() ? index : -1;
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int index = rowAt(e.getY());
+        return index >= 0 ? entries.get(index).getTooltip() : null;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) return super.getPreferredSize();
+        return new Dimension(PREFERRED_WIDTH, entries.isEmpty() ? 0 : rowY(entries.size()));
+    }
+
+    // --- 描画 ---
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (entries.isEmpty()) return;
+        // 画面の拡大率に合わせた解像度の画像を使う（HiDPI でぼやけないように）
+        AffineTransform transform = ((Graphics2D) g).getTransform();
+        double scale = Math.max(1.0, transform.getScaleX());
+        int first = Math.max(0, clip.y < ROW_HEIGHT + SEPARATOR ? 0 : (clip.y - SEPARATOR) / ROW_HEIGHT);
+        int x = (getWidth() - ICON_SIZE) / 2;
+        for (int index = first; index < entries.size(); index++) {
+            int y = rowY(index);
+            if (y >= clip.y + clip.height) break;
+            Entry entry = entries.get(index);
+            boolean selected = index == selectedIndex;
+            Image image = icons.get(entry.getIconChar(), selected ? SELECTED_COLOR : entry.getColor(), scale);
+            g.drawImage(image, x, y + (ROW_HEIGHT - ICON_SIZE) / 2, ICON_SIZE, ICON_SIZE, null);
+        }
+    }
+
+    /**
+     * 描き終えたアイコンの画像を、文字・色・拡大率ごとに保持する LRU キャッシュ。
+     * 選択状態は色（選択中は SELECTED_COLOR）としてキーに入る。
+     */
+    static final class IconCache {
+        private final Map<Key, BufferedImage> images;
+        private int misses;
+
+        private static final class Key {
+            final char iconChar;
+            final int rgb;
+            final double scale;
+
+            Key(char iconChar, int rgb, double scale) {
+                this.iconChar = iconChar;
+                this.rgb = rgb;
+                this.scale = scale;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (!(o instanceof Key)) return false;
+                Key key = (Key) o;
+                return iconChar == key.iconChar && rgb == key.rgb && scale == key.scale;
+            }
+
+            @Override
+            public int hashCode() {
+                return (31 * iconChar + rgb) * 31 + Double.hashCode(scale);
+            }
+        }
+
+        IconCache(int capacity) {
+            images = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        BufferedImage get(char iconChar, Color color, double scale) {
+            Key key = new Key(iconChar, color.getRGB(), scale);
+            BufferedImage image = images.get(key);
+            if (image == null) {
+                misses++;
+                image = render(iconChar, color, scale);
+                images.put(key, image);
+            }
+            return image;
+        }
+
+        /** これまでに画像を描いた回数。 */
+        int getMisses() {
+            return misses;
+        }
+
+        private static BufferedImage render(char iconChar, Color color, double scale) {
+            int size = (int) Math.ceil(ICON_SIZE * scale);
+            BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = image.createGraphics();
+            try {
+                g2.scale(scale, scale);
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g2.setColor(color);
+                g2.fillOval(0, 0, ICON_SIZE, ICON_SIZE);
+                g2.setColor(Color.WHITE);
+                g2.setFont(ICON_FONT);
+                FontMetrics fm = g2.getFontMetrics();
+                String text = String.valueOf(iconChar);
+                g2.drawString(text, (ICON_SIZE - fm.stringWidth(text)) / 2, (ICON_SIZE - fm.getHeight()) / 2 + fm.getAscent());
+            } finally {
+                g2.dispose();
+            }
+            return image;
+        }
+    }
+
+    // --- Scrollable ---
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(PREFERRED_WIDTH, ROW_HEIGHT * 8);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return ROW_HEIGHT / 2;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return Math.max(ROW_HEIGHT, visibleRect.height - ROW_HEIGHT);
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        // 項目が少なく画面に収まるときは、余白も背景色で塗る
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+}
@@ -0,0 +1,394 @@
+package GUI;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 予定を iCalendar（.ics, RFC 5545）形式で読み書きする。
+ * VEVENT の SUMMARY をタイトル、DESCRIPTION を詳細、DTSTART の日付を予定の日付とし、
+ * DTSTART と DTEND が日時なら予定の開始・終了時刻とする（UTC の日時はこのマシンのタイムゾーンに直す）。
+ * 所有者は独自プロパティ X-OWNER（"U:利用者ID" または "G:グループID"）で表す。
+ *
+ * <p>読み込みは1行ずつ行い、VEVENT の区切りで一定件数ごとのチャンクに分けてワーカースレッドで並列に解析する。
+ * 解析待ちのチャンク数に上限があるので、ファイルの大きさによらず解析に使うメモリは一定で、
+ * 結果として残るのは取り込む予定そのものだけである。書き出しも1件ずつ行う。</p>
+ */
+public class IcsCodec {
+
+    // 1チャンクに入れる VEVENT の数
+    private static final int CHUNK_EVENTS = 2048;
+    // RFC 5545 の1行の上限（改行を除くオクテット数）
+    private static final int MAX_LINE_OCTETS = 75;
+    private static final String OWNER_PROPERTY = "X-OWNER";
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter LOCAL_DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    // 日をまたぐ予定の終了時刻と、DTEND のない予定の長さ
+    private static final LocalTime LAST_TIME = LocalTime.of(23, 59);
+    private static final long DEFAULT_MINUTES = 60;
+
+    /** 読み込みの結果。 */
+    public static final class ImportResult {
+        private final List<CalendarModel.Entry> entries;
+        private final int skipped;
+
+        ImportResult(List<CalendarModel.Entry> entries, int skipped) {
+            this.entries = entries;
+            this.skipped = skipped;
+        }
+
+        /** 読み込んだ予定（ファイル中の順）。 */
+        public List<CalendarModel.Entry> getEntries() { return entries; }
+        /** 日付がないなどの理由で読み飛ばした VEVENT の数。 */
+        public int getSkipped() { return skipped; }
+    }
+
+    private IcsCodec() {
+    }
+
+    /**
+     * .ics ファイルを読み込む。
+     * @param resolver     X-OWNER の所有者を引く関数
+     * @param defaultOwner X-OWNER がない、または所有者が見つからない予定の所有者
+     * @param threads      解析に使うスレッド数
+     */
+    public static ImportResult read(Path file, AppointmentJournal.OwnerResolver resolver, Object defaultOwner, int threads) throws IOException {
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ics-parse-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 解析待ちのチャンクはスレッド数の2倍まで。読み込みが解析を追い越さないようにする
+        Semaphore inFlight = new Semaphore(threads * 2);
+        Deque<Future<ChunkResult>> pending = new ArrayDeque<>();
+        List<CalendarModel.Entry> entries = new ArrayList<>();
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String> chunk = new ArrayList<>();
+            int events = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chunk.add(line);
+                if (line.equalsIgnoreCase("END:VEVENT") && ++events == CHUNK_EVENTS) {
+                    submit(pool, inFlight, pending, chunk, resolver, defaultOwner);
+                    chunk = new ArrayList<>();
+                    events = 0;
+                    // 解析の終わったチャンクから順に結果を受け取る
+                    while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+                        skipped += collect(pending.pollFirst(), entries);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) submit(pool, inFlight, pending, chunk, resolver, defaultOwner);
+            while (!pending.isEmpty()) skipped += collect(pending.pollFirst(), entries);
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ImportResult(entries, skipped);
+    }
+
+    private static void submit(ExecutorService pool, Semaphore inFlight, Deque<Future<ChunkResult>> pending, List<String> chunk,
+                               AppointmentJournal.OwnerResolver resolver, Object defaultOwner) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("読み込みが中断されました");
+        }
+        pending.addLast(pool.submit(() -> {
+            try {
+                return parseChunk(chunk, resolver, defaultOwner);
+            } finally {
+                inFlight.release();
+            }
+        }));
+    }
+
+    private static int collect(Future<ChunkResult> future, List<CalendarModel.Entry> entries) throws IOException {
+        try {
+            ChunkResult result = future.get();
+            entries.addAll(result.entries);
+            return result.skipped;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("読み込みが中断されました");
+        } catch (ExecutionException e) {
+            throw new IOException("iCalendar の解析に失敗しました", e.getCause());
+        }
+    }
+
+    private static final class ChunkResult {
+        final List<CalendarModel.Entry> entries = new ArrayList<>();
+        int skipped;
+    }
+
+    // ワーカースレッドで呼ばれる。折り返された行をつなぎ、VEVENT ごとに予定にする
+    private static ChunkResult parseChunk(List<String> lines, AppointmentJournal.OwnerResolver resolver, Object defaultOwner) {
+        EventParser parser = new EventParser(resolver, defaultOwner);
+        StringBuilder logical = new StringBuilder();
+        for (String line : lines) {
+            if (!line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+                logical.append(line, 1, line.length());
+                continue;
+            }
+            if (logical.length() > 0) parser.accept(logical.toString());
+            logical.setLength(0);
+            logical.append(line);
+        }
+        if (logical.length() > 0) parser.accept(logical.toString());
+        return parser.result;
+    }
+
+    // 折り返しをつないだ1行ずつを受け取り、VEVENT の中身を組み立てる
+    private static final class EventParser {
+        final ChunkResult result = new ChunkResult();
+        private final AppointmentJournal.OwnerResolver resolver;
+        private final Object defaultOwner;
+        private boolean inEvent;
+        // VEVENT の中の VALARM などの入れ子の深さ。入れ子の中のプロパティは使わない
+        private int nested;
+        private LocalDate date;
+        private LocalDateTime startTime;
+        private LocalDateTime endTime;
+        private String summary;
+        private String description;
+        private Object owner;
+
+        EventParser(AppointmentJournal.OwnerResolver resolver, Object defaultOwner) {
+            this.resolver = resolver;
+            this.defaultOwner = defaultOwner;
+        }
+
+        void accept(String line) {
+            int colon = valueStart(line);
+            if (colon < 0) return;
+            String name = propertyName(line, colon);
+            String value = line.substring(colon + 1);
+            if (name.equals("BEGIN")) {
+                if (inEvent) nested++;
+                else if (value.equalsIgnoreCase("VEVENT")) begin();
+                return;
+            }
+            if (name.equals("END")) {
+                if (nested > 0) nested--;
+                else if (inEvent && value.equalsIgnoreCase("VEVENT")) end();
+                return;
+            }
+            if (!inEvent || nested > 0) return;
+            switch (name) {
+                case "SUMMARY": summary = unescape(value); break;
+                case "DESCRIPTION": description = unescape(value); break;
+                case "DTSTART":
+                    startTime = parseDateTime(value);
+                    date = startTime != null ? startTime.toLocalDate() : parseDate(value);
+                    break;
+                case "DTEND": endTime = parseDateTime(value); break;
+                case OWNER_PROPERTY: owner = parseOwner(value); break;
+                default: break;
+            }
+        }
+
+        private void begin() {
+            inEvent = true;
+            date = null;
+            startTime = null;
+            endTime = null;
+            summary = null;
+            description = null;
+            owner = null;
+        }
+
+        private void end() {
+            inEvent = false;
+            if (date == null) {
+                result.skipped++;
+                return;
+            }
+            LocalTime start = null, end = null;
+            if (startTime != null && startTime.toLocalTime().isBefore(LAST_TIME)) {
+                start = startTime.toLocalTime();
+                if (endTime == null) {
+                    end = start.isBefore(LAST_TIME.minusMinutes(DEFAULT_MINUTES)) ? start.plusMinutes(DEFAULT_MINUTES) : LAST_TIME;
+                } else if (endTime.toLocalDate().isAfter(date)) {
+                    end = LAST_TIME;
+                } else {
+                    end = endTime.toLocalTime().isAfter(start) ? endTime.toLocalTime() : start.plusMinutes(1);
+                }
+            }
+            Appointment appointment = new Appointment(summary != null ? summary : "",
+                    description != null ? description : "", owner != null ? owner : defaultOwner, start, end);
+            result.entries.add(new CalendarModel.Entry(date, appointment));
+        }
+
+        private Object parseOwner(String value) {
+            if (value.length() < 3 || value.charAt(1) != ':') return null;
+            return resolver.resolve(value.charAt(0), value.substring(2));
+        }
+    }
+
+    // プロパティ名の後の ':' の位置。パラメーターの引用符の中の ':' は飛ばす
+    private static int valueStart(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ':' && !quoted) return i;
+        }
+        return -1;
+    }
+
+    private static String propertyName(String line, int colon) {
+        int semicolon = line.indexOf(';');
+        int end = semicolon >= 0 && semicolon < colon ? semicolon : colon;
+        return line.substring(0, end).toUpperCase();
+    }
+
+    // DATE-TIME（20240115T090000 または UTC の 20240115T090000Z）。DATE なら null
+    private static LocalDateTime parseDateTime(String value) {
+        if (value.length() < 15 || value.charAt(8) != 'T') return null;
+        try {
+            LocalDateTime dateTime = LocalDateTime.parse(value.substring(0, 15), LOCAL_DATE_TIME);
+            if (value.endsWith("Z")) {
+                dateTime = dateTime.atOffset(ZoneOffset.UTC).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+            }
+            return dateTime;
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    // DATE（20240115）と DATE-TIME（20240115T090000Z）のどちらも日付の部分だけを使う
+    private static LocalDate parseDate(String value) {
+        if (value.length() < 8) return null;
+        try {
+            return LocalDate.parse(value.substring(0, 8), DATE);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) return value;
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                text.append(next == 'n' || next == 'N' ? '\n' : next);
+            } else {
+                text.append(c);
+            }
+        }
+        return text.toString();
+    }
+
+    private static String escape(String value) {
+        StringBuilder text = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': text.append("\\\\"); break;
+                case ';': text.append("\\;"); break;
+                case ',': text.append("\\,"); break;
+                case '\n': text.append("\\n"); break;
+                case '\r': break;
+                default: text.append(c); break;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * 予定を .ics ファイルに書き出す。一時ファイルに書いてから置き換えるので、途中で失敗しても元のファイルは壊れない。
+     * @return 書き出した予定の数
+     */
+    public static int write(Path file, Iterable<CalendarModel.Entry> entries) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        String stamp = ZonedDateTime.now(ZoneOffset.UTC).format(TIMESTAMP);
+        int written = 0;
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writeLine(out, "BEGIN:VCALENDAR");
+                writeLine(out, "VERSION:2.0");
+                writeLine(out, "PRODID:-//softwaregroup5c//group-calendar//JA");
+                for (CalendarModel.Entry entry : entries) {
+                    writeEvent(out, entry.getDate(), entry.getAppointment(), stamp);
+                    written++;
+                }
+                writeLine(out, "END:VCALENDAR");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return written;
+    }
+
+    private static void writeEvent(Writer out, LocalDate date, Appointment appointment, String stamp) throws IOException {
+        Object owner = appointment.getOwner();
+        String ownerKey = owner instanceof Group ? "G:" + ((Group) owner).getId() : "U:" + ((User) owner).getId();
+        // 同じ予定は何度書き出しても同じ UID になるよう、キー（日付・所有者・タイトル）から作る
+        String key = date + "\n" + ownerKey + "\n" + appointment.getTitle();
+        writeLine(out, "BEGIN:VEVENT");
+        writeLine(out, "UID:" + UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + "@group-calendar");
+        writeLine(out, "DTSTAMP:" + stamp);
+        if (appointment.hasTime()) {
+            writeLine(out, "DTSTART:" + date.atTime(appointment.getStart()).format(LOCAL_DATE_TIME));
+            writeLine(out, "DTEND:" + date.atTime(appointment.getEnd()).format(LOCAL_DATE_TIME));
+        } else {
+            writeLine(out, "DTSTART;VALUE=DATE:" + date.format(DATE));
+        }
+        writeLine(out, "SUMMARY:" + escape(appointment.getTitle()));
+        if (!appointment.getDetails().isEmpty()) writeLine(out, "DESCRIPTION:" + escape(appointment.getDetails()));
+        writeLine(out, OWNER_PROPERTY + ":" + ownerKey);
+        writeLine(out, "END:VEVENT");
+    }
+
+    // 75 オクテットを超える行は、UTF-8 の文字の途中で切らないように折り返す
+    private static void writeLine(Writer out, String line) throws IOException {
+        int octets = 0;
+        int start = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            int size = c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isHighSurrogate(c) ? 4 : Character.isLowSurrogate(c) ? 0 : 3;
+            if (octets + size > MAX_LINE_OCTETS) {
+                out.write(line, start, i - start);
+                out.write("\r\n ");
+                start = i;
+                // 継続行の先頭の空白も1オクテットに数える
+                octets = 1;
+            }
+            octets += size;
+        }
+        out.write(line, start, line.length() - start);
+        out.write("\r\n");
+    }
+}
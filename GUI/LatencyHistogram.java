@@ -0,0 +1,117 @@
+package GUI;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 処理時間（ナノ秒）の分布を数えるヒストグラム。HdrHistogram と同じく、2 のべき乗ごとの区間をさらに 32 等分した
+ * 枠で数えるので、値の大きさによらず相対誤差は約 3% に収まり、記録は配列の1要素を増やすだけで済む。
+ *
+ * <p>record はどのスレッドから呼んでもよく、ロックを取らない。集計（パーセンタイルなど）は記録と並行して読んでよいが、
+ * 記録中の値を含むかどうかは決まらない。</p>
+ */
+public class LatencyHistogram implements Metrics.LatencyMXBean {
+
+    // 2 のべき乗ごとの区間の分割数（の半分）。64 未満の値はそのままの枠に入る
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** nanos ナノ秒かかった処理を1件記録する。負の値は 0 として数える。 */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) current = max.get();
+    }
+
+    /** System.nanoTime() で取った start から今までの時間を記録する。 */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** 記録した値のうち、割合 fraction（0〜1）がこの値以下になる値（ナノ秒）。記録がなければ 0。 */
+    public long percentile(double fraction) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(bucketHigh(i), max.get());
+        }
+        return max.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / 1e6 / n;
+    }
+
+    @Override
+    public double getP50Millis() { return percentile(0.50) / 1e6; }
+    @Override
+    public double getP90Millis() { return percentile(0.90) / 1e6; }
+    @Override
+    public double getP99Millis() { return percentile(0.99) / 1e6; }
+    @Override
+    public double getP999Millis() { return percentile(0.999) / 1e6; }
+    @Override
+    public double getMaxMillis() { return max.get() / 1e6; }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /** 集計値を1行にまとめた文字列。 */
+    public String describe() {
+        return String.format("%s: 件数=%d 平均=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f 最大=%.3f ms",
+                name, getCount(), getMeanMillis(), getP50Millis(), getP90Millis(), getP99Millis(), getP999Millis(), getMaxMillis());
+    }
+
+    // 値の入る枠。64 未満は値そのもの、それ以上は最上位ビットの位置と続く 5 ビットで決まる
+    static int bucketIndex(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (int) (value >>> shift) + shift * SUB_BUCKETS;
+    }
+
+    // 枠に入る最大の値
+    static long bucketHigh(int index) {
+        if (index < 2 * SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index - (long) shift * SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -2,28 +2,41 @@ package GUI;
 
 import javax.swing.*;
 import java.awt.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * ログイン画面を表示し、ユーザー認証を行うクラス。
+ * パスワードの確認は LoginService がワーカースレッドで行う。
  */
 public class LoginScreen {
 
-    private static final Map<String, String> userCredentials = new HashMap<>();
+    private static final Path CREDENTIALS_FILE = Paths.get("data", "credentials");
     private static final Map<String, User> userInfo = new HashMap<>();
+    // 認証情報ファイルがまだないときに登録する初期アカウント（ファイルにはハッシュだけが保存される）
+    private static final Map<String, String> initialAccounts = new LinkedHashMap<>();
+    private static LoginService loginService;
 
     static {
         // --- アカウント1: 智也 ---
-        userCredentials.put("tomoya", "tomoya");
+        initialAccounts.put("tomoya", "tomoya");
         userInfo.put("tomoya", new User("001", "智也", new Color(135, 206, 250), true));
 
         // --- アカウント2: test1 ---
-        userCredentials.put("test1", "test1");
+        initialAccounts.put("test1", "test1");
         userInfo.put("test1", new User("101", "人1", new Color(255, 182, 193), true));
     }
 
     public static void main(String[] args) {
+        // EDT の処理時間と停止の監視（-Dedt.stallMillis=0 で停止の監視をやめる）、計測値の定期的な書き出し（-Dmetrics.dump=秒）
+        EdtMonitor.install(Long.getLong("edt.stallMillis", EdtMonitor.DEFAULT_STALL_MILLIS));
+        Metrics.startDump(Long.getLong("metrics.dump", 0), System.out);
+        // 認証情報ファイルの読み込みは画面の表示と並行してワーカーで始めておく
+        loginService = new LoginService(CREDENTIALS_FILE, CredentialStore.DEFAULT_ITERATIONS, initialAccounts,
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
         SwingUtilities.invokeLater(LoginScreen::createAndShowLoginGUI);
     }
 
@@ -59,18 +72,29 @@ public class LoginScreen {
 
         loginButton.addActionListener(e -> {
             String username = usernameField.getText();
-            String password = new String(passwordField.getPassword());
+            char[] passwordChars = passwordField.getPassword();
+            // 同期サーバーへの最初のログインに使う複製（LoginService は確認を終えると passwordChars を消去する）
+            SyncClient.Session syncSession = new SyncClient.Session(username, passwordChars.clone());
+            loginButton.setEnabled(false);
+            loginButton.setText("確認中…");
 
-            if (userCredentials.containsKey(username) && userCredentials.get(username).equals(password)) {
+            loginService.login(username, passwordChars).whenComplete((ok, error) -> SwingUtilities.invokeLater(() -> {
+                loginButton.setEnabled(true);
+                loginButton.setText("ログイン");
                 User loggedInUser = userInfo.get(username);
-                loginFrame.dispose();
-                SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    syncSession.discard();
+                    JOptionPane.showMessageDialog(loginFrame, "認証情報を読み込めませんでした。\n" + error.getMessage(), "エラー", JOptionPane.ERROR_MESSAGE);
+                } else if (ok && loggedInUser != null) {
+                    loginFrame.dispose();
                     Calender mainApp = new Calender(loggedInUser);
                     mainApp.createAndShowGUI();
-                });
-            } else {
-                JOptionPane.showMessageDialog(loginFrame, "ユーザー名またはパスワードが違います。", "ログイン失敗", JOptionPane.ERROR_MESSAGE);
-            }
+                    mainApp.connectSyncServer(syncSession);
+                } else {
+                    syncSession.discard();
+                    JOptionPane.showMessageDialog(loginFrame, "ユーザー名またはパスワードが違います。", "ログイン失敗", JOptionPane.ERROR_MESSAGE);
+                }
+            }));
         });
 
         loginFrame.add(panel);
@@ -0,0 +1,83 @@
+package GUI;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ログインの認証をワーカースレッドで行うサービス。
+ * 認証情報ストアの読み込みも PBKDF2 の計算もワーカーで行うので、EDT がログインで止まることはない。
+ * 一度認証できたユーザーは SessionTokenCache のトークンで確認し、ハッシュ計算を省く。
+ */
+public class LoginService {
+
+    // login を呼んでから結果が出るまでの時間（認証情報ストアの読み込み待ちを含む）
+    private static final LatencyHistogram CHECK_LATENCY = Metrics.latency("login.check");
+    private static final Metrics.Counter SUCCESSES = Metrics.counter("login.success");
+    private static final Metrics.Counter FAILURES = Metrics.counter("login.failure");
+
+    private final ExecutorService pool;
+    private final CompletableFuture<CredentialStore> store;
+    private final SessionTokenCache sessions;
+
+    /**
+     * @param file         認証情報ファイル
+     * @param iterations   新しく登録するパスワードの PBKDF2 反復回数
+     * @param initialUsers ファイルが空のときに登録するユーザー名とパスワード
+     * @param threads      認証に使うスレッド数
+     */
+    public LoginService(Path file, int iterations, Map<String, String> initialUsers, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "login-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sessions = new SessionTokenCache(SessionTokenCache.DEFAULT_TTL_MILLIS);
+        this.store = CompletableFuture.supplyAsync(() -> {
+            try {
+                CredentialStore credentials = CredentialStore.open(file, iterations);
+                if (credentials.isEmpty()) {
+                    for (Map.Entry<String, String> user : initialUsers.entrySet()) {
+                        credentials.register(user.getKey(), user.getValue().toCharArray());
+                    }
+                }
+                return credentials;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, pool);
+    }
+
+    /**
+     * ユーザー名とパスワードを確かめる。すぐに戻り、結果は返した Future で受け取る。
+     * password は確認が終わると消去される。
+     * @return 認証に成功すれば true。認証情報ファイルが読めない場合は例外で完了する
+     */
+    public CompletableFuture<Boolean> login(String username, char[] password) {
+        long start = System.nanoTime();
+        return store.thenApplyAsync(credentials -> {
+            try {
+                if (sessions.check(username, password)) return true;
+                if (!credentials.verify(username, password)) return false;
+                sessions.issue(username, password);
+                return true;
+            } finally {
+                Arrays.fill(password, '\0');
+            }
+        }, pool).whenComplete((ok, error) -> {
+            CHECK_LATENCY.recordSince(start);
+            (Boolean.TRUE.equals(ok) ? SUCCESSES : FAILURES).increment();
+        });
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,144 @@
+package GUI;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * アプリ全体の計測値（処理時間のヒストグラムと件数のカウンタ）を名前で登録しておく場所。
+ * 登録した計測値は JMX の MBean（ドメイン GUI）として公開するので、jconsole などで実行中の値を見られる。
+ * 任意で、一定間隔ごとに全計測値をテキストで標準出力に書き出す（startDump）。
+ *
+ * <p>どのスレッドから呼んでもよい。同じ名前で2回取得すると同じインスタンスを返す。</p>
+ */
+public final class Metrics {
+
+    public static final String JMX_DOMAIN = "GUI";
+
+    /** JMX で公開するヒストグラムの集計値。時間はミリ秒。 */
+    public interface LatencyMXBean {
+        long getCount();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP90Millis();
+        double getP99Millis();
+        double getP999Millis();
+        double getMaxMillis();
+        /** 記録をすべて消す。 */
+        void reset();
+    }
+
+    /** JMX で公開するカウンタの値。 */
+    public interface CounterMXBean {
+        long getValue();
+    }
+
+    /** JMX で公開する EDT の監視の状態。 */
+    public interface EdtMonitorMXBean {
+        /** この時間を超えて EDT が1つの処理から戻らなければ、停止として記録する。 */
+        long getStallThresholdMillis();
+        void setStallThresholdMillis(long millis);
+        /** これまでに記録した停止の数。 */
+        long getStallCount();
+        /** 今処理中のイベントを処理し始めてからの時間。待機中なら 0。 */
+        long getCurrentBusyMillis();
+    }
+
+    /** 件数を数えるカウンタ。 */
+    public static final class Counter implements CounterMXBean {
+
+        private final String name;
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        @Override
+        public long getValue() {
+            return value.sum();
+        }
+
+        public String describe() {
+            return name + ": " + getValue();
+        }
+    }
+
+    private static final Map<String, LatencyHistogram> latencies = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private static final DateTimeFormatter DUMP_TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    /** name の処理時間のヒストグラム。なければ作って JMX に登録する。 */
+    public static LatencyHistogram latency(String name) {
+        return latencies.computeIfAbsent(name, key -> {
+            LatencyHistogram histogram = new LatencyHistogram(key);
+            register("Latency", key, histogram);
+            return histogram;
+        });
+    }
+
+    /** name のカウンタ。なければ作って JMX に登録する。 */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> {
+            Counter counter = new Counter(key);
+            register("Counter", key, counter);
+            return counter;
+        });
+    }
+
+    /** MBean を GUI:type=type,name=name として登録する。登録できなくても計測は続ける。 */
+    static void register(String type, String name, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + name);
+            if (!server.isRegistered(objectName)) server.registerMBean(mbean, objectName);
+        } catch (JMException | RuntimeException e) {
+            System.err.println("警告: 計測値 " + name + " を JMX に登録できませんでした。" + e);
+        }
+    }
+
+    /** 全計測値を名前順に1行ずつ並べた文字列。 */
+    public static String describe() {
+        StringBuilder text = new StringBuilder();
+        for (LatencyHistogram histogram : latencies.values()) text.append(histogram.describe()).append('\n');
+        for (Counter counter : counters.values()) text.append(counter.describe()).append('\n');
+        return text.toString();
+    }
+
+    /**
+     * periodSeconds 秒ごとに全計測値を out に書き出し始める。periodSeconds が 0 以下なら何もしない。
+     * すでに書き出している場合は間隔を変えずにそのまま続ける。
+     */
+    public static synchronized void startDump(long periodSeconds, PrintStream out) {
+        if (periodSeconds <= 0 || dumper != null) return;
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> out.print("--- 計測値 " + LocalTime.now().format(DUMP_TIME) + " ---\n" + describe()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+}
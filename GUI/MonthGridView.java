@@ -0,0 +1,298 @@
+package GUI;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 1か月分の日付セル（7 列 × 6 行）を1つの部品で描画するカレンダーの本体。
+ * セルや予定ごとに部品を作らず、日付・予定のチップ・追加ボタンを自分で描き、クリックの位置から対象を判定する。
+ * セルに入りきらない予定は「+N 件」にまとめるので、1セルの描画費用は予定の数によらずセルの高さで決まる。
+ */
+public class MonthGridView extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    /** セルの操作を受け取る。index はセルの位置（0 が左上）。 */
+    public interface Listener {
+        /** 追加ボタンが押された。 */
+        void addRequested(int index);
+        /** 予定のチップ（または「+N 件」の一覧の項目）が押された。 */
+        void appointmentClicked(int index, Appointment appointment);
+    }
+
+    public static final int ROWS = 6;
+    public static final int COLS = 7;
+    private static final int GAP = 2;
+    private static final int PADDING = 3;
+    private static final int CHIP_GAP = 2;
+    // 「+N 件」の一覧で一度に見せる行数
+    private static final int MORE_POPUP_ROWS = 12;
+    private static final Color TODAY_COLOR = new Color(220, 240, 255);
+    private static final Color BORDER_COLOR = Color.LIGHT_GRAY;
+    private static final Color DEFAULT_CHIP_COLOR = new Color(238, 238, 238);
+    private static final Font DAY_FONT = new Font("SansSerif", Font.PLAIN, 12);
+    private static final Font CHIP_FONT = new Font("SansSerif", Font.PLAIN, 12);
+    private static final Font ADD_FONT = new Font("SansSerif", Font.BOLD, 12);
+
+    private final Listener listener;
+    private final int[] days = new int[ROWS * COLS];
+    private final boolean[] todays = new boolean[ROWS * COLS];
+    private final List<List<MonthRenderModel.Item>> items = new ArrayList<>(Collections.nCopies(ROWS * COLS, Collections.emptyList()));
+
+    public MonthGridView(Listener listener) {
+        this.listener = listener;
+        setOpaque(true);
+        setBackground(UIManager.getColor("Panel.background"));
+        setPreferredSize(new Dimension(COLS * 100, ROWS * 80));
+        setToolTipText("");
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (SwingUtilities.isLeftMouseButton(e)) handleClick(e.getX(), e.getY());
+            }
+        });
+    }
+
+    /** 月の表示内容をすべて入れ替える。 */
+    public void show(MonthRenderModel model) {
+        for (int i = 0; i < days.length; i++) {
+            MonthRenderModel.Cell cell = model.getCell(i);
+            days[i] = cell.getDay();
+            todays[i] = cell.isToday();
+            items.set(i, cell.getItems());
+        }
+        repaint();
+    }
+
+    /** 1セルの予定だけを入れ替え、そのセルだけを描き直す。 */
+    public void showItems(int index, List<MonthRenderModel.Item> cellItems) {
+        if (cellItems.equals(items.get(index))) return;
+        items.set(index, cellItems);
+        repaint(cellBounds(index));
+    }
+
+    /** セルに表示している予定（読み取り専用）。 */
+    public List<MonthRenderModel.Item> getItems(int index) {
+        return items.get(index);
+    }
+
+    // --- 配置の計算 ---
+
+    private int cellX(int col) {
+        return col * (getWidth() + GAP) / COLS;
+    }
+
+    private int cellY(int row) {
+        return row * (getHeight() + GAP) / ROWS;
+    }
+
+    Rectangle cellBounds(int index) {
+        int row = index / COLS, col = index % COLS;
+        int x = cellX(col), y = cellY(row);
+        return new Rectangle(x, y, cellX(col + 1) - GAP - x, cellY(row + 1) - GAP - y);
+    }
+
+    private int cellAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= getWidth() || y >= getHeight()) return -1;
+        int col = Math.min(COLS - 1, x * COLS / (getWidth() + GAP));
+        int row = Math.min(ROWS - 1, y * ROWS / (getHeight() + GAP));
+        int index = row * COLS + col;
+        return cellBounds(index).contains(x, y) ? index : -1;
+    }
+
+    private int chipHeight() {
+        return getFontMetrics(CHIP_FONT).getHeight() + 2;
+    }
+
+    private int chipTop(Rectangle cell) {
+        return cell.y + PADDING + getFontMetrics(DAY_FONT).getHeight();
+    }
+
+    private int addButtonSize() {
+        return getFontMetrics(ADD_FONT).getHeight();
+    }
+
+    private Rectangle addButtonBounds(Rectangle cell) {
+        int size = addButtonSize();
+        return new Rectangle(cell.x + cell.width - PADDING - size, cell.y + cell.height - PADDING - size, size, size);
+    }
+
+    // 予定のチップを何行描けるか（「+N 件」の行を含む）
+    private int chipRows(Rectangle cell) {
+        int available = cell.y + cell.height - PADDING - addButtonSize() - CHIP_GAP - chipTop(cell);
+        return Math.max(0, (available + CHIP_GAP) / (chipHeight() + CHIP_GAP));
+    }
+
+    // 予定の数 count のうち、チップとして描く数。残りは最後の行の「+N 件」にまとめる
+    private static int shownChips(int count, int rows) {
+        return count <= rows ? count : Math.max(0, rows - 1);
+    }
+
+    // --- 描画 ---
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setColor(getBackground());
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+            g2.fill(clip);
+            for (int i = 0; i < days.length; i++) {
+                Rectangle cell = cellBounds(i);
+                if (cell.intersects(clip)) paintCell(g2, i, cell);
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private void paintCell(Graphics2D g, int index, Rectangle cell) {
+        g.setColor(todays[index] ? TODAY_COLOR : Color.WHITE);
+        g.fillRect(cell.x, cell.y, cell.width, cell.height);
+        g.setColor(BORDER_COLOR);
+        g.drawRect(cell.x, cell.y, cell.width - 1, cell.height - 1);
+        if (days[index] == 0) return;
+
+        g.setFont(DAY_FONT);
+        g.setColor(Color.BLACK);
+        FontMetrics dayMetrics = g.getFontMetrics();
+        String day = String.valueOf(days[index]);
+        g.drawString(day, cell.x + cell.width - PADDING - dayMetrics.stringWidth(day), cell.y + PADDING + dayMetrics.getAscent());
+
+        List<MonthRenderModel.Item> cellItems = items.get(index);
+        int rows = chipRows(cell);
+        int shown = shownChips(cellItems.size(), rows);
+        g.setFont(CHIP_FONT);
+        FontMetrics chipMetrics = g.getFontMetrics();
+        int chipHeight = chipHeight();
+        int y = chipTop(cell);
+        int chipX = cell.x + PADDING;
+        int chipWidth = cell.width - 2 * PADDING;
+        for (int i = 0; i < shown; i++, y += chipHeight + CHIP_GAP) {
+            MonthRenderModel.Item item = cellItems.get(i);
+            Color background = item.getBackground() != null ? item.getBackground() : DEFAULT_CHIP_COLOR;
+            g.setColor(background);
+            g.fillRoundRect(chipX, y, chipWidth, chipHeight, 4, 4);
+            g.setColor(Color.BLACK);
+            drawClipped(g, item.getLabel(), chipX + 2, y, chipWidth - 4, chipHeight, chipMetrics);
+        }
+        if (shown < cellItems.size()) {
+            g.setColor(Color.DARK_GRAY);
+            drawClipped(g, moreLabel(cellItems.size() - shown), chipX + 2, y, chipWidth - 4, chipHeight, chipMetrics);
+        }
+
+        Rectangle add = addButtonBounds(cell);
+        g.setColor(DEFAULT_CHIP_COLOR);
+        g.fillRect(add.x, add.y, add.width, add.height);
+        g.setColor(Color.GRAY);
+        g.drawRect(add.x, add.y, add.width - 1, add.height - 1);
+        g.setFont(ADD_FONT);
+        FontMetrics addMetrics = g.getFontMetrics();
+        g.setColor(Color.BLACK);
+        g.drawString("+", add.x + (add.width - addMetrics.stringWidth("+")) / 2,
+                add.y + (add.height - addMetrics.getHeight()) / 2 + addMetrics.getAscent());
+    }
+
+    // 幅に入らない部分は切り取って描く
+    private static void drawClipped(Graphics2D g, String text, int x, int y, int width, int height, FontMetrics metrics) {
+        if (width <= 0) return;
+        Shape clip = g.getClip();
+        g.clipRect(x, y, width, height);
+        g.drawString(text, x, y + (height - metrics.getHeight()) / 2 + metrics.getAscent());
+        g.setClip(clip);
+    }
+
+    private static String moreLabel(int count) {
+        return "+" + count + " 件";
+    }
+
+    // --- クリックの判定 ---
+
+    private void handleClick(int x, int y) {
+        int index = cellAt(x, y);
+        if (index < 0 || days[index] == 0) return;
+        Rectangle cell = cellBounds(index);
+        if (addButtonBounds(cell).contains(x, y)) {
+            listener.addRequested(index);
+            return;
+        }
+        List<MonthRenderModel.Item> cellItems = items.get(index);
+        int row = chipRowAt(cell, x, y);
+        if (row < 0) return;
+        int shown = shownChips(cellItems.size(), chipRows(cell));
+        if (row < shown) {
+            listener.appointmentClicked(index, cellItems.get(row).getAppointment());
+        } else if (row == shown && shown < cellItems.size()) {
+            showMorePopup(index, cellItems, x, y);
+        }
+    }
+
+    // (x, y) にあるチップの行。チップの外なら -1
+    private int chipRowAt(Rectangle cell, int x, int y) {
+        int top = chipTop(cell);
+        if (y < top || x < cell.x + PADDING || x >= cell.x + cell.width - PADDING) return -1;
+        int pitch = chipHeight() + CHIP_GAP;
+        int row = (y - top) / pitch;
+        if ((y - top) % pitch >= chipHeight() || row >= chipRows(cell)) return -1;
+        return row;
+    }
+
+    // 「+N 件」が押されたら、その日の予定をすべてスクロールできる一覧にして選ばせる。
+    // 一覧は見えている行しか描かないので、予定が多い日でも項目ごとの部品は作らない
+    private void showMorePopup(int index, List<MonthRenderModel.Item> cellItems, int x, int y) {
+        JPopupMenu popup = new JPopupMenu();
+        JList<MonthRenderModel.Item> list = new JList<>(new AbstractListModel<MonthRenderModel.Item>() {
+            @Override
+            public int getSize() {
+                return cellItems.size();
+            }
+            @Override
+            public MonthRenderModel.Item getElementAt(int i) {
+                return cellItems.get(i);
+            }
+        });
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int i, boolean selected, boolean focused) {
+                return super.getListCellRendererComponent(l, ((MonthRenderModel.Item) value).getLabel(), i, selected, focused);
+            }
+        });
+        list.setFont(CHIP_FONT);
+        list.setVisibleRowCount(Math.min(cellItems.size(), MORE_POPUP_ROWS));
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = list.locationToIndex(e.getPoint());
+                if (row < 0 || !list.getCellBounds(row, row).contains(e.getPoint())) return;
+                popup.setVisible(false);
+                listener.appointmentClicked(index, cellItems.get(row).getAppointment());
+            }
+        });
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setBorder(BorderFactory.createEmptyBorder());
+        popup.add(scroll);
+        popup.show(this, x, y);
+        list.requestFocusInWindow();
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int index = cellAt(e.getX(), e.getY());
+        if (index < 0 || days[index] == 0) return null;
+        Rectangle cell = cellBounds(index);
+        int row = chipRowAt(cell, e.getX(), e.getY());
+        List<MonthRenderModel.Item> cellItems = items.get(index);
+        int shown = shownChips(cellItems.size(), chipRows(cell));
+        if (row >= 0 && row < shown) return cellItems.get(row).getLabel();
+        if (row == shown && shown < cellItems.size()) return moreLabel(cellItems.size() - shown);
+        return null;
+    }
+}
@@ -0,0 +1,143 @@
+package GUI;
+
+import java.awt.Color;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 1か月分のカレンダーの表示内容（42 マスの日付、今日の印、表示する予定の見出しと色）。
+ * Swing の部品を持たない不変のデータなので、EDT 以外のスレッドで作ってから EDT で画面に当てはめられる。
+ */
+public final class MonthRenderModel {
+
+    public static final int CELL_COUNT = MonthGridView.ROWS * MonthGridView.COLS;
+    private static final Color GROUP_COLOR = new Color(144, 238, 144);
+    private static final String RECURRING_MARK = "↻ ";
+
+    /** 日付セルに表示する予定1件。 */
+    public static final class Item {
+        private final Appointment appointment;
+        private final String label;
+        private final Color background;
+
+        Item(Appointment appointment, String label, Color background) {
+            this.appointment = appointment;
+            this.label = label;
+            this.background = background;
+        }
+
+        public Appointment getAppointment() { return appointment; }
+        /** チップに表示する文字列。 */
+        public String getLabel() { return label; }
+        public Color getBackground() { return background; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Item)) return false;
+            Item item = (Item) o;
+            return appointment == item.appointment && label.equals(item.label) && Objects.equals(background, item.background);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(appointment) * 31 + label.hashCode();
+        }
+    }
+
+    /** 日付セル1つ分。月の外のセルは day が 0。 */
+    public static final class Cell {
+        static final Cell BLANK = new Cell(0, false, Collections.emptyList());
+
+        private final int day;
+        private final boolean today;
+        private final List<Item> items;
+
+        Cell(int day, boolean today, List<Item> items) {
+            this.day = day;
+            this.today = today;
+            this.items = items;
+        }
+
+        public int getDay() { return day; }
+        public boolean isToday() { return today; }
+        public List<Item> getItems() { return items; }
+    }
+
+    private final YearMonth yearMonth;
+    private final Group contextGroup;
+    private final LocalDate today;
+    private final int firstCellOffset;
+    private final Cell[] cells;
+
+    private MonthRenderModel(YearMonth yearMonth, Group contextGroup, LocalDate today, int firstCellOffset, Cell[] cells) {
+        this.yearMonth = yearMonth;
+        this.contextGroup = contextGroup;
+        this.today = today;
+        this.firstCellOffset = firstCellOffset;
+        this.cells = cells;
+    }
+
+    /**
+     * 表示内容を作る。引数の予定の一覧は作っている間に変更されないものを渡すこと。
+     * @param contextGroup  表示中のグループ。マイページの場合は null
+     * @param appointments  その月の1回限りの予定（日付ごと）
+     * @param occurrences   その月の繰り返し予定の各回（日付ごと）
+     * @param visibleOwners その画面で予定を表示する所有者
+     */
+    public static MonthRenderModel build(YearMonth yearMonth, Group contextGroup, LocalDate today,
+                                         Map<LocalDate, ? extends Collection<Appointment>> appointments,
+                                         Map<LocalDate, List<Appointment>> occurrences, Set<Object> visibleOwners) {
+        int firstCellOffset = yearMonth.atDay(1).getDayOfWeek().getValue() % 7;
+        Cell[] cells = new Cell[CELL_COUNT];
+        for (int i = 0; i < CELL_COUNT; i++) {
+            int day = i - firstCellOffset + 1;
+            if (day < 1 || day > yearMonth.lengthOfMonth()) {
+                cells[i] = Cell.BLANK;
+                continue;
+            }
+            LocalDate date = yearMonth.atDay(day);
+            cells[i] = new Cell(day, date.equals(today), items(appointments.get(date), occurrences.get(date), visibleOwners));
+        }
+        return new MonthRenderModel(yearMonth, contextGroup, today, firstCellOffset, cells);
+    }
+
+    /** 1日分の予定から、表示する予定の一覧を作る。1回限りの予定、繰り返し予定の順に並べる。 */
+    public static List<Item> items(Collection<Appointment> appointments, Collection<Appointment> occurrences,
+                                   Set<Object> visibleOwners) {
+        List<Item> items = new ArrayList<>();
+        if (appointments != null) {
+            for (Appointment appointment : appointments) {
+                if (visibleOwners.contains(appointment.getOwner())) items.add(item(appointment, ""));
+            }
+        }
+        if (occurrences != null) {
+            for (Appointment appointment : occurrences) {
+                if (visibleOwners.contains(appointment.getOwner())) items.add(item(appointment, RECURRING_MARK));
+            }
+        }
+        return items.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(items);
+    }
+
+    private static Item item(Appointment appointment, String prefix) {
+        Object owner = appointment.getOwner();
+        Color background = owner instanceof User ? ((User) owner).getColor() : owner instanceof Group ? GROUP_COLOR : null;
+        String time = appointment.hasTime() ? appointment.getStart() + " " : "";
+        return new Item(appointment, prefix + time + appointment.getTitle(), background);
+    }
+
+    public YearMonth getYearMonth() { return yearMonth; }
+    public Group getContextGroup() { return contextGroup; }
+    /** 作ったときの今日の日付。日付が変わったら作り直す。 */
+    public LocalDate getToday() { return today; }
+    /** 1日のセルの位置（0 が日曜日）。 */
+    public int getFirstCellOffset() { return firstCellOffset; }
+    public Cell getCell(int index) { return cells[index]; }
+}
@@ -0,0 +1,302 @@
+package GUI;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * オフラインでも使えるように、予定とチャットの同期を仲立ちする。
+ * ローカルの変更は版ベクトルを進めて SyncState に記録し、接続中ならすぐ送り、そうでなければ未送信として残す。
+ * 接続はバックグラウンドで行い、切れたら間隔を延ばしながら接続し直す。接続できたら購読範囲を送り直し、
+ * 未送信の予定とチャットをまとめて送る。
+ *
+ * <p>サーバーから届いた予定は、ローカルの版ベクトルと比べて次のように扱う。</p>
+ * <ul>
+ *   <li>同じ版: 何もしない</li>
+ *   <li>届いた版の方が新しい: そのまま反映する</li>
+ *   <li>ローカルの版の方が新しい: サーバーが古い状態を持っているので、ローカルの状態を送り直す</li>
+ *   <li>競合（互いに相手の知らない変更を含む）: 書き手の新しい方（VersionVector.writerOrder）の内容を採り、
+ *       版は両方をマージしたものにして送り直す。どのクライアントでも同じ側が勝つので、全員が同じ状態に収束する</li>
+ * </ul>
+ * 版ベクトルの付いていない予定（古いクライアントから）は、以前と同じく届いた順に反映する。
+ *
+ * <p>receive と connectionLost 以外のメソッドは、モデルを更新するスレッド（modelThread で指定したもの。通常は EDT）から呼ぶこと。</p>
+ */
+public class OfflineSync implements Closeable {
+
+    private static final long MIN_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+    // 接続が切れたとき、送ったはずでも届いていないかもしれないとみなして送り直す直近の変更の数
+    private static final int RESEND_WINDOW = 1024;
+    private static final Metrics.Counter CONFLICTS = Metrics.counter("sync.conflicts");
+    private static final Metrics.Counter CONNECTS = Metrics.counter("sync.connects");
+
+    /** 同期サーバーに接続し、受信を始めたクライアントを返す。 */
+    public interface Connector {
+        SyncClient connect() throws IOException;
+    }
+
+    private final CalendarModel model;
+    private final SyncState state;
+    private final Executor modelThread;
+    private Connector connector;
+    private String serverName;
+    private SyncClient client;
+    private LocalDate windowFrom, windowTo;
+    // 今の接続で送信済みにした直近の変更（古い順、最大 RESEND_WINDOW 件）
+    private final ArrayDeque<SyncState.Entry> recentlySent = new ArrayDeque<>();
+    private boolean connecting;
+    private volatile boolean closed;
+    private volatile Thread connectThread;
+
+    /** @param modelThread model を更新するスレッドで処理を実行する Executor（例: SwingUtilities::invokeLater） */
+    public OfflineSync(CalendarModel model, SyncState state, Executor modelThread) {
+        this.model = model;
+        this.state = state;
+        this.modelThread = modelThread;
+    }
+
+    /**
+     * バックグラウンドで接続を始める。接続できなくても、つながるまで接続し直し続ける。
+     * @param serverName ログに出す接続先の名前
+     */
+    public void start(Connector connector, String serverName) {
+        this.connector = connector;
+        this.serverName = serverName;
+        connectInBackground();
+    }
+
+    /** 同期サーバーに接続していれば true。 */
+    public boolean isOnline() {
+        return client != null;
+    }
+
+    /** 接続の状態と未送信の件数を1行にまとめた文字列。 */
+    public String describe() {
+        return String.format("同期: %s 未送信の予定=%d 未送信のチャット=%d 版を記録した予定=%d",
+                isOnline() ? "接続中" : "オフライン", state.pending().size(), state.queuedChats().size(), state.size());
+    }
+
+    // --- ローカルの変更 ---
+
+    /** date の予定を追加・更新した。model を更新したあとに呼ぶ。 */
+    public void localUpsert(LocalDate date, Appointment appointment) {
+        localChange(date, appointment, false);
+    }
+
+    /** date の予定を削除した。model を更新したあとに呼ぶ。 */
+    public void localRemove(LocalDate date, Appointment appointment) {
+        localChange(date, appointment, true);
+    }
+
+    private void localChange(LocalDate date, Appointment appointment, boolean deleted) {
+        SyncState.Entry entry = current(date, appointment.getOwner(), appointment.getTitle());
+        entry = entry.with(entry.getVersion().increment(state.getReplicaId()), deleted, true);
+        state.put(entry);
+        if (client != null) send(List.of(entry));
+    }
+
+    /** チャットを送る。接続していなければ、つながったときに送る。 */
+    public void publishChat(String groupId, ChatMessage message) {
+        if (client != null) client.publishChat(groupId, message);
+        else state.queueChat(groupId, message);
+    }
+
+    /** 予定の差分を受け取る範囲を from から to に変える。接続し直したときにも同じ範囲を購読する。 */
+    public void subscribe(LocalDate from, LocalDate to) {
+        windowFrom = from;
+        windowTo = to;
+        if (client != null) client.subscribe(from, to);
+    }
+
+    // --- サーバーから届いた変更（受信スレッドから呼ばれる） ---
+
+    /** サーバーから予定の追加・更新（deleted なら削除）が届いた。 */
+    public void receive(LocalDate date, Appointment appointment, VersionVector version, boolean deleted) {
+        if (appointment.getOwner() == null) return;
+        modelThread.execute(() -> reconcile(date, appointment, version, deleted));
+    }
+
+    /** サーバーとの接続が切れた。 */
+    public void connectionLost() {
+        modelThread.execute(() -> {
+            if (client == null || closed) return;
+            client = null;
+            // ソケットに書いただけでサーバーが読む前に切れた変更があるかもしれないので、未送信に戻す。
+            // 同じ版を2回送っても受け取った側は何もしない
+            for (SyncState.Entry entry : recentlySent) {
+                SyncState.Entry current = state.current(entry);
+                if (current != null && !current.isPending() && current.getVersion().equals(entry.getVersion())) {
+                    state.put(current.with(current.getVersion(), current.isDeleted(), true));
+                }
+            }
+            recentlySent.clear();
+            System.err.println("（同期サーバー " + serverName + " との接続が切れました。オフラインの変更は接続し直したときに送ります）");
+            connectInBackground();
+        });
+    }
+
+    private void reconcile(LocalDate date, Appointment remote, VersionVector version, boolean deleted) {
+        Object owner = remote.getOwner();
+        if (version.size() == 0) {
+            // 版ベクトルを送らない古いクライアントからの変更
+            apply(date, remote, deleted);
+            return;
+        }
+        SyncState.Entry local = current(date, owner, remote.getTitle());
+        int comparison = local.getVersion().compare(version);
+        if (comparison == VersionVector.EQUAL) return;
+        if (comparison == VersionVector.BEFORE) {
+            apply(date, remote, deleted);
+            state.put(local.with(version, deleted, false));
+            return;
+        }
+        SyncState.Entry resolved;
+        if (comparison == VersionVector.AFTER) {
+            resolved = local.with(local.getVersion(), local.isDeleted(), true);
+        } else {
+            CONFLICTS.increment();
+            VersionVector merged = local.getVersion().merge(version);
+            if (version.writerOrder(local.getVersion()) > 0) {
+                apply(date, remote, deleted);
+                resolved = local.with(merged, deleted, true);
+            } else {
+                resolved = local.with(merged, local.isDeleted(), true);
+            }
+        }
+        state.put(resolved);
+        if (client != null) send(List.of(resolved));
+    }
+
+    private void apply(LocalDate date, Appointment appointment, boolean deleted) {
+        if (deleted) model.remove(date, appointment.getOwner(), appointment.getTitle());
+        else model.upsert(date, appointment);
+    }
+
+    // 予定の今の状態。記録がなければ、今ある予定を版のない状態として扱う
+    private SyncState.Entry current(LocalDate date, Object owner, String title) {
+        SyncState.Entry entry = state.get(date, owner, title);
+        if (entry != null) return entry;
+        entry = SyncState.newEntry(date, owner, title);
+        return model.getAppointments().find(date, owner, title) != null ? entry : entry.with(VersionVector.EMPTY, true, false);
+    }
+
+    // --- 送信 ---
+
+    // entries の今の内容を、所有者を共有するグループに送る。送り終えたら未送信の印を外す
+    private void send(List<SyncState.Entry> entries) {
+        SyncClient target = client;
+        List<SyncState.Entry> sent = new ArrayList<>();
+        for (SyncState.Entry entry : entries) {
+            Object owner = model.resolveOwner(entry.getOwnerKind(), entry.getOwnerId());
+            if (owner == null) continue;
+            Appointment appointment = model.getAppointments().find(entry.getDate(), owner, entry.getTitle());
+            boolean deleted = entry.isDeleted() || appointment == null;
+            if (deleted) appointment = new Appointment(entry.getTitle(), "", owner);
+            for (Group group : model.groupsSharing(owner)) {
+                if (deleted) target.publishAppointmentRemove(group.getId(), entry.getDate(), appointment, entry.getVersion());
+                else target.publishAppointmentUpsert(group.getId(), entry.getDate(), appointment, entry.getVersion());
+            }
+            sent.add(entry);
+        }
+        if (sent.isEmpty()) return;
+        target.whenSent(() -> modelThread.execute(() -> {
+            for (SyncState.Entry entry : sent) {
+                // 送ったあとに変わっていなければ送信済みにする
+                if (state.current(entry) != entry || client != target) continue;
+                SyncState.Entry done = entry.with(entry.getVersion(), entry.isDeleted(), false);
+                state.put(done);
+                recentlySent.addLast(done);
+                if (recentlySent.size() > RESEND_WINDOW) recentlySent.removeFirst();
+            }
+        }));
+    }
+
+    private void flushQueuedChats() {
+        List<SyncState.QueuedChat> chats = state.queuedChats();
+        if (chats.isEmpty()) return;
+        SyncClient target = client;
+        for (SyncState.QueuedChat chat : chats) {
+            User sender = model.resolveUser(chat.getGroupId(), chat.getSenderId());
+            target.publishChat(chat.getGroupId(), new ChatMessage(sender, chat.getText(), chat.getTimestamp()));
+        }
+        target.whenSent(() -> modelThread.execute(() -> {
+            for (SyncState.QueuedChat chat : chats) state.chatSent(chat);
+        }));
+    }
+
+    // --- 接続 ---
+
+    private void connectInBackground() {
+        if (connecting || closed || connector == null) return;
+        connecting = true;
+        Thread thread = new Thread(this::connectLoop, "sync-connect");
+        thread.setDaemon(true);
+        connectThread = thread;
+        thread.start();
+    }
+
+    // 接続できるまで、失敗するたびに待ち時間を倍にしながら（最大 MAX_RETRY_MILLIS）繰り返す
+    private void connectLoop() {
+        long delay = MIN_RETRY_MILLIS;
+        boolean reported = false;
+        while (!closed) {
+            try {
+                SyncClient connected = connector.connect();
+                modelThread.execute(() -> connected(connected));
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (!reported) {
+                    System.err.println("エラー: 同期サーバー " + serverName + " に接続できませんでした。接続できるまで再試行します。" + e.getMessage());
+                    reported = true;
+                }
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_MILLIS);
+        }
+    }
+
+    private void connected(SyncClient connected) {
+        connecting = false;
+        if (closed) {
+            closeQuietly(connected);
+            return;
+        }
+        if (!connected.isOpen()) {
+            // 接続直後に切れた
+            connectInBackground();
+            return;
+        }
+        client = connected;
+        CONNECTS.increment();
+        System.out.println("（同期サーバー " + serverName + " に接続しました）");
+        if (windowFrom != null) connected.subscribe(windowFrom, windowTo);
+        send(state.pending());
+        flushQueuedChats();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Thread thread = connectThread;
+        if (thread != null) thread.interrupt();
+        if (client != null) closeQuietly(client);
+        client = null;
+    }
+
+    private static void closeQuietly(SyncClient client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            // 閉じられなくても以後は使わない
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package GUI;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 繰り返し予定の規則（毎日・毎週・毎月）。開始日から interval 単位ごとに繰り返し、
+ * 終了日（until）または回数（count）で終わる。どちらもなければ無期限に続く。
+ * 除外日（exceptions）に当たる回は表示しないが、回数には数える（iCalendar の EXDATE と同じ）。
+ *
+ * <p>不変のクラスで、変更は新しい規則を返す。指定した期間の日付は開始日から順に数えずに計算で求めるので、
+ * 1か月分を展開する費用は規則の開始日からの長さによらない。
+ * 毎月の規則で開始日の日が存在しない月（31日に対する4月など）は飛ばし、回数にも数えない。</p>
+ */
+public final class RecurrenceRule {
+
+    public static final int DAILY = 1;
+    public static final int WEEKLY = 2;
+    public static final int MONTHLY = 3;
+
+    private final int frequency;
+    private final int interval;
+    private final LocalDate start;
+    private final LocalDate until;
+    private final int count;
+    private final Set<LocalDate> exceptions;
+    // 最後の回の日付。無期限なら null
+    private final LocalDate last;
+
+    /**
+     * @param frequency DAILY, WEEKLY, MONTHLY のいずれか
+     * @param interval  何日・何週・何か月ごとか（1以上）
+     * @param start     最初の回の日付
+     */
+    public RecurrenceRule(int frequency, int interval, LocalDate start) {
+        this(frequency, interval, start, null, 0, Collections.emptySet());
+    }
+
+    private RecurrenceRule(int frequency, int interval, LocalDate start, LocalDate until, int count, Set<LocalDate> exceptions) {
+        if (frequency < DAILY || frequency > MONTHLY) throw new IllegalArgumentException("不明な繰り返しの種類: " + frequency);
+        if (interval < 1) throw new IllegalArgumentException("繰り返しの間隔は1以上にしてください: " + interval);
+        if (count < 0) throw new IllegalArgumentException("回数は0以上にしてください: " + count);
+        this.frequency = frequency;
+        this.interval = interval;
+        this.start = start;
+        this.until = until;
+        this.count = count;
+        this.exceptions = exceptions;
+        this.last = computeLast();
+    }
+
+    /** until（その日を含む）で終わる規則を返す。null なら終了日なし。 */
+    public RecurrenceRule withUntil(LocalDate until) {
+        return new RecurrenceRule(frequency, interval, start, until, count, exceptions);
+    }
+
+    /** count 回で終わる規則を返す。0 なら回数の制限なし。 */
+    public RecurrenceRule withCount(int count) {
+        return new RecurrenceRule(frequency, interval, start, until, count, exceptions);
+    }
+
+    /** date の回を除外した規則を返す。 */
+    public RecurrenceRule withException(LocalDate date) {
+        Set<LocalDate> copy = new HashSet<>(exceptions);
+        copy.add(date);
+        return new RecurrenceRule(frequency, interval, start, until, count, Collections.unmodifiableSet(copy));
+    }
+
+    public int getFrequency() { return frequency; }
+    public int getInterval() { return interval; }
+    public LocalDate getStart() { return start; }
+    /** 終了日。なければ null。 */
+    public LocalDate getUntil() { return until; }
+    /** 回数。制限がなければ 0。 */
+    public int getCount() { return count; }
+    public Set<LocalDate> getExceptions() { return exceptions; }
+    /** 最後の回の日付（除外日を含む）。終了日の方が先なら終了日。無期限なら null。 */
+    public LocalDate getLast() { return last; }
+
+    /** from から to まで（両端を含む）の期間に回がありうるかどうか。 */
+    public boolean overlaps(LocalDate from, LocalDate to) {
+        return !to.isBefore(start) && (last == null || !from.isAfter(last));
+    }
+
+    /** from から to まで（両端を含む）の回の日付を、除外日を除いて日付順に返す。 */
+    public List<LocalDate> occurrences(LocalDate from, LocalDate to) {
+        List<LocalDate> dates = new ArrayList<>();
+        LocalDate low = from.isBefore(start) ? start : from;
+        LocalDate high = last != null && last.isBefore(to) ? last : to;
+        if (low.isAfter(high)) return dates;
+        if (frequency == MONTHLY) {
+            int day = start.getDayOfMonth();
+            YearMonth first = YearMonth.from(start);
+            long months = first.until(YearMonth.from(low), ChronoUnit.MONTHS);
+            YearMonth end = YearMonth.from(high);
+            for (YearMonth month = first.plusMonths(ceilDiv(months, interval) * interval); !month.isAfter(end); month = month.plusMonths(interval)) {
+                if (day > month.lengthOfMonth()) continue;
+                LocalDate date = month.atDay(day);
+                if (!date.isBefore(low) && !date.isAfter(high) && !exceptions.contains(date)) dates.add(date);
+            }
+            return dates;
+        }
+        long step = frequency == WEEKLY ? 7L * interval : interval;
+        long offset = ceilDiv(start.until(low, ChronoUnit.DAYS), step) * step;
+        for (LocalDate date = start.plusDays(offset); !date.isAfter(high); date = date.plusDays(step)) {
+            if (!exceptions.contains(date)) dates.add(date);
+        }
+        return dates;
+    }
+
+    private LocalDate computeLast() {
+        LocalDate byCount = null;
+        if (count > 0) {
+            if (frequency == MONTHLY) {
+                int day = start.getDayOfMonth();
+                YearMonth month = YearMonth.from(start);
+                for (int found = 0; ; month = month.plusMonths(interval)) {
+                    if (day <= month.lengthOfMonth() && ++found == count) break;
+                }
+                byCount = month.atDay(day);
+            } else {
+                long step = frequency == WEEKLY ? 7L * interval : interval;
+                byCount = start.plusDays(step * (count - 1));
+            }
+        }
+        if (until == null) return byCount;
+        if (byCount == null) return until;
+        return byCount.isBefore(until) ? byCount : until;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+}
@@ -0,0 +1,158 @@
+package GUI;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 月ごとの表示内容（MonthRenderModel）を、月と表示中のグループの組ごとに保持する LRU キャッシュ。
+ * 前後の月の表示内容はバックグラウンドのスレッドで先に作っておき、月を移動したときは作り直さずに使う。
+ *
+ * <p>予定が変わった月の表示内容は invalidate で捨てる。作っている途中で捨てられた月の結果は保存しない。
+ * どのスレッドから呼んでもよい。</p>
+ */
+public class RenderModelCache {
+
+    private static final class Key {
+        final YearMonth yearMonth;
+        final Group group;
+
+        Key(YearMonth yearMonth, Group group) {
+            this.yearMonth = yearMonth;
+            this.group = group;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return yearMonth.equals(key.yearMonth) && group == key.group;
+        }
+
+        @Override
+        public int hashCode() {
+            return yearMonth.hashCode() * 31 + System.identityHashCode(group);
+        }
+    }
+
+    private final Map<Key, MonthRenderModel> entries;
+    private final Set<Key> pending = new HashSet<>();
+    private final ExecutorService prefetcher;
+    // invalidate のたびに増やす。先読みの開始時から変わっていれば結果を捨てる
+    private long version;
+
+    // --- 計測値 ---
+    private long hits;
+    private long misses;
+    private long prefetched;
+    private long evictions;
+
+    /** @param capacity 保持する表示内容の数 */
+    public RenderModelCache(int capacity) {
+        this.entries = new LinkedHashMap<Key, MonthRenderModel>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, MonthRenderModel> eldest) {
+                if (size() <= capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+        this.prefetcher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "calendar-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * 保持している表示内容を返す。作ったときと今日の日付が違うものは使わない。
+     * @return なければ null
+     */
+    public synchronized MonthRenderModel get(YearMonth yearMonth, Group group, LocalDate today) {
+        MonthRenderModel model = entries.get(new Key(yearMonth, group));
+        if (model == null || !model.getToday().equals(today)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return model;
+    }
+
+    public synchronized void put(MonthRenderModel model) {
+        entries.put(new Key(model.getYearMonth(), model.getContextGroup()), model);
+    }
+
+    /** 保持しているか、先読み中ならば true。 */
+    public synchronized boolean contains(YearMonth yearMonth, Group group) {
+        Key key = new Key(yearMonth, group);
+        return entries.containsKey(key) || pending.contains(key);
+    }
+
+    /**
+     * build をバックグラウンドのスレッドで実行し、結果を保存する。
+     * build が読むデータは呼び出し側で写し取っておくこと。保持しているか先読み中なら何もしない。
+     */
+    public void prefetch(YearMonth yearMonth, Group group, Callable<MonthRenderModel> build) {
+        Key key = new Key(yearMonth, group);
+        long startVersion;
+        synchronized (this) {
+            if (entries.containsKey(key) || !pending.add(key)) return;
+            startVersion = version;
+        }
+        prefetcher.execute(() -> {
+            MonthRenderModel model = null;
+            try {
+                model = build.call();
+            } catch (Exception e) {
+                System.err.println("エラー: " + yearMonth + " の表示内容を先に作れませんでした。" + e);
+            }
+            synchronized (this) {
+                pending.remove(key);
+                if (model != null && version == startVersion) {
+                    entries.put(key, model);
+                    prefetched++;
+                }
+            }
+        });
+    }
+
+    /** 指定月の表示内容を（すべてのグループについて）捨てる。 */
+    public synchronized void invalidate(YearMonth yearMonth) {
+        version++;
+        entries.keySet().removeIf(key -> key.yearMonth.equals(yearMonth));
+    }
+
+    /**
+     * from から to まで（両端を含む）の月の表示内容を捨てる。
+     * @param to null なら from 以降すべて
+     */
+    public synchronized void invalidate(YearMonth from, YearMonth to) {
+        version++;
+        for (Iterator<Key> it = entries.keySet().iterator(); it.hasNext(); ) {
+            YearMonth month = it.next().yearMonth;
+            if (!month.isBefore(from) && (to == null || !month.isAfter(to))) it.remove();
+        }
+    }
+
+    /** すべての表示内容を捨てる（メンバーが変わって表示する所有者が変わったときなど）。 */
+    public synchronized void invalidateAll() {
+        version++;
+        entries.clear();
+    }
+
+    /** 計測値を1行にまとめた文字列。 */
+    public synchronized String describeMetrics() {
+        long lookups = hits + misses;
+        return String.format("表示内容キャッシュ: %d 件保持, ヒット %d / %d (%.0f%%), 先読み %d 件, 追い出し %d 件",
+                entries.size(), hits, lookups, lookups == 0 ? 0.0 : 100.0 * hits / lookups, prefetched, evictions);
+    }
+}
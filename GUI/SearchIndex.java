@@ -0,0 +1,523 @@
+package GUI;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * チャット履歴と予定（タイトル・詳細）の全文検索に使う転置索引。
+ * 文字の 2-gram（連続する2文字）ごとに、それを含む文書の番号を差分の可変長整数で並べて持つので、
+ * 単語の区切りがない日本語でも部分一致で引ける。1文字の検索語はその文字で始まる 2-gram の和で引く。
+ *
+ * <p>検索語の 2-gram をすべて含む文書を候補とし、新しい日付のものから本文を確かめて返す。
+ * チャットの本文は索引に持たず、確かめるときにグループの履歴かチャットログから読む。
+ * 予定を置き換え・削除したときは古い文書に削除の印を付け、印が溜まったら索引を詰め直す。</p>
+ *
+ * <p>変更と検索は EDT から行う。起動時にチャットログ全体を索引に入れる処理だけはバックグラウンドのスレッドで行い、
+ * その間も検索できる（まだ入っていないメッセージは見つからない）。</p>
+ */
+public class SearchIndex {
+
+    public static final int CHAT = 1;
+    public static final int APPOINTMENT = 2;
+
+    // 空白や文末の直前の文字は、この値と組にした 2-gram として入れる（1文字だけの語も引けるように）
+    private static final int END = 0x1FFFFF;
+    private static final int BACKFILL_PAGE = 4096;
+    private static final int MIN_COMPACT = 1024;
+
+    /** 検索結果1件。 */
+    public static final class Hit {
+        private final int kind;
+        private final Group group;
+        private final int sequence;
+        private final ChatMessage message;
+        private final Appointment appointment;
+        private final LocalDate date;
+
+        Hit(int kind, Group group, int sequence, ChatMessage message, Appointment appointment, LocalDate date) {
+            this.kind = kind;
+            this.group = group;
+            this.sequence = sequence;
+            this.message = message;
+            this.appointment = appointment;
+            this.date = date;
+        }
+
+        /** CHAT か APPOINTMENT。 */
+        public int getKind() { return kind; }
+        /** チャットならそのグループ。予定なら null。 */
+        public Group getGroup() { return group; }
+        /** チャットならグループのチャットログ上の通し番号。 */
+        public int getSequence() { return sequence; }
+        public ChatMessage getMessage() { return message; }
+        public Appointment getAppointment() { return appointment; }
+        /** チャットなら送信日、予定なら予定の日付（繰り返し予定は最初の回の日付）。 */
+        public LocalDate getDate() { return date; }
+    }
+
+    // 予定の文書を（日付, 所有者, タイトル）で引く。繰り返し予定の日付は LocalDate.MIN
+    private static final class DocKey {
+        final LocalDate date;
+        final Object owner;
+        final String title;
+
+        DocKey(LocalDate date, Object owner, String title) {
+            this.date = date;
+            this.owner = owner;
+            this.title = title;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DocKey)) return false;
+            DocKey key = (DocKey) o;
+            return date.equals(key.date) && Objects.equals(owner, key.owner) && title.equals(key.title);
+        }
+
+        @Override
+        public int hashCode() {
+            return (date.hashCode() * 31 + Objects.hashCode(owner)) * 31 + title.hashCode();
+        }
+    }
+
+    // 1つの 2-gram を含む文書の番号の列。番号は増える順に追加され、直前との差を可変長で持つ
+    private static final class Postings {
+        byte[] bytes = new byte[4];
+        int length;
+        int count;
+        int last = -1;
+
+        void add(int doc) {
+            if (doc == last) return;
+            if (length + 5 > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            int delta = doc - last;
+            while (delta >= 0x80) {
+                bytes[length++] = (byte) (delta | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            last = doc;
+            count++;
+        }
+
+        // 文書の番号を docs に立てる
+        void addTo(BitSet docs) {
+            int doc = -1;
+            for (int i = 0, position = 0; i < count; i++) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                doc += delta;
+                docs.set(doc);
+            }
+        }
+
+        int[] decode() {
+            int[] docs = new int[count];
+            int doc = -1;
+            for (int i = 0, position = 0; i < count; i++) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                doc += delta;
+                docs[i] = doc;
+            }
+            return docs;
+        }
+    }
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    // 先頭の文字ごとの、その文字で始まる 2-gram の列（1文字の語を引くときに索引全体を走査しないため）
+    private final Map<Integer, List<Postings>> postingsByFirst = new HashMap<>();
+    // --- 文書ごとの情報（番号で引く） ---
+    // CHAT ならグループ、APPOINTMENT なら予定
+    private Object[] refs = new Object[1024];
+    // CHAT ならチャットログ上の通し番号、APPOINTMENT なら -1
+    private int[] sequences = new int[1024];
+    private int[] days = new int[1024];
+    private int docCount;
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+    private final Map<DocKey, Integer> appointmentDocs = new HashMap<>();
+    private final Map<Integer, RecurrenceRule> seriesRules = new HashMap<>();
+
+    private final ExecutorService backfiller = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "search-index");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private int backfillPending;
+
+    // --- 文書の追加・削除 ---
+
+    /** group のチャットログ上の通し番号 firstSequence から始まる messages を索引に入れる。 */
+    public synchronized void addMessages(Group group, int firstSequence, List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            addDoc(group, firstSequence + i, (int) message.getTimestamp().toLocalDate().toEpochDay(), message.getText());
+        }
+    }
+
+    /**
+     * チャットログの通し番号 0 から count の直前までのメッセージを、バックグラウンドのスレッドで索引に入れる。
+     * それ以降のメッセージは addMessages で入れること。
+     */
+    public void indexHistory(Group group, ChatLog log, int count) {
+        synchronized (this) {
+            backfillPending += count;
+        }
+        backfiller.execute(() -> {
+            ZoneId zone = ZoneId.systemDefault();
+            for (int from = 0; from < count; from += BACKFILL_PAGE) {
+                int to = Math.min(count, from + BACKFILL_PAGE);
+                try {
+                    synchronized (this) {
+                        log.forEachText(from, to, (sequence, epochMillis, text) ->
+                                addDoc(group, sequence, (int) LocalDate.ofInstant(Instant.ofEpochMilli(epochMillis), zone).toEpochDay(), text));
+                        backfillPending -= to - from;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("エラー: " + group.getName() + " のチャット履歴を検索索引に入れられませんでした。" + e);
+                    synchronized (this) {
+                        backfillPending -= count - from;
+                    }
+                    return;
+                }
+            }
+        });
+    }
+
+    /** date の予定を索引に入れる。同じ日付・所有者・タイトルの予定があれば置き換える。 */
+    public synchronized void putAppointment(LocalDate date, Appointment appointment) {
+        DocKey key = new DocKey(date, appointment.getOwner(), appointment.getTitle());
+        markRemoved(appointmentDocs.remove(key));
+        appointmentDocs.put(key, addDoc(appointment, -1, (int) date.toEpochDay(), appointmentText(appointment)));
+        compactIfNeeded();
+    }
+
+    /** date の予定（所有者とタイトルが同じもの）を索引から除く。 */
+    public synchronized void removeAppointment(LocalDate date, Appointment appointment) {
+        markRemoved(appointmentDocs.remove(new DocKey(date, appointment.getOwner(), appointment.getTitle())));
+        compactIfNeeded();
+    }
+
+    /** 繰り返し予定を索引に入れる。日付の絞り込みでは、規則の回がある期間に重なれば該当とする。 */
+    public synchronized void putSeries(Appointment appointment, RecurrenceRule rule) {
+        DocKey key = new DocKey(LocalDate.MIN, appointment.getOwner(), appointment.getTitle());
+        markRemoved(appointmentDocs.remove(key));
+        int doc = addDoc(appointment, -1, (int) rule.getStart().toEpochDay(), appointmentText(appointment));
+        appointmentDocs.put(key, doc);
+        seriesRules.put(doc, rule);
+        compactIfNeeded();
+    }
+
+    public synchronized void removeSeries(Appointment appointment) {
+        markRemoved(appointmentDocs.remove(new DocKey(LocalDate.MIN, appointment.getOwner(), appointment.getTitle())));
+        compactIfNeeded();
+    }
+
+    /** 予定をすべて索引から除く（チャットは残す）。 */
+    public synchronized void clearAppointments() {
+        for (Integer doc : appointmentDocs.values()) markRemoved(doc);
+        appointmentDocs.clear();
+        compactIfNeeded();
+    }
+
+    private static String appointmentText(Appointment appointment) {
+        return appointment.getDetails() == null ? appointment.getTitle() : appointment.getTitle() + "\n" + appointment.getDetails();
+    }
+
+    private int addDoc(Object ref, int sequence, int day, String text) {
+        if (docCount == refs.length) {
+            int capacity = refs.length * 2;
+            refs = Arrays.copyOf(refs, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            days = Arrays.copyOf(days, capacity);
+        }
+        int doc = docCount++;
+        refs[doc] = ref;
+        sequences[doc] = sequence;
+        days[doc] = day;
+        String normalized = normalize(text);
+        int previous = -1;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint)) {
+                if (previous >= 0) postingsFor(bigram(previous, END)).add(doc);
+                previous = -1;
+                continue;
+            }
+            if (previous >= 0) postingsFor(bigram(previous, codePoint)).add(doc);
+            previous = codePoint;
+        }
+        if (previous >= 0) postingsFor(bigram(previous, END)).add(doc);
+        return doc;
+    }
+
+    private void markRemoved(Integer doc) {
+        if (doc == null || removed.get(doc)) return;
+        removed.set(doc);
+        removedCount++;
+        refs[doc] = null;
+        seriesRules.remove(doc);
+    }
+
+    // 削除の印が文書の 1/4 を超えたら詰め直す。詰め直しの費用は索引全体に比例するが、削除1件あたりでは一定になる
+    private void compactIfNeeded() {
+        if (removedCount >= MIN_COMPACT && removedCount * 4L >= docCount) compact();
+    }
+
+    private Postings postingsFor(long bigram) {
+        Postings list = postings.get(bigram);
+        if (list == null) {
+            list = new Postings();
+            postings.put(bigram, list);
+            postingsByFirst.computeIfAbsent((int) (bigram >>> 21), k -> new ArrayList<>()).add(list);
+        }
+        return list;
+    }
+
+    private static long bigram(int first, int second) {
+        return ((long) first << 21) | second;
+    }
+
+    // 削除の印が付いた文書を取り除き、残った文書の番号を詰め直す。番号の順序は変わらない
+    private void compact() {
+        int[] renumber = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (removed.get(doc)) {
+                renumber[doc] = -1;
+                continue;
+            }
+            renumber[doc] = live;
+            refs[live] = refs[doc];
+            sequences[live] = sequences[doc];
+            days[live] = days[doc];
+            live++;
+        }
+        Arrays.fill(refs, live, docCount, null);
+        for (Iterator<Postings> it = postings.values().iterator(); it.hasNext(); ) {
+            Postings list = it.next();
+            Postings rewritten = new Postings();
+            for (int doc : list.decode()) {
+                if (renumber[doc] >= 0) rewritten.add(renumber[doc]);
+            }
+            if (rewritten.count == 0) {
+                it.remove();
+                continue;
+            }
+            list.bytes = Arrays.copyOf(rewritten.bytes, rewritten.length);
+            list.length = rewritten.length;
+            list.count = rewritten.count;
+            list.last = rewritten.last;
+        }
+        // 空になった列を除いたので、先頭の文字ごとの一覧も作り直す
+        postingsByFirst.clear();
+        postings.forEach((bigram, list) -> postingsByFirst.computeIfAbsent((int) (bigram >>> 21), k -> new ArrayList<>()).add(list));
+        appointmentDocs.replaceAll((key, doc) -> renumber[doc]);
+        Map<Integer, RecurrenceRule> rules = new HashMap<>();
+        seriesRules.forEach((doc, rule) -> rules.put(renumber[doc], rule));
+        seriesRules.clear();
+        seriesRules.putAll(rules);
+        removed.clear();
+        removedCount = 0;
+        docCount = live;
+    }
+
+    // --- 検索 ---
+
+    /**
+     * query を空白で区切った語をすべて含むチャットと予定を、日付の新しい順に limit 件まで返す。
+     * 大文字と小文字、全角と半角の英数字は区別しない。
+     * @param group         null でなければ、そのグループのチャットと visibleOwners の予定だけに絞る
+     * @param visibleOwners group の画面で予定を表示する所有者（group が null なら使わない）
+     * @param from          null でなければ、この日以降に絞る
+     * @param to            null でなければ、この日以前に絞る
+     */
+    public List<Hit> search(String query, Group group, Set<Object> visibleOwners, LocalDate from, LocalDate to, int limit) {
+        List<String> terms = new ArrayList<>();
+        for (String term : normalize(query).trim().split("\\s+")) {
+            if (!term.isEmpty()) terms.add(term);
+        }
+        if (terms.isEmpty() || limit <= 0) return Collections.emptyList();
+
+        long[] candidates;
+        Object[] candidateRefs;
+        int[] candidateSequences;
+        int candidateCount = 0;
+        synchronized (this) {
+            int[] docs = null;
+            for (String term : terms) {
+                docs = docs == null ? docsContaining(term) : intersect(docs, docsContaining(term));
+                if (docs.length == 0) return Collections.emptyList();
+            }
+            int fromDay = from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE;
+            int toDay = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+            candidates = new long[docs.length];
+            candidateRefs = new Object[docs.length];
+            candidateSequences = new int[docs.length];
+            for (int doc : docs) {
+                Object ref = refs[doc];
+                if (ref == null) continue;
+                if (group != null) {
+                    boolean inGroup = ref instanceof Group ? ref == group
+                            : visibleOwners.contains(((Appointment) ref).getOwner());
+                    if (!inGroup) continue;
+                }
+                RecurrenceRule rule = sequences[doc] < 0 ? seriesRules.get(doc) : null;
+                boolean inRange = rule != null
+                        ? rule.overlaps(from != null ? from : LocalDate.MIN, to != null ? to : LocalDate.MAX)
+                        : days[doc] >= fromDay && days[doc] <= toDay;
+                if (!inRange) continue;
+                // 日付の新しい順、同じ日なら後から入れた順に並べるための並べ替えキー（下位は候補の位置）
+                candidateRefs[candidateCount] = ref;
+                candidateSequences[candidateCount] = sequences[doc];
+                candidates[candidateCount] = ((long) days[doc] << 32) | candidateCount;
+                candidateCount++;
+            }
+        }
+
+        // 候補が多ければ新しい方の 2 * limit 件だけを並べ、確かめて足りなければ残りも並べる
+        int sortedFrom = candidateCount / 4 > limit ? partitionLargest(candidates, candidateCount, 2 * limit) : 0;
+        Arrays.sort(candidates, sortedFrom, candidateCount);
+        // 2-gram がそろっていても語が続いて現れるとは限らないので、本文で確かめる
+        List<Hit> hits = new ArrayList<>();
+        for (int i = candidateCount - 1; i >= 0 && hits.size() < limit; i--) {
+            if (i < sortedFrom) {
+                Arrays.sort(candidates, 0, sortedFrom);
+                sortedFrom = 0;
+            }
+            int position = (int) candidates[i];
+            LocalDate date = LocalDate.ofEpochDay(candidates[i] >> 32);
+            if (candidateRefs[position] instanceof Group) {
+                Group messageGroup = (Group) candidateRefs[position];
+                ChatMessage message = messageGroup.getMessage(candidateSequences[position]);
+                if (message != null && containsAll(message.getText(), terms)) {
+                    hits.add(new Hit(CHAT, messageGroup, candidateSequences[position], message, null, date));
+                }
+            } else {
+                Appointment appointment = (Appointment) candidateRefs[position];
+                if (containsAll(appointmentText(appointment), terms)) {
+                    hits.add(new Hit(APPOINTMENT, null, -1, null, appointment, date));
+                }
+            }
+        }
+        return hits;
+    }
+
+    // term の 2-gram をすべて含む文書（番号順）
+    private int[] docsContaining(String term) {
+        int[] codePoints = term.codePoints().toArray();
+        if (codePoints.length == 1) return docsStartingWith(codePoints[0]);
+        int[] docs = null;
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            Postings list = postings.get(bigram(codePoints[i], codePoints[i + 1]));
+            if (list == null) return new int[0];
+            lists.add(list);
+        }
+        // 短い列から絞り込む
+        lists.sort((a, b) -> Integer.compare(a.count, b.count));
+        for (Postings list : lists) {
+            docs = docs == null ? list.decode() : intersect(docs, list.decode());
+            if (docs.length == 0) break;
+        }
+        return docs;
+    }
+
+    // 1文字の語は、その文字で始まる 2-gram を含む文書の和で引く。和は文書の番号のビット集合に立てて取るので並べ替えは要らない
+    private int[] docsStartingWith(int codePoint) {
+        List<Postings> lists = postingsByFirst.get(codePoint);
+        if (lists == null) return new int[0];
+        if (lists.size() == 1) return lists.get(0).decode();
+        BitSet docs = new BitSet(docCount);
+        for (Postings list : lists) list.addTo(docs);
+        return docs.stream().toArray();
+    }
+
+    // a[0, n) の大きい方から k 個を a[n - k, n) に集め、その開始位置を返す（集めた範囲の中の順序は問わない）
+    private static int partitionLargest(long[] a, int n, int k) {
+        int target = n - k;
+        int low = 0, high = n - 1;
+        while (low < high) {
+            long pivot = a[(low + high) >>> 1];
+            int i = low, j = high;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) {
+                    long swap = a[i];
+                    a[i++] = a[j];
+                    a[j--] = swap;
+                }
+            }
+            if (target <= j) high = j;
+            else if (target >= i) low = i;
+            else break;
+        }
+        return target;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static boolean containsAll(String text, List<String> terms) {
+        String normalized = normalize(text);
+        for (String term : terms) {
+            if (!normalized.contains(term)) return false;
+        }
+        return true;
+    }
+
+    // 全角英数字を半角に、大文字を小文字にそろえる
+    static String normalize(String text) {
+        if (!Normalizer.isNormalized(text, Normalizer.Form.NFKC)) text = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /** 計測値を1行にまとめた文字列。 */
+    public synchronized String describeMetrics() {
+        long bytes = 0;
+        for (Postings list : postings.values()) bytes += list.length;
+        return String.format("検索索引: 文書 %d 件（削除待ち %d 件）, 2-gram %d 種類, %.1f MB, 未索引のチャット %d 件",
+                docCount - removedCount, removedCount, postings.size(), bytes / 1048576.0, backfillPending);
+    }
+}
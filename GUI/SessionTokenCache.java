@@ -0,0 +1,95 @@
+package GUI;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一度 PBKDF2 で確認できた認証情報に署名付きのセッショントークンを発行して覚えておき、
+ * 同じユーザーの再ログインや再接続で時間のかかるハッシュ計算を省くためのキャッシュ。
+ *
+ * <p>トークンは「ユーザー名:有効期限」に、プロセスごとに生成した鍵で HMAC-SHA256 の署名を付けたもの。
+ * 署名にはパスワードも含めるので、同じパスワードでなければ一致しない。
+ * 鍵はメモリ上にしかなく、トークンもファイルには保存しない。</p>
+ *
+ * <p>どのスレッドから呼んでもよい。</p>
+ */
+public class SessionTokenCache {
+
+    public static final long DEFAULT_TTL_MILLIS = 30 * 60 * 1000L;
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final long ttlMillis;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+
+    public SessionTokenCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " が使用できません。", e);
+            }
+        });
+    }
+
+    /**
+     * 認証に成功したユーザーのトークンを発行して覚える。
+     * @return 発行したトークン
+     */
+    public String issue(String username, char[] password) {
+        String payload = username + ":" + (System.currentTimeMillis() + ttlMillis);
+        String token = payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload, password));
+        tokens.put(username, token);
+        return token;
+    }
+
+    /**
+     * 有効期限内のトークンがあり、その署名が username と password に一致すれば true。
+     * 期限切れのトークンは捨てる。
+     */
+    public boolean check(String username, char[] password) {
+        String token = tokens.get(username);
+        if (token == null) return false;
+        int dot = token.lastIndexOf('.');
+        String payload = token.substring(0, dot);
+        long expiresAt = Long.parseLong(payload.substring(payload.lastIndexOf(':') + 1));
+        if (System.currentTimeMillis() > expiresAt) {
+            tokens.remove(username, token);
+            return false;
+        }
+        byte[] expected = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+        return MessageDigest.isEqual(sign(payload, password), expected);
+    }
+
+    /** パスワードを変更したときなどに、ユーザーのトークンを無効にする。 */
+    public void invalidate(String username) {
+        tokens.remove(username);
+    }
+
+    private byte[] sign(String payload, char[] password) {
+        Mac mac = macs.get();
+        mac.update(payload.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        mac.update(encoded);
+        if (encoded.hasArray()) Arrays.fill(encoded.array(), (byte) 0);
+        return mac.doFinal();
+    }
+}
@@ -0,0 +1,357 @@
+package GUI;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 同期サーバー（server/SyncServer）に接続するクライアント。
+ * 自分のチャットや予定の変更をグループに送り、他のメンバーからの変更を Listener に通知する。
+ * チャットと予定の内容は WireCodec で符号化し、プールしたバッファに直接書き込む。
+ * 送信は専用の送信スレッドが行うので publish 系のメソッドはブロックしない。
+ * 受信も専用スレッドで行うため、Listener は EDT 以外から呼ばれる。
+ * 予定は subscribe() で指定した範囲の差分だけが届く。
+ * 予定には版ベクトル（VersionVector）を付けて送り、届いた予定の版ベクトルもそのまま Listener に渡す。
+ * 接続が切れても自動では接続し直さない（OfflineSync が新しいクライアントを作り直す）。
+ * 接続し直すときは、最初のログインでサーバーから受け取ったセッショントークンを送り、パスワードは送らない（Session）。
+ */
+public class SyncClient implements Closeable {
+
+    // --- フレーム種別と内容の種別（server/SyncServer と同じ値） ---
+    private static final byte LOGIN = 1;
+    private static final byte LOGIN_OK = 2;
+    private static final byte PUBLISH = 4;
+    private static final byte DELIVER = 5;
+    private static final byte SUBSCRIBE = 6;
+    private static final byte RESYNC = 7;
+    private static final byte RESUME = 8;
+    private static final byte KIND_CHAT = 1;
+    private static final byte KIND_APPOINTMENT_UPSERT = 2;
+    private static final byte KIND_APPOINTMENT_REMOVE = 3;
+    private static final int MAX_FRAME = 1024 * 1024;
+    private static final BufferPool BUFFERS = new BufferPool(16 * 1024, 64);
+
+    /** 他のメンバーから届いた変更を受け取るインターフェース。 */
+    public interface Listener {
+        /** グループのメンバーをIDから引く。 */
+        User resolveUser(String groupId, String userId);
+        /** 予定の所有者を種別（'U' または 'G'）とIDから引く。見つからなければ null。 */
+        Object resolveOwner(char kind, String id);
+        void chatReceived(String groupId, ChatMessage message);
+        /** @param version 送信者の版ベクトル。版ベクトルを送らない古いクライアントからなら VersionVector.EMPTY */
+        void appointmentUpserted(String groupId, LocalDate date, Appointment appointment, VersionVector version);
+        /** 削除が届いた。appointment は所有者とタイトルだけが意味を持つ。 */
+        void appointmentRemoved(String groupId, LocalDate date, Appointment appointment, VersionVector version);
+        /** 受信が遅れたため、サーバーがそのグループのチャットの一部を読み飛ばした。 */
+        void resyncNeeded(String groupId);
+        /** サーバーとの接続が切れた（close() で閉じた場合は呼ばれない）。 */
+        void connectionLost();
+    }
+
+    /**
+     * 同期サーバーへのログイン情報。最初のログインだけパスワードを送り、以降はサーバーが発行したトークンで接続し直す。
+     * パスワードは String にせず、トークンを受け取った時点で消去する。
+     * OfflineSync の接続スレッドから使われるので、メソッドは同期化している。
+     */
+    public static final class Session {
+        private final String username;
+        private char[] password;
+        private String token;
+
+        /** @param password ログインに使うパスワード。配列はこのオブジェクトが預かり、トークンを受け取るか discard() で消去する */
+        public Session(String username, char[] password) {
+            this.username = username;
+            this.password = password;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        /** まだ預かっているパスワードを消去する。 */
+        public synchronized void discard() {
+            if (password != null) Arrays.fill(password, '\0');
+            password = null;
+        }
+
+        // 次のログインで送るフレーム。トークンがあれば RESUME、なければパスワードで LOGIN
+        synchronized ByteBuffer loginFrame() throws IOException {
+            if (token != null) {
+                byte[] bytes = utf8(token);
+                ByteBuffer frame = ByteBuffer.allocate(4 + 1 + 2 + bytes.length);
+                frame.putInt(frame.capacity() - 4).put(RESUME);
+                putString(frame, bytes);
+                return frame;
+            }
+            if (password == null) throw new IOException("同期サーバーのセッションの有効期限が切れました。ログインし直してください。");
+            byte[] name = utf8(username);
+            ByteBuffer pass = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+            ByteBuffer frame = ByteBuffer.allocate(5 + 4 + name.length + pass.remaining());
+            frame.putInt(frame.capacity() - 4).put(LOGIN);
+            putString(frame, name);
+            frame.putShort((short) pass.remaining()).put(pass);
+            Arrays.fill(pass.array(), (byte) 0);
+            return frame;
+        }
+
+        synchronized void loggedIn(String newToken) {
+            // トークンを返さない古いサーバーには、次もパスワードでログインする
+            if (newToken == null) return;
+            token = newToken;
+            discard();
+        }
+
+        // ログインを断られた。トークンが期限切れなどで使えなくなっていれば、パスワードが残っている場合だけ次はパスワードでログインする
+        synchronized void rejected() {
+            token = null;
+        }
+    }
+
+    private final SocketChannel channel;
+    // 送るフレーム（ByteBuffer）と、そこまで送り終えたら実行する処理（Runnable）
+    private final BlockingQueue<Object> outbound = new LinkedBlockingQueue<>();
+    private final WireCodec encoder = new WireCodec();
+    private final WireCodec decoder = new WireCodec();
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+    private Thread readerThread;
+    private Thread writerThread;
+    private volatile boolean closed;
+    private final AtomicBoolean lost = new AtomicBoolean();
+
+    private SyncClient(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * サーバーに接続してログインする。session にトークンがあればトークンで、なければパスワードでログインし、
+     * 受け取った新しいトークンを session に記録する。ブロックするので EDT から呼ばないこと。
+     * @return ログインしたクライアント
+     * @throws IOException 接続できないかログインに失敗した場合
+     */
+    public static SyncClient connect(String host, int port, Session session) throws IOException {
+        ByteBuffer frame = session.loginFrame();
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            Arrays.fill(frame.array(), (byte) 0);
+            throw e;
+        }
+        channel.socket().setTcpNoDelay(true);
+        SyncClient client = new SyncClient(channel);
+        try {
+            client.writeFully(frame.flip());
+        } finally {
+            Arrays.fill(frame.array(), (byte) 0);
+        }
+        ByteBuffer reply = client.readFrame();
+        if (reply == null) {
+            // 断られたのではなく、返事の前に切れた。トークンはそのまま次の接続で使う
+            channel.close();
+            throw new IOException("ログインの途中で同期サーバーとの接続が切れました。");
+        }
+        boolean ok = reply.get() == LOGIN_OK;
+        String token = null;
+        if (ok) {
+            getString(reply); // ユーザーID
+            if (reply.hasRemaining()) token = getString(reply);
+        }
+        BUFFERS.release(reply);
+        if (!ok) {
+            channel.close();
+            session.rejected();
+            throw new IOException("同期サーバーへのログインに失敗しました。");
+        }
+        session.loggedIn(token);
+        client.writerThread = new Thread(client::writeLoop, "sync-client-writer");
+        client.writerThread.setDaemon(true);
+        client.writerThread.start();
+        return client;
+    }
+
+    /** 受信スレッドを開始し、届いた変更を listener に渡す。 */
+    public void startReceiving(Listener listener) {
+        readerThread = new Thread(() -> {
+            try {
+                ByteBuffer frame;
+                while ((frame = readFrame()) != null) {
+                    try {
+                        byte type = frame.get();
+                        if (type == DELIVER) dispatch(frame, listener);
+                        else if (type == RESYNC) listener.resyncNeeded(getString(frame));
+                    } catch (RuntimeException e) {
+                        System.err.println("エラー: 同期サーバーから不正なデータを受信しました。" + e.getMessage());
+                    } finally {
+                        BUFFERS.release(frame);
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) System.err.println("エラー: 同期サーバーとの接続が切れました。" + e.getMessage());
+            }
+            connectionLost(listener);
+        }, "sync-client");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    /**
+     * from から to まで（両端を含む）の予定の差分だけを受け取るよう購読範囲を置き換える。
+     * 新しく範囲に入った日の予定は、サーバーから現在の状態がまとめて届く。
+     */
+    public void subscribe(LocalDate from, LocalDate to) {
+        ByteBuffer frame = BUFFERS.acquire(4 + 1 + 8);
+        frame.putInt(1 + 8).put(SUBSCRIBE);
+        frame.putInt((int) from.toEpochDay()).putInt((int) to.toEpochDay());
+        outbound.add(frame.flip());
+    }
+
+    public void publishChat(String groupId, ChatMessage message) {
+        ByteBuffer frame = publishFrame(groupId, KIND_CHAT, encoder.chatSize(message));
+        encoder.writeChat(frame, message);
+        outbound.add(frame.flip());
+    }
+
+    public void publishAppointmentUpsert(String groupId, LocalDate date, Appointment appointment, VersionVector version) {
+        publishAppointment(groupId, KIND_APPOINTMENT_UPSERT, date, appointment, version);
+    }
+
+    public void publishAppointmentRemove(String groupId, LocalDate date, Appointment appointment, VersionVector version) {
+        publishAppointment(groupId, KIND_APPOINTMENT_REMOVE, date, appointment, version);
+    }
+
+    /**
+     * ここまでに publish したフレームをすべてソケットに書き終えたら、送信スレッドで action を実行する。
+     * 書き終える前に接続が切れた場合は実行しない。
+     */
+    public void whenSent(Runnable action) {
+        outbound.add(action);
+    }
+
+    /** 接続が切れておらず、close() もしていなければ true。 */
+    public boolean isOpen() {
+        return channel.isOpen() && !lost.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+        if (writerThread != null) writerThread.interrupt();
+    }
+
+    private void publishAppointment(String groupId, byte kind, LocalDate date, Appointment appointment, VersionVector version) {
+        ByteBuffer frame = publishFrame(groupId, kind, encoder.appointmentSize(date, appointment, version));
+        encoder.writeAppointment(frame, date, appointment, version);
+        outbound.add(frame.flip());
+    }
+
+    // 受信スレッドの終わりに1回だけ呼ぶ。送信スレッドも止める
+    private void connectionLost(Listener listener) {
+        if (!lost.compareAndSet(false, true)) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 閉じられなくても接続はもう使わない
+        }
+        if (writerThread != null) writerThread.interrupt();
+        if (!closed) listener.connectionLost();
+    }
+
+    // プールから借りたバッファに PUBLISH フレームのヘッダまでを書く
+    private static ByteBuffer publishFrame(String groupId, byte kind, int payloadSize) {
+        byte[] group = utf8(groupId);
+        int bodySize = 1 + 2 + group.length + 1 + payloadSize;
+        ByteBuffer frame = BUFFERS.acquire(4 + bodySize);
+        frame.putInt(bodySize).put(PUBLISH);
+        putString(frame, group);
+        return frame.put(kind);
+    }
+
+    private void dispatch(ByteBuffer body, Listener listener) {
+        String groupId = getString(body);
+        getString(body); // 送信者ID（チャットのレコードにも含まれる）
+        byte kind = body.get();
+        if (kind == KIND_CHAT) {
+            listener.chatReceived(groupId, decoder.readChat(body, userId -> listener.resolveUser(groupId, userId)));
+        } else if (kind == KIND_APPOINTMENT_UPSERT) {
+            decoder.readAppointment(body, listener::resolveOwner,
+                    (date, appointment, version) -> listener.appointmentUpserted(groupId, date, appointment, version));
+        } else if (kind == KIND_APPOINTMENT_REMOVE) {
+            decoder.readAppointment(body, listener::resolveOwner,
+                    (date, appointment, version) -> listener.appointmentRemoved(groupId, date, appointment, version));
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (channel.isOpen()) {
+                Object item = outbound.take();
+                if (item instanceof Runnable) {
+                    ((Runnable) item).run();
+                    continue;
+                }
+                ByteBuffer frame = (ByteBuffer) item;
+                writeFully(frame);
+                BUFFERS.release(frame);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!closed) System.err.println("エラー: 同期サーバーへの送信に失敗しました。" + e.getMessage());
+            // 受信スレッドに接続の切断として気づかせる
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // すでに閉じている
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    // 1フレーム分をプールのバッファに読み、種別から始まるバッファを返す。接続が閉じられたら null
+    private ByteBuffer readFrame() throws IOException {
+        lengthBuffer.clear();
+        if (!readFully(lengthBuffer)) return null;
+        int size = lengthBuffer.flip().getInt();
+        if (size <= 0 || size > MAX_FRAME) throw new IOException("不正なフレーム長です: " + size);
+        ByteBuffer frame = BUFFERS.acquire(size);
+        frame.limit(size);
+        if (!readFully(frame)) return null;
+        return frame.flip();
+    }
+
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return false;
+        }
+        return true;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
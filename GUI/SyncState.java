@@ -0,0 +1,516 @@
+package GUI;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同期のためにローカルに保存しておく状態。予定そのものは AppointmentJournal、チャットは ChatLog が保存するので、
+ * ここには同期にだけ必要な情報を置く。
+ * <ul>
+ *   <li>このクライアント（レプリカ）のID（replica）</li>
+ *   <li>予定ごとの版ベクトル・削除済みかどうか・未送信かどうか（state.log）</li>
+ *   <li>オフラインの間に送れなかったチャット（state.log）</li>
+ *   <li>グループとメンバーの一覧（roster.bin）。起動時にサーバーを待たずに画面を作るために使う</li>
+ * </ul>
+ *
+ * <p>state.log は変更のたびにレコードを追記するだけのログで、書き込みは専用スレッドが行う。
+ * 起動時に全体を読み、不要になったレコードが多ければ最新の状態だけを書き直す。
+ * 読み書きのメソッドはモデルを更新するスレッド（EDT）から呼ぶこと。</p>
+ */
+public class SyncState implements Closeable {
+
+    private static final int ROSTER_MAGIC = 0x524F5354; // "ROST"
+    private static final int ROSTER_VERSION = 1;
+    private static final byte OP_VERSION = 1;
+    private static final byte OP_CHAT_QUEUED = 2;
+    private static final byte OP_CHAT_SENT = 3;
+    private static final char OWNER_USER = 'U';
+    private static final char OWNER_GROUP = 'G';
+    // 起動時、有効なレコードの何倍を超えてログが伸びていたら書き直すか
+    private static final int COMPACT_RATIO = 2;
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    private static final int MAX_BATCH = 4096;
+
+    private static final Object STOP = new Object();
+
+    /** 予定1件（日付・所有者・タイトル）の同期の状態。変更不可。 */
+    public static final class Entry {
+        private final LocalDate date;
+        private final char ownerKind;
+        private final String ownerId;
+        private final String title;
+        private final VersionVector version;
+        private final boolean deleted;
+        private final boolean pending;
+
+        Entry(LocalDate date, char ownerKind, String ownerId, String title, VersionVector version, boolean deleted, boolean pending) {
+            this.date = date;
+            this.ownerKind = ownerKind;
+            this.ownerId = ownerId;
+            this.title = title;
+            this.version = version;
+            this.deleted = deleted;
+            this.pending = pending;
+        }
+
+        public LocalDate getDate() { return date; }
+        public char getOwnerKind() { return ownerKind; }
+        public String getOwnerId() { return ownerId; }
+        public String getTitle() { return title; }
+        public VersionVector getVersion() { return version; }
+        /** 削除された予定の墓標なら true。 */
+        public boolean isDeleted() { return deleted; }
+        /** まだサーバーに送れていなければ true。 */
+        public boolean isPending() { return pending; }
+
+        /** 版・削除・未送信を置き換えた状態。 */
+        public Entry with(VersionVector version, boolean deleted, boolean pending) {
+            return new Entry(date, ownerKind, ownerId, title, version, deleted, pending);
+        }
+
+        String key() {
+            return SyncState.key(date, ownerKind, ownerId, title);
+        }
+    }
+
+    /** オフラインの間に送れなかったチャット1件。 */
+    public static final class QueuedChat {
+        private final long sequence;
+        private final String groupId;
+        private final String senderId;
+        private final String text;
+        private final LocalDateTime timestamp;
+
+        QueuedChat(long sequence, String groupId, String senderId, String text, LocalDateTime timestamp) {
+            this.sequence = sequence;
+            this.groupId = groupId;
+            this.senderId = senderId;
+            this.text = text;
+            this.timestamp = timestamp;
+        }
+
+        public long getSequence() { return sequence; }
+        public String getGroupId() { return groupId; }
+        public String getSenderId() { return senderId; }
+        public String getText() { return text; }
+        public LocalDateTime getTimestamp() { return timestamp; }
+    }
+
+    private final Path directory;
+    private final String replicaId;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Long, QueuedChat> queuedChats = new LinkedHashMap<>();
+    private long nextChatSequence = 1;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private FileChannel logChannel;
+    private long logSize;
+
+    private SyncState(Path directory, String replicaId) {
+        this.directory = directory;
+        this.replicaId = replicaId;
+        this.writerThread = new Thread(this::writeLoop, "sync-state");
+        this.writerThread.setDaemon(true);
+    }
+
+    /**
+     * directory の状態を読み込み、書き込みスレッドを開始する。初めてならレプリカIDを作る。
+     */
+    public static SyncState open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path replicaFile = directory.resolve("replica");
+        String replicaId;
+        if (Files.exists(replicaFile)) {
+            replicaId = Files.readString(replicaFile, StandardCharsets.UTF_8).trim();
+        } else {
+            replicaId = Long.toHexString(new SecureRandom().nextLong() | Long.MIN_VALUE);
+            Files.writeString(replicaFile, replicaId, StandardCharsets.UTF_8);
+        }
+        SyncState state = new SyncState(directory, replicaId);
+        state.restore();
+        state.writerThread.start();
+        return state;
+    }
+
+    /** このクライアントを版ベクトルの中で表すID。 */
+    public String getReplicaId() {
+        return replicaId;
+    }
+
+    // --- 予定の版 ---
+
+    /** (date, 所有者, title) の予定の状態。一度も同期の対象になっていなければ null。 */
+    public Entry get(LocalDate date, Object owner, String title) {
+        return entries.get(key(date, ownerKind(owner), ownerId(owner), title));
+    }
+
+    /** 予定の状態として最初に使う、版が空の Entry。 */
+    public static Entry newEntry(LocalDate date, Object owner, String title) {
+        return new Entry(date, ownerKind(owner), ownerId(owner), title, VersionVector.EMPTY, false, false);
+    }
+
+    /** 予定の状態を置き換えて記録する。 */
+    public void put(Entry entry) {
+        entries.put(entry.key(), entry);
+        queue.add(encodeEntry(entry));
+    }
+
+    /** entry と同じ予定の今の状態。 */
+    public Entry current(Entry entry) {
+        return entries.get(entry.key());
+    }
+
+    /** まだ送れていない予定の状態（日付順）。 */
+    public List<Entry> pending() {
+        List<Entry> pending = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.pending) pending.add(entry);
+        }
+        pending.sort((a, b) -> a.date.compareTo(b.date));
+        return pending;
+    }
+
+    /** 記録している予定の状態の数（墓標を含む）。 */
+    public int size() {
+        return entries.size();
+    }
+
+    // --- 送れなかったチャット ---
+
+    /** 送れなかったチャットを記録する。 */
+    public QueuedChat queueChat(String groupId, ChatMessage message) {
+        QueuedChat chat = new QueuedChat(nextChatSequence++, groupId, message.getSender().getId(), message.getText(), message.getTimestamp());
+        queuedChats.put(chat.sequence, chat);
+        queue.add(encodeChat(chat));
+        return chat;
+    }
+
+    /** 送れなかったチャット（記録した順）。 */
+    public List<QueuedChat> queuedChats() {
+        return new ArrayList<>(queuedChats.values());
+    }
+
+    /** chat を送り終えた。 */
+    public void chatSent(QueuedChat chat) {
+        if (queuedChats.remove(chat.sequence) == null) return;
+        queue.add(frame(ByteBuffer.allocate(1 + 8).put(OP_CHAT_SENT).putLong(chat.sequence).array()));
+    }
+
+    // --- グループとメンバーの一覧 ---
+
+    /**
+     * 保存しておいたグループとメンバーの一覧を読む。myUser と同じIDのメンバーは myUser に置き換える。
+     * @return 保存されていなければ空のリスト
+     */
+    public List<Group> loadRoster(User myUser) {
+        Path file = directory.resolve("roster.bin");
+        if (!Files.exists(file)) return Collections.emptyList();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != ROSTER_MAGIC || in.readInt() != ROSTER_VERSION) {
+                throw new IOException("グループ一覧の形式が不正です: " + file);
+            }
+            Map<String, User> users = new HashMap<>();
+            users.put(myUser.getId(), myUser);
+            List<Group> groups = new ArrayList<>();
+            int groupCount = in.readInt();
+            for (int i = 0; i < groupCount; i++) {
+                Group group = new Group(readString(in), readString(in), in.readChar());
+                int userCount = in.readInt();
+                for (int j = 0; j < userCount; j++) {
+                    String id = readString(in);
+                    String name = readString(in);
+                    Color color = new Color(in.readInt());
+                    group.addUser(users.computeIfAbsent(id, key -> new User(key, name, color, false)));
+                }
+                groups.add(group);
+            }
+            return groups;
+        } catch (IOException e) {
+            System.err.println("警告: 保存したグループ一覧を読めませんでした。" + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /** グループとメンバーの一覧を保存するよう書き込みスレッドに依頼する。内容は呼び出し時点で写し取る。 */
+    public void saveRoster(List<Group> groups) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(ROSTER_MAGIC);
+            out.writeInt(ROSTER_VERSION);
+            out.writeInt(groups.size());
+            for (Group group : groups) {
+                writeString(out, group.getId());
+                writeString(out, group.getName());
+                out.writeChar(group.getIconChar());
+                out.writeInt(group.getUsers().size());
+                for (User user : group.getUsers()) {
+                    writeString(out, user.getId());
+                    writeString(out, user.getName());
+                    out.writeInt(user.getColor().getRGB());
+                }
+            }
+            queue.add(new RosterSnapshot(bytes.toByteArray()));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** キューに残っている記録を書き切ってからファイルを閉じる。 */
+    @Override
+    public void close() throws IOException {
+        queue.add(STOP);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- 書き込みスレッド ---
+
+    private static final class RosterSnapshot {
+        final byte[] bytes;
+
+        RosterSnapshot(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH);
+                for (Object item : batch) {
+                    if (item instanceof byte[]) {
+                        pending.write((byte[]) item);
+                    } else if (item instanceof RosterSnapshot) {
+                        writeAtomically(directory.resolve("roster.bin"), ((RosterSnapshot) item).bytes);
+                    } else if (item == STOP) {
+                        running = false;
+                        break;
+                    }
+                }
+                flush(pending);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                System.err.println("エラー: 同期の状態の書き込みに失敗しました。" + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+        try {
+            logChannel.force(false);
+            logChannel.close();
+        } catch (IOException e) {
+            System.err.println("エラー: 同期の状態のファイルを閉じられませんでした。" + e.getMessage());
+        }
+    }
+
+    private void flush(ByteArrayOutputStream pending) throws IOException {
+        if (pending.size() == 0) return;
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        pending.reset();
+        while (buffer.hasRemaining()) {
+            logSize += logChannel.write(buffer, logSize);
+        }
+    }
+
+    private void writeAtomically(Path file, byte[] bytes) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, bytes);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // --- 起動時の読み込み ---
+
+    private void restore() throws IOException {
+        Path log = directory.resolve("state.log");
+        long valid = 0;
+        int records = 0;
+        if (Files.exists(log)) {
+            long fileSize = Files.size(log);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log)))) {
+                while (true) {
+                    int length;
+                    byte[] payload;
+                    try {
+                        length = in.readInt();
+                        // 書き込みの途中で切れた長さや壊れた長さは、ファイルの残りに収まらない。そこを末尾とみなす
+                        if (length <= 0 || length > fileSize - valid - 4) break;
+                        payload = new byte[length];
+                        in.readFully(payload);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    try {
+                        apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                    } catch (IOException | RuntimeException e) {
+                        // 長さは収まっていても中身が読めないレコードも、そこを末尾とみなす
+                        break;
+                    }
+                    valid += 4 + length;
+                    records++;
+                }
+            }
+        }
+        int live = entries.size() + queuedChats.size();
+        if (records > COMPACT_MIN_RECORDS && records > COMPACT_RATIO * live) {
+            compact(log);
+        } else if (Files.exists(log) && Files.size(log) > valid) {
+            // 途中で切れたレコードを捨てる
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        logChannel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        logSize = logChannel.size();
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        if (op == OP_VERSION) {
+            LocalDate date = LocalDate.ofEpochDay(in.readInt());
+            char kind = (char) in.readByte();
+            String ownerId = readString(in);
+            String title = readString(in);
+            boolean deleted = in.readBoolean();
+            boolean pending = in.readBoolean();
+            int size = in.readInt();
+            String[] replicas = new String[size];
+            long[] counters = new long[size];
+            for (int i = 0; i < size; i++) {
+                replicas[i] = readString(in);
+                counters[i] = in.readLong();
+            }
+            VersionVector version = VersionVector.of(replicas, counters, readString(in), in.readLong());
+            Entry entry = new Entry(date, kind, ownerId, title, version, deleted, pending);
+            entries.put(entry.key(), entry);
+        } else if (op == OP_CHAT_QUEUED) {
+            QueuedChat chat = new QueuedChat(in.readLong(), readString(in), readString(in), readString(in), LocalDateTime.parse(readString(in)));
+            queuedChats.put(chat.sequence, chat);
+            nextChatSequence = Math.max(nextChatSequence, chat.sequence + 1);
+        } else if (op == OP_CHAT_SENT) {
+            queuedChats.remove(in.readLong());
+        }
+    }
+
+    // 今の状態だけを新しいログに書き、置き換える
+    private void compact(Path log) throws IOException {
+        Path temp = directory.resolve("state.log.tmp");
+        try (BufferedOutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            for (Entry entry : entries.values()) out.write(encodeEntry(entry));
+            for (QueuedChat chat : queuedChats.values()) out.write(encodeChat(chat));
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // --- レコードの符号化 ---
+    // [int 長さ][byte 操作][本体]。文字列は [int バイト数][UTF-8]
+    // OP_VERSION: [int エポック日][byte 所有者種別][所有者ID][タイトル][boolean 削除][boolean 未送信][int 要素数][（[レプリカID][long 回数]）× 要素数][書き手のレプリカID][long 書き手の合計]
+    // OP_CHAT_QUEUED: [long 通し番号][グループID][送信者ID][本文][送信日時 (ISO-8601)]
+    // OP_CHAT_SENT: [long 通し番号]
+
+    private static byte[] encodeEntry(Entry entry) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_VERSION);
+            out.writeInt((int) entry.date.toEpochDay());
+            out.writeByte(entry.ownerKind);
+            writeString(out, entry.ownerId);
+            writeString(out, entry.title);
+            out.writeBoolean(entry.deleted);
+            out.writeBoolean(entry.pending);
+            out.writeInt(entry.version.size());
+            for (int i = 0; i < entry.version.size(); i++) {
+                writeString(out, entry.version.replicaAt(i));
+                out.writeLong(entry.version.counterAt(i));
+            }
+            writeString(out, entry.version.getWriter());
+            out.writeLong(entry.version.getWriterSum());
+            return frame(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] encodeChat(QueuedChat chat) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_CHAT_QUEUED);
+            out.writeLong(chat.sequence);
+            writeString(out, chat.groupId);
+            writeString(out, chat.senderId);
+            writeString(out, chat.text);
+            writeString(out, chat.timestamp.toString());
+            return frame(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] frame(byte[] payload) {
+        return ByteBuffer.allocate(4 + payload.length).putInt(payload.length).put(payload).array();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static String key(LocalDate date, char ownerKind, String ownerId, String title) {
+        return date.toEpochDay() + ":" + ownerKind + ":" + ownerId + "\u0000" + title;
+    }
+
+    static char ownerKind(Object owner) {
+        return owner instanceof Group ? OWNER_GROUP : OWNER_USER;
+    }
+
+    private static String ownerId(Object owner) {
+        return owner instanceof Group ? ((Group) owner).getId() : ((User) owner).getId();
+    }
+}
@@ -0,0 +1,168 @@
+package GUI;
+
+import java.util.Arrays;
+
+/**
+ * 予定1件ごとの版ベクトル（レプリカIDごとの更新回数）。変更不可で、更新するたびに新しいインスタンスを返す。
+ * 2つの版を比べて、一方が他方を含む（あとから書かれた）のか、互いに知らずに書かれた（競合した）のかを判定する。
+ *
+ * <p>版は今の内容を書いた更新（書き手）も覚えておく。書き手はレプリカIDと、その更新で版の合計が
+ * いくつになったかの組で、更新ごとに一意になる。競合した版どうしは書き手の新しい方（合計が大きい方、
+ * 同じならレプリカIDが大きい方）の内容を採る。ある更新はそれ以前に見た更新より必ず合計が大きいので、
+ * 何度どの順でマージしても、知っている書き手のうち最も新しいものが勝つ。そのため、どのレプリカでも同じ結果になる。</p>
+ */
+public final class VersionVector {
+
+    // --- compare の結果 ---
+    public static final int EQUAL = 0;
+    /** この版は相手より古い（相手がこの版を含む）。 */
+    public static final int BEFORE = 1;
+    /** この版は相手より新しい（この版が相手を含む）。 */
+    public static final int AFTER = 2;
+    /** 互いに相手の知らない更新を含む。 */
+    public static final int CONCURRENT = 3;
+
+    public static final VersionVector EMPTY = new VersionVector(new String[0], new long[0], "", 0);
+
+    // レプリカIDの昇順に並べる
+    private final String[] replicas;
+    private final long[] counters;
+    // 今の内容を書いた更新のレプリカIDと、その更新の直後の合計
+    private final String writer;
+    private final long writerSum;
+
+    private VersionVector(String[] replicas, long[] counters, String writer, long writerSum) {
+        this.replicas = replicas;
+        this.counters = counters;
+        this.writer = writer;
+        this.writerSum = writerSum;
+    }
+
+    /** 通信やファイルから読んだ組を版にする。replicas は昇順でなくてもよい。 */
+    static VersionVector of(String[] replicas, long[] counters, String writer, long writerSum) {
+        VersionVector result = EMPTY;
+        for (int i = 0; i < replicas.length; i++) {
+            if (counters[i] > result.get(replicas[i])) result = result.with(replicas[i], counters[i]);
+        }
+        return new VersionVector(result.replicas, result.counters, writer, writerSum);
+    }
+
+    public int size() {
+        return replicas.length;
+    }
+
+    public String replicaAt(int index) {
+        return replicas[index];
+    }
+
+    public long counterAt(int index) {
+        return counters[index];
+    }
+
+    /** 今の内容を書いたレプリカのID。EMPTY なら空文字列。 */
+    public String getWriter() {
+        return writer;
+    }
+
+    /** 今の内容を書いた更新の直後の、版の合計。 */
+    public long getWriterSum() {
+        return writerSum;
+    }
+
+    /** replica の更新回数。含まれていなければ 0。 */
+    public long get(String replica) {
+        int index = Arrays.binarySearch(replicas, replica);
+        return index >= 0 ? counters[index] : 0;
+    }
+
+    /** replica がもう1回更新した（内容を書いた）版。 */
+    public VersionVector increment(String replica) {
+        VersionVector next = with(replica, get(replica) + 1);
+        return new VersionVector(next.replicas, next.counters, replica, next.sum());
+    }
+
+    /** 両方の更新をすべて含む最小の版（要素ごとの最大値）。書き手は新しい方を残す。 */
+    public VersionVector merge(VersionVector other) {
+        VersionVector result = this;
+        for (int i = 0; i < other.replicas.length; i++) {
+            if (other.counters[i] > result.get(other.replicas[i])) result = result.with(other.replicas[i], other.counters[i]);
+        }
+        VersionVector newer = writerOrder(other) >= 0 ? this : other;
+        return new VersionVector(result.replicas, result.counters, newer.writer, newer.writerSum);
+    }
+
+    /** この版を other と比べる。@return EQUAL / BEFORE / AFTER / CONCURRENT */
+    public int compare(VersionVector other) {
+        boolean less = false, greater = false;
+        int i = 0, j = 0;
+        while (i < replicas.length || j < other.replicas.length) {
+            int c = i == replicas.length ? 1 : j == other.replicas.length ? -1 : replicas[i].compareTo(other.replicas[j]);
+            long mine = c <= 0 ? counters[i] : 0;
+            long theirs = c >= 0 ? other.counters[j] : 0;
+            if (mine < theirs) less = true;
+            if (mine > theirs) greater = true;
+            if (c <= 0) i++;
+            if (c >= 0) j++;
+        }
+        return less ? (greater ? CONCURRENT : BEFORE) : (greater ? AFTER : EQUAL);
+    }
+
+    /**
+     * 競合の解決に使う、書き手の新しさの比較。書き手の合計が大きい方を新しいとし、同じならレプリカIDで比べる。
+     * 書き手が同じ（同じ更新の内容を持つ）なら 0。
+     */
+    public int writerOrder(VersionVector other) {
+        int bySum = Long.compare(writerSum, other.writerSum);
+        return bySum != 0 ? bySum : writer.compareTo(other.writer);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (long counter : counters) sum += counter;
+        return sum;
+    }
+
+    // replica の回数だけを変えた版（書き手はそのまま）
+    private VersionVector with(String replica, long counter) {
+        int index = Arrays.binarySearch(replicas, replica);
+        if (index >= 0) {
+            long[] nextCounters = counters.clone();
+            nextCounters[index] = counter;
+            return new VersionVector(replicas, nextCounters, writer, writerSum);
+        }
+        int insert = -index - 1;
+        String[] nextReplicas = new String[replicas.length + 1];
+        long[] nextCounters = new long[counters.length + 1];
+        System.arraycopy(replicas, 0, nextReplicas, 0, insert);
+        System.arraycopy(counters, 0, nextCounters, 0, insert);
+        nextReplicas[insert] = replica;
+        nextCounters[insert] = counter;
+        System.arraycopy(replicas, insert, nextReplicas, insert + 1, replicas.length - insert);
+        System.arraycopy(counters, insert, nextCounters, insert + 1, counters.length - insert);
+        return new VersionVector(nextReplicas, nextCounters, writer, writerSum);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VersionVector)) return false;
+        VersionVector other = (VersionVector) o;
+        return Arrays.equals(replicas, other.replicas) && Arrays.equals(counters, other.counters)
+                && writer.equals(other.writer) && writerSum == other.writerSum;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(replicas) + Arrays.hashCode(counters);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int i = 0; i < replicas.length; i++) {
+            if (i > 0) text.append(", ");
+            text.append(replicas[i]).append('=').append(counters[i]);
+        }
+        return text.append("} 書き手=").append(writer).append('@').append(writerSum).toString();
+    }
+}
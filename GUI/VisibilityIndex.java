@@ -0,0 +1,72 @@
+package GUI;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 表示中の画面（マイページまたはグループ）ごとに、予定を表示してよい所有者の集合を保持するクラス。
+ * 集合はグループのメンバー追加に合わせて作り直されるため、
+ * 予定ごとの表示判定はメンバーリストの走査ではなく集合の参照で済む。
+ */
+public class VisibilityIndex {
+
+    private final User myUser;
+    private final List<Group> groups;
+
+    // グループかメンバーが増えたら null にして、次に使うときに作り直す
+    private Set<Object> myPageOwners;
+    private final Map<Group, Set<Object>> groupOwners = new HashMap<>();
+    private final Map<Group, Integer> groupStamps = new HashMap<>();
+
+    public VisibilityIndex(User myUser, List<Group> groups) {
+        this.myUser = myUser;
+        this.groups = groups;
+    }
+
+    /**
+     * 指定した画面で owner の予定を表示するかどうか。
+     * @param contextGroup 表示中のグループ。マイページの場合は null
+     */
+    public boolean isVisible(Object owner, Group contextGroup) {
+        return visibleOwners(contextGroup).contains(owner);
+    }
+
+    /**
+     * 指定した画面で予定を表示する所有者の集合。
+     * マイページでは自分と自分が所属するグループ、グループ画面では自分とそのグループとメンバー。
+     */
+    public Set<Object> visibleOwners(Group contextGroup) {
+        if (contextGroup == null) {
+            if (myPageOwners == null) {
+                Set<Object> owners = new HashSet<>();
+                owners.add(myUser);
+                for (Group group : groups) {
+                    if (group.hasMember(myUser)) owners.add(group);
+                }
+                myPageOwners = owners;
+            }
+            return myPageOwners;
+        }
+        Integer stamp = groupStamps.get(contextGroup);
+        Set<Object> owners = groupOwners.get(contextGroup);
+        if (owners == null || stamp == null || stamp != contextGroup.getMembershipVersion()) {
+            owners = new HashSet<>(contextGroup.getUsers());
+            owners.add(myUser);
+            owners.add(contextGroup);
+            groupOwners.put(contextGroup, owners);
+            groupStamps.put(contextGroup, contextGroup.getMembershipVersion());
+        }
+        return owners;
+    }
+
+    /**
+     * グループが追加されたか、いずれかのグループにメンバーが加わった。CalendarModel から呼ばれる。
+     * マイページの集合はグループの数によらず、ここで捨てておいて次に使うときに1回だけ作り直す。
+     */
+    void membershipChanged() {
+        myPageOwners = null;
+    }
+}
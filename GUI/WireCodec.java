@@ -0,0 +1,307 @@
+package GUI;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * ChatMessage と Appointment を通信用のコンパクトなバイナリ形式に変換するコーデック。
+ * 中間の byte[] を作らず、ByteBuffer に直接読み書きする。
+ *
+ * <p>各レコードは [byte (バージョン &lt;&lt; 4 | 種別)] で始まる。</p>
+ * <ul>
+ *   <li>チャット: [送信者ID][varlong エポックミリ秒 (zigzag)][本文]</li>
+ *   <li>予定: [varint エポック日 (zigzag)][byte 所有者種別 0=ユーザー 1=グループ][所有者ID][タイトル][詳細]
+ *       [varint 開始時刻（0時からの分 + 1、終日なら 0）][varint 終了時刻（同じ）]
+ *       [varint 版ベクトルの要素数][（[レプリカID][varlong 更新回数]）× 要素数][書き手のレプリカID][varlong 書き手の合計]</li>
+ * </ul>
+ * 文字列は [varint バイト数][UTF-8]。
+ * 予定の時刻はバージョン 2 で、版ベクトルはバージョン 3 で追加した。古いバージョンのレコードも読める
+ * （時刻がなければ終日の予定、版ベクトルがなければ VersionVector.EMPTY になる）。
+ * サーバーは予定のレコードの先頭（日付・所有者・タイトル）しか読まないので、末尾の追加はサーバーに影響しない。
+ *
+ * <p>読み込み用の作業領域を持つため、1つのインスタンスを複数スレッドで共有しないこと。</p>
+ */
+public class WireCodec {
+
+    public static final int VERSION = 3;
+    public static final int TYPE_CHAT = 1;
+    public static final int TYPE_APPOINTMENT = 2;
+
+    private static final int OWNER_USER = 0;
+    private static final int OWNER_GROUP = 1;
+
+    /** 版ベクトル付きで読んだ予定を受け取る。 */
+    public interface AppointmentSink {
+        void accept(LocalDate date, Appointment appointment, VersionVector version);
+    }
+
+    private final ZoneId zone;
+    private char[] scratch = new char[256];
+
+    public WireCodec() {
+        this(ZoneId.systemDefault());
+    }
+
+    public WireCodec(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    // --- 書き込み ---
+
+    /** チャットメッセージを符号化したときのバイト数。 */
+    public int chatSize(ChatMessage message) {
+        return 1 + stringSize(message.getSender().getId())
+                + varlongSize(zigzag(toEpochMilli(message.getTimestamp())))
+                + stringSize(message.getText());
+    }
+
+    public void writeChat(ByteBuffer out, ChatMessage message) {
+        out.put(header(TYPE_CHAT));
+        putString(out, message.getSender().getId());
+        putVarlong(out, zigzag(toEpochMilli(message.getTimestamp())));
+        putString(out, message.getText());
+    }
+
+    /** 予定を版ベクトルなしで符号化したときのバイト数。 */
+    public int appointmentSize(LocalDate date, Appointment appointment) {
+        return appointmentSize(date, appointment, VersionVector.EMPTY);
+    }
+
+    /** 予定を版ベクトル付きで符号化したときのバイト数。 */
+    public int appointmentSize(LocalDate date, Appointment appointment, VersionVector version) {
+        int size = 1 + varlongSize(zigzag(date.toEpochDay())) + 1 + stringSize(ownerId(appointment.getOwner()))
+                + stringSize(appointment.getTitle()) + stringSize(appointment.getDetails())
+                + varlongSize(timeCode(appointment.getStart())) + varlongSize(timeCode(appointment.getEnd()))
+                + varlongSize(version.size());
+        for (int i = 0; i < version.size(); i++) {
+            size += stringSize(version.replicaAt(i)) + varlongSize(version.counterAt(i));
+        }
+        return size + stringSize(version.getWriter()) + varlongSize(version.getWriterSum());
+    }
+
+    public void writeAppointment(ByteBuffer out, LocalDate date, Appointment appointment) {
+        writeAppointment(out, date, appointment, VersionVector.EMPTY);
+    }
+
+    public void writeAppointment(ByteBuffer out, LocalDate date, Appointment appointment, VersionVector version) {
+        Object owner = appointment.getOwner();
+        out.put(header(TYPE_APPOINTMENT));
+        putVarlong(out, zigzag(date.toEpochDay()));
+        out.put((byte) (owner instanceof Group ? OWNER_GROUP : OWNER_USER));
+        putString(out, ownerId(owner));
+        putString(out, appointment.getTitle());
+        putString(out, appointment.getDetails());
+        putVarlong(out, timeCode(appointment.getStart()));
+        putVarlong(out, timeCode(appointment.getEnd()));
+        putVarlong(out, version.size());
+        for (int i = 0; i < version.size(); i++) {
+            putString(out, version.replicaAt(i));
+            putVarlong(out, version.counterAt(i));
+        }
+        putString(out, version.getWriter());
+        putVarlong(out, version.getWriterSum());
+    }
+
+    // --- 読み込み ---
+
+    /**
+     * 次のレコードの種別を返す（読み位置は進めない）。
+     * @throws IllegalArgumentException 対応していないバージョンの場合
+     */
+    public int peekType(ByteBuffer in) {
+        int header = in.get(in.position()) & 0xFF;
+        if ((header >>> 4) < 1 || (header >>> 4) > VERSION) {
+            throw new IllegalArgumentException("対応していない形式のバージョンです: " + (header >>> 4));
+        }
+        return header & 0x0F;
+    }
+
+    /**
+     * チャットメッセージを1件読む。
+     * @param senders 送信者IDから User を引く関数
+     */
+    public ChatMessage readChat(ByteBuffer in, Function<String, User> senders) {
+        expect(in, TYPE_CHAT);
+        User sender = senders.apply(getString(in));
+        long millis = unzigzag(getVarlong(in));
+        String text = getString(in);
+        return new ChatMessage(sender, text, LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone));
+    }
+
+    /**
+     * 予定を1件読み、日付と予定を sink に渡す。所有者が見つからない場合は予定の所有者が null になる。
+     */
+    public void readAppointment(ByteBuffer in, AppointmentJournal.OwnerResolver owners, BiConsumer<LocalDate, Appointment> sink) {
+        readAppointment(in, owners, (date, appointment, version) -> sink.accept(date, appointment));
+    }
+
+    /**
+     * 予定を1件読み、日付と予定と版ベクトルを sink に渡す。所有者が見つからない場合は予定の所有者が null になる。
+     */
+    public void readAppointment(ByteBuffer in, AppointmentJournal.OwnerResolver owners, AppointmentSink sink) {
+        int version = (in.get(in.position()) & 0xFF) >>> 4;
+        expect(in, TYPE_APPOINTMENT);
+        LocalDate date = LocalDate.ofEpochDay(unzigzag(getVarlong(in)));
+        char kind = in.get() == OWNER_GROUP ? 'G' : 'U';
+        Object owner = owners.resolve(kind, getString(in));
+        String title = getString(in);
+        String details = getString(in);
+        LocalTime start = null, end = null;
+        if (version >= 2) {
+            start = timeOf(getVarlong(in));
+            end = timeOf(getVarlong(in));
+        }
+        VersionVector versionVector = VersionVector.EMPTY;
+        if (version >= 3) {
+            int size = (int) getVarlong(in);
+            if (size > in.remaining()) throw new IllegalArgumentException("版ベクトルの要素数が不正です: " + size);
+            String[] replicas = new String[size];
+            long[] counters = new long[size];
+            for (int i = 0; i < size; i++) {
+                replicas[i] = getString(in);
+                counters[i] = getVarlong(in);
+            }
+            versionVector = VersionVector.of(replicas, counters, getString(in), getVarlong(in));
+        }
+        sink.accept(date, new Appointment(title, details, owner, start, end), versionVector);
+    }
+
+    private void expect(ByteBuffer in, int type) {
+        int actual = peekType(in);
+        if (actual != type) throw new IllegalArgumentException("レコードの種別が違います: " + actual);
+        in.get();
+    }
+
+    // --- 基本型 ---
+
+    private static byte header(int type) {
+        return (byte) (VERSION << 4 | type);
+    }
+
+    private long toEpochMilli(LocalDateTime timestamp) {
+        return timestamp.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private static long timeCode(LocalTime time) {
+        return time == null ? 0 : time.toSecondOfDay() / 60 + 1;
+    }
+
+    private static LocalTime timeOf(long code) {
+        return code == 0 ? null : LocalTime.ofSecondOfDay((code - 1) * 60);
+    }
+
+    private static String ownerId(Object owner) {
+        return owner instanceof Group ? ((Group) owner).getId() : ((User) owner).getId();
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int varlongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void putVarlong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long getVarlong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("可変長整数が長すぎます");
+    }
+
+    static int stringSize(String value) {
+        int length = utf8Length(value);
+        return varlongSize(length) + length;
+    }
+
+    static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) length += 1;
+            else if (c < 0x800) length += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else length += 3;
+        }
+        return length;
+    }
+
+    // 文字列を1文字ずつ UTF-8 にして書き込む（対になっていないサロゲートは U+FFFD（EF BF BD）にする）
+    static void putString(ByteBuffer out, String value) {
+        putVarlong(out, utf8Length(value));
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3F))
+                   .put((byte) (0x80 | cp >> 6 & 0x3F)).put((byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) 0xEF).put((byte) 0xBF).put((byte) 0xBD);
+            } else {
+                out.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    String getString(ByteBuffer in) {
+        int length = (int) getVarlong(in);
+        if (length > in.remaining()) throw new IllegalArgumentException("文字列の長さが不正です: " + length);
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        // ダイレクトバッファは作業用の char[] に直接デコードする
+        if (scratch.length < length) scratch = new char[Math.max(length, scratch.length * 2)];
+        int end = in.position() + length;
+        int count = 0;
+        while (in.position() < end) {
+            int b = in.get() & 0xFF;
+            if (b < 0x80) {
+                scratch[count++] = (char) b;
+            } else if (b < 0xE0) {
+                scratch[count++] = (char) ((b & 0x1F) << 6 | in.get() & 0x3F);
+            } else if (b < 0xF0) {
+                scratch[count++] = (char) ((b & 0x0F) << 12 | (in.get() & 0x3F) << 6 | in.get() & 0x3F);
+            } else {
+                int cp = (b & 0x07) << 18 | (in.get() & 0x3F) << 12 | (in.get() & 0x3F) << 6 | in.get() & 0x3F;
+                scratch[count++] = Character.highSurrogate(cp);
+                scratch[count++] = Character.lowSurrogate(cp);
+            }
+        }
+        return new String(scratch, 0, count);
+    }
+}
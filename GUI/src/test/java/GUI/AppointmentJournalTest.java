@@ -0,0 +1,181 @@
+package GUI;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ジャーナルとスナップショットから予定が復元されること、末尾の壊れたレコードが切り詰められることを確かめる。
+ */
+class AppointmentJournalTest {
+
+    private final User alice = new User("001", "alice", Color.RED, true);
+    private final Group group = new Group("G01", "技術部", '技');
+    private final LocalDate date = LocalDate.of(2024, 4, 10);
+    private Path dir;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("appointment-journal-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void replaysUpsertsRemovesAndSeries() throws IOException {
+        AppointmentStore store = new AppointmentStore();
+        try (AppointmentJournal journal = open(store)) {
+            Appointment meeting = new Appointment("会議", "第1会議室", alice, LocalTime.of(10, 0), LocalTime.of(11, 30));
+            store.put(date, meeting);
+            journal.recordUpsert(date, meeting);
+            Appointment removed = new Appointment("消す", "", group);
+            store.put(date, removed);
+            journal.recordUpsert(date, removed);
+            store.remove(date, removed);
+            journal.recordRemove(date, removed);
+            // 同じキーの更新は最後の内容が残る
+            Appointment updated = new Appointment("会議", "第2会議室", alice, LocalTime.of(10, 0), LocalTime.of(11, 30));
+            store.put(date, updated);
+            journal.recordUpsert(date, updated);
+            Appointment weekly = new Appointment("定例", "", group);
+            RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.WEEKLY, 1, date).withCount(4).withException(date.plusWeeks(1));
+            store.putSeries(weekly, rule);
+            journal.recordSeries(weekly, rule);
+        }
+
+        AppointmentStore restored = new AppointmentStore();
+        try (AppointmentJournal journal = open(restored)) {
+            assertEquals(2, journal.getRestoredCount());
+        }
+        assertRestored(restored);
+    }
+
+    @Test
+    void restoresFromSnapshotAndLaterJournal() throws IOException {
+        AppointmentStore store = new AppointmentStore();
+        try (AppointmentJournal journal = open(store)) {
+            Appointment before = new Appointment("会議", "第1会議室", alice, LocalTime.of(10, 0), LocalTime.of(11, 30));
+            store.put(date, before);
+            journal.recordUpsert(date, before);
+            Appointment weekly = new Appointment("定例", "", group);
+            RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.WEEKLY, 1, date).withCount(4).withException(date.plusWeeks(1));
+            store.putSeries(weekly, rule);
+            journal.recordSeries(weekly, rule);
+            journal.requestSnapshot();
+            Appointment after = new Appointment("会議", "第2会議室", alice, LocalTime.of(10, 0), LocalTime.of(11, 30));
+            store.put(date, after);
+            journal.recordUpsert(date, after);
+        }
+        // スナップショットの世代に切り替わり、古い世代は消えている
+        assertTrue(Files.exists(dir.resolve("snapshot-000001.bin")));
+        assertFalse(Files.exists(dir.resolve("journal-000000.log")));
+
+        AppointmentStore restored = new AppointmentStore();
+        try (AppointmentJournal journal = open(restored)) {
+            assertEquals(2, journal.getRestoredCount());
+        }
+        assertRestored(restored);
+    }
+
+    @Test
+    void truncatedTailIsDiscarded() throws IOException {
+        writeTwoAppointments();
+        Path log = dir.resolve("journal-000000.log");
+        long valid = Files.size(log);
+        // 長さの途中で切れたフレーム
+        Files.write(log, new byte[] {0, 0}, StandardOpenOption.APPEND);
+        assertTailDiscarded(valid);
+
+        // 長さはあるが本体が途中で切れたフレーム
+        Files.write(log, ByteBuffer.allocate(8).putInt(100).putInt(0x83010000).array(), StandardOpenOption.APPEND);
+        assertTailDiscarded(valid);
+    }
+
+    @Test
+    void recordWithoutVersionFlagIsDiscarded() throws IOException {
+        writeTwoAppointments();
+        Path log = dir.resolve("journal-000000.log");
+        long valid = Files.size(log);
+        Files.write(log, ByteBuffer.allocate(9).putInt(5).put((byte) 1).putInt(0).array(), StandardOpenOption.APPEND);
+        assertTailDiscarded(valid);
+    }
+
+    @Test
+    void negativeLengthIsDiscarded() throws IOException {
+        writeTwoAppointments();
+        Path log = dir.resolve("journal-000000.log");
+        long valid = Files.size(log);
+        Files.write(log, ByteBuffer.allocate(8).putInt(-1).putInt(0).array(), StandardOpenOption.APPEND);
+        assertTailDiscarded(valid);
+    }
+
+    // --- 補助 ---
+
+    private AppointmentJournal open(AppointmentStore store) throws IOException {
+        return AppointmentJournal.open(dir, store, (kind, id) -> kind == 'G' ? (id.equals(group.getId()) ? group : null)
+                : (id.equals(alice.getId()) ? alice : null));
+    }
+
+    private void writeTwoAppointments() throws IOException {
+        AppointmentStore store = new AppointmentStore();
+        try (AppointmentJournal journal = open(store)) {
+            Appointment first = new Appointment("会議", "", alice);
+            Appointment second = new Appointment("定例", "", group);
+            store.put(date, first);
+            journal.recordUpsert(date, first);
+            store.put(date.plusDays(1), second);
+            journal.recordUpsert(date.plusDays(1), second);
+        }
+    }
+
+    private void assertTailDiscarded(long valid) throws IOException {
+        AppointmentStore restored = new AppointmentStore();
+        try (AppointmentJournal journal = open(restored)) {
+            assertEquals(2, journal.getRestoredCount());
+        }
+        assertNotNull(restored.find(date, alice, "会議"));
+        assertNotNull(restored.find(date.plusDays(1), group, "定例"));
+        assertEquals(valid, Files.size(dir.resolve("journal-000000.log")));
+    }
+
+    private void assertRestored(AppointmentStore restored) {
+        assertEquals(1, restored.size());
+        assertNull(restored.find(date, group, "消す"));
+        Appointment meeting = restored.find(date, alice, "会議");
+        assertEquals("第2会議室", meeting.getDetails());
+        assertSame(alice, meeting.getOwner());
+        assertEquals(LocalTime.of(10, 0), meeting.getStart());
+        assertEquals(LocalTime.of(11, 30), meeting.getEnd());
+        AppointmentStore.Series series = restored.findSeries(group, "定例");
+        RecurrenceRule rule = series.getRule();
+        assertEquals(RecurrenceRule.WEEKLY, rule.getFrequency());
+        assertEquals(4, rule.getCount());
+        assertEquals(Set.of(date.plusWeeks(1)), rule.getExceptions());
+        assertEquals(Set.of(date, date.plusWeeks(2)), restored.occurrences(YearMonth.of(2024, 4)).keySet());
+    }
+}
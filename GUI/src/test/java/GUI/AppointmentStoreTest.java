@@ -0,0 +1,179 @@
+package GUI;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 日付順の範囲問い合わせと、同じ予定そのものを指定したときだけ消える削除、
+ * （日付, 所有者, タイトル）をキーとする追加・置き換えを確かめる。
+ */
+class AppointmentStoreTest {
+
+    private final User alice = new User("001", "alice", Color.RED, true);
+    private final User bob = new User("002", "bob", Color.BLUE, false);
+    private final Group group = new Group("G01", "技術部", '技');
+    private final AppointmentStore store = new AppointmentStore();
+
+    @Test
+    void rangeIncludesBothEndsInDateOrder() {
+        store.put(LocalDate.of(2024, 5, 1), new Appointment("五月", "", alice));
+        store.put(LocalDate.of(2024, 3, 31), new Appointment("三月末", "", alice));
+        store.put(LocalDate.of(2024, 4, 30), new Appointment("四月末", "", bob));
+        store.put(LocalDate.of(2024, 4, 1), new Appointment("四月初め", "", group));
+
+        NavigableMap<LocalDate, Collection<Appointment>> april = store.month(YearMonth.of(2024, 4));
+        assertEquals(List.of(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 30)), List.copyOf(april.keySet()));
+        assertEquals(4, store.range(LocalDate.of(2024, 3, 31), LocalDate.of(2024, 5, 1)).size());
+        assertTrue(store.range(LocalDate.of(2024, 4, 2), LocalDate.of(2024, 4, 29)).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> april.remove(LocalDate.of(2024, 4, 1)));
+    }
+
+    @Test
+    void rangeForOwnerOnlyReturnsThatOwner() {
+        LocalDate date = LocalDate.of(2024, 4, 10);
+        store.put(date, new Appointment("会議", "", alice));
+        store.put(date, new Appointment("会議", "", bob));
+        store.put(date.plusDays(1), new Appointment("定例", "", group));
+
+        NavigableMap<LocalDate, Collection<Appointment>> mine = store.rangeForOwner(alice, date, date.plusDays(1));
+        assertEquals(1, mine.size());
+        assertSame(alice, mine.get(date).iterator().next().getOwner());
+        assertEquals(List.of(date.plusDays(1)), List.copyOf(store.rangeForOwner(group, date, date.plusDays(5)).keySet()));
+        assertTrue(store.rangeForOwner(new User("003", "carol", Color.GREEN, false), date, date).isEmpty());
+    }
+
+    @Test
+    void navigatesToNeighbouringDatesAndMonths() {
+        store.put(LocalDate.of(2024, 1, 15), new Appointment("一月", "", alice));
+        store.put(LocalDate.of(2024, 4, 2), new Appointment("四月", "", alice));
+
+        assertEquals(LocalDate.of(2024, 4, 2), store.nextDateWithAppointments(LocalDate.of(2024, 1, 15)));
+        assertEquals(LocalDate.of(2024, 1, 15), store.previousDateWithAppointments(LocalDate.of(2024, 4, 2)));
+        assertNull(store.nextDateWithAppointments(LocalDate.of(2024, 4, 2)));
+        assertEquals(YearMonth.of(2024, 4), store.nextMonthWithAppointments(YearMonth.of(2024, 1)));
+        assertEquals(YearMonth.of(2024, 1), store.previousMonthWithAppointments(YearMonth.of(2024, 4)));
+        assertNull(store.previousMonthWithAppointments(YearMonth.of(2024, 1)));
+    }
+
+    @Test
+    void removeByAppointmentOnlyRemovesThatInstance() {
+        LocalDate date = LocalDate.of(2024, 4, 10);
+        Appointment stored = new Appointment("会議", "最初", alice);
+        store.put(date, stored);
+
+        // 所有者とタイトルが同じでも、別の予定を渡したら消さない
+        assertFalse(store.remove(date, new Appointment("会議", "最初", alice)));
+        assertFalse(store.remove(date.plusDays(1), stored));
+        assertEquals(1, store.size());
+
+        assertTrue(store.remove(date, stored));
+        assertEquals(0, store.size());
+        assertTrue(store.get(date).isEmpty());
+        // 空になった日は範囲問い合わせにも所有者の索引にも残らない
+        assertTrue(store.month(YearMonth.of(2024, 4)).isEmpty());
+        assertTrue(store.rangeForOwner(alice, date, date).isEmpty());
+        assertFalse(store.remove(date, stored));
+    }
+
+    @Test
+    void removeOneOfSeveralKeepsTheRestOfTheDay() {
+        LocalDate date = LocalDate.of(2024, 4, 10);
+        Appointment first = new Appointment("朝会", "", alice);
+        Appointment second = new Appointment("昼会", "", alice);
+        Appointment third = new Appointment("夕会", "", bob);
+        store.put(date, first);
+        store.put(date, second);
+        store.put(date, third);
+
+        assertTrue(store.remove(date, second));
+        assertEquals(List.of(first, third), List.copyOf(store.get(date)));
+        assertEquals(List.of(first), List.copyOf(store.rangeForOwner(alice, date, date).get(date)));
+    }
+
+    @Test
+    void putReplacesSameKeyInPlace() {
+        LocalDate date = LocalDate.of(2024, 4, 10);
+        Appointment first = new Appointment("朝会", "", alice);
+        Appointment second = new Appointment("昼会", "", alice);
+        store.put(date, first);
+        store.put(date, second);
+
+        Appointment replacement = new Appointment("朝会", "場所変更", alice);
+        assertSame(first, store.put(date, replacement));
+        // 置き換えても1日の中の順番は変わらない
+        assertEquals(List.of(replacement, second), List.copyOf(store.get(date)));
+        assertEquals(List.of(replacement, second), List.copyOf(store.rangeForOwner(alice, date, date).get(date)));
+        assertSame(replacement, store.find(date, alice, "朝会"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void keyIncludesDateOwnerAndTitle() {
+        LocalDate date = LocalDate.of(2024, 4, 10);
+        assertNull(store.put(date, new Appointment("会議", "", alice)));
+        assertNull(store.put(date.plusDays(1), new Appointment("会議", "", alice)));
+        assertNull(store.put(date, new Appointment("会議", "", bob)));
+        assertNull(store.put(date, new Appointment("会議", "", group)));
+        assertTrue(store.addOrUpdate(date, new Appointment("会議", "変更", bob)));
+        assertFalse(store.addOrUpdate(date, new Appointment("打ち合わせ", "", bob)));
+        assertEquals(5, store.size());
+        assertEquals("変更", store.find(date, bob, "会議").getDetails());
+        assertNull(store.find(date, new User("003", "carol", Color.GREEN, false), "会議"));
+    }
+
+    @Test
+    void removeByKeyReturnsRemovedAppointment() {
+        LocalDate date = LocalDate.of(2024, 4, 10);
+        Appointment meeting = new Appointment("会議", "", alice);
+        store.put(date, meeting);
+        store.put(date, new Appointment("会議", "", bob));
+
+        assertNull(store.remove(date, alice, "別の予定"));
+        assertSame(meeting, store.remove(date, alice, "会議"));
+        assertNull(store.find(date, alice, "会議"));
+        assertTrue(store.rangeForOwner(alice, date, date).isEmpty());
+        assertEquals(1, store.get(date).size());
+    }
+
+    @Test
+    void importAllUpsertsAndNotifiesOnce() {
+        CalendarModel model = new CalendarModel(alice);
+        LocalDate date = LocalDate.of(2024, 4, 1);
+        model.upsert(date, new Appointment("予定0", "古い", alice));
+        List<Integer> notified = new ArrayList<>();
+        model.addListener(new CalendarModel.Listener() {
+            @Override
+            public void appointmentAdded(LocalDate date, Appointment appointment) {
+                notified.add(-1);
+            }
+
+            @Override
+            public void appointmentsImported(List<CalendarModel.Entry> entries) {
+                notified.add(entries.size());
+            }
+        });
+
+        List<CalendarModel.Entry> imported = model.importAll(IntStream.range(0, 100)
+                .mapToObj(i -> new CalendarModel.Entry(date.plusDays(i % 10), new Appointment("予定" + i, "新しい", alice))));
+        assertEquals(100, imported.size());
+        assertEquals(List.of(100), notified);
+        assertEquals(100, model.getAppointments().size());
+        assertEquals("新しい", model.getAppointments().find(date, alice, "予定0").getDetails());
+        assertEquals(10, model.getAppointments().get(date).size());
+    }
+}
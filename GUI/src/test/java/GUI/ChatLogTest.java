@@ -0,0 +1,193 @@
+package GUI;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * チャットログの追記と範囲読み出し、セグメントの切り替え、開き直したときの復旧を確かめる。
+ */
+class ChatLogTest {
+
+    private final User alice = new User("001", "alice", Color.RED, true);
+    private final User bob = new User("002", "bob", Color.BLUE, false);
+    private final LocalDateTime start = LocalDateTime.of(2024, 4, 1, 9, 0);
+    private Path dir;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("chat-log-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void readsPagesAcrossAppendsAndReopen() throws IOException {
+        try (ChatLog log = open()) {
+            for (int i = 0; i < 10; i++) {
+                log.append(message(i));
+                // 追記の直後に最新のメッセージを読んでも追記した内容が見える
+                assertText(i, log.read(i, i + 1).get(0));
+            }
+            log.appendAll(List.of(message(10), message(11)));
+            assertEquals(12, log.size());
+            List<ChatMessage> page = log.read(4, 9);
+            assertEquals(5, page.size());
+            for (int i = 0; i < page.size(); i++) assertText(4 + i, page.get(i));
+            assertSame(bob, log.read(1, 2).get(0).getSender());
+            assertEquals(0, log.read(12, 12).size());
+            assertThrows(IndexOutOfBoundsException.class, () -> log.read(10, 13));
+        }
+        try (ChatLog log = open()) {
+            assertEquals(12, log.size());
+            log.append(message(12));
+            List<ChatMessage> all = log.read(0, 13);
+            for (int i = 0; i < all.size(); i++) assertText(i, all.get(i));
+            assertEquals(start.plusMinutes(12), all.get(12).getTimestamp());
+        }
+    }
+
+    @Test
+    void switchesSegmentsWhenFull() throws IOException {
+        // 1件約1MBなので、8MBのセグメントに収まらなくなったところで次のセグメントに移る
+        String large = "あ".repeat(350_000);
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) messages.add(new ChatMessage(alice, i + large, start.plusMinutes(i)));
+        try (ChatLog log = open()) {
+            log.appendAll(messages.subList(0, 10));
+            log.appendAll(messages.subList(10, 20));
+        }
+        assertEquals(3, segmentFiles("*.log"));
+        try (ChatLog log = open()) {
+            assertEquals(20, log.size());
+            List<ChatMessage> read = log.read(5, 15);
+            for (int i = 0; i < read.size(); i++) assertEquals(messages.get(5 + i).getText(), read.get(i).getText());
+            List<String> texts = new ArrayList<>();
+            log.forEachText(18, 20, (sequence, millis, text) -> texts.add(sequence + ":" + text.length()));
+            assertEquals(List.of("18:" + (2 + large.length()), "19:" + (2 + large.length())), texts);
+        }
+    }
+
+    @Test
+    void recoverDropsRecordWithTornIndexEntry() throws IOException {
+        try (ChatLog log = open()) {
+            log.appendAll(List.of(message(0), message(1), message(2)));
+        }
+        // インデックスの最後の項目が途中までしか書かれていない
+        try (FileChannel channel = FileChannel.open(dir.resolve("segment-000000.idx"), StandardOpenOption.WRITE)) {
+            channel.truncate(3 * 4 - 2);
+        }
+        assertRecoveredTo(2);
+    }
+
+    @Test
+    void recoverDropsRecordWithTornBody() throws IOException {
+        try (ChatLog log = open()) {
+            log.appendAll(List.of(message(0), message(1), message(2)));
+        }
+        // 最後のレコードが本文の途中までしか書かれていない
+        long lastOffset = indexEntry(2);
+        try (FileChannel channel = FileChannel.open(dir.resolve("segment-000000.log"), StandardOpenOption.WRITE)) {
+            channel.truncate(lastOffset + 20);
+        }
+        assertRecoveredTo(2);
+    }
+
+    @Test
+    void recoverDropsRecordWithNegativeOrShortLength() throws IOException {
+        try (ChatLog log = open()) {
+            log.appendAll(List.of(message(0), message(1), message(2)));
+        }
+        long lastOffset = indexEntry(2);
+        overwriteLength(lastOffset, -8);
+        assertRecoveredTo(2);
+
+        // ヘッダーより短い長さも壊れたレコードとして扱う
+        overwriteLength(indexEntry(2), 3);
+        assertRecoveredTo(2);
+    }
+
+    @Test
+    void preallocatedTailIsNotCountedAsMessages() throws IOException {
+        try (ChatLog log = open()) {
+            log.appendAll(List.of(message(0), message(1)));
+            // 書き込み中のセグメントは上限まで伸ばしてある
+            assertEquals(8L * 1024 * 1024, Files.size(dir.resolve("segment-000000.log")));
+        }
+        try (ChatLog log = open()) {
+            assertEquals(2, log.size());
+            log.append(message(2));
+            assertText(2, log.read(2, 3).get(0));
+        }
+    }
+
+    // --- 補助 ---
+
+    private ChatLog open() throws IOException {
+        return ChatLog.open(dir, id -> id.equals(alice.getId()) ? alice : bob);
+    }
+
+    private ChatMessage message(int i) {
+        return new ChatMessage(i % 2 == 0 ? alice : bob, "メッセージ" + i, start.plusMinutes(i));
+    }
+
+    private static void assertText(int i, ChatMessage message) {
+        assertEquals("メッセージ" + i, message.getText());
+    }
+
+    private void assertRecoveredTo(int expected) throws IOException {
+        try (ChatLog log = open()) {
+            assertEquals(expected, log.size());
+            List<ChatMessage> all = log.read(0, expected);
+            for (int i = 0; i < expected; i++) assertText(i, all.get(i));
+            // 復旧した後の追記は正しく読める
+            log.append(message(99));
+            assertText(99, log.read(expected, expected + 1).get(0));
+        }
+        try (ChatLog log = open()) {
+            assertEquals(expected + 1, log.size());
+        }
+    }
+
+    private long indexEntry(int local) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("segment-000000.idx"), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.read(buffer, local * 4L);
+            return buffer.flip().getInt();
+        }
+    }
+
+    private void overwriteLength(long offset, int length) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("segment-000000.log"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(length).flip(), offset);
+        }
+    }
+
+    private long segmentFiles(String glob) throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.filter(path -> path.getFileSystem().getPathMatcher("glob:" + glob).matches(path.getFileName())).count();
+        }
+    }
+}
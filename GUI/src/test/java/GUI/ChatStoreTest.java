@@ -0,0 +1,132 @@
+package GUI;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 列ごとに持ったチャット履歴が、末尾と先頭への追加の後も元のメッセージどおりに読めることを確かめる。
+ */
+class ChatStoreTest {
+
+    private final User alice = new User("001", "alice", Color.RED, true);
+    private final User bob = new User("002", "bob", Color.BLUE, false);
+    private final LocalDateTime start = LocalDateTime.of(2024, 4, 1, 9, 0, 0, 123_000_000);
+    private final ChatStore store = new ChatStore(ZoneId.of("Asia/Tokyo"));
+
+    @Test
+    void readsBackAppendedMessages() {
+        for (int i = 0; i < 100; i++) store.add(message(i));
+        assertEquals(100, store.size());
+        for (int i = 0; i < 100; i++) assertMessage(i, store.get(i));
+        assertSame(bob, store.getSender(1));
+        assertEquals("メッセージ7", store.getText(7));
+        assertEquals(start.plusMinutes(7).atZone(ZoneId.of("Asia/Tokyo")).toInstant().toEpochMilli(), store.getEpochMillis(7));
+        // get は毎回新しい ChatMessage を作る
+        assertNotSame(store.get(0), store.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(100));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getText(-1));
+    }
+
+    @Test
+    void prependsOlderPagesInOrder() {
+        store.addAll(messages(200, 300));
+        store.addAll(0, messages(100, 200));
+        store.addAll(0, messages(0, 100));
+        store.addAll(messages(300, 310));
+        assertEquals(310, store.size());
+        for (int i = 0; i < store.size(); i++) assertMessage(i, store.get(i));
+        // 反復でも同じ順に読める
+        List<String> expected = messages(0, 310).stream().map(ChatStoreTest::describe).collect(Collectors.toList());
+        assertEquals(expected, store.stream().map(ChatStoreTest::describe).collect(Collectors.toList()));
+    }
+
+    @Test
+    void onlyFrontAndBackInsertionsAreSupported() {
+        store.addAll(messages(0, 3));
+        assertThrows(UnsupportedOperationException.class, () -> store.add(1, message(9)));
+        assertThrows(UnsupportedOperationException.class, () -> store.remove(0));
+        assertThrows(UnsupportedOperationException.class, () -> store.set(0, message(9)));
+        store.add(0, message(-1));
+        assertEquals("メッセージ-1", store.getText(0));
+        assertFalse(store.addAll(List.of()));
+    }
+
+    @Test
+    void keepsLongAndMultibyteTexts() {
+        String emoji = "😀絵文字";
+        String huge = "長".repeat(400_000);
+        store.add(new ChatMessage(alice, emoji, start));
+        store.add(new ChatMessage(bob, huge, start));
+        store.add(new ChatMessage(alice, "", start));
+        for (int i = 0; i < 1000; i++) store.add(new ChatMessage(bob, "x".repeat(2000) + i, start));
+        assertEquals(emoji, store.getText(0));
+        assertEquals(huge, store.getText(1));
+        assertEquals("", store.getText(2));
+        for (int i = 0; i < 1000; i++) assertEquals("x".repeat(2000) + i, store.getText(3 + i));
+        assertTrue(store.footprintBytes() >= huge.length() * 3L + 1000 * 2000L);
+    }
+
+    @Test
+    void clearResetsEverything() {
+        store.addAll(messages(0, 50));
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.footprintBytes());
+        store.addAll(0, messages(5, 6));
+        assertMessage(5, store.get(0));
+    }
+
+    @Test
+    void iteratorFailsFastAfterAppend() {
+        store.addAll(messages(0, 3));
+        Iterator<ChatMessage> iterator = store.iterator();
+        iterator.next();
+        store.add(message(3));
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    void convertsTimesWithTheGivenZone() {
+        ChatStore utc = new ChatStore(ZoneOffset.UTC);
+        utc.add(message(0));
+        assertEquals(start, utc.get(0).getTimestamp());
+        assertEquals(start.toInstant(ZoneOffset.UTC).toEpochMilli(), utc.getEpochMillis(0));
+    }
+
+    // --- 補助 ---
+
+    private ChatMessage message(int i) {
+        return new ChatMessage(i % 2 == 0 ? alice : bob, "メッセージ" + i, start.plusMinutes(i));
+    }
+
+    private List<ChatMessage> messages(int from, int to) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = from; i < to; i++) messages.add(message(i));
+        return messages;
+    }
+
+    private void assertMessage(int i, ChatMessage actual) {
+        assertEquals(describe(message(i)), describe(actual));
+        assertSame(i % 2 == 0 ? alice : bob, actual.getSender());
+    }
+
+    private static String describe(ChatMessage message) {
+        return message.getSender().getId() + "|" + message.getText() + "|" + message.getTimestamp();
+    }
+}
@@ -0,0 +1,106 @@
+package GUI;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * メンバー全員が空いている時間帯の探索（本人とグループの予定、繰り返し予定、月をまたぐ期間、変更後の捨て直し）を確かめる。
+ */
+class FreeSlotFinderTest {
+
+    private final User alice = new User("001", "alice", Color.RED, true);
+    private final User bob = new User("002", "bob", Color.BLUE, false);
+    private final User carol = new User("003", "carol", Color.GREEN, false);
+    private final CalendarModel model = new CalendarModel(alice);
+    private final Group tech = new Group("G01", "技術部", '技');
+    private final Group sales = new Group("G02", "営業部", '営');
+    // 2024-04-10 は水曜日
+    private final LocalDate wednesday = LocalDate.of(2024, 4, 10);
+
+    @BeforeEach
+    void createGroups() {
+        tech.addUser(alice);
+        tech.addUser(bob);
+        sales.addUser(bob);
+        sales.addUser(carol);
+        model.addGroup(tech);
+        model.addGroup(sales);
+    }
+
+    @Test
+    void emptyCalendarReturnsConsecutiveNonOverlappingSlots() {
+        assertEquals(List.of("2024-04-10 09:00-10:00", "2024-04-10 10:00-11:00", "2024-04-10 11:00-12:00"),
+                find(wednesday, wednesday, 60, 3));
+    }
+
+    @Test
+    void membersAndTheirOtherGroupsBlockSlots() {
+        model.upsert(wednesday, new Appointment("alice", "", alice, LocalTime.of(9, 0), LocalTime.of(10, 0)));
+        // bob は営業部にも所属しているので、営業部の予定も bob の予定として数える
+        model.upsert(wednesday, new Appointment("営業会議", "", sales, LocalTime.of(10, 0), LocalTime.of(11, 10)));
+        // carol は技術部のメンバーではないので、予定があっても妨げない
+        model.upsert(wednesday, new Appointment("carol", "", carol, LocalTime.of(11, 15), LocalTime.of(17, 0)));
+        // 終日の予定は空き時間を妨げない
+        model.upsert(wednesday, new Appointment("終日", "", bob));
+
+        // 11:10 の終わりは 11:15 の枠まで予定ありとして切り上げる
+        assertEquals(List.of("2024-04-10 11:15-12:15", "2024-04-10 12:15-13:15"), find(wednesday, wednesday, 60, 2));
+    }
+
+    @Test
+    void slotsDoNotCrossTheEndOfTheSearchWindow() {
+        model.upsert(wednesday, new Appointment("長い会議", "", tech, LocalTime.of(9, 0), LocalTime.of(17, 15)));
+        List<String> slots = find(wednesday, wednesday.plusDays(1), 60, 2);
+        assertEquals(List.of("2024-04-11 09:00-10:00", "2024-04-11 10:00-11:00"), slots);
+        assertTrue(find(wednesday, wednesday, 60, 5).isEmpty());
+        // 45 分なら終業前に入る
+        assertEquals(List.of("2024-04-10 17:15-18:00"), find(wednesday, wednesday, 45, 5));
+    }
+
+    @Test
+    void weekdaysOnlySkipsWeekendsAcrossMonths() {
+        // 2024-03-29 は金曜日、3/30・3/31 は土日
+        LocalDate friday = LocalDate.of(2024, 3, 29);
+        model.upsert(friday, new Appointment("一日がかりの会議", "", tech, LocalTime.of(9, 0), LocalTime.of(18, 0)));
+        List<FreeSlotFinder.Slot> slots = model.findFreeSlots(tech, friday, friday.plusDays(4), LocalTime.of(9, 0), LocalTime.of(18, 0),
+                true, 480, 3);
+        assertEquals(List.of(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 2)),
+                slots.stream().map(FreeSlotFinder.Slot::getDate).collect(Collectors.toList()));
+        List<FreeSlotFinder.Slot> weekend = model.findFreeSlots(tech, friday, friday.plusDays(4), LocalTime.of(9, 0), LocalTime.of(18, 0),
+                false, 480, 1);
+        assertEquals(LocalDate.of(2024, 3, 30), weekend.get(0).getDate());
+    }
+
+    @Test
+    void recurringAppointmentsBlockEveryOccurrence() {
+        model.putRecurring(new Appointment("朝会", "", bob, LocalTime.of(9, 0), LocalTime.of(12, 0)),
+                new RecurrenceRule(RecurrenceRule.DAILY, 1, wednesday.minusDays(30)));
+        assertEquals(List.of("2024-04-10 12:00-14:00", "2024-04-10 14:00-16:00", "2024-04-10 16:00-18:00",
+                        "2024-04-11 12:00-14:00", "2024-04-11 14:00-16:00", "2024-04-11 16:00-18:00"),
+                find(wednesday, wednesday.plusDays(1), 120, 10));
+    }
+
+    @Test
+    void cachedMonthIsRebuiltAfterChanges() {
+        assertEquals(List.of("2024-04-10 09:00-10:00"), find(wednesday, wednesday, 60, 1));
+        Appointment meeting = new Appointment("会議", "", bob, LocalTime.of(9, 0), LocalTime.of(10, 0));
+        model.upsert(wednesday, meeting);
+        assertEquals(List.of("2024-04-10 10:00-11:00"), find(wednesday, wednesday, 60, 1));
+        model.remove(wednesday, meeting);
+        assertEquals(List.of("2024-04-10 09:00-10:00"), find(wednesday, wednesday, 60, 1));
+    }
+
+    private List<String> find(LocalDate from, LocalDate to, int minutes, int limit) {
+        return model.findFreeSlots(tech, from, to, LocalTime.of(9, 0), LocalTime.of(18, 0), false, minutes, limit)
+                .stream().map(FreeSlotFinder.Slot::toString).collect(Collectors.toList());
+    }
+}
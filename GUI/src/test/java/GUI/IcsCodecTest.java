@@ -0,0 +1,162 @@
+package GUI;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 書き出した .ics を読み込むと元の予定に戻ること、75 オクテットでの折り返しとエスケープを確かめる。
+ */
+class IcsCodecTest {
+
+    private final User alice = new User("001", "alice", Color.RED, true);
+    private final Group group = new Group("G01", "技術部", '技');
+    private Path dir;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("ics-codec-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void roundTripKeepsTextTimesAndOwners() throws IOException {
+        List<CalendarModel.Entry> entries = List.of(
+                new CalendarModel.Entry(LocalDate.of(2024, 4, 1), new Appointment("終日; 予定, その1", "改行\nと\\バックスラッシュ", alice)),
+                new CalendarModel.Entry(LocalDate.of(2024, 4, 2), new Appointment("会議", "", group, LocalTime.of(9, 30), LocalTime.of(10, 45))),
+                new CalendarModel.Entry(LocalDate.of(2024, 4, 3), new Appointment("長い説明", "あ".repeat(100) + "😀".repeat(30) + "x".repeat(80), alice)));
+        Path file = dir.resolve("out.ics");
+        assertEquals(3, IcsCodec.write(file, entries));
+
+        IcsCodec.ImportResult result = read(file);
+        assertEquals(0, result.getSkipped());
+        assertEquals(entries.size(), result.getEntries().size());
+        for (int i = 0; i < entries.size(); i++) {
+            CalendarModel.Entry expected = entries.get(i);
+            CalendarModel.Entry actual = result.getEntries().get(i);
+            assertEquals(expected.getDate(), actual.getDate());
+            Appointment a = expected.getAppointment(), b = actual.getAppointment();
+            assertEquals(a.getTitle(), b.getTitle());
+            assertEquals(a.getDetails(), b.getDetails());
+            assertSame(a.getOwner(), b.getOwner());
+            assertEquals(a.getStart(), b.getStart());
+            assertEquals(a.getEnd(), b.getEnd());
+        }
+    }
+
+    @Test
+    void foldsLinesAtSeventyFiveOctetsWithoutSplittingCharacters() throws IOException {
+        String details = "予定の説明".repeat(40) + "😀".repeat(40);
+        Path file = dir.resolve("out.ics");
+        IcsCodec.write(file, List.of(new CalendarModel.Entry(LocalDate.of(2024, 4, 1), new Appointment("長い", details, alice))));
+
+        byte[] bytes = Files.readAllBytes(file);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        assertTrue(text.endsWith("\r\n"));
+        int continuations = 0;
+        for (String line : text.split("\r\n")) {
+            assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75, line);
+            // 文字の途中で切れていれば置換文字になる
+            assertFalse(line.contains("�"), line);
+            if (line.startsWith(" ")) continuations++;
+        }
+        assertTrue(continuations > 5);
+        assertEquals(details, read(file).getEntries().get(0).getAppointment().getDetails());
+    }
+
+    @Test
+    void escapesSpecialCharacters() throws IOException {
+        Path file = dir.resolve("out.ics");
+        IcsCodec.write(file, List.of(new CalendarModel.Entry(LocalDate.of(2024, 4, 1), new Appointment("a;b,c\\d", "1行目\r\n2行目", alice))));
+        String text = Files.readString(file);
+        assertTrue(text.contains("SUMMARY:a\\;b\\,c\\\\d\r\n"), text);
+        assertTrue(text.contains("DESCRIPTION:1行目\\n2行目\r\n"), text);
+        assertTrue(text.contains("DTSTART;VALUE=DATE:20240401\r\n"), text);
+        assertTrue(text.contains("X-OWNER:U:001\r\n"), text);
+    }
+
+    @Test
+    void readsFoldedLinesAndIgnoresNestedComponents() throws IOException {
+        Path file = dir.resolve("in.ics");
+        Files.write(file, List.of(
+                "BEGIN:VCALENDAR",
+                "BEGIN:VEVENT",
+                "DTSTART:20240410T130000",
+                "DTEND:20240410T143000",
+                "SUMMARY:折り返された",
+                " タイトル",
+                "DESCRIPTION;LANGUAGE=ja:タブで",
+                "\t続く説明\\, です",
+                "X-OWNER:G:G01",
+                "BEGIN:VALARM",
+                "DESCRIPTION:通知",
+                "END:VALARM",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "SUMMARY:日付がない",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "DTSTART;VALUE=DATE:20240411",
+                "SUMMARY:所有者が不明",
+                "X-OWNER:U:999",
+                "END:VEVENT",
+                "END:VCALENDAR"), StandardCharsets.UTF_8);
+
+        IcsCodec.ImportResult result = read(file);
+        assertEquals(1, result.getSkipped());
+        assertEquals(2, result.getEntries().size());
+        Appointment first = result.getEntries().get(0).getAppointment();
+        assertEquals("折り返されたタイトル", first.getTitle());
+        assertEquals("タブで続く説明, です", first.getDetails());
+        assertSame(group, first.getOwner());
+        assertEquals(LocalTime.of(13, 0), first.getStart());
+        assertEquals(LocalTime.of(14, 30), first.getEnd());
+        CalendarModel.Entry second = result.getEntries().get(1);
+        assertEquals(LocalDate.of(2024, 4, 11), second.getDate());
+        assertSame(alice, second.getAppointment().getOwner());
+        assertNull(second.getAppointment().getStart());
+    }
+
+    @Test
+    void keepsFileOrderAcrossChunks() throws IOException {
+        // 1チャンクは 2048 件なので、複数のチャンクに分かれて並列に解析される
+        List<CalendarModel.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            entries.add(new CalendarModel.Entry(LocalDate.of(2024, 1, 1).plusDays(i % 365), new Appointment("予定" + i, "", alice)));
+        }
+        Path file = dir.resolve("out.ics");
+        IcsCodec.write(file, entries);
+        List<CalendarModel.Entry> read = read(file).getEntries();
+        assertEquals(entries.size(), read.size());
+        for (int i = 0; i < read.size(); i++) assertEquals("予定" + i, read.get(i).getAppointment().getTitle());
+    }
+
+    private IcsCodec.ImportResult read(Path file) throws IOException {
+        return IcsCodec.read(file, (kind, id) -> kind == 'G' ? (id.equals(group.getId()) ? group : null)
+                : (id.equals(alice.getId()) ? alice : null), alice, 3);
+    }
+}
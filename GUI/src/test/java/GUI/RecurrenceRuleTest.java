@@ -0,0 +1,115 @@
+package GUI;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 繰り返しの規則の展開（毎月31日の飛ばし、回数と終了日、除外日）と、月ごとの展開結果の捨て方を確かめる。
+ */
+class RecurrenceRuleTest {
+
+    @Test
+    void monthlyOnThirtyFirstSkipsShortMonths() {
+        RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.MONTHLY, 1, LocalDate.of(2024, 1, 31));
+        assertEquals(List.of(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 3, 31), LocalDate.of(2024, 5, 31),
+                        LocalDate.of(2024, 7, 31), LocalDate.of(2024, 8, 31)),
+                rule.occurrences(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 9, 30)));
+        assertTrue(rule.occurrences(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29)).isEmpty());
+        assertNull(rule.getLast());
+    }
+
+    @Test
+    void monthlyCountDoesNotCountSkippedMonths() {
+        RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.MONTHLY, 1, LocalDate.of(2024, 1, 31)).withCount(3);
+        // 1月、3月、5月の3回（2月と4月は31日がないので数えない）
+        assertEquals(LocalDate.of(2024, 5, 31), rule.getLast());
+        assertEquals(List.of(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 3, 31), LocalDate.of(2024, 5, 31)),
+                rule.occurrences(LocalDate.of(2023, 1, 1), LocalDate.of(2025, 1, 1)));
+    }
+
+    @Test
+    void monthlyIntervalStartsFromTheRightMonth() {
+        RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.MONTHLY, 3, LocalDate.of(2024, 1, 15));
+        assertEquals(List.of(LocalDate.of(2024, 7, 15), LocalDate.of(2024, 10, 15)),
+                rule.occurrences(LocalDate.of(2024, 5, 1), LocalDate.of(2024, 12, 31)));
+    }
+
+    @Test
+    void dailyAndWeeklyStartInsideTheWindow() {
+        RecurrenceRule everyThirdDay = new RecurrenceRule(RecurrenceRule.DAILY, 3, LocalDate.of(2024, 1, 1));
+        assertEquals(List.of(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 4)),
+                everyThirdDay.occurrences(LocalDate.of(2024, 2, 29), LocalDate.of(2024, 3, 5)));
+        RecurrenceRule biweekly = new RecurrenceRule(RecurrenceRule.WEEKLY, 2, LocalDate.of(2024, 4, 1));
+        assertEquals(List.of(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 15), LocalDate.of(2024, 4, 29)),
+                biweekly.occurrences(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 4, 30)));
+    }
+
+    @Test
+    void untilAndCountEndWhicheverComesFirst() {
+        RecurrenceRule weekly = new RecurrenceRule(RecurrenceRule.WEEKLY, 1, LocalDate.of(2024, 4, 1));
+        // 展開する期間の終わりとして使うので、終了日の方が先なら終了日そのもの
+        assertEquals(LocalDate.of(2024, 4, 20), weekly.withUntil(LocalDate.of(2024, 4, 20)).withCount(10).getLast());
+        assertEquals(LocalDate.of(2024, 4, 8), weekly.withUntil(LocalDate.of(2024, 4, 20)).withCount(2).getLast());
+        RecurrenceRule until = weekly.withUntil(LocalDate.of(2024, 4, 15));
+        // 終了日の当日も含む
+        assertEquals(3, until.occurrences(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)).size());
+        assertTrue(until.overlaps(LocalDate.of(2024, 4, 15), LocalDate.of(2024, 5, 1)));
+        assertFalse(until.overlaps(LocalDate.of(2024, 4, 16), LocalDate.of(2024, 5, 1)));
+        assertFalse(until.overlaps(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31)));
+    }
+
+    @Test
+    void exceptionsAreHiddenButStillCounted() {
+        RecurrenceRule rule = new RecurrenceRule(RecurrenceRule.DAILY, 1, LocalDate.of(2024, 4, 1))
+                .withCount(3).withException(LocalDate.of(2024, 4, 2));
+        assertEquals(List.of(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 3)),
+                rule.occurrences(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 30)));
+        assertEquals(LocalDate.of(2024, 4, 3), rule.getLast());
+        RecurrenceRule monthly = new RecurrenceRule(RecurrenceRule.MONTHLY, 1, LocalDate.of(2024, 1, 31))
+                .withException(LocalDate.of(2024, 3, 31));
+        assertEquals(List.of(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 5, 31)),
+                monthly.occurrences(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 6, 30)));
+    }
+
+    @Test
+    void rejectsInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> new RecurrenceRule(0, 1, LocalDate.of(2024, 1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> new RecurrenceRule(RecurrenceRule.DAILY, 0, LocalDate.of(2024, 1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> new RecurrenceRule(RecurrenceRule.DAILY, 1, LocalDate.of(2024, 1, 1)).withCount(-1));
+    }
+
+    @Test
+    void storeExpandsMonthsOnDemandAndInvalidatesOnChange() {
+        AppointmentStore store = new AppointmentStore();
+        User alice = new User("001", "alice", Color.RED, true);
+        Appointment standup = new Appointment("朝会", "", alice);
+        store.putSeries(standup, new RecurrenceRule(RecurrenceRule.WEEKLY, 1, LocalDate.of(2024, 4, 1)));
+        assertEquals(5, store.occurrences(YearMonth.of(2024, 4)).size());
+        assertEquals(List.of(standup), store.occurrencesOn(LocalDate.of(2024, 4, 8)));
+        assertTrue(store.occurrencesOn(LocalDate.of(2024, 4, 9)).isEmpty());
+
+        // 同じ所有者・タイトルで置き換えると、展開済みの月も新しい規則で作り直される
+        store.putSeries(standup, new RecurrenceRule(RecurrenceRule.WEEKLY, 1, LocalDate.of(2024, 4, 1)).withCount(2));
+        assertEquals(1, store.seriesCount());
+        assertEquals(2, store.occurrences(YearMonth.of(2024, 4)).size());
+        assertTrue(store.occurrences(YearMonth.of(2024, 5)).isEmpty());
+
+        List<LocalDate> dates = new ArrayList<>(store.occurrences(YearMonth.of(2024, 4)).keySet());
+        dates.sort(null);
+        assertEquals(List.of(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 8)), dates);
+        store.removeSeries(alice, "朝会");
+        assertTrue(store.occurrences(YearMonth.of(2024, 4)).isEmpty());
+        assertNull(store.findSeries(alice, "朝会"));
+    }
+}
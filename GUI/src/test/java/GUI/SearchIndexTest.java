@@ -0,0 +1,174 @@
+package GUI;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 2-gram による部分一致、絞り込み、予定の置き換えと詰め直し、チャットログからの後追いの索引付けを確かめる。
+ */
+class SearchIndexTest {
+
+    private final User alice = new User("001", "alice", Color.RED, true);
+    private final User bob = new User("002", "bob", Color.BLUE, false);
+    private final Group tech = new Group("G01", "技術部", '技');
+    private final Group sales = new Group("G02", "営業部", '営');
+    private final LocalDate date = LocalDate.of(2024, 4, 10);
+    private final SearchIndex index = new SearchIndex();
+
+    @Test
+    void findsSubstringsByBigrams() {
+        put(date, new Appointment("定例会議", "第1会議室", alice));
+        put(date, new Appointment("会食", "", alice));
+
+        assertEquals(List.of("定例会議"), titles(search("例会")));
+        assertEquals(List.of("定例会議"), titles(search("会議室")));
+        // 2-gram はそろっていても続いて現れない語は確かめで落とす
+        assertTrue(search("議会").isEmpty());
+        assertTrue(search("未登録").isEmpty());
+        // 1文字の語はその文字で始まる 2-gram の和で引く
+        assertEquals(Set.of("定例会議", "会食"), Set.copyOf(titles(search("会"))));
+        assertEquals(List.of("会食"), titles(search("食")));
+    }
+
+    @Test
+    void normalizesWidthAndCaseAndRequiresAllTerms() {
+        put(date, new Appointment("ＡＢＣ Review", "資料", alice));
+        put(date, new Appointment("abc", "", alice));
+
+        assertEquals(Set.of("ＡＢＣ Review", "abc"), Set.copyOf(titles(search("abc"))));
+        assertEquals(List.of("ＡＢＣ Review"), titles(search("ABC review")));
+        assertEquals(List.of("ＡＢＣ Review"), titles(search("  資料   abc ")));
+        assertTrue(search("   ").isEmpty());
+    }
+
+    @Test
+    void returnsNewestFirstWithinLimitAndRange() {
+        for (int i = 0; i < 50; i++) put(date.plusDays(i), new Appointment("予定" + i, "打ち合わせ", alice));
+
+        List<SearchIndex.Hit> hits = index.search("打ち合わせ", null, null, null, null, 3);
+        assertEquals(List.of("予定49", "予定48", "予定47"), titles(hits));
+        assertEquals(date.plusDays(49), hits.get(0).getDate());
+        List<SearchIndex.Hit> ranged = index.search("打ち合わせ", null, null, date.plusDays(10), date.plusDays(12), 10);
+        assertEquals(List.of("予定12", "予定11", "予定10"), titles(ranged));
+    }
+
+    @Test
+    void filtersChatByGroupAndAppointmentsByVisibleOwners() {
+        tech.addMessages(List.of(new ChatMessage(alice, "リリースの日程", date.atTime(9, 0)),
+                new ChatMessage(bob, "リリース前の確認", date.atTime(10, 0))));
+        sales.addMessage(new ChatMessage(bob, "リリースの告知", date.atTime(11, 0)));
+        index.addMessages(tech, 0, tech.getChatHistory());
+        index.addMessages(sales, 0, sales.getChatHistory());
+        put(date, new Appointment("リリース", "", alice));
+        put(date, new Appointment("リリース", "", bob));
+
+        assertEquals(5, search("リリース").size());
+        List<SearchIndex.Hit> hits = index.search("リリース", tech, Set.of(alice, tech), null, null, 10);
+        assertEquals(3, hits.size());
+        for (SearchIndex.Hit hit : hits) {
+            if (hit.getKind() == SearchIndex.CHAT) assertSame(tech, hit.getGroup());
+            else assertSame(alice, hit.getAppointment().getOwner());
+        }
+        SearchIndex.Hit chat = index.search("確認", tech, Set.of(alice, tech), null, null, 10).get(0);
+        assertEquals(1, chat.getSequence());
+        assertEquals("リリース前の確認", chat.getMessage().getText());
+    }
+
+    @Test
+    void replacedAndRemovedAppointmentsAreNotFound() {
+        Appointment first = new Appointment("会議", "旧資料", alice);
+        put(date, first);
+        put(date, new Appointment("会議", "新資料", alice));
+        assertTrue(search("旧資料").isEmpty());
+        assertEquals(1, search("新資料").size());
+
+        index.removeAppointment(date, first);
+        assertTrue(search("会議").isEmpty());
+
+        Appointment weekly = new Appointment("週次定例", "", alice);
+        index.putSeries(weekly, new RecurrenceRule(RecurrenceRule.WEEKLY, 1, date).withCount(3));
+        assertEquals(1, index.search("定例", null, null, date.plusWeeks(2), date.plusWeeks(2), 10).size());
+        assertTrue(index.search("定例", null, null, date.plusWeeks(3), null, 10).isEmpty());
+        index.removeSeries(weekly);
+        assertTrue(search("定例").isEmpty());
+    }
+
+    @Test
+    void compactionKeepsRemainingDocumentsSearchable() {
+        for (int i = 0; i < 100; i++) put(date.plusDays(i), new Appointment("残す" + i, "保存", alice));
+        // 同じ予定を何度も置き換えて削除の印を溜め、詰め直しを起こす
+        for (int i = 0; i < 3000; i++) put(date, new Appointment("置き換え", "版" + i, bob));
+
+        assertTrue(removedPending() < 1024, index.describeMetrics());
+        assertEquals(100, index.search("保存", null, null, null, null, 1000).size());
+        assertEquals(List.of("置き換え"), titles(search("版2999")));
+        assertTrue(search("版2998").isEmpty());
+        // 詰め直した後の追加と削除も正しく引ける
+        Appointment added = new Appointment("追加", "後から", alice);
+        put(date, added);
+        assertEquals(1, search("後から").size());
+        index.removeAppointment(date, added);
+        assertTrue(search("後から").isEmpty());
+    }
+
+    @Test
+    void backfillsHistoryFromChatLog() throws Exception {
+        Path dir = Files.createTempDirectory("search-index-test");
+        try (ChatLog log = ChatLog.open(dir, id -> alice)) {
+            List<ChatMessage> messages = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                messages.add(new ChatMessage(alice, (i == 123 ? "古い障害報告" : "雑談" + i), LocalDateTime.of(2024, 1, 1, 9, 0).plusMinutes(i)));
+            }
+            log.appendAll(messages);
+            tech.attachChatLog(log);
+            index.indexHistory(tech, log, log.size());
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (!index.describeMetrics().endsWith("未索引のチャット 0 件") && System.nanoTime() < deadline) Thread.sleep(20);
+
+            List<SearchIndex.Hit> hits = search("障害");
+            assertEquals(1, hits.size());
+            // 履歴として読み込んでいない古いメッセージはチャットログから読む
+            assertEquals(123, hits.get(0).getSequence());
+            assertEquals("古い障害報告", hits.get(0).getMessage().getText());
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // --- 補助 ---
+
+    private void put(LocalDate date, Appointment appointment) {
+        index.putAppointment(date, appointment);
+    }
+
+    private List<SearchIndex.Hit> search(String query) {
+        return index.search(query, null, null, null, null, 100);
+    }
+
+    private static List<String> titles(List<SearchIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.getAppointment().getTitle()).collect(Collectors.toList());
+    }
+
+    private int removedPending() {
+        String metrics = index.describeMetrics();
+        int start = metrics.indexOf("削除待ち ") + "削除待ち ".length();
+        return Integer.parseInt(metrics.substring(start, metrics.indexOf(" 件", start)));
+    }
+}
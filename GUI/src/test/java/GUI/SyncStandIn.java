@@ -0,0 +1,392 @@
+package GUI;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * 同期サーバー（server/SyncServer）の代わりに同じプロセスの中で動かす、小さな中継サーバー。
+ * SyncClient と同じフレーム形式を話し、予定は（グループ, 日付, 所有者, タイトル）ごとに最後に届いたものを覚えておいて
+ * SUBSCRIBE されたら範囲内の分を送る。ログインはどのユーザー名でも受け付け（トークンにはユーザー名をそのまま返す）、
+ * 全員を同じグループのメンバーとして扱い、
+ * 購読範囲によらず送信者以外の全員に中継する。
+ *
+ * <p>setOnline(false) で全接続を切って新しい接続も拒むので、ネットワークが切れた状態を再現できる。
+ * 保持している予定はそのまま残る。</p>
+ *
+ * <p>main はいくつかのクライアントに接続・切断を繰り返させながら同じ予定を並行して編集させ、
+ * 最後に全員の予定が一致するかを確かめる。</p>
+ * <p>実行（mvn -pl GUI test-compile のあと）: java -cp GUI/target/classes:GUI/target/test-classes GUI.SyncStandIn
+ * [クライアント数=3] [ラウンド数=20] [1ラウンドの変更数=20] [乱数の種=1]。SyncStandInTest は小さい値で同じ確認をする。</p>
+ */
+public class SyncStandIn implements Closeable {
+
+    // --- SyncClient / server/SyncServer と同じ値 ---
+    private static final byte LOGIN = 1;
+    private static final byte LOGIN_OK = 2;
+    private static final byte PUBLISH = 4;
+    private static final byte DELIVER = 5;
+    private static final byte SUBSCRIBE = 6;
+    private static final byte RESUME = 8;
+    private static final byte KIND_CHAT = 1;
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    // グループID → エポック日 → 予定のキー → DELIVER フレーム
+    private final Map<String, TreeMap<Integer, Map<String, byte[]>>> calendars = new HashMap<>();
+    private final WireCodec codec = new WireCodec();
+    private volatile boolean online = true;
+
+    public SyncStandIn() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptThread = new Thread(this::acceptLoop, "sync-stand-in");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** false にすると全接続を切り、true に戻すまで新しい接続をすぐ閉じる。 */
+    public void setOnline(boolean online) {
+        this.online = online;
+        if (!online) {
+            for (Connection connection : connections) connection.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        setOnline(false);
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (!online) {
+                    socket.close();
+                    continue;
+                }
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                Thread thread = new Thread(connection::readLoop, "sync-stand-in-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // 閉じられた
+            }
+        }
+    }
+
+    // 予定を覚えて、送信者以外に中継する。順序が入れ替わらないよう1つずつ処理する
+    private synchronized void publish(Connection sender, String groupId, byte kind, byte[] payload) throws IOException {
+        byte[] deliver = deliverFrame(groupId, sender.userId, kind, payload);
+        if (kind != KIND_CHAT) {
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            record.get();
+            int epochDay = (int) WireCodec.unzigzag(WireCodec.getVarlong(record));
+            String key = record.get() + ":" + codec.getString(record) + "\u0000" + codec.getString(record);
+            calendars.computeIfAbsent(groupId, id -> new TreeMap<>()).computeIfAbsent(epochDay, day -> new HashMap<>()).put(key, deliver);
+        }
+        for (Connection connection : connections) {
+            if (connection != sender) connection.send(deliver);
+        }
+    }
+
+    private synchronized void sendRange(Connection connection, int from, int to) {
+        for (TreeMap<Integer, Map<String, byte[]>> calendar : calendars.values()) {
+            for (Map<String, byte[]> day : calendar.subMap(from, true, to, true).values()) {
+                for (byte[] deliver : day.values()) connection.send(deliver);
+            }
+        }
+    }
+
+    private static byte[] deliverFrame(String groupId, String senderId, byte kind, byte[] payload) {
+        byte[] group = groupId.getBytes(StandardCharsets.UTF_8);
+        byte[] sender = senderId.getBytes(StandardCharsets.UTF_8);
+        int bodySize = 1 + 2 + group.length + 2 + sender.length + 1 + payload.length;
+        return ByteBuffer.allocate(4 + bodySize).putInt(bodySize).put(DELIVER)
+                .putShort((short) group.length).put(group).putShort((short) sender.length).put(sender)
+                .put(kind).put(payload).array();
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private String userId = "";
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void readLoop() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                while (true) {
+                    byte[] body = new byte[in.readInt()];
+                    in.readFully(body);
+                    ByteBuffer frame = ByteBuffer.wrap(body);
+                    byte type = frame.get();
+                    if (type == LOGIN || type == RESUME) {
+                        userId = getString(frame);
+                        byte[] id = userId.getBytes(StandardCharsets.UTF_8);
+                        send(ByteBuffer.allocate(4 + 1 + 4 + 2 * id.length).putInt(1 + 4 + 2 * id.length).put(LOGIN_OK)
+                                .putShort((short) id.length).put(id).putShort((short) id.length).put(id).array());
+                    } else if (type == PUBLISH) {
+                        String groupId = getString(frame);
+                        byte kind = frame.get();
+                        byte[] payload = new byte[frame.remaining()];
+                        frame.get(payload);
+                        publish(this, groupId, kind, payload);
+                    } else if (type == SUBSCRIBE) {
+                        sendRange(this, frame.getInt(), frame.getInt());
+                    }
+                }
+            } catch (EOFException e) {
+                // クライアントが切断した
+            } catch (IOException e) {
+                // setOnline(false) で閉じた
+            } finally {
+                close();
+            }
+        }
+
+        synchronized void send(byte[] frame) {
+            try {
+                out.write(frame);
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // すでに閉じている
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // --- 収束の確認 ---
+
+    public static void main(String[] args) throws Exception {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int changesPerRound = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        converge(clientCount, rounds, changesPerRound, seed, true);
+    }
+
+    /**
+     * clientCount 台のクライアントに rounds 回ずつ編集させ、全員の予定が一致するまで（最大 60 秒）待つ。
+     * @param report true なら結果と各クライアントの状態を標準出力に表示する
+     * @return 一致したら true
+     */
+    static boolean converge(int clientCount, int rounds, int changesPerRound, long seed, boolean report) throws Exception {
+        Path dir = Files.createTempDirectory("sync-stand-in");
+        List<Replica> replicas = new ArrayList<>();
+        try (SyncStandIn server = new SyncStandIn()) {
+            for (int i = 0; i < clientCount; i++) replicas.add(new Replica(i, clientCount, dir.resolve("client" + i), server.getPort()));
+            Random random = new Random(seed);
+            LocalDate base = LocalDate.of(2026, 1, 1);
+            for (int round = 0; round < rounds; round++) {
+                // ときどきサーバーとの接続を切り、その間も各クライアントに編集を続けさせる
+                boolean partition = random.nextInt(3) == 0;
+                if (partition) server.setOnline(false);
+                List<CompletableFuture<Void>> edits = new ArrayList<>();
+                for (int i = 0; i < changesPerRound; i++) {
+                    Replica replica = replicas.get(random.nextInt(clientCount));
+                    LocalDate date = base.plusDays(random.nextInt(5));
+                    String title = "予定" + random.nextInt(4);
+                    boolean remove = random.nextInt(4) == 0;
+                    String details = "r" + round + "-" + i;
+                    edits.add(replica.edit(date, title, details, remove));
+                }
+                CompletableFuture.allOf(edits.toArray(new CompletableFuture<?>[0])).join();
+                Thread.sleep(partition ? 300 : 50);
+                if (partition) server.setOnline(true);
+            }
+            long start = System.nanoTime();
+            boolean converged = false;
+            while (System.nanoTime() - start < 60_000_000_000L) {
+                Thread.sleep(200);
+                if (converged(replicas)) {
+                    converged = true;
+                    break;
+                }
+            }
+            if (!report) return converged;
+            System.out.printf("クライアント数=%d ラウンド数=%d 変更数=%d: %s（%.1f 秒）%n", clientCount, rounds, rounds * changesPerRound,
+                    converged ? "全員の予定が一致しました" : "一致しませんでした", (System.nanoTime() - start) / 1e9);
+            for (Replica replica : replicas) System.out.println("  " + replica.name + ": " + replica.call(replica.sync::describe));
+            System.out.print(Metrics.describe());
+            if (!converged) {
+                for (Replica replica : replicas) System.out.println("  " + replica.name + ": " + replica.call(replica::snapshot));
+            }
+            return converged;
+        } finally {
+            for (Replica replica : replicas) replica.close();
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static boolean converged(List<Replica> replicas) {
+        Set<String> first = null;
+        for (Replica replica : replicas) {
+            if (replica.call(() -> replica.sync.isOnline() && replica.state.pending().isEmpty()) != Boolean.TRUE) return false;
+            Set<String> snapshot = replica.call(replica::snapshot);
+            if (first == null) first = snapshot;
+            else if (!first.equals(snapshot)) return false;
+        }
+        return true;
+    }
+
+    /** 1つのクライアント。モデルは専用の1スレッドだけが触る。 */
+    private static final class Replica implements SyncClient.Listener {
+        final String name;
+        final CalendarModel model;
+        final Group group;
+        final SyncState state;
+        final OfflineSync sync;
+        final ExecutorService thread = Executors.newSingleThreadExecutor();
+
+        Replica(int index, int count, Path dir, int port) throws IOException {
+            name = "client" + index;
+            User me = new User(String.format("%03d", index), name, Color.WHITE, true);
+            model = new CalendarModel(me);
+            group = new Group("G01", "技術部", '技');
+            for (int i = 0; i < count; i++) {
+                group.addUser(i == index ? me : new User(String.format("%03d", i), "client" + i, Color.WHITE, false));
+            }
+            model.addGroup(group);
+            state = SyncState.open(dir);
+            sync = new OfflineSync(model, state, thread);
+            SyncClient.Session session = new SyncClient.Session(name, new char[0]);
+            call(() -> {
+                sync.subscribe(LocalDate.of(2025, 1, 1), LocalDate.of(2027, 12, 31));
+                sync.start(() -> {
+                    SyncClient client = SyncClient.connect(InetAddress.getLoopbackAddress().getHostAddress(), port, session);
+                    client.startReceiving(this);
+                    return client;
+                }, "stand-in");
+                return null;
+            });
+        }
+
+        CompletableFuture<Void> edit(LocalDate date, String title, String details, boolean remove) {
+            return CompletableFuture.runAsync(() -> {
+                if (remove) {
+                    Appointment existing = model.getAppointments().find(date, group, title);
+                    if (existing != null && model.remove(date, existing)) sync.localRemove(date, existing);
+                } else {
+                    Appointment appointment = new Appointment(title, details, group);
+                    model.upsert(date, appointment);
+                    sync.localUpsert(date, appointment);
+                }
+            }, thread);
+        }
+
+        Set<String> snapshot() {
+            Set<String> result = new TreeSet<>();
+            for (CalendarModel.Entry entry : model.entries()) {
+                result.add(entry.getDate() + " " + entry.getAppointment().getTitle() + " " + entry.getAppointment().getDetails());
+            }
+            return result;
+        }
+
+        <T> T call(Callable<T> task) {
+            try {
+                return thread.submit(task).get();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void close() throws IOException {
+            call(() -> {
+                sync.close();
+                return null;
+            });
+            state.close();
+            thread.shutdown();
+        }
+
+        @Override
+        public User resolveUser(String groupId, String userId) {
+            return model.resolveUser(groupId, userId);
+        }
+
+        @Override
+        public Object resolveOwner(char kind, String id) {
+            return model.resolveOwner(kind, id);
+        }
+
+        @Override
+        public void chatReceived(String groupId, ChatMessage message) {
+            // 予定の収束だけを確かめる
+        }
+
+        @Override
+        public void appointmentUpserted(String groupId, LocalDate date, Appointment appointment, VersionVector version) {
+            sync.receive(date, appointment, version, false);
+        }
+
+        @Override
+        public void appointmentRemoved(String groupId, LocalDate date, Appointment appointment, VersionVector version) {
+            sync.receive(date, appointment, version, true);
+        }
+
+        @Override
+        public void resyncNeeded(String groupId) {
+            // チャットは扱わない
+        }
+
+        @Override
+        public void connectionLost() {
+            sync.connectionLost();
+        }
+    }
+}
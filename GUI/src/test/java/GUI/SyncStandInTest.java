@@ -0,0 +1,16 @@
+package GUI;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SyncStandIn につないだクライアントに、接続を切りながら同じ予定を編集させ、最後に全員の予定がそろうことを確かめる。
+ */
+class SyncStandInTest {
+
+    @Test
+    void replicasConvergeAfterPartitions() throws Exception {
+        assertTrue(SyncStandIn.converge(3, 3, 5, 1, false), "全員の予定が一致しなかった");
+    }
+}
@@ -0,0 +1,75 @@
+package GUI;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 末尾が壊れた state.log を読み込んでも起動でき、壊れた部分だけが捨てられることを確かめる。
+ */
+class SyncStateTest {
+
+    private final Group group = new Group("G01", "技術部", '技');
+    private final LocalDate date = LocalDate.of(2024, 4, 1);
+    private Path dir;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("sync-state-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void hugeLengthIsTreatedAsEndOfLog() throws IOException {
+        assertTailIsDiscarded(ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array());
+    }
+
+    @Test
+    void negativeLengthIsTreatedAsEndOfLog() throws IOException {
+        assertTailIsDiscarded(ByteBuffer.allocate(4).putInt(-1).array());
+    }
+
+    @Test
+    void zeroLengthIsTreatedAsEndOfLog() throws IOException {
+        assertTailIsDiscarded(new byte[8]);
+    }
+
+    @Test
+    void unreadablePayloadIsTreatedAsEndOfLog() throws IOException {
+        // 長さはファイルに収まるが、文字列の長さが本体をはみ出している
+        assertTailIsDiscarded(ByteBuffer.allocate(13).putInt(9).put((byte) 1).putInt(0).putInt(1_000_000).array());
+    }
+
+    private void assertTailIsDiscarded(byte[] garbage) throws IOException {
+        try (SyncState state = SyncState.open(dir)) {
+            state.put(SyncState.newEntry(date, group, "定例").with(VersionVector.EMPTY.increment(state.getReplicaId()), false, true));
+        }
+        Path log = dir.resolve("state.log");
+        long valid = Files.size(log);
+        Files.write(log, garbage, StandardOpenOption.APPEND);
+
+        try (SyncState state = SyncState.open(dir)) {
+            assertEquals(1, state.size());
+            assertNotNull(state.get(date, group, "定例"));
+        }
+        assertEquals(valid, Files.size(log));
+    }
+}
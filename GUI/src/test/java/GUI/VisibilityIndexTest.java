@@ -0,0 +1,90 @@
+package GUI;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 表示してよい所有者の集合が、グループやメンバーが増えたときだけ作り直されることを確かめる。
+ */
+class VisibilityIndexTest {
+
+    private final User me = new User("001", "alice", Color.RED, true);
+    private final User bob = new User("002", "bob", Color.BLUE, false);
+    private final User carol = new User("003", "carol", Color.GREEN, false);
+    private final CalendarModel model = new CalendarModel(me);
+    private final VisibilityIndex index = model.getVisibilityIndex();
+
+    @Test
+    void myPageShowsMeAndMyGroupsOnly() {
+        Group tech = new Group("G01", "技術部", '技');
+        tech.addUser(me);
+        tech.addUser(bob);
+        Group sales = new Group("G02", "営業部", '営');
+        sales.addUser(bob);
+        model.addGroup(tech);
+        model.addGroup(sales);
+
+        assertEquals(Set.of(me, tech), index.visibleOwners(null));
+        assertFalse(index.isVisible(bob, null));
+        assertFalse(index.isVisible(sales, null));
+    }
+
+    @Test
+    void myPageIsRebuiltWhenIJoinAGroup() {
+        Group tech = new Group("G01", "技術部", '技');
+        model.addGroup(tech);
+        Set<Object> before = index.visibleOwners(null);
+        assertEquals(Set.of(me), before);
+        // 変化がなければ同じ集合を使い回す
+        assertSame(before, index.visibleOwners(null));
+
+        tech.addUser(me);
+        assertTrue(index.isVisible(tech, null));
+
+        Group sales = new Group("G02", "営業部", '営');
+        sales.addUser(me);
+        model.addGroup(sales);
+        assertEquals(Set.of(me, tech, sales), index.visibleOwners(null));
+    }
+
+    @Test
+    void groupPageIsRebuiltWhenAMemberJoins() {
+        Group tech = new Group("G01", "技術部", '技');
+        tech.addUser(me);
+        tech.addUser(bob);
+        model.addGroup(tech);
+        Set<Object> before = index.visibleOwners(tech);
+        assertEquals(Set.of(me, bob, tech), before);
+        assertSame(before, index.visibleOwners(tech));
+        assertFalse(index.isVisible(carol, tech));
+
+        tech.addUser(carol);
+        assertTrue(index.isVisible(carol, tech));
+        assertEquals(Set.of(me, bob, carol, tech), index.visibleOwners(tech));
+    }
+
+    @Test
+    void groupPagesAreIndependent() {
+        Group tech = new Group("G01", "技術部", '技');
+        tech.addUser(bob);
+        Group sales = new Group("G02", "営業部", '営');
+        sales.addUser(carol);
+        model.addGroup(tech);
+        model.addGroup(sales);
+
+        // 自分が所属していないグループでも、その画面では自分の予定は表示する
+        assertEquals(Set.of(me, bob, tech), index.visibleOwners(tech));
+        assertEquals(Set.of(me, carol, sales), index.visibleOwners(sales));
+        Set<Object> salesOwners = index.visibleOwners(sales);
+        tech.addUser(carol);
+        assertTrue(index.isVisible(carol, tech));
+        assertSame(salesOwners, index.visibleOwners(sales));
+    }
+}
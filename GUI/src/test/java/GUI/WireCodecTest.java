@@ -0,0 +1,272 @@
+package GUI;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * WireCodec の往復（書いて読むと元に戻ること）を確かめる。
+ * ヒープのバッファとダイレクトバッファでは文字列の読み方が違うので、文字列はどちらでも確かめる。
+ */
+class WireCodecTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Tokyo");
+
+    private final WireCodec codec = new WireCodec(ZONE);
+    private final User me = new User("001", "智也", new Color(135, 206, 250), true);
+    private final User other = new User("002", "田中", new Color(220, 220, 220), false);
+    private final Group group = new Group("G01", "技術部", '技');
+    private final AppointmentJournal.OwnerResolver owners = (kind, id) -> kind == 'G' ? group : group.findUserById(id);
+
+    WireCodecTest() {
+        group.addUser(me);
+        group.addUser(other);
+    }
+
+    // --- 可変長整数 ---
+
+    @Test
+    void varlongBoundaries() {
+        long[] values = {0, 1, 0x7F, 0x80, 0x3FFF, 0x4000, Integer.MAX_VALUE, 0xFFFFFFFFL,
+                Long.MAX_VALUE >>> 7, (Long.MAX_VALUE >>> 7) + 1, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        for (long value : values) {
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            WireCodec.putVarlong(buffer, value);
+            assertEquals(WireCodec.varlongSize(value), buffer.position(), "書いたバイト数: " + value);
+            buffer.flip();
+            assertEquals(value, WireCodec.getVarlong(buffer), "値: " + value);
+            assertFalse(buffer.hasRemaining());
+        }
+        // 7ビットの境目でちょうど1バイト増える
+        assertEquals(1, WireCodec.varlongSize(0x7F));
+        assertEquals(2, WireCodec.varlongSize(0x80));
+        assertEquals(2, WireCodec.varlongSize(0x3FFF));
+        assertEquals(3, WireCodec.varlongSize(0x4000));
+        assertEquals(10, WireCodec.varlongSize(-1));
+    }
+
+    @Test
+    void zigzagBoundaries() {
+        long[] values = {0, 1, -1, 63, -64, 64, -65, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            assertEquals(value, WireCodec.unzigzag(WireCodec.zigzag(value)), "値: " + value);
+        }
+        // 絶対値の小さい負の数も1バイトに収まる
+        assertEquals(1, WireCodec.varlongSize(WireCodec.zigzag(-64)));
+        assertEquals(2, WireCodec.varlongSize(WireCodec.zigzag(64)));
+        assertEquals(-1, WireCodec.zigzag(Long.MIN_VALUE));
+    }
+
+    @Test
+    void overlongVarlongIsRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(11);
+        for (int i = 0; i < 10; i++) buffer.put((byte) 0x80);
+        buffer.put((byte) 0x01).flip();
+        assertThrows(IllegalArgumentException.class, () -> WireCodec.getVarlong(buffer));
+    }
+
+    // --- 文字列 ---
+
+    @Test
+    void emptyString() {
+        for (ByteBuffer buffer : buffers()) {
+            assertEquals("", roundTrip(buffer, ""));
+            assertEquals(1, WireCodec.stringSize(""));
+        }
+    }
+
+    @Test
+    void stringsMatchJdkEncoding() {
+        String[] values = {"a", "ascii only", "\u007F\u0080", "߿ࠀ", "￿", "会議室Aに変更",
+                "🙂", "絵文字🙂と😀𠮷", "🙂🙂", "\u0000"};
+        for (String value : values) {
+            byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+            assertEquals(expected.length, WireCodec.utf8Length(value), "UTF-8 の長さ: " + value);
+            for (ByteBuffer buffer : buffers()) {
+                WireCodec.putString(buffer, value);
+                buffer.flip();
+                assertEquals(expected.length, (int) WireCodec.getVarlong(buffer));
+                byte[] actual = new byte[buffer.remaining()];
+                buffer.get(actual);
+                assertArrayEquals(expected, actual, "符号化: " + value);
+                buffer.clear();
+                assertEquals(value, roundTrip(buffer, value));
+            }
+        }
+    }
+
+    @Test
+    void unpairedSurrogatesBecomeReplacementCharacter() {
+        String[][] cases = {
+                {"\uD83D", "�"},
+                {"\uDE42", "�"},
+                {"a\uD83Db", "a�b"},
+                {"\uDE42\uD83D", "��"},
+                {"末尾\uD83D", "末尾�"},
+                {"\uD83D🙂", "�🙂"},
+        };
+        for (String[] c : cases) {
+            assertEquals(c[1].getBytes(StandardCharsets.UTF_8).length, WireCodec.utf8Length(c[0]));
+            for (ByteBuffer buffer : buffers()) {
+                assertEquals(c[1], roundTrip(buffer, c[0]));
+            }
+        }
+    }
+
+    @Test
+    void longStringGrowsScratchBuffer() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) text.append("長い本文🙂");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WireCodec.stringSize(text.toString()));
+        assertEquals(text.toString(), roundTrip(buffer, text.toString()));
+    }
+
+    @Test
+    void truncatedStringIsRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        WireCodec.putVarlong(buffer, 10);
+        buffer.put((byte) 'a').flip();
+        assertThrows(IllegalArgumentException.class, () -> codec.getString(buffer));
+    }
+
+    // --- チャット ---
+
+    @Test
+    void chatRoundTrip() {
+        List<ChatMessage> messages = List.of(
+                new ChatMessage(me, "よろしくお願いします🙂", LocalDateTime.of(2024, 4, 1, 9, 0, 0, 123_000_000)),
+                new ChatMessage(other, "", LocalDateTime.of(2024, 4, 1, 9, 0)),
+                new ChatMessage(me, "昔の話", LocalDateTime.of(1969, 12, 31, 23, 59, 59)),
+                new ChatMessage(other, "途中で切れた\uD83D", LocalDateTime.of(1900, 1, 1, 0, 0)));
+        // 対になっていないサロゲートだけが U+FFFD に置き換わる
+        List<String> expectedTexts = List.of("よろしくお願いします🙂", "", "昔の話", "途中で切れた�");
+        for (ByteBuffer buffer : buffers()) {
+            for (ChatMessage message : messages) {
+                int before = buffer.position();
+                codec.writeChat(buffer, message);
+                assertEquals(codec.chatSize(message), buffer.position() - before);
+            }
+            buffer.flip();
+            for (int i = 0; i < messages.size(); i++) {
+                ChatMessage expected = messages.get(i);
+                assertEquals(WireCodec.TYPE_CHAT, codec.peekType(buffer));
+                ChatMessage actual = codec.readChat(buffer, group::findUserById);
+                assertSame(expected.getSender(), actual.getSender());
+                assertEquals(expectedTexts.get(i), actual.getText());
+                assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            }
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    // --- 予定 ---
+
+    @Test
+    void appointmentRoundTripWithNegativeEpochDays() {
+        LocalDate[] dates = {LocalDate.of(1970, 1, 1), LocalDate.of(1969, 12, 31), LocalDate.of(1900, 1, 1),
+                LocalDate.of(2024, 2, 29), LocalDate.MIN, LocalDate.MAX};
+        for (LocalDate date : dates) {
+            Appointment appointment = new Appointment("定例", "会議室A\n資料を準備", group);
+            Appointment actual = roundTrip(date, appointment, VersionVector.EMPTY, date);
+            assertSame(group, actual.getOwner());
+        }
+    }
+
+    @Test
+    void appointmentRoundTripWithTimesAndEmptyStrings() {
+        LocalDate date = LocalDate.of(2024, 4, 1);
+        Appointment allDay = new Appointment("", "", me);
+        Appointment actual = roundTrip(date, allDay, VersionVector.EMPTY, date);
+        assertNull(actual.getStart());
+        assertNull(actual.getEnd());
+        assertSame(me, actual.getOwner());
+
+        // 0:00 は終日（0）と区別される
+        Appointment timed = new Appointment("朝会", "🙂", other, LocalTime.MIDNIGHT, LocalTime.of(23, 59));
+        actual = roundTrip(date, timed, VersionVector.EMPTY, date);
+        assertEquals(LocalTime.MIDNIGHT, actual.getStart());
+        assertEquals(LocalTime.of(23, 59), actual.getEnd());
+    }
+
+    @Test
+    void appointmentRoundTripWithVersionVector() {
+        LocalDate date = LocalDate.of(2024, 4, 1);
+        VersionVector version = VersionVector.EMPTY.increment("A").increment("A").increment("レプリカB");
+        Appointment appointment = new Appointment("設計レビュー", "詳細", group, LocalTime.of(10, 0), LocalTime.of(11, 30));
+        for (ByteBuffer buffer : buffers()) {
+            codec.writeAppointment(buffer, date, appointment, version);
+            assertEquals(codec.appointmentSize(date, appointment, version), buffer.position());
+            buffer.flip();
+            List<VersionVector> read = new ArrayList<>();
+            codec.readAppointment(buffer, owners, (d, a, v) -> read.add(v));
+            assertEquals(List.of(version), read);
+            assertEquals(version.getWriter(), read.get(0).getWriter());
+            assertEquals(version.getWriterSum(), read.get(0).getWriterSum());
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    @Test
+    void wrongTypeAndUnknownVersionAreRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codec.writeChat(buffer, new ChatMessage(me, "x", LocalDateTime.of(2024, 4, 1, 9, 0)));
+        buffer.flip();
+        assertThrows(IllegalArgumentException.class, () -> codec.readAppointment(buffer, owners, (d, a) -> { }));
+
+        ByteBuffer future = ByteBuffer.wrap(new byte[]{(byte) ((WireCodec.VERSION + 1) << 4 | WireCodec.TYPE_CHAT)});
+        assertThrows(IllegalArgumentException.class, () -> codec.peekType(future));
+    }
+
+    // --- 補助 ---
+
+    private static List<ByteBuffer> buffers() {
+        return List.of(ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024));
+    }
+
+    private String roundTrip(ByteBuffer buffer, String value) {
+        buffer.clear();
+        WireCodec.putString(buffer, value);
+        assertEquals(WireCodec.stringSize(value), buffer.position());
+        buffer.flip();
+        String actual = codec.getString(buffer);
+        assertFalse(buffer.hasRemaining());
+        return actual;
+    }
+
+    private Appointment roundTrip(LocalDate date, Appointment appointment, VersionVector version, LocalDate expectedDate) {
+        Appointment result = null;
+        for (ByteBuffer buffer : buffers()) {
+            codec.writeAppointment(buffer, date, appointment, version);
+            assertEquals(codec.appointmentSize(date, appointment, version), buffer.position());
+            buffer.flip();
+            List<Appointment> read = new ArrayList<>();
+            codec.readAppointment(buffer, owners, (d, a) -> {
+                assertEquals(expectedDate, d);
+                read.add(a);
+            });
+            assertFalse(buffer.hasRemaining());
+            Appointment actual = read.get(0);
+            assertEquals(appointment.getTitle(), actual.getTitle());
+            assertEquals(appointment.getDetails(), actual.getDetails());
+            assertEquals(appointment.getStart(), actual.getStart());
+            assertEquals(appointment.getEnd(), actual.getEnd());
+            result = actual;
+        }
+        return result;
+    }
+}
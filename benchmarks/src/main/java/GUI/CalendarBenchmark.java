@@ -0,0 +1,181 @@
+package GUI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * カレンダーの予定の追加・更新と、日付セル・月全体の再描画を測る。
+ * 画面は Calender.createHeadless で部品だけを作り、java.awt.headless で動かす。
+ * 表示中の月の毎日に appointmentsPerDay 件の予定を、membersPerGroup 人のメンバーに割り振って入れておく。
+ * modelUpsert は画面を持たない CalendarModel だけで同じ更新を行い、モデル側の費用を切り分ける。
+ * importYear と addYearOneByOne は、1年分（365日 × appointmentsPerDay 件）の予定を
+ * 一括取り込みと1件ずつの追加で入れ直し、再描画の回数の違いを比べる。
+ * expandMonth は毎日・毎週・毎月の繰り返し予定（appointmentsPerDay 件ずつ）を、
+ * まだ展開していない月（Cold）と展開済みの月（Memoized）について問い合わせる。
+ * navigateMonths は今月と翌月を行き来し、表示内容のキャッシュを使う場合と毎回捨てる場合（Uncached）を比べる。
+ * paintMonthGrid は表示中の月の全セルを 700×480 の画像に描く（入りきらない予定は「+N 件」にまとめる）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CalendarBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int appointmentsPerDay;
+
+    @Param({"5", "50", "500"})
+    public int membersPerGroup;
+
+    private Calender calender;
+    private CalendarModel model;
+    private Group group;
+    private LocalDate target;
+    private User owner;
+    private int version;
+    private List<CalendarModel.Entry> year;
+    private YearMonth coldMonth;
+    private int navigation;
+    private BufferedImage canvas;
+
+    @Setup
+    public void setUp() {
+        User me = new User("001", "自分", new Color(135, 206, 250), true);
+        List<User> members = new ArrayList<>();
+        members.add(me);
+        for (int i = 1; i < membersPerGroup; i++) {
+            members.add(new User(String.format("M%04d", i), "メンバー" + i, Color.LIGHT_GRAY, false));
+        }
+        group = createGroup("G01", "技術部", '技', members);
+        calender = Calender.createHeadless(me, List.of(group, createGroup("G02", "営業部", '営', List.of(me))));
+        // CalendarModel.addGroup はグループの通知先をそのモデルに付け替えるので、画面なしのモデルには別のグループを渡す
+        Group modelGroup = createGroup("G01", "技術部", '技', members);
+        model = new CalendarModel(me);
+        model.addGroup(modelGroup);
+        model.addGroup(createGroup("G02", "営業部", '営', List.of(me)));
+
+        LocalDate first = LocalDate.now().withDayOfMonth(1);
+        for (LocalDate date = first; date.getMonth() == first.getMonth(); date = date.plusDays(1)) {
+            for (int i = 0; i < appointmentsPerDay; i++) {
+                User member = members.get(i % members.size());
+                calender.addOrUpdateAppointment(date, new Appointment("予定 " + i, "詳細", i % 4 == 0 ? group : member));
+                model.upsert(date, new Appointment("予定 " + i, "詳細", i % 4 == 0 ? modelGroup : member));
+            }
+        }
+        target = first.withDayOfMonth(15);
+        owner = members.get(members.size() - 1);
+        calender.addOrUpdateAppointment(target, new Appointment("更新対象", "0", owner));
+
+        int[] frequencies = {RecurrenceRule.DAILY, RecurrenceRule.WEEKLY, RecurrenceRule.MONTHLY};
+        for (int frequency : frequencies) {
+            for (int i = 0; i < appointmentsPerDay; i++) {
+                model.putRecurring(new Appointment("繰り返し " + frequency + "-" + i, "", members.get(i % members.size())),
+                        new RecurrenceRule(frequency, 1, first.minusYears(1).plusDays(i)));
+            }
+        }
+        coldMonth = YearMonth.from(first);
+
+        year = new ArrayList<>();
+        for (LocalDate date = first; date.isBefore(first.plusYears(1)); date = date.plusDays(1)) {
+            for (int i = 0; i < appointmentsPerDay; i++) {
+                Object appointmentOwner = i % 4 == 0 ? group : members.get(i % members.size());
+                year.add(new CalendarModel.Entry(date, new Appointment("年間 " + i, "詳細", appointmentOwner)));
+            }
+        }
+        model.upsert(target, new Appointment("更新対象", "0", owner));
+
+        canvas = new BufferedImage(700, 480, BufferedImage.TYPE_INT_RGB);
+        calender.getMonthGrid().setSize(canvas.getWidth(), canvas.getHeight());
+    }
+
+    private static Group createGroup(String id, String name, char iconChar, List<User> members) {
+        Group created = new Group(id, name, iconChar);
+        for (User member : members) created.addUser(member);
+        return created;
+    }
+
+    /** 既存の予定を同じタイトルで上書きする（一覧の検索とセルの再描画を含む）。 */
+    @Benchmark
+    public void addOrUpdateAppointment() {
+        calender.addOrUpdateAppointment(target, new Appointment("更新対象", String.valueOf(version++), owner));
+    }
+
+    /** 画面なしのモデルで同じ上書きを行う（通知先なし）。 */
+    @Benchmark
+    public boolean modelUpsert() {
+        return model.upsert(target, new Appointment("更新対象", String.valueOf(version++), owner));
+    }
+
+    @Benchmark
+    public int importYear() {
+        return calender.importAppointments(year.stream());
+    }
+
+    @Benchmark
+    public void addYearOneByOne() {
+        for (CalendarModel.Entry entry : year) calender.addOrUpdateAppointment(entry.getDate(), entry.getAppointment());
+    }
+
+    @Benchmark
+    public Object expandMonthCold() {
+        coldMonth = coldMonth.plusMonths(1);
+        return model.occurrences(coldMonth);
+    }
+
+    @Benchmark
+    public Object expandMonthMemoized() {
+        return model.occurrences(YearMonth.from(target));
+    }
+
+    @Benchmark
+    public void updateDateCellView() {
+        calender.updateDateCellView(target, group);
+    }
+
+    @Benchmark
+    public void updateCalendar() {
+        calender.updateCalendar();
+    }
+
+    @Benchmark
+    public void navigateMonths() {
+        calender.showMonth(YearMonth.from(target).plusMonths(navigation++ & 1));
+    }
+
+    @Benchmark
+    public void navigateMonthsUncached() {
+        calender.clearRenderCache();
+        calender.showMonth(YearMonth.from(target).plusMonths(navigation++ & 1));
+    }
+
+    @Benchmark
+    public BufferedImage paintMonthGrid() {
+        Graphics2D g = canvas.createGraphics();
+        try {
+            calender.getMonthGrid().paint(g);
+        } finally {
+            g.dispose();
+        }
+        return canvas;
+    }
+}
@@ -0,0 +1,72 @@
+package GUI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * グループのチャット履歴への追加と、メンバーの検索を測る。
+ * 各計測の前に messagesPerGroup 件の履歴を持つグループを作り直す（チャットログは付けない）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChatBenchmark {
+
+    @Param({"1000", "100000"})
+    public int messagesPerGroup;
+
+    @Param({"5", "50", "500"})
+    public int membersPerGroup;
+
+    private Group group;
+    private User sender;
+    private String lastMemberId;
+    private LocalDateTime now;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        group = new Group("G01", "技術部", '技');
+        for (int i = 0; i < membersPerGroup; i++) {
+            group.addUser(new User(String.format("M%04d", i), "メンバー" + i, Color.LIGHT_GRAY, i == 0));
+        }
+        List<User> members = group.getUsers();
+        sender = members.get(0);
+        lastMemberId = members.get(members.size() - 1).getId();
+        now = LocalDateTime.now();
+        List<ChatMessage> history = new ArrayList<>(messagesPerGroup);
+        for (int i = 0; i < messagesPerGroup; i++) {
+            history.add(new ChatMessage(members.get(i % members.size()), "メッセージ " + i, now));
+        }
+        group.addMessages(history);
+    }
+
+    @Benchmark
+    public void addMessage() {
+        group.addMessage(new ChatMessage(sender, "こんにちは", now));
+    }
+
+    /** 受信したメッセージの送信者をIDから引く。 */
+    @Benchmark
+    public User findUserById() {
+        return group.findUserById(lastMemberId);
+    }
+}
@@ -0,0 +1,127 @@
+package GUI;
+
+import java.awt.Color;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * チャット履歴を ChatMessage の ArrayList で持つ場合と、ChatStore（列ごとの配列）で持つ場合のヒープ使用量を比べる。
+ * 件数ごとに、それぞれの形で履歴を作って GC 後のヒープの増え方を測り、ChatStore については
+ * 表示する行の分だけ ChatMessage を作る（get）費用も表示する。
+ *
+ * <p>実行: java -Xmx4g -cp benchmarks/target/benchmarks.jar GUI.ChatStoreFootprint [件数...]（既定 1000000 10000000）<br>
+ * 1000 万件の ArrayList は 2 GB 近く使うので、ヒープが足りなければその件数の ArrayList は「メモリ不足」と表示して飛ばす。</p>
+ */
+public class ChatStoreFootprint {
+
+    private static final String[] TEXTS = {
+            "了解です。", "明日の資料は共有フォルダに置きました", "ok", "Meeting moved to 15:00",
+            "会議室Aに変更になりました。よろしくお願いします。", "thanks!",
+    };
+
+    public static void main(String[] args) {
+        long[] counts = args.length > 0 ? new long[args.length] : new long[]{1_000_000, 10_000_000};
+        for (int i = 0; i < args.length; i++) counts[i] = Long.parseLong(args[i]);
+
+        List<User> members = new ArrayList<>();
+        for (int i = 0; i < 50; i++) members.add(new User(String.format("M%04d", i), "メンバー" + i, Color.LIGHT_GRAY, i == 0));
+        LocalDateTime start = LocalDateTime.of(2024, 4, 1, 9, 0);
+        System.out.printf("最大ヒープ %.0f MB%n", Runtime.getRuntime().maxMemory() / 1e6);
+
+        for (long count : counts) {
+            int n = Math.toIntExact(count);
+            long listBytes = measureList(members, start, n);
+
+            long base = usedAfterGc();
+            ChatStore store = new ChatStore();
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < n; i++) store.add(message(members, start, i));
+            double addSeconds = (System.nanoTime() - startNanos) / 1e9;
+            long storeBytes = usedAfterGc() - base;
+
+            verify(store, members, start);
+            double getNanos = materializeNanos(store);
+
+            System.out.printf("%,d 件%n", n);
+            if (listBytes >= 0) {
+                System.out.printf("  ArrayList<ChatMessage>: %,.1f MB (%.0f バイト/件)%n", listBytes / 1e6, (double) listBytes / n);
+            } else {
+                System.out.println("  ArrayList<ChatMessage>: メモリ不足（-Xmx を増やして測る）");
+            }
+            System.out.printf("  ChatStore:              %,.1f MB (%.0f バイト/件、うち列と本文の領域 %,.1f MB)%n",
+                    storeBytes / 1e6, (double) storeBytes / n, store.footprintBytes() / 1e6);
+            if (listBytes >= 0) System.out.printf("  削減: %.1f 倍%n", (double) listBytes / storeBytes);
+            System.out.printf("  追加 %.0f 件/秒、表示する行の ChatMessage を作る費用 %.0f ns/件%n", n / addSeconds, getNanos);
+        }
+    }
+
+    // ArrayList で持ったときの増分。ヒープが足りなければ -1
+    private static long measureList(List<User> members, LocalDateTime start, int n) {
+        long base = usedAfterGc();
+        try {
+            List<ChatMessage> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) list.add(message(members, start, i));
+            long bytes = usedAfterGc() - base;
+            if (list.get(n - 1) == null) throw new IllegalStateException();
+            return bytes;
+        } catch (OutOfMemoryError e) {
+            return -1;
+        }
+    }
+
+    // ChatLog から読んだときと同じく、件ごとに別の String と LocalDateTime を作る
+    private static ChatMessage message(List<User> members, LocalDateTime start, int i) {
+        return new ChatMessage(members.get(i % members.size()), TEXTS[i % TEXTS.length] + " #" + i, start.plusSeconds(i));
+    }
+
+    private static void verify(ChatStore store, List<User> members, LocalDateTime start) {
+        Random random = new Random(1);
+        for (int k = 0; k < 1000; k++) {
+            int i = random.nextInt(store.size());
+            ChatMessage expected = message(members, start, i);
+            ChatMessage actual = store.get(i);
+            if (!actual.getSender().equals(expected.getSender()) || !actual.getText().equals(expected.getText())
+                    || !actual.getTimestamp().equals(expected.getTimestamp())) {
+                throw new IllegalStateException(i + " 件目が一致しません");
+            }
+        }
+    }
+
+    // 画面に見えている 30 行ずつを、ランダムな位置で繰り返し作る
+    private static double materializeNanos(ChatStore store) {
+        Random random = new Random(2);
+        int rows = 0;
+        long sink = 0;
+        long startNanos = 0;
+        for (int round = 0; round < 2; round++) {
+            startNanos = System.nanoTime();
+            rows = 0;
+            for (int screen = 0; screen < 20_000; screen++) {
+                int first = random.nextInt(Math.max(1, store.size() - 30));
+                for (int i = first; i < Math.min(store.size(), first + 30); i++) {
+                    sink += store.get(i).getText().length();
+                    rows++;
+                }
+            }
+        }
+        if (sink == 42) System.out.print("");
+        return (double) (System.nanoTime() - startNanos) / rows;
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,91 @@
+package GUI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * グループ全員の空き時間探しを測る。members 人のグループで、各メンバーが平日ごとに 30〜90 分の予定を
+ * 2 件ずつ（9:00〜18:00 の間）持ち、グループの定例（毎週、繰り返し予定）がある状態で、
+ * 四半期（91 日）の平日 9:00〜18:00 から 30 分・60 分の空きを 20 件まで探す。
+ * 月ごとの予定ありの枠は2回目からは覚えたものを使う。changed は毎回1件の予定を更新して、その月の枠を作り直す費用を含める。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class FreeSlotBenchmark {
+
+    private static final int DAYS = 91;
+    private static final int LIMIT = 20;
+    private static final LocalTime WORK_START = LocalTime.of(9, 0);
+    private static final LocalTime WORK_END = LocalTime.of(18, 0);
+
+    @Param({"50", "500"})
+    public int members;
+
+    private CalendarModel model;
+    private Group group;
+    private LocalDate from;
+    private LocalDate to;
+    private Appointment moving;
+    private int version;
+
+    @Setup
+    public void setUp() {
+        User me = new User("000", "自分", new Color(135, 206, 250), true);
+        group = new Group("G01", "技術部", '技');
+        model = new CalendarModel(me);
+        model.addGroup(group);
+        from = LocalDate.of(2026, 4, 1);
+        to = from.plusDays(DAYS - 1);
+        Random random = new Random(1);
+        for (int i = 0; i < members; i++) {
+            User user = new User(String.format("%04d", i + 1), "メンバー" + i, Color.LIGHT_GRAY, false);
+            group.addUser(user);
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                if (date.getDayOfWeek().getValue() >= 6) continue;
+                for (int k = 0; k < 2; k++) {
+                    LocalTime start = WORK_START.plusMinutes(15 * random.nextInt(30));
+                    LocalTime end = start.plusMinutes(30 + 15 * random.nextInt(5));
+                    model.upsert(date, new Appointment("予定 " + k, "", user, start, end));
+                }
+            }
+        }
+        moving = new Appointment("移動する予定", "", group.getUsers().get(0), LocalTime.of(9, 0), LocalTime.of(9, 30));
+        model.putRecurring(new Appointment("定例", "", group, LocalTime.of(10, 0), LocalTime.of(11, 0)),
+                new RecurrenceRule(RecurrenceRule.WEEKLY, 1, from));
+    }
+
+    @Benchmark
+    public Object halfHour() {
+        return model.findFreeSlots(group, from, to, WORK_START, WORK_END, true, 30, LIMIT);
+    }
+
+    @Benchmark
+    public Object oneHour() {
+        return model.findFreeSlots(group, from, to, WORK_START, WORK_END, true, 60, LIMIT);
+    }
+
+    @Benchmark
+    public Object changed() {
+        model.upsert(from.plusDays(version++ % DAYS), moving);
+        return model.findFreeSlots(group, from, to, WORK_START, WORK_END, true, 30, LIMIT);
+    }
+}
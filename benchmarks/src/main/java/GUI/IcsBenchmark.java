@@ -0,0 +1,83 @@
+package GUI;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * IcsCodec の書き出しと、スレッド数を変えた読み込みの速度を測る。
+ * 一時ファイルに予定を書き出して読み戻し、元の予定と一致することを確かめてから、
+ * 画面なしの CalendarModel に一括で取り込む時間も表示する。
+ *
+ * <p>実行: java -cp benchmarks/target/benchmarks.jar GUI.IcsBenchmark [件数=500000] [スレッド数=CPU数]</p>
+ */
+public class IcsBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        User me = new User("001", "智也", new Color(135, 206, 250), true);
+        User other = new User("002", "田中", new Color(220, 220, 220), false);
+        Group group = new Group("G01", "技術部", '技');
+        group.addUser(me);
+        group.addUser(other);
+        CalendarModel model = new CalendarModel(me);
+        model.addGroup(group);
+        List<CalendarModel.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Object owner = i % 3 == 0 ? group : i % 3 == 1 ? me : other;
+            String details = i % 2 == 0 ? "会議室A; 資料を準備, 議事録は共有フォルダ\\議事録 に保存する。長い説明文で折り返しを確かめる🙂" : "";
+            entries.add(new CalendarModel.Entry(LocalDate.of(2024, 1, 1).plusDays(i % 730),
+                    new Appointment("定例 " + i, details, owner)));
+        }
+
+        Path file = Files.createTempFile("ics-benchmark", ".ics");
+        try {
+            long start = System.nanoTime();
+            IcsCodec.write(file, entries);
+            double writeSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("書き出し: %d 件, %.1f MB, %.0f ms (%.0f 件/秒)%n",
+                    count, Files.size(file) / 1e6, writeSeconds * 1000, count / writeSeconds);
+
+            IcsCodec.ImportResult result = null;
+            for (int round = 0; round < 2; round++) {
+                String label = round == 0 ? "ウォームアップ" : "計測";
+                for (int t : threads == 1 ? new int[]{1} : new int[]{1, threads}) {
+                    start = System.nanoTime();
+                    result = IcsCodec.read(file, model::resolveOwner, me, t);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    System.out.printf("%s 読み込み (スレッド %d): %.0f ms (%.0f 件/秒)%n", label, t, seconds * 1000, count / seconds);
+                }
+            }
+            verify(entries, result);
+            System.out.println("往復検証: " + count + " 件の予定が一致しました");
+
+            start = System.nanoTime();
+            model.importAll(result.getEntries().stream());
+            System.out.printf("一括取り込み: %.0f ms (予定 %d 件)%n", (System.nanoTime() - start) / 1e6, model.getAppointments().size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void verify(List<CalendarModel.Entry> expected, IcsCodec.ImportResult result) {
+        List<CalendarModel.Entry> actual = result.getEntries();
+        if (actual.size() != expected.size() || result.getSkipped() != 0) {
+            throw new IllegalStateException("件数が一致しません: " + actual.size() + " / " + expected.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            Appointment want = expected.get(i).getAppointment();
+            Appointment got = actual.get(i).getAppointment();
+            if (!expected.get(i).getDate().equals(actual.get(i).getDate()) || !Objects.equals(want.getOwner(), got.getOwner())
+                    || !want.getTitle().equals(got.getTitle()) || !want.getDetails().equals(got.getDetails())) {
+                throw new IllegalStateException(i + " 件目の往復結果が一致しません");
+            }
+        }
+    }
+}
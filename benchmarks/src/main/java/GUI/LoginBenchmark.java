@@ -0,0 +1,98 @@
+package GUI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 同時に attempts 件のログインが来たときに、LoginService がすべてを確認し終えるまでの時間を測る。
+ * <ul>
+ *   <li>relogin: 一度ログインしたユーザーの再ログイン（セッショントークンで確認し、ハッシュ計算を省く）</li>
+ *   <li>wrongPassword: パスワード違い（トークンが一致しないので毎回 PBKDF2 で確認する）</li>
+ * </ul>
+ * 1件ずつの確認の費用は LoginLookupBenchmark で測る。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LoginBenchmark {
+
+    @Param({"16"})
+    public int users;
+
+    @Param({"64"})
+    public int attempts;
+
+    @Param({"10000"})
+    public int iterations;
+
+    private Path dir;
+    private LoginService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("login-benchmark");
+        Map<String, String> accounts = new LinkedHashMap<>();
+        for (int i = 0; i < users; i++) accounts.put("user" + i, "password" + i);
+        service = new LoginService(dir.resolve("credentials"), iterations, accounts, Runtime.getRuntime().availableProcessors());
+        // 全員が一度ログインしておく（初期ユーザーの登録もここで終わる）
+        if (loginAll(users, true) != users) throw new IllegalStateException("初回ログインに失敗しました");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        service.shutdown();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int relogin() {
+        return loginAll(attempts, true);
+    }
+
+    @Benchmark
+    public int wrongPassword() {
+        return loginAll(attempts, false);
+    }
+
+    // count 件のログインを同時に依頼し、認証に成功した件数を返す
+    private int loginAll(int count, boolean correct) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int user = i % users;
+            String password = correct ? "password" + user : "wrong" + user;
+            results.add(service.login("user" + user, password.toCharArray()));
+        }
+        int accepted = 0;
+        for (CompletableFuture<Boolean> result : results) {
+            if (result.join()) accepted++;
+        }
+        return accepted;
+    }
+}
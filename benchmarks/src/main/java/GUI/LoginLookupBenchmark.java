@@ -0,0 +1,64 @@
+package GUI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ログイン時の認証を測る。PBKDF2 による確認（初回ログイン）と、
+ * セッショントークンによる確認（再ログイン）を比べる。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LoginLookupBenchmark {
+
+    @Param({"10000", "210000"})
+    public int iterations;
+
+    private Path dir;
+    private CredentialStore store;
+    private SessionTokenCache sessions;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("login-bench");
+        store = CredentialStore.open(dir.resolve("credentials"), iterations);
+        store.register("tomoya", "tomoya".toCharArray());
+        sessions = new SessionTokenCache(SessionTokenCache.DEFAULT_TTL_MILLIS);
+        sessions.issue("tomoya", "tomoya".toCharArray());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dir.resolve("credentials"));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return store.verify("tomoya", "tomoya".toCharArray());
+    }
+
+    @Benchmark
+    public boolean checkSessionToken() {
+        return sessions.check("tomoya", "tomoya".toCharArray());
+    }
+}
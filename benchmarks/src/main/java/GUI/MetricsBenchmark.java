@@ -0,0 +1,46 @@
+package GUI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 計測そのものの費用を測る。timed は処理時間を1件記録する費用（System.nanoTime 2回を含む）、
+ * timedContended は 4 スレッドが同じヒストグラムに記録する場合、counter はカウンタを1増やす費用。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class MetricsBenchmark {
+
+    private final LatencyHistogram histogram = Metrics.latency("benchmark.timed");
+    private final Metrics.Counter counter = Metrics.counter("benchmark.counter");
+
+    @Benchmark
+    public void timed() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void timedContended() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    public void counter() {
+        counter.increment();
+    }
+}
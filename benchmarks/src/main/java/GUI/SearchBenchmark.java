@@ -0,0 +1,106 @@
+package GUI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * チャットと予定の全文検索を測る。messages 件のチャット（12 語から 6 語を選んだ文）を持つグループで、
+ * めったに出ない語（rare）、多くのメッセージに出る語（common）、複数の語（twoTerms）、1文字の語（singleChar）、
+ * 期間で絞った検索（commonInMonth）を、それぞれ最新の 100 件まで引く。
+ * addMessage はメッセージ1件を履歴と索引に追加する費用。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class SearchBenchmark {
+
+    private static final String[] WORDS = {"会議", "資料", "東京", "大阪", "確認", "予定", "リリース", "バグ", "修正", "レビュー", "お疲れ様です", "よろしく"};
+    private static final int LIMIT = 100;
+
+    @Param({"100000", "1000000"})
+    public int messages;
+
+    private CalendarModel model;
+    private Group group;
+    private User sender;
+    private LocalDate monthStart;
+    private int version;
+
+    @Setup
+    public void setUp() {
+        sender = new User("001", "自分", new Color(135, 206, 250), true);
+        group = new Group("G01", "技術部", '技');
+        group.addUser(sender);
+        model = new CalendarModel(sender);
+        model.addGroup(group);
+        Random random = new Random(1);
+        LocalDateTime start = LocalDateTime.now().minusMinutes(messages);
+        List<ChatMessage> batch = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int k = 0; k < 6; k++) text.append(WORDS[random.nextInt(WORDS.length)]);
+            if (i % 10000 == 0) text.append(" 定例の議事録");
+            batch.add(new ChatMessage(sender, text.toString(), start.plusMinutes(i)));
+            if (batch.size() == 10000) {
+                group.addMessages(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) group.addMessages(batch);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 1000; i++) {
+            model.upsert(today.minusDays(i % 365), new Appointment("予定 " + i, "東京で打ち合わせ", sender));
+        }
+        monthStart = today.withDayOfMonth(1);
+    }
+
+    @Benchmark
+    public Object rare() {
+        return model.search("議事録", null, null, null, LIMIT);
+    }
+
+    @Benchmark
+    public Object common() {
+        return model.search("レビュー", null, null, null, LIMIT);
+    }
+
+    @Benchmark
+    public Object twoTerms() {
+        return model.search("東京 会議", null, null, null, LIMIT);
+    }
+
+    @Benchmark
+    public Object singleChar() {
+        return model.search("京", null, null, null, LIMIT);
+    }
+
+    @Benchmark
+    public Object commonInMonth() {
+        return model.search("レビュー", group, monthStart, monthStart.plusMonths(1).minusDays(1), LIMIT);
+    }
+
+    @Benchmark
+    public void addMessage() {
+        group.addMessage(new ChatMessage(sender, "追加のメッセージ " + version++, LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,94 @@
+package GUI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * サイドバーのグループ一覧（GroupSidebarView）の描画を測る。
+ * paintViewport は groups 件の一覧を 60×400 の見えている範囲ごとにスクロールしながら描き、
+ * 見えていない行を描かないので費用がグループの数によらないことを確かめる。
+ * selectAndPaint は選択を変えて、描き直しの対象になる2行だけを描く。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SidebarBenchmark {
+
+    private static final int VIEWPORT_HEIGHT = 400;
+
+    @Param({"10", "100", "1000"})
+    public int groups;
+
+    private GroupSidebarView view;
+    private BufferedImage canvas;
+    private int scrollY;
+    private int selection;
+
+    @Setup
+    public void setUp() {
+        view = new GroupSidebarView(id -> { });
+        List<GroupSidebarView.Entry> entries = new ArrayList<>();
+        entries.add(new GroupSidebarView.Entry("MY", "マイページ", '智', GroupSidebarView.DEFAULT_COLOR));
+        for (int i = 0; i < groups; i++) {
+            entries.add(new GroupSidebarView.Entry("G" + i, "グループ" + i, (char) ('A' + i % 26), GroupSidebarView.DEFAULT_COLOR));
+        }
+        view.setEntries(entries);
+        Dimension size = view.getPreferredSize();
+        view.setSize(size);
+        canvas = new BufferedImage(size.width, VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage paintViewport() {
+        int maxY = Math.max(1, view.getHeight() - VIEWPORT_HEIGHT);
+        scrollY = (scrollY + 25) % maxY;
+        paint(0, scrollY, view.getWidth(), VIEWPORT_HEIGHT);
+        return canvas;
+    }
+
+    @Benchmark
+    public BufferedImage selectAndPaint() {
+        int previous = selection;
+        selection = (selection + 7) % view.getEntryCount();
+        view.setSelectedId(selection == 0 ? "MY" : "G" + (selection - 1));
+        paint(view.rowBounds(previous));
+        paint(view.rowBounds(selection));
+        return canvas;
+    }
+
+    private void paint(Rectangle bounds) {
+        paint(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    // 描き直す範囲だけをクリップにして、その範囲が画像の上端に来るように描く
+    private void paint(int x, int y, int width, int height) {
+        Graphics2D g = canvas.createGraphics();
+        try {
+            g.translate(0, -y);
+            g.setClip(x, y, width, height);
+            view.paint(g);
+        } finally {
+            g.dispose();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package GUI;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WireCodec と素朴なテキスト形式（タブ区切り＋ toString()）で、チャットを符号化して読み戻す速さを比べる。
+ * 予定の往復も測る。どれも1件あたりの時間を出す。往復して元に戻ることは WireCodecTest で確かめている。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class WireCodecBenchmark {
+
+    private static final int COUNT = 10_000;
+
+    private final WireCodec codec = new WireCodec();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(4 * 1024 * 1024);
+    private final List<ChatMessage> messages = new ArrayList<>();
+    private final List<Appointment> appointments = new ArrayList<>();
+    private final List<LocalDate> dates = new ArrayList<>();
+    private Group group;
+    private AppointmentJournal.OwnerResolver owners;
+
+    @Setup
+    public void setUp() {
+        User me = new User("001", "智也", new Color(135, 206, 250), true);
+        User other = new User("002", "田中", new Color(220, 220, 220), false);
+        group = new Group("G01", "技術部", '技');
+        group.addUser(me);
+        group.addUser(other);
+        owners = (kind, id) -> kind == 'G' ? group : group.findUserById(id);
+        LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        for (int i = 0; i < COUNT; i++) {
+            User sender = i % 2 == 0 ? me : other;
+            messages.add(new ChatMessage(sender, "メッセージ " + i + " です。よろしくお願いします🙂", base.plusSeconds(i)));
+            appointments.add(new Appointment("定例 " + i, "会議室A\n資料を準備", i % 3 == 0 ? group : sender));
+            dates.add(LocalDate.of(2024, 1, 1).plusDays(i % 730));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void binaryChat(Blackhole blackhole) {
+        buffer.clear();
+        for (ChatMessage message : messages) codec.writeChat(buffer, message);
+        buffer.flip();
+        for (int i = 0; i < COUNT; i++) blackhole.consume(codec.readChat(buffer, group::findUserById));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void textChat(Blackhole blackhole) {
+        for (ChatMessage message : messages) {
+            byte[] bytes = (message.getSender().getId() + "\t" + message.getTimestamp() + "\t" + message.getText()).getBytes(StandardCharsets.UTF_8);
+            String[] parts = new String(bytes, StandardCharsets.UTF_8).split("\t", 3);
+            blackhole.consume(new ChatMessage(group.findUserById(parts[0]), parts[2], LocalDateTime.parse(parts[1])));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void binaryAppointment(Blackhole blackhole) {
+        buffer.clear();
+        for (int i = 0; i < COUNT; i++) codec.writeAppointment(buffer, dates.get(i), appointments.get(i));
+        buffer.flip();
+        for (int i = 0; i < COUNT; i++) codec.readAppointment(buffer, owners, (date, appointment) -> blackhole.consume(appointment));
+    }
+}
@@ -1,4 +1,5 @@
 public class Group {
+    public String id;
     public String name;
     public User[] users;
 }
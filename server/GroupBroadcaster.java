@@ -0,0 +1,207 @@
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * グループのチャットを全メンバーに配るためのリングバッファ。
+ * グループごとに固定長のバッファを1つだけ確保し、DELIVER フレームを1回だけ書き込む。
+ * メンバーはそれぞれ自分の Cursor で読み進めるので、送信者は遅いメンバーを待たない。
+ *
+ * <p>リングの各エントリは [int フレーム長][int 送信者の接続ID][DELIVER フレーム]。
+ * 送信者自身のフレームは読み飛ばす。</p>
+ *
+ * <p>publish() は head を進める前に [head, head + エントリ長) へ書き込むので、head が指す位置より先も
+ * 書き込み中のことがある。そこで読む位置が head + 最大エントリ長 - リング長 より前になったメンバーは
+ * 追い越されたものとして扱う（エントリはリングの 1/4 までなので、遅れがリングの 3/4 を超えると追い越し）。
+ * 追い越されたメンバーは、次のフレームの先頭で最新位置まで読み飛ばし、RESYNC を受け取る（その間のメッセージは失われる）。
+ * フレームの途中で追い越された場合は、送信済みの部分を取り消せないので接続を切る。</p>
+ *
+ * <p>書き込みは publish() を同期化して行い、読み込みは Cursor ごとに1スレッドで行う。
+ * 読んだ内容は書き込み位置を再確認してから使うため、読み込み側はロックを取らない。</p>
+ */
+public class GroupBroadcaster {
+
+    public static final int DEFAULT_CAPACITY = 1024 * 1024;
+    private static final int ENTRY_HEADER = 8;
+
+    /** Cursor.read の結果。 */
+    public static final int READ_OK = 0;
+    public static final int READ_RESYNC = 1;
+    public static final int READ_TORN = 2;
+
+    private final byte[] ring;
+    private final int mask;
+    // 1エントリの最大長（ヘッダを含む）
+    private final int maxEntry;
+    private final ByteBuffer resyncFrame;
+    private volatile long head;
+
+    /**
+     * @param groupId  RESYNC フレームに載せるグループID
+     * @param capacity リングの大きさ（2のべき乗）
+     */
+    public GroupBroadcaster(String groupId, int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity は2のべき乗にしてください: " + capacity);
+        this.ring = new byte[capacity];
+        this.mask = capacity - 1;
+        this.maxEntry = capacity / 4;
+        byte[] id = groupId.getBytes(StandardCharsets.UTF_8);
+        this.resyncFrame = SyncServer.frame(SyncServer.RESYNC, ByteBuffer.allocate(2 + id.length).putShort((short) id.length).put(id).array());
+    }
+
+    /** 新しく読み始めるメンバーの Cursor を作る。これから書き込まれるフレームから読む。 */
+    public Cursor subscribe(int subscriberId) {
+        return new Cursor(subscriberId, head);
+    }
+
+    /** 読み飛ばしが起きたメンバーに送る RESYNC フレーム（duplicate() して使う）。 */
+    public ByteBuffer resyncFrame() {
+        return resyncFrame.duplicate();
+    }
+
+    /**
+     * PUBLISH の本体から DELIVER フレームを組み立ててリングに書き込む。途中でオブジェクトを確保しない。
+     * @param publisherId 送信者の接続ID（その接続には配信しない）
+     * @param body        PUBLISH の本体
+     * @param start       本体中のグループIDの先頭位置
+     * @param groupIdEnd  グループIDの直後（内容の種別）の位置。ここから body.limit() までをそのまま載せる
+     * @param senderId    送信者のユーザーID（UTF-8）
+     * @return フレームが大きすぎてリングに載せられない場合は false
+     */
+    public synchronized boolean publish(int publisherId, ByteBuffer body, int start, int groupIdEnd, byte[] senderId) {
+        int frameLength = 4 + 1 + (groupIdEnd - start) + 2 + senderId.length + (body.limit() - groupIdEnd);
+        if (ENTRY_HEADER + frameLength > maxEntry) return false;
+        long position = head;
+        position = putInt(position, frameLength);
+        position = putInt(position, publisherId);
+        position = putInt(position, frameLength - 4);
+        ring[(int) (position++ & mask)] = SyncServer.DELIVER;
+        position = putBytes(position, body, start, groupIdEnd - start);
+        ring[(int) (position++ & mask)] = (byte) (senderId.length >>> 8);
+        ring[(int) (position++ & mask)] = (byte) senderId.length;
+        for (byte b : senderId) ring[(int) (position++ & mask)] = b;
+        position = putBytes(position, body, groupIdEnd, body.limit() - groupIdEnd);
+        head = position;
+        return true;
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    private long putInt(long position, int value) {
+        ring[(int) (position & mask)] = (byte) (value >>> 24);
+        ring[(int) (position + 1 & mask)] = (byte) (value >>> 16);
+        ring[(int) (position + 2 & mask)] = (byte) (value >>> 8);
+        ring[(int) (position + 3 & mask)] = (byte) value;
+        return position + 4;
+    }
+
+    /**
+     * position から先を読んだあとに呼び、読んだバイトが上書きされた可能性があるかを返す。
+     * 書き込み中のエントリは head から最大 maxEntry バイト先まで届くので、その分も追い越しとみなす。
+     */
+    private boolean overwritten(long position) {
+        // 読んだバイトより後に head を読む（リングの読み込みを head の読み込みより後ろに並べ替えさせない）
+        VarHandle.acquireFence();
+        return head + maxEntry - ring.length > position;
+    }
+
+    private int getInt(long position) {
+        return (ring[(int) (position & mask)] & 0xFF) << 24 | (ring[(int) (position + 1 & mask)] & 0xFF) << 16
+                | (ring[(int) (position + 2 & mask)] & 0xFF) << 8 | ring[(int) (position + 3 & mask)] & 0xFF;
+    }
+
+    // 折り返しを考慮して body の [from, from + length) をリングに写す
+    private long putBytes(long position, ByteBuffer body, int from, int length) {
+        int offset = (int) (position & mask);
+        int first = Math.min(length, ring.length - offset);
+        body.get(from, ring, offset, first);
+        body.get(from + first, ring, 0, length - first);
+        return position + length;
+    }
+
+    /**
+     * 1人のメンバーの読み込み位置。担当する1スレッドだけが使う。
+     */
+    public final class Cursor {
+        private final int subscriberId;
+        // 他のスレッドから遅れ（lag）を見られるよう、read() の最後にまとめて書き戻す
+        private volatile long position;
+        private long frameEnd = -1;
+        private long resyncs;
+
+        private Cursor(int subscriberId, long position) {
+            this.subscriberId = subscriberId;
+            this.position = position;
+        }
+
+        /** まだ読んでいないフレームがあるか（自分のフレームしか残っていなくても true になる）。 */
+        public boolean hasPending() {
+            return position != head;
+        }
+
+        /** フレームの途中まで読んだ状態か。途中の場合は他の送信元のフレームを間に挟めない。 */
+        public boolean inFrame() {
+            return frameEnd >= 0;
+        }
+
+        /** 書き込み位置からどれだけ遅れているか（バイト）。どのスレッドから呼んでもよい。 */
+        public long lag() {
+            return head - position;
+        }
+
+        /** 追い越されて読み飛ばした回数。 */
+        public long getResyncs() {
+            return resyncs;
+        }
+
+        public GroupBroadcaster broadcaster() {
+            return GroupBroadcaster.this;
+        }
+
+        /**
+         * 未読のフレームを dst に入るだけ写す。フレームは途中で分割されることがある。
+         * @return READ_OK、追い越されて最新位置まで読み飛ばした場合は READ_RESYNC
+         *         （dst にはそれまでに読んだ完全なフレームが入っている）、
+         *         フレームの途中で追い越された場合は READ_TORN（続きを送れないので接続を切ること）
+         */
+        public int read(ByteBuffer dst) {
+            long pos = position;
+            int result = READ_OK;
+            while (dst.hasRemaining()) {
+                if (frameEnd < 0) {
+                    if (pos == head) break;
+                    int frameLength = getInt(pos);
+                    int publisherId = getInt(pos + 4);
+                    if (overwritten(pos)) {
+                        pos = head;
+                        resyncs++;
+                        result = READ_RESYNC;
+                        break;
+                    }
+                    if (publisherId == subscriberId) {
+                        pos += ENTRY_HEADER + frameLength;
+                        continue;
+                    }
+                    pos += ENTRY_HEADER;
+                    frameEnd = pos + frameLength;
+                }
+                int length = (int) Math.min(frameEnd - pos, dst.remaining());
+                int offset = (int) (pos & mask);
+                int first = Math.min(length, ring.length - offset);
+                int dstPosition = dst.position();
+                dst.put(ring, offset, first).put(ring, 0, length - first);
+                if (overwritten(pos)) {
+                    dst.position(dstPosition);
+                    result = READ_TORN;
+                    break;
+                }
+                pos += length;
+                if (pos == frameEnd) frameEnd = -1;
+            }
+            position = pos;
+            return result;
+        }
+    }
+}
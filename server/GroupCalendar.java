@@ -0,0 +1,75 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * グループの予定の最新状態をサーバー側で保持し、表示範囲を購読しているメンバーに差分だけを配信する。
+ * 予定は（日付, 所有者, タイトル）ごとに最後に届いた DELIVER フレームを覚えておき、
+ * 削除も墓標として残すので、あとから範囲を購読したクライアントにも削除を伝えられる。
+ *
+ * <p>状態の更新と送信キューへの追加は同じロックの中で行うため、
+ * 購読時の一括送信と差分の配信の順序が入れ替わることはない。</p>
+ */
+public class GroupCalendar {
+
+    private final TreeMap<Integer, Map<String, ByteBuffer>> byDay = new TreeMap<>();
+
+    /**
+     * 予定の追加・更新・削除を記録し、その日を購読しているメンバーに配信する。
+     * @param payload WireCodec で符号化された予定のレコード
+     * @param deliver メンバーに送る DELIVER フレーム
+     */
+    public synchronized void publish(ByteBuffer payload, ByteBuffer deliver, Set<SyncConnection> members, SyncConnection sender) {
+        ByteBuffer record = payload.duplicate();
+        int epochDay = readEpochDay(record);
+        String key = readKey(record);
+        byDay.computeIfAbsent(epochDay, k -> new LinkedHashMap<>()).put(key, deliver);
+        for (SyncConnection member : members) {
+            if (member != sender && member.isWatching(epochDay)) member.send(deliver.duplicate());
+        }
+    }
+
+    /** from から to まで（エポック日、両端を含む）の予定の最新状態を connection に送る。 */
+    public synchronized void sendRange(SyncConnection connection, int from, int to) {
+        for (Map<String, ByteBuffer> day : byDay.subMap(from, true, to, true).values()) {
+            for (ByteBuffer deliver : day.values()) {
+                connection.send(deliver.duplicate());
+            }
+        }
+    }
+
+    // --- WireCodec の予定レコードの先頭部分の読み取り ---
+    // [byte ヘッダ][varint エポック日 (zigzag)][byte 所有者種別][文字列 所有者ID][文字列 タイトル]...
+
+    private static int readEpochDay(ByteBuffer record) {
+        record.get();
+        long zigzag = readVarlong(record);
+        return (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+    }
+
+    private static String readKey(ByteBuffer record) {
+        byte ownerKind = record.get();
+        String ownerId = readString(record);
+        String title = readString(record);
+        return ownerKind + ":" + ownerId + "\u0000" + title;
+    }
+
+    private static long readVarlong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("可変長整数が長すぎます");
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[(int) readVarlong(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,102 @@
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * ログインに成功したクライアントに渡すセッショントークンを発行・確認する。
+ * クライアントは接続し直すときにパスワードの代わりにトークンを送るので、パスワードを持ち続けなくてよい。
+ *
+ * <p>トークンは「ユーザー名:有効期限」に HMAC-SHA256 の署名を付けたもの。
+ * 鍵をファイルに保存しておけば、サーバーを再起動しても有効期限内のトークンで接続し直せる。</p>
+ *
+ * <p>どのスレッドから呼んでもよい。</p>
+ */
+public class SessionTokens {
+
+    public static final long DEFAULT_TTL_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_BYTES = 32;
+
+    private final long ttlMillis;
+    private final ThreadLocal<Mac> macs;
+
+    /** プロセスごとに生成した鍵を使う（サーバーを再起動するとトークンは使えなくなる）。 */
+    public SessionTokens(long ttlMillis) {
+        this(randomKey(), ttlMillis);
+    }
+
+    public SessionTokens(byte[] secret, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " が使用できません。", e);
+            }
+        });
+    }
+
+    /**
+     * 鍵をファイルから読む。ファイルがなければ鍵を生成して保存する。
+     */
+    public static SessionTokens open(Path keyFile, long ttlMillis) throws IOException {
+        if (Files.exists(keyFile)) {
+            byte[] secret = Files.readAllBytes(keyFile);
+            if (secret.length < KEY_BYTES) throw new IOException("鍵ファイルが短すぎます: " + keyFile);
+            return new SessionTokens(secret, ttlMillis);
+        }
+        byte[] secret = randomKey();
+        Path parent = keyFile.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Files.write(keyFile, secret);
+        return new SessionTokens(secret, ttlMillis);
+    }
+
+    /** username のトークンを発行する。 */
+    public String issue(String username) {
+        String payload = username + ":" + (System.currentTimeMillis() + ttlMillis);
+        return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload));
+    }
+
+    /**
+     * トークンを確かめる。
+     * @return 署名が正しく有効期限内ならユーザー名、そうでなければ null
+     */
+    public String verify(String token) {
+        int dot = token.lastIndexOf('.');
+        int colon = dot < 0 ? -1 : token.lastIndexOf(':', dot);
+        if (colon < 0) return null;
+        String payload = token.substring(0, dot);
+        byte[] signature;
+        long expiresAt;
+        try {
+            signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            expiresAt = Long.parseLong(token.substring(colon + 1, dot));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(sign(payload), signature)) return null;
+        if (System.currentTimeMillis() > expiresAt) return null;
+        return token.substring(0, colon);
+    }
+
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] randomKey() {
+        byte[] secret = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+}
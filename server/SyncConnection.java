@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 同期サーバーに接続している1クライアント。
+ * 読み込みと書き込みは担当のワーカースレッドだけが行い、
+ * 他のスレッドからは送信キューに積んでワーカーに書き込みを依頼する。
+ * グループのチャットは送信キューを通さず、GroupBroadcaster のリングから Cursor で直接読んで送る。
+ */
+public class SyncConnection {
+
+    private static final int INITIAL_READ_BUFFER = 8 * 1024;
+    // 送信待ちがこれを超えたクライアントは受信が追いついていないとみなして切断する
+    private static final long MAX_PENDING_BYTES = 4L * 1024 * 1024;
+    private static final int RING_CHUNK = 8 * 1024;
+
+    final SocketChannel channel;
+    final SyncServer.Worker worker;
+    final int id;
+    SelectionKey key;
+    ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean writeRequested = new AtomicBoolean();
+    private volatile boolean closed;
+    // リングから写したフレームの送信待ち部分と、フレームの途中まで送っているリングの Cursor
+    private ByteBuffer ringChunk;
+    private GroupBroadcaster.Cursor activeCursor;
+
+    // LOGIN のパスワードを確認している間は true（ワーカースレッドだけが触る）
+    boolean authenticating;
+    // ログイン後に設定される
+    User user;
+    Set<String> groupIds;
+    byte[] userIdBytes;
+    GroupBroadcaster.Cursor[] cursors = new GroupBroadcaster.Cursor[0];
+    // 購読中の予定の範囲（エポック日 [from, to]）。未購読なら null で、すべての予定の差分を受け取る
+    private volatile int[] window;
+
+    SyncConnection(SocketChannel channel, SyncServer.Worker worker, int id) {
+        this.channel = channel;
+        this.worker = worker;
+        this.id = id;
+    }
+
+    /**
+     * フレームを送信キューに積む。どのスレッドから呼んでもよい。
+     * 同じフレームを複数の接続で共有できるよう、呼び出し側は duplicate() したバッファを渡す。
+     */
+    void send(ByteBuffer frame) {
+        if (closed) return;
+        if (pendingBytes.addAndGet(frame.remaining()) > MAX_PENDING_BYTES) {
+            worker.requestClose(this);
+            return;
+        }
+        outbound.add(frame);
+        requestFlush();
+    }
+
+    /**
+     * リングに新しいフレームが書かれたことを知らせ、ワーカーに書き込みを依頼する。どのスレッドから呼んでもよい。
+     */
+    void requestFlush() {
+        if (!closed && writeRequested.compareAndSet(false, true)) {
+            worker.requestWrite(this);
+        }
+    }
+
+    /**
+     * 送信キューとリングの未読分を書けるだけ書く。ワーカースレッドから呼ぶ。
+     * フレームの途中で別のフレームを挟まないよう、送り始めたフレームを書き終えてから次に移る。
+     * @return すべて書き終えた場合は true
+     */
+    boolean flush() throws IOException {
+        while (true) {
+            if (ringChunk != null && ringChunk.hasRemaining()) {
+                channel.write(ringChunk);
+                if (ringChunk.hasRemaining()) return false;
+            }
+            if (activeCursor != null && activeCursor.inFrame()) {
+                readRing(activeCursor);
+                continue;
+            }
+            ByteBuffer head = outbound.peek();
+            if (head != null) {
+                int written = channel.write(head);
+                pendingBytes.addAndGet(-written);
+                if (head.hasRemaining()) return false;
+                outbound.poll();
+                continue;
+            }
+            if (!readAnyRing()) return true;
+        }
+    }
+
+    // 未読のあるリングを1つ選んで次の塊を写す。どのリングにも未読がなければ false
+    private boolean readAnyRing() throws IOException {
+        for (GroupBroadcaster.Cursor cursor : cursors) {
+            if (cursor.hasPending() && readRing(cursor)) return true;
+        }
+        return false;
+    }
+
+    private boolean readRing(GroupBroadcaster.Cursor cursor) throws IOException {
+        if (ringChunk == null) ringChunk = ByteBuffer.allocate(RING_CHUNK);
+        ringChunk.clear();
+        int result = cursor.read(ringChunk);
+        ringChunk.flip();
+        if (result == GroupBroadcaster.READ_TORN) throw new IOException("送信中のフレームがリングで上書きされました");
+        if (result == GroupBroadcaster.READ_RESYNC) {
+            ByteBuffer resync = cursor.broadcaster().resyncFrame();
+            pendingBytes.addAndGet(resync.remaining());
+            outbound.add(resync);
+        }
+        activeCursor = cursor;
+        return ringChunk.hasRemaining() || result == GroupBroadcaster.READ_RESYNC;
+    }
+
+    /**
+     * 書き込み依頼の受付を再開する。書き終えた直後に積まれたフレームがあれば true を返す。
+     */
+    boolean releaseWriteRequest() {
+        writeRequested.set(false);
+        return hasPending() && writeRequested.compareAndSet(false, true);
+    }
+
+    private boolean hasPending() {
+        if (!outbound.isEmpty()) return true;
+        for (GroupBroadcaster.Cursor cursor : cursors) {
+            if (cursor.hasPending()) return true;
+        }
+        return false;
+    }
+
+    /** 購読する予定の範囲を置き換え、それまでの範囲を返す（未購読なら null）。 */
+    int[] replaceWindow(int from, int to) {
+        int[] previous = window;
+        window = new int[] {from, to};
+        return previous;
+    }
+
+    /** epochDay の予定の差分を受け取る必要があるか。 */
+    boolean isWatching(int epochDay) {
+        int[] current = window;
+        return current == null || (epochDay >= current[0] && epochDay <= current[1]);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void markClosed() {
+        closed = true;
+        outbound.clear();
+    }
+
+    boolean isLoggedIn() {
+        return user != null;
+    }
+}
@@ -0,0 +1,551 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GUI クライアント同士でチャットと予定の変更を中継する同期サーバー。
+ * 受け付け用のスレッドが接続を受け、少数のワーカースレッドがそれぞれ Selector で
+ * 多数の接続の読み書きをノンブロッキングで処理する。
+ *
+ * <p>フレーム形式: [int 長さ][byte 種別][本体]。文字列は [short バイト数][UTF-8]。</p>
+ * <ul>
+ *   <li>LOGIN (c→s): [ユーザー名][パスワード] パスワードは CredentialStore の PBKDF2 ハッシュと比べる</li>
+ *   <li>RESUME (c→s): [セッショントークン] 以前のログインで受け取ったトークンで、パスワードを送らずにログインする</li>
+ *   <li>LOGIN_OK (s→c): [ユーザーID][セッショントークン] / LOGIN_FAILED (s→c): 本体なし</li>
+ *   <li>PUBLISH (c→s): [グループID][byte 内容の種別][内容]</li>
+ *   <li>DELIVER (s→c): [グループID][送信者ID][byte 内容の種別][内容]</li>
+ *   <li>SUBSCRIBE (c→s): [int 開始エポック日][int 終了エポック日]（両端を含む）</li>
+ *   <li>RESYNC (s→c): [グループID] 受信が遅れたため、そのグループのチャットの一部を読み飛ばした</li>
+ * </ul>
+ * チャットは解釈せず、グループごとの GroupBroadcaster のリングに1回だけ書き込み、
+ * 同じグループでログイン中の他のメンバーがそれぞれの位置から読んで受け取る。
+ * 予定はグループごとに GroupCalendar で最新状態を保持し、SUBSCRIBE した範囲に入る日の差分だけを配信する。
+ * 範囲を変えたクライアントには、新しく範囲に入った日の予定だけをまとめて送る。
+ * SUBSCRIBE していないクライアントにはすべての予定の差分を中継する。
+ */
+public class SyncServer {
+
+    // --- フレーム種別 ---
+    public static final byte LOGIN = 1;
+    public static final byte LOGIN_OK = 2;
+    public static final byte LOGIN_FAILED = 3;
+    public static final byte PUBLISH = 4;
+    public static final byte DELIVER = 5;
+    public static final byte SUBSCRIBE = 6;
+    public static final byte RESYNC = 7;
+    public static final byte RESUME = 8;
+    // --- 中継する内容の種別 ---
+    public static final byte KIND_CHAT = 1;
+    public static final byte KIND_APPOINTMENT_UPSERT = 2;
+    public static final byte KIND_APPOINTMENT_REMOVE = 3;
+
+    public static final int DEFAULT_PORT = 5555;
+    static final int MAX_FRAME = 1024 * 1024;
+
+    private final Map<String, User> usersByName = new HashMap<>();
+    private final CredentialStore credentials;
+    // パスワードの確認（PBKDF2）は時間がかかるので、ワーカーを止めないよう別のスレッドで行う
+    private final ExecutorService authenticator;
+    private final Map<String, Set<SyncConnection>> onlineByGroup = new ConcurrentHashMap<>();
+    private final Map<String, GroupCalendar> calendars = new ConcurrentHashMap<>();
+    private final Map<String, GroupBroadcaster> broadcasters = new ConcurrentHashMap<>();
+    private final SessionTokens tokens;
+    private final AtomicInteger nextConnectionId = new AtomicInteger();
+    private final ServerSocketChannel serverChannel;
+    private final Worker[] workers;
+    private final Thread acceptThread;
+    private volatile boolean running;
+
+    /**
+     * @param users       ログインできるユーザー（groups に所属グループを設定しておく）
+     * @param credentials users のパスワードのハッシュ
+     * @param port        待ち受けポート。0 なら空いているポートを使う
+     * @param workerCount 読み書きを担当するスレッド数（パスワードの確認にも同じ数のスレッドを使う）
+     */
+    public SyncServer(User[] users, CredentialStore credentials, int port, int workerCount) throws IOException {
+        this(users, credentials, port, workerCount, new SessionTokens(SessionTokens.DEFAULT_TTL_MILLIS));
+    }
+
+    /**
+     * @param tokens ログインしたクライアントに渡すセッショントークンの発行元
+     */
+    public SyncServer(User[] users, CredentialStore credentials, int port, int workerCount, SessionTokens tokens) throws IOException {
+        this.credentials = credentials;
+        this.tokens = tokens;
+        this.authenticator = Executors.newFixedThreadPool(workerCount, task -> {
+            Thread thread = new Thread(task, "sync-auth");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (User user : users) {
+            usersByName.put(user.username, user);
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(i);
+        }
+        acceptThread = new Thread(this::acceptLoop, "sync-accept");
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void start() {
+        running = true;
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+        acceptThread.start();
+    }
+
+    public void stop() throws IOException {
+        running = false;
+        authenticator.shutdownNow();
+        serverChannel.close();
+        for (Worker worker : workers) {
+            worker.selector.close();
+        }
+    }
+
+    /** 現在ログインしている接続数。 */
+    public int getOnlineCount() {
+        int count = 0;
+        for (Worker worker : workers) {
+            count += worker.loggedIn;
+        }
+        return count;
+    }
+
+    // 受け付けた接続をワーカーに順番に割り振る
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                workers[next].register(channel);
+                next = (next + 1) % workers.length;
+            } catch (IOException e) {
+                if (running) System.err.println("エラー: 接続を受け付けられませんでした。" + e.getMessage());
+            }
+        }
+    }
+
+    // --- フレームの処理（ワーカースレッド上で呼ばれる） ---
+
+    private void handleFrame(SyncConnection connection, byte type, ByteBuffer body) {
+        switch (type) {
+            case LOGIN: handleLogin(connection, body); break;
+            case RESUME: handleResume(connection, body); break;
+            case PUBLISH: handlePublish(connection, body); break;
+            case SUBSCRIBE: handleSubscribe(connection, body); break;
+            default: connection.worker.close(connection); break;
+        }
+    }
+
+    private void handleLogin(SyncConnection connection, ByteBuffer body) {
+        String username = readString(body);
+        char[] password = readPassword(body);
+        if (username == null || password == null) {
+            connection.worker.close(connection);
+            return;
+        }
+        if (connection.isLoggedIn() || connection.authenticating) {
+            Arrays.fill(password, '\0');
+            connection.send(frame(LOGIN_FAILED, new byte[0]));
+            return;
+        }
+        connection.authenticating = true;
+        authenticator.execute(() -> {
+            boolean ok = credentials.verify(username, password);
+            Arrays.fill(password, '\0');
+            connection.worker.execute(() -> {
+                connection.authenticating = false;
+                if (connection.isClosed()) return;
+                User user = ok ? usersByName.get(username) : null;
+                if (user == null) {
+                    connection.send(frame(LOGIN_FAILED, new byte[0]));
+                    return;
+                }
+                loggedIn(connection, user);
+            });
+        });
+    }
+
+    private void handleResume(SyncConnection connection, ByteBuffer body) {
+        String token = readString(body);
+        if (token == null) {
+            connection.worker.close(connection);
+            return;
+        }
+        String username = tokens.verify(token);
+        User user = username == null ? null : usersByName.get(username);
+        if (connection.isLoggedIn() || connection.authenticating || user == null) {
+            connection.send(frame(LOGIN_FAILED, new byte[0]));
+            return;
+        }
+        loggedIn(connection, user);
+    }
+
+    // 認証できた接続をグループのリングに登録し、新しいトークンを付けて LOGIN_OK を返す
+    private void loggedIn(SyncConnection connection, User user) {
+        connection.user = user;
+        connection.userIdBytes = user.id.getBytes(StandardCharsets.UTF_8);
+        connection.groupIds = new HashSet<>();
+        if (user.groups != null) {
+            connection.cursors = new GroupBroadcaster.Cursor[user.groups.length];
+            for (int i = 0; i < user.groups.length; i++) {
+                String groupId = user.groups[i].id;
+                connection.groupIds.add(groupId);
+                connection.cursors[i] = broadcasters.computeIfAbsent(groupId, k -> new GroupBroadcaster(k, GroupBroadcaster.DEFAULT_CAPACITY))
+                        .subscribe(connection.id);
+                onlineByGroup.computeIfAbsent(groupId, k -> ConcurrentHashMap.newKeySet()).add(connection);
+            }
+        }
+        connection.worker.loggedIn++;
+        byte[] id = connection.userIdBytes;
+        byte[] token = tokens.issue(user.username).getBytes(StandardCharsets.UTF_8);
+        connection.send(frame(LOGIN_OK, ByteBuffer.allocate(2 + id.length + 2 + token.length)
+                .putShort((short) id.length).put(id).putShort((short) token.length).put(token).array()));
+    }
+
+    private void handlePublish(SyncConnection connection, ByteBuffer body) {
+        if (!connection.isLoggedIn()) {
+            connection.worker.close(connection);
+            return;
+        }
+        int start = body.position();
+        String groupId = readString(body);
+        if (groupId == null || !body.hasRemaining()) {
+            // 内容の種別まで届いていない
+            connection.worker.close(connection);
+            return;
+        }
+        if (!connection.groupIds.contains(groupId)) return;
+        Set<SyncConnection> members = onlineByGroup.get(groupId);
+        if (members == null) return;
+        byte[] sender = connection.userIdBytes;
+        int groupIdBytes = body.position() - start;
+        byte kind = body.get(body.position());
+        if (kind == KIND_CHAT && broadcasters.get(groupId).publish(connection.id, body, start, body.position(), sender)) {
+            // 送信者にも依頼して、リング上の自分のフレームを読み飛ばさせる
+            for (SyncConnection member : members) {
+                member.requestFlush();
+            }
+            return;
+        }
+        // リングに載らないフレームと予定の DELIVER は1回だけ組み立て、メンバーで共有する
+        ByteBuffer payload = body.duplicate().position(body.position() + 1);
+        ByteBuffer deliver = ByteBuffer.allocate(4 + 1 + groupIdBytes + 2 + sender.length + body.remaining());
+        deliver.putInt(deliver.capacity() - 4).put(DELIVER);
+        deliver.put(body.duplicate().position(start).limit(start + groupIdBytes));
+        deliver.putShort((short) sender.length).put(sender);
+        deliver.put(body);
+        deliver.flip();
+        if (kind == KIND_APPOINTMENT_UPSERT || kind == KIND_APPOINTMENT_REMOVE) {
+            // 予定は最新状態を記録し、その日を購読しているメンバーにだけ配信する
+            try {
+                calendars.computeIfAbsent(groupId, k -> new GroupCalendar()).publish(payload, deliver, members, connection);
+            } catch (RuntimeException e) {
+                connection.worker.close(connection);
+            }
+            return;
+        }
+        for (SyncConnection member : members) {
+            if (member != connection) member.send(deliver.duplicate());
+        }
+    }
+
+    // 購読範囲を置き換え、新しく範囲に入った日の予定の最新状態だけを送る
+    private void handleSubscribe(SyncConnection connection, ByteBuffer body) {
+        if (!connection.isLoggedIn() || body.remaining() < 8) {
+            connection.worker.close(connection);
+            return;
+        }
+        int from = body.getInt();
+        int to = body.getInt();
+        if (from > to) {
+            connection.worker.close(connection);
+            return;
+        }
+        int[] previous = connection.replaceWindow(from, to);
+        for (String groupId : connection.groupIds) {
+            GroupCalendar calendar = calendars.get(groupId);
+            if (calendar == null) continue;
+            if (previous == null || to < previous[0] || from > previous[1]) {
+                calendar.sendRange(connection, from, to);
+                continue;
+            }
+            if (from < previous[0]) calendar.sendRange(connection, from, previous[0] - 1);
+            if (to > previous[1]) calendar.sendRange(connection, previous[1] + 1, to);
+        }
+    }
+
+    private void onClosed(SyncConnection connection) {
+        if (!connection.isLoggedIn()) return;
+        connection.worker.loggedIn--;
+        for (String groupId : connection.groupIds) {
+            Set<SyncConnection> members = onlineByGroup.get(groupId);
+            if (members != null) members.remove(connection);
+        }
+    }
+
+    static ByteBuffer frame(byte type, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 1 + body.length);
+        buffer.putInt(1 + body.length).put(type).put(body);
+        return buffer.flip();
+    }
+
+    /** [short バイト数][UTF-8] を読む。本体に収まっていなければ null（位置は変えない）。 */
+    static String readString(ByteBuffer buffer) {
+        if (buffer.remaining() < 2) return null;
+        int length = buffer.getShort(buffer.position()) & 0xFFFF;
+        if (buffer.remaining() < 2 + length) return null;
+        byte[] bytes = new byte[length];
+        buffer.position(buffer.position() + 2).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // [short バイト数][UTF-8] のパスワードを文字の配列で読み、受信バッファに残ったバイトは消す。収まっていなければ null
+    private static char[] readPassword(ByteBuffer buffer) {
+        if (buffer.remaining() < 2) return null;
+        int length = buffer.getShort(buffer.position()) & 0xFFFF;
+        if (buffer.remaining() < 2 + length) return null;
+        ByteBuffer bytes = buffer.duplicate().position(buffer.position() + 2).limit(buffer.position() + 2 + length);
+        CharBuffer chars = StandardCharsets.UTF_8.decode(bytes.duplicate());
+        char[] password = Arrays.copyOf(chars.array(), chars.limit());
+        Arrays.fill(chars.array(), '\0');
+        while (bytes.hasRemaining()) bytes.put((byte) 0);
+        buffer.position(buffer.position() + 2 + length);
+        return password;
+    }
+
+    /**
+     * 1つの Selector で担当する接続の読み書きをすべて行うスレッド。
+     */
+    final class Worker {
+        final Selector selector;
+        final Thread thread;
+        private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private final Queue<SyncConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+        private final Queue<SyncConnection> pendingCloses = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean wakeupPending = new AtomicBoolean();
+        volatile int loggedIn;
+
+        Worker(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this::run, "sync-worker-" + index);
+        }
+
+        void register(SocketChannel channel) {
+            pendingRegistrations.add(channel);
+            wakeup();
+        }
+
+        void requestWrite(SyncConnection connection) {
+            pendingWrites.add(connection);
+            if (Thread.currentThread() != thread) wakeup();
+        }
+
+        void requestClose(SyncConnection connection) {
+            pendingCloses.add(connection);
+            if (Thread.currentThread() != thread) wakeup();
+        }
+
+        /** task をこのワーカーのスレッドで実行する。どのスレッドから呼んでもよい。 */
+        void execute(Runnable task) {
+            pendingTasks.add(task);
+            if (Thread.currentThread() != thread) wakeup();
+        }
+
+        // 連続した wakeup は1回にまとめる
+        private void wakeup() {
+            if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+        }
+
+        private void run() {
+            try {
+                while (running) {
+                    processPending();
+                    selector.select();
+                    wakeupPending.set(false);
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        SyncConnection connection = (SyncConnection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) read(connection);
+                            if (key.isValid() && key.isWritable()) write(connection);
+                        } catch (IOException | CancelledKeyException e) {
+                            close(connection);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) System.err.println("エラー: ワーカーが停止しました。" + e.getMessage());
+            }
+        }
+
+        private void processPending() {
+            SocketChannel channel;
+            while ((channel = pendingRegistrations.poll()) != null) {
+                SyncConnection connection = new SyncConnection(channel, this, nextConnectionId.incrementAndGet());
+                try {
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (IOException e) {
+                    close(connection);
+                }
+            }
+            Runnable task;
+            while ((task = pendingTasks.poll()) != null) {
+                task.run();
+            }
+            SyncConnection connection;
+            while ((connection = pendingCloses.poll()) != null) {
+                close(connection);
+            }
+            while ((connection = pendingWrites.poll()) != null) {
+                if (connection.isClosed()) continue;
+                try {
+                    write(connection);
+                } catch (IOException | CancelledKeyException e) {
+                    close(connection);
+                }
+            }
+        }
+
+        private void read(SyncConnection connection) throws IOException {
+            ByteBuffer buffer = connection.readBuffer;
+            if (connection.channel.read(buffer) < 0) {
+                close(connection);
+                return;
+            }
+            buffer.flip();
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt(buffer.position());
+                if (length <= 0 || length > MAX_FRAME) {
+                    close(connection);
+                    return;
+                }
+                if (buffer.remaining() < 4 + length) {
+                    if (buffer.capacity() < 4 + length) {
+                        ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                        larger.put(buffer);
+                        connection.readBuffer = larger;
+                        return;
+                    }
+                    break;
+                }
+                int end = buffer.position() + 4 + length;
+                byte type = buffer.get(buffer.position() + 4);
+                ByteBuffer body = buffer.duplicate().position(buffer.position() + 5).limit(end).slice();
+                buffer.position(end);
+                try {
+                    handleFrame(connection, type, body);
+                } catch (RuntimeException e) {
+                    // 不正なフレームを送ってきた接続だけを切り、同じワーカーの他の接続は処理を続ける
+                    close(connection);
+                }
+                if (connection.isClosed()) return;
+            }
+            buffer.compact();
+        }
+
+        private void write(SyncConnection connection) throws IOException {
+            if (connection.flush()) {
+                connection.key.interestOps(SelectionKey.OP_READ);
+                if (connection.releaseWriteRequest()) pendingWrites.add(connection);
+            } else {
+                connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void close(SyncConnection connection) {
+            if (connection.isClosed()) return;
+            connection.markClosed();
+            onClosed(connection);
+            try {
+                connection.channel.close();
+            } catch (IOException e) {
+                // 閉じる際のエラーは無視する
+            }
+        }
+    }
+
+    /**
+     * デモ用のユーザーとグループでサーバーを起動する。
+     * 引数: [ポート番号] [ワーカースレッド数]
+     * パスワードのハッシュは -Dsync.credentials（既定 data/sync-server.credentials）から読む。
+     * -Dsync.demoUsers=true を付けると、まだ登録されていないデモ用のユーザー（パスワードはユーザー名と同じ）を登録する。
+     * セッショントークンの鍵は -Dsync.keyFile（既定 data/sync-server.key）に保存し、再起動しても同じ鍵を使う。
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int workerCount = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        Group tech = new Group();
+        tech.id = "G01";
+        tech.name = "技術部";
+        Group sales = new Group();
+        sales.id = "G02";
+        sales.name = "営業部";
+        User tomoya = new User();
+        tomoya.id = "001";
+        tomoya.username = "tomoya";
+        tomoya.groups = new Group[] {tech, sales};
+        User test1 = new User();
+        test1.id = "101";
+        test1.username = "test1";
+        test1.groups = new Group[] {tech, sales};
+        tech.users = new User[] {tomoya, test1};
+        sales.users = new User[] {tomoya, test1};
+        User[] users = {tomoya, test1};
+
+        CredentialStore credentials = CredentialStore.open(Paths.get(System.getProperty("sync.credentials", "data/sync-server.credentials")),
+                CredentialStore.DEFAULT_ITERATIONS);
+        boolean anyUser = false;
+        for (User user : users) {
+            if (!credentials.contains(user.username) && Boolean.getBoolean("sync.demoUsers")) {
+                credentials.register(user.username, user.username.toCharArray());
+            }
+            anyUser |= credentials.contains(user.username);
+        }
+        if (!anyUser) {
+            System.err.println("警告: ログインできるユーザーが登録されていません。デモ用のユーザーを使うには -Dsync.demoUsers=true を付けて起動してください。");
+        }
+        SessionTokens tokens = SessionTokens.open(Paths.get(System.getProperty("sync.keyFile", "data/sync-server.key")),
+                SessionTokens.DEFAULT_TTL_MILLIS);
+        SyncServer server = new SyncServer(users, credentials, port, workerCount, tokens);
+        server.start();
+        System.out.println("同期サーバーを起動しました (ポート " + server.getPort() + ", ワーカー " + workerCount + ")");
+    }
+}
@@ -1,6 +1,6 @@
 public class User {
+    public String id;
     public String username;
-    public String password;
     public Group[] groups;
     
 }
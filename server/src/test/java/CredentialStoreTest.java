@@ -0,0 +1,41 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CredentialStore がパスワードを平文で保存せず、保存したハッシュで正しいパスワードだけを受け付けることを確かめる。
+ */
+class CredentialStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void registeredPasswordIsVerifiedAfterReopening() throws IOException {
+        Path file = dir.resolve("credentials");
+        CredentialStore.open(file, 1000).register("tomoya", "秘密のパスワード".toCharArray());
+        String saved = Files.readString(file, StandardCharsets.UTF_8);
+        assertFalse(saved.contains("秘密"));
+
+        CredentialStore store = CredentialStore.open(file, 1000);
+        assertTrue(store.verify("tomoya", "秘密のパスワード".toCharArray()));
+        assertFalse(store.verify("tomoya", "秘密のパスワー".toCharArray()));
+        assertFalse(store.verify("tomoya", new char[0]));
+        assertFalse(store.verify("test1", "秘密のパスワード".toCharArray()));
+    }
+
+    @Test
+    void malformedFileIsRejected() throws IOException {
+        Path file = dir.resolve("credentials");
+        Files.writeString(file, "tomoya:tomoya\n");
+        assertThrows(IOException.class, () -> CredentialStore.open(file, 1000));
+    }
+}
@@ -0,0 +1,179 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GroupBroadcaster のリングによる配信と、メンバーごとのキューに duplicate() を積む従来の配信を
+ * 1グループあたりのメンバー数を変えて比べる。ソケットは使わず、読み込み側は受け取ったフレームを数えるだけ。
+ * 取りこぼさずに配れる速さを測るため、計測中の送信者は最も遅いメンバーがリングの半分以上遅れたら待つ
+ * （サーバーの送信者は待たない）。
+ * 最後に、1人だけ読まないメンバーがいても送信者が待たされず、そのメンバーが RESYNC になることを確かめる。
+ *
+ * <p>実行（mvn -pl server test-compile のあと）: java -cp server/target/classes:server/target/test-classes FanOutBenchmark
+ * [1グループあたりの配信総数=2000000] [読み込みスレッド数=2]</p>
+ */
+public class FanOutBenchmark {
+
+    private static final int PAYLOAD = 64;
+
+    public static void main(String[] args) throws InterruptedException {
+        long deliveries = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000;
+        int readerThreads = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        ByteBuffer body = publishBody("G01");
+        int frameLength = 4 + 1 + (2 + 3) + (2 + 4) + 1 + PAYLOAD;
+
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "--- ウォームアップ ---" : "--- 計測 ---");
+            for (int subscribers : new int[] {1, 100, 1000}) {
+                int messages = (int) Math.max(1000, deliveries / subscribers);
+                Result ring = runRing(body, frameLength, subscribers, messages, readerThreads);
+                Result queue = runQueue(body, subscribers, messages, readerThreads);
+                System.out.printf("メンバー %4d 人, %7d 通: リング %,12.0f 配信/秒 (RESYNC %d), キュー %,12.0f 配信/秒%n",
+                        subscribers, messages, ring.rate(), ring.resyncs, queue.rate());
+            }
+        }
+        runStalled(body);
+    }
+
+    private static Result runRing(ByteBuffer body, int frameLength, int subscribers, int messages, int readerThreads) throws InterruptedException {
+        GroupBroadcaster broadcaster = new GroupBroadcaster("G01", GroupBroadcaster.DEFAULT_CAPACITY);
+        List<GroupBroadcaster.Cursor> cursors = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) cursors.add(broadcaster.subscribe(i + 1));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong deliveredBytes = new AtomicLong();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < readerThreads; t++) {
+            List<GroupBroadcaster.Cursor> mine = new ArrayList<>();
+            for (int i = t; i < subscribers; i += readerThreads) mine.add(cursors.get(i));
+            readers.add(new Thread(() -> {
+                ByteBuffer chunk = ByteBuffer.allocate(8 * 1024);
+                long bytes = 0;
+                boolean finished = false;
+                while (!finished) {
+                    finished = done.get();
+                    boolean idle = true;
+                    for (GroupBroadcaster.Cursor cursor : mine) {
+                        while (cursor.hasPending()) {
+                            chunk.clear();
+                            cursor.read(chunk);
+                            bytes += chunk.position();
+                            idle = false;
+                        }
+                    }
+                    if (idle) Thread.yield();
+                }
+                deliveredBytes.addAndGet(bytes);
+            }));
+        }
+        readers.forEach(Thread::start);
+        long start = System.nanoTime();
+        byte[] sender = "0000".getBytes(StandardCharsets.UTF_8);
+        long limit = broadcaster.capacity() / 2;
+        for (int i = 0; i < messages; i++) {
+            while (slowestLag(cursors) > limit) Thread.yield();
+            broadcaster.publish(0, body, 0, 5, sender);
+        }
+        done.set(true);
+        for (Thread reader : readers) reader.join();
+        long seconds = System.nanoTime() - start;
+        long resyncs = 0;
+        for (GroupBroadcaster.Cursor cursor : cursors) resyncs += cursor.getResyncs();
+        return new Result(deliveredBytes.get() / frameLength, seconds, resyncs);
+    }
+
+    private static long slowestLag(List<GroupBroadcaster.Cursor> cursors) {
+        long max = 0;
+        for (GroupBroadcaster.Cursor cursor : cursors) max = Math.max(max, cursor.lag());
+        return max;
+    }
+
+    private static Result runQueue(ByteBuffer body, int subscribers, int messages, int readerThreads) throws InterruptedException {
+        List<Queue<ByteBuffer>> queues = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) queues.add(new ConcurrentLinkedQueue<>());
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong delivered = new AtomicLong();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < readerThreads; t++) {
+            List<Queue<ByteBuffer>> mine = new ArrayList<>();
+            for (int i = t; i < subscribers; i += readerThreads) mine.add(queues.get(i));
+            readers.add(new Thread(() -> {
+                long count = 0;
+                boolean finished = false;
+                while (!finished) {
+                    finished = done.get();
+                    long before = count;
+                    for (Queue<ByteBuffer> queue : mine) {
+                        while (queue.poll() != null) count++;
+                    }
+                    if (count == before) Thread.yield();
+                }
+                delivered.addAndGet(count);
+            }));
+        }
+        readers.forEach(Thread::start);
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            // 従来の配信: DELIVER フレームを1回組み立て、メンバーごとに duplicate() を積む
+            ByteBuffer deliver = ByteBuffer.allocate(4 + 1 + body.remaining() + 6);
+            deliver.putInt(deliver.capacity() - 4).put(SyncServer.DELIVER).put(body.duplicate()).flip();
+            for (Queue<ByteBuffer> queue : queues) queue.add(deliver.duplicate());
+        }
+        done.set(true);
+        for (Thread reader : readers) reader.join();
+        return new Result(delivered.get(), System.nanoTime() - start, 0);
+    }
+
+    // 1人だけ読まないメンバーがいても送信が止まらず、そのメンバーだけが読み飛ばしになることを確かめる
+    private static void runStalled(ByteBuffer body) {
+        GroupBroadcaster broadcaster = new GroupBroadcaster("G01", 64 * 1024);
+        GroupBroadcaster.Cursor active = broadcaster.subscribe(1);
+        GroupBroadcaster.Cursor stalled = broadcaster.subscribe(2);
+        byte[] sender = "0000".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer chunk = ByteBuffer.allocate(8 * 1024);
+        int messages = 100_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            broadcaster.publish(0, body, 0, 5, sender);
+            if (i % 16 == 0) {
+                while (active.hasPending()) {
+                    chunk.clear();
+                    active.read(chunk);
+                }
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        chunk.clear();
+        int result = stalled.read(chunk);
+        System.out.printf("読まないメンバーがいる場合: %d 通を %.1f ms で送信, 読んでいたメンバーの RESYNC %d 回, 読まないメンバー %s%n",
+                messages, millis, active.getResyncs(), result == GroupBroadcaster.READ_RESYNC ? "は RESYNC" : "の結果 " + result);
+    }
+
+    private static ByteBuffer publishBody(String groupId) {
+        byte[] id = groupId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(2 + id.length + 1 + PAYLOAD);
+        body.putShort((short) id.length).put(id).put(SyncServer.KIND_CHAT);
+        while (body.hasRemaining()) body.put((byte) 'x');
+        return body.flip();
+    }
+
+    private static final class Result {
+        final long delivered;
+        final long nanos;
+        final long resyncs;
+
+        Result(long delivered, long nanos, long resyncs) {
+            this.delivered = delivered;
+            this.nanos = nanos;
+            this.resyncs = resyncs;
+        }
+
+        double rate() {
+            return delivered / (nanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GroupBroadcaster のリングを、遅いメンバーが読んでいる間も送信し続けて、
+ * 壊れたフレームが読まれないこと（追い越されたら RESYNC か READ_TORN になること）を確かめる。
+ */
+class GroupBroadcasterTest {
+
+    private static final int CAPACITY = 4096;
+    // 1エントリの上限（GroupBroadcaster はリングの 1/4 までしか載せない）
+    private static final int MAX_ENTRY = CAPACITY / 4;
+    private static final byte[] GROUP_ID = "G".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SENDER = "0000".getBytes(StandardCharsets.UTF_8);
+    // DELIVER フレームのうち、内容の前にある部分: [int 長さ][DELIVER][short + グループID][short + 送信者ID][内容の種別]
+    private static final int CONTENT_OFFSET = 4 + 1 + 2 + GROUP_ID.length + 2 + SENDER.length + 1;
+
+    @Test
+    void fastReaderReceivesEveryFrame() {
+        GroupBroadcaster broadcaster = new GroupBroadcaster("G", CAPACITY);
+        GroupBroadcaster.Cursor cursor = broadcaster.subscribe(1);
+        FrameChecker checker = new FrameChecker();
+        ByteBuffer dst = ByteBuffer.allocate(100);
+        for (int seq = 0; seq < 10_000; seq++) {
+            assertTrue(broadcaster.publish(0, body(seq), 0, 2 + GROUP_ID.length, SENDER));
+            while (cursor.hasPending()) {
+                dst.clear();
+                assertEquals(GroupBroadcaster.READ_OK, cursor.read(dst));
+                checker.accept(dst.flip());
+            }
+        }
+        assertEquals(10_000, checker.frames);
+        assertEquals(0, checker.corrupt);
+        assertEquals(0, cursor.getResyncs());
+    }
+
+    @Test
+    void ownFramesAreSkipped() {
+        GroupBroadcaster broadcaster = new GroupBroadcaster("G", CAPACITY);
+        GroupBroadcaster.Cursor cursor = broadcaster.subscribe(1);
+        broadcaster.publish(1, body(0), 0, 2 + GROUP_ID.length, SENDER);
+        broadcaster.publish(0, body(1), 0, 2 + GROUP_ID.length, SENDER);
+        ByteBuffer dst = ByteBuffer.allocate(CAPACITY);
+        assertEquals(GroupBroadcaster.READ_OK, cursor.read(dst));
+        FrameChecker checker = new FrameChecker();
+        checker.accept(dst.flip());
+        assertEquals(1, checker.frames);
+        assertEquals(1, checker.lastSeq);
+        assertTrue(!cursor.hasPending());
+    }
+
+    @Test
+    void tooLargeFrameIsRefused() {
+        GroupBroadcaster broadcaster = new GroupBroadcaster("G", CAPACITY);
+        ByteBuffer body = ByteBuffer.allocate(CAPACITY / 4);
+        body.putShort((short) GROUP_ID.length).put(GROUP_ID).put(SyncServer.KIND_CHAT).position(body.limit()).flip();
+        assertTrue(!broadcaster.publish(0, body, 0, 2 + GROUP_ID.length, SENDER));
+    }
+
+    /**
+     * 読む位置のまだ上書きされていないバイトでも、書き込み中のエントリ（最大 MAX_ENTRY バイト）が届きうる範囲なら
+     * 追い越されたものとして扱う。publish は head を進める前にその先へ書き込むため、head だけを見ていると
+     * 書き込み中のバイトを読んでしまう。
+     */
+    @Test
+    void readerWithinOneEntryOfBeingLappedResyncs() {
+        GroupBroadcaster broadcaster = new GroupBroadcaster("G", CAPACITY);
+        GroupBroadcaster.Cursor cursor = broadcaster.subscribe(1);
+        publishUntilLag(broadcaster, cursor, CAPACITY - MAX_ENTRY);
+        assertTrue(cursor.lag() <= CAPACITY, "まだ1周は追い越されていない");
+        ByteBuffer dst = ByteBuffer.allocate(CAPACITY);
+        assertEquals(GroupBroadcaster.READ_RESYNC, cursor.read(dst));
+        assertEquals(0, dst.position());
+        assertEquals(0, cursor.lag());
+        assertEquals(1, cursor.getResyncs());
+    }
+
+    @Test
+    void readerWithinOneEntryOfBeingLappedInsideFrameIsTorn() {
+        GroupBroadcaster broadcaster = new GroupBroadcaster("G", CAPACITY);
+        GroupBroadcaster.Cursor cursor = broadcaster.subscribe(1);
+        broadcaster.publish(0, body(100), 0, 2 + GROUP_ID.length, SENDER);
+        ByteBuffer dst = ByteBuffer.allocate(16);
+        assertEquals(GroupBroadcaster.READ_OK, cursor.read(dst));
+        assertTrue(cursor.inFrame());
+        publishUntilLag(broadcaster, cursor, CAPACITY - MAX_ENTRY);
+        assertTrue(cursor.lag() <= CAPACITY, "まだ1周は追い越されていない");
+        dst.clear();
+        assertEquals(GroupBroadcaster.READ_TORN, cursor.read(dst));
+        assertEquals(0, dst.position());
+    }
+
+    /**
+     * 送信側は読む側をほとんど待たずに書き続け、読む側をリングの1周近く遅れたままにする。
+     * 送信側が待つのは遅れがリングの大きさを超えそうなときだけなので、読む側はエントリが書き込まれている最中の
+     * 位置のすぐ後ろを何度も読むことになる。読む側は何度も追い越されるが、受け取った完全なフレームはどれも
+     * 壊れていてはいけない。READ_TORN のときは接続を切る代わりに読み直す。
+     */
+    @Test
+    void slowReaderUnderSustainedPublishingNeverSeesTornFrames() throws InterruptedException {
+        GroupBroadcaster broadcaster = new GroupBroadcaster("G", CAPACITY);
+        AtomicReference<GroupBroadcaster.Cursor> cursor = new AtomicReference<>(broadcaster.subscribe(1));
+        AtomicBoolean done = new AtomicBoolean();
+        Thread publisher = new Thread(() -> {
+            ByteBuffer[] bodies = new ByteBuffer[256];
+            for (int seq = 0; seq < bodies.length; seq++) bodies[seq] = body(seq);
+            Random random = new Random(1);
+            for (int seq = 0; !done.get(); seq = (seq + 1) % bodies.length) {
+                // 待つ遅れの上限を毎回変え、読む側が追い越される位置の手前と内側の両方を行き来するようにする
+                int limit = CAPACITY / 2 + random.nextInt(CAPACITY / 2);
+                while (cursor.get().lag() > limit && !done.get()) Thread.yield();
+                broadcaster.publish(0, bodies[seq], 0, 2 + GROUP_ID.length, SENDER);
+                Thread.yield();
+            }
+        });
+        publisher.start();
+
+        FrameChecker checker = new FrameChecker();
+        ByteBuffer dst = ByteBuffer.allocate(64);
+        long resyncs = 0, torn = 0;
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        try {
+            while (System.nanoTime() < deadline) {
+                dst.clear();
+                int result = cursor.get().read(dst);
+                checker.accept(dst.flip());
+                if (result == GroupBroadcaster.READ_RESYNC) {
+                    resyncs++;
+                    checker.assertAtFrameBoundary();
+                } else if (result == GroupBroadcaster.READ_TORN) {
+                    // 実際の接続は切られる。読み直すときはフレームの途中から始めない
+                    torn++;
+                    checker.reset();
+                    cursor.set(broadcaster.subscribe(1));
+                }
+                Thread.yield();
+            }
+        } finally {
+            done.set(true);
+            publisher.join();
+        }
+        assertEquals(0, checker.corrupt, "壊れたフレームを読んだ（完全なフレーム " + checker.frames + " 件中）");
+        assertTrue(checker.frames > 0, "フレームを1件も読めなかった");
+        assertTrue(resyncs + torn > 0, "一度も追い越されなかったので、遅いメンバーの試験になっていない");
+    }
+
+    // 遅れが minLag を超えるまで、小さいフレームを書き込む
+    private static void publishUntilLag(GroupBroadcaster broadcaster, GroupBroadcaster.Cursor cursor, long minLag) {
+        for (int seq = 0; cursor.lag() <= minLag; seq++) {
+            broadcaster.publish(0, body(seq * 24), 0, 2 + GROUP_ID.length, SENDER);
+        }
+    }
+
+    // 内容は [int 連番][連番の下位バイトを長さ分]。長さは連番によって 16〜900 バイトに変える
+    private static ByteBuffer body(int seq) {
+        int length = 16 + seq * 37 % 885;
+        ByteBuffer body = ByteBuffer.allocate(2 + GROUP_ID.length + 1 + 4 + length);
+        body.putShort((short) GROUP_ID.length).put(GROUP_ID).put(SyncServer.KIND_CHAT).putInt(seq);
+        while (body.hasRemaining()) body.put((byte) seq);
+        return body.flip();
+    }
+
+    /** 読んだバイト列を DELIVER フレームに区切り、内容が連番どおりか確かめる。 */
+    private static final class FrameChecker {
+        private final ByteBuffer frame = ByteBuffer.allocate(CAPACITY);
+        long frames;
+        long corrupt;
+        int lastSeq = -1;
+
+        void accept(ByteBuffer bytes) {
+            while (bytes.hasRemaining()) {
+                frame.put(bytes.get());
+                if (frame.position() >= 4 && frame.position() == frame.getInt(0) + 4) {
+                    check();
+                    frame.clear();
+                } else if (frame.position() >= 4 && (frame.getInt(0) < CONTENT_OFFSET || frame.getInt(0) > CAPACITY - 4)) {
+                    // 長さからして壊れている。以降は区切れないので読み直す
+                    corrupt++;
+                    frame.clear();
+                }
+            }
+        }
+
+        void assertAtFrameBoundary() {
+            assertEquals(0, frame.position(), "RESYNC はフレームの境目でしか起きない");
+        }
+
+        void reset() {
+            frame.clear();
+        }
+
+        private void check() {
+            frames++;
+            int length = frame.position();
+            boolean ok = frame.get(4) == SyncServer.DELIVER
+                    && frame.getShort(5) == GROUP_ID.length && frame.get(7) == GROUP_ID[0]
+                    && frame.getShort(8) == SENDER.length
+                    && frame.get(CONTENT_OFFSET - 1) == SyncServer.KIND_CHAT;
+            int seq = frame.getInt(CONTENT_OFFSET);
+            ok &= length == CONTENT_OFFSET + 4 + 16 + seq * 37 % 885;
+            for (int i = CONTENT_OFFSET + 4; ok && i < length; i++) ok = frame.get(i) == (byte) seq;
+            if (ok) lastSeq = seq;
+            else corrupt++;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * SessionTokens が自分の発行したトークンだけを受け付けることを確かめる。
+ */
+class SessionTokensTest {
+
+    @Test
+    void issuedTokenIsAccepted() {
+        SessionTokens tokens = new SessionTokens(60_000);
+        assertEquals("tomoya", tokens.verify(tokens.issue("tomoya")));
+        // ユーザー名に区切り文字が入っていてもよい
+        assertEquals("a:b.c", tokens.verify(tokens.issue("a:b.c")));
+    }
+
+    @Test
+    void tamperedOrForeignTokensAreRejected() {
+        SessionTokens tokens = new SessionTokens(60_000);
+        String token = tokens.issue("tomoya");
+        String payload = token.substring(0, token.lastIndexOf('.'));
+        assertNull(tokens.verify("test1" + token.substring("tomoya".length())));
+        assertNull(tokens.verify(payload.replaceFirst(":\\d+$", ":" + Long.MAX_VALUE) + token.substring(payload.length())));
+        assertNull(tokens.verify(new SessionTokens(60_000).issue("tomoya")));
+        assertNull(tokens.verify(""));
+        assertNull(tokens.verify("tomoya"));
+        assertNull(tokens.verify("tomoya:x.y"));
+        assertNull(tokens.verify(payload + ".!!"));
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        SessionTokens tokens = new SessionTokens(-1);
+        assertNull(tokens.verify(tokens.issue("tomoya")));
+    }
+
+    @Test
+    void keyFileSurvivesRestart() throws Exception {
+        Path dir = Files.createTempDirectory("tokens");
+        try {
+            Path keyFile = dir.resolve("data").resolve("sync-server.key");
+            String token = SessionTokens.open(keyFile, 60_000).issue("tomoya");
+            assertEquals("tomoya", SessionTokens.open(keyFile, 60_000).verify(token));
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
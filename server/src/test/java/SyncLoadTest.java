@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * ループバック上で同期サーバーに多数のクライアントを接続し、中継のスループットと遅延を測る負荷試験。
+ * 全クライアントが1通ずつ送る「ラウンド」を繰り返し、受信側で送信時刻との差を記録する。
+ *
+ * <p>実行（mvn -pl server test-compile のあと）: java -cp server/target/classes:server/target/test-classes SyncLoadTest
+ * [クライアント数=2000] [グループあたりの人数=50] [ラウンド数=20] [ワーカースレッド数=2]</p>
+ */
+public class SyncLoadTest {
+
+    private final int clientCount;
+    private final int groupSize;
+    private final Client[] clients;
+    private final Selector selector;
+    private long[] latencies;
+    private int latencyCount;
+    private long delivered;
+    private int loggedIn;
+
+    private SyncLoadTest(int clientCount, int groupSize) throws IOException {
+        this.clientCount = clientCount;
+        this.groupSize = groupSize;
+        this.clients = new Client[clientCount];
+        this.selector = Selector.open();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int groupSize = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int workerCount = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        // --- クライアント数分のユーザーとグループを用意する ---
+        User[] users = new User[clientCount];
+        Map<String, char[]> passwords = new HashMap<>();
+        int groupCount = (clientCount + groupSize - 1) / groupSize;
+        for (int g = 0; g < groupCount; g++) {
+            Group group = new Group();
+            group.id = "LG" + g;
+            group.name = "負荷試験" + g;
+            group.users = new User[Math.min(groupSize, clientCount - g * groupSize)];
+            for (int m = 0; m < group.users.length; m++) {
+                User user = new User();
+                int index = g * groupSize + m;
+                user.id = "L" + index;
+                user.username = "load" + index;
+                passwords.put(user.username, ("pw" + index).toCharArray());
+                user.groups = new Group[] {group};
+                group.users[m] = user;
+                users[index] = user;
+            }
+        }
+
+        // 負荷試験ではログインの確認に時間をかけないよう、反復回数を少なくする
+        Path credentialFile = Files.createTempFile("sync-load-test", ".credentials");
+        SyncServer server;
+        try {
+            CredentialStore credentials = CredentialStore.open(credentialFile, 1000);
+            credentials.register(passwords);
+            server = new SyncServer(users, credentials, 0, workerCount);
+        } finally {
+            Files.deleteIfExists(credentialFile);
+        }
+        server.start();
+        SyncLoadTest test = new SyncLoadTest(clientCount, groupSize);
+        try {
+            test.connectAll(server.getPort());
+            test.run(rounds);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void connectAll(int port) throws IOException {
+        long start = System.nanoTime();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        for (int i = 0; i < clientCount; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            clients[i] = new Client(i, channel);
+            clients[i].key = channel.register(selector, SelectionKey.OP_READ, clients[i]);
+            clients[i].send(loginFrame("load" + i, "pw" + i));
+        }
+        while (loggedIn < clientCount) {
+            poll();
+        }
+        System.out.printf("接続・ログイン: %d クライアント, %.1f ms%n", clientCount, (System.nanoTime() - start) / 1e6);
+    }
+
+    private void run(int rounds) throws IOException {
+        long expectedPerRound = 0;
+        for (int i = 0; i < clientCount; i++) {
+            expectedPerRound += groupMemberCount(i) - 1;
+        }
+        latencies = new long[(int) (expectedPerRound * rounds)];
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            long target = delivered + expectedPerRound;
+            for (Client client : clients) {
+                client.send(publishFrame("LG" + (client.index / groupSize), System.nanoTime()));
+            }
+            while (delivered < target) {
+                poll();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        System.out.printf("送信: %d 通, 配信: %d 通, %.2f 秒%n", (long) clientCount * rounds, delivered, seconds);
+        System.out.printf("配信スループット: %.0f 通/秒%n", delivered / seconds);
+        System.out.printf("配信遅延: p50=%.2f ms, p99=%.2f ms, 最大=%.2f ms%n",
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    private int groupMemberCount(int index) {
+        int group = index / groupSize;
+        return Math.min(groupSize, clientCount - group * groupSize);
+    }
+
+    private void poll() throws IOException {
+        selector.select(100);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Client client = (Client) key.attachment();
+            if (key.isReadable()) client.read();
+            if (key.isValid() && key.isWritable()) client.flush();
+        }
+    }
+
+    private void onFrame(byte type, ByteBuffer body) {
+        if (type == SyncServer.LOGIN_OK) {
+            loggedIn++;
+        } else if (type == SyncServer.LOGIN_FAILED) {
+            throw new IllegalStateException("ログインに失敗しました");
+        } else if (type == SyncServer.DELIVER) {
+            long now = System.nanoTime();
+            SyncServer.readString(body);
+            SyncServer.readString(body);
+            body.get();
+            long sentAt = body.getLong();
+            if (latencyCount < latencies.length) latencies[latencyCount++] = now - sentAt;
+            delivered++;
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static ByteBuffer loginFrame(String username, String password) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        byte[] pass = password.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(4 + name.length + pass.length);
+        body.putShort((short) name.length).put(name).putShort((short) pass.length).put(pass);
+        return SyncServer.frame(SyncServer.LOGIN, body.array());
+    }
+
+    private static ByteBuffer publishFrame(String groupId, long sentAt) {
+        byte[] id = groupId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(2 + id.length + 1 + 8);
+        body.putShort((short) id.length).put(id).put(SyncServer.KIND_CHAT).putLong(sentAt);
+        return SyncServer.frame(SyncServer.PUBLISH, body.array());
+    }
+
+    /** 負荷試験用のクライアント接続。全クライアントを1つの Selector で扱う。 */
+    private final class Client {
+        final int index;
+        final SocketChannel channel;
+        SelectionKey key;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+        final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+
+        Client(int index, SocketChannel channel) {
+            this.index = index;
+            this.channel = channel;
+        }
+
+        void send(ByteBuffer frame) throws IOException {
+            outbound.add(frame);
+            flush();
+        }
+
+        void flush() throws IOException {
+            while (!outbound.isEmpty()) {
+                channel.write(outbound.peek());
+                if (outbound.peek().hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                outbound.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void read() throws IOException {
+            if (channel.read(readBuffer) < 0) throw new IOException("サーバーが接続を閉じました");
+            readBuffer.flip();
+            while (readBuffer.remaining() >= 4) {
+                int length = readBuffer.getInt(readBuffer.position());
+                if (readBuffer.remaining() < 4 + length) break;
+                int end = readBuffer.position() + 4 + length;
+                byte type = readBuffer.get(readBuffer.position() + 4);
+                ByteBuffer body = readBuffer.duplicate().position(readBuffer.position() + 5).limit(end).slice();
+                readBuffer.position(end);
+                onFrame(type, body);
+            }
+            readBuffer.compact();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * ログインがパスワードのハッシュで確かめられること、
+ * 途中で切れたフレームを送ってきた接続だけが切られ、同じワーカーの他のクライアントは使い続けられることを確かめる。
+ */
+class SyncServerTest {
+
+    @TempDir
+    Path dir;
+    private SyncServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        Group tech = new Group();
+        tech.id = "G01";
+        tech.name = "技術部";
+        User alice = user("001", "alice", tech);
+        User bob = user("002", "bob", tech);
+        tech.users = new User[] {alice, bob};
+        // 試験では反復回数を少なくする
+        CredentialStore credentials = CredentialStore.open(dir.resolve("credentials"), 1000);
+        credentials.register(Map.of("alice", "alice".toCharArray(), "bob", "bob".toCharArray()));
+        // ワーカーを1つにして、すべての接続を同じ Selector に載せる
+        server = new SyncServer(new User[] {alice, bob}, credentials, 0, 1, new SessionTokens(60_000));
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        server.stop();
+    }
+
+    @Test
+    void wrongPasswordAndUnknownUserAreRejected() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, SyncServer.LOGIN, loginBody("alice", "bob"));
+            assertEquals(SyncServer.LOGIN_FAILED, readFrame(socket).get());
+            send(socket, SyncServer.LOGIN, loginBody("carol", "carol"));
+            assertEquals(SyncServer.LOGIN_FAILED, readFrame(socket).get());
+            // 失敗した後も同じ接続でログインし直せる
+            send(socket, SyncServer.LOGIN, loginBody("alice", "alice"));
+            assertEquals(SyncServer.LOGIN_OK, readFrame(socket).get());
+        }
+    }
+
+    @Test
+    void truncatedLoginClosesOnlyThatConnection() throws IOException {
+        try (Socket alice = login("alice");
+             Socket broken = connect()) {
+            send(broken, SyncServer.LOGIN, new byte[] {0});
+            assertClosed(broken);
+            try (Socket bob = login("bob")) {
+                assertChatDelivered(alice, bob);
+            }
+        }
+    }
+
+    @Test
+    void loginWithStringLongerThanBodyClosesOnlyThatConnection() throws IOException {
+        try (Socket broken = connect()) {
+            send(broken, SyncServer.LOGIN, ByteBuffer.allocate(4).putShort((short) 100).put((byte) 'a').put((byte) 'b').array());
+            assertClosed(broken);
+        }
+        try (Socket broken = connect()) {
+            send(broken, SyncServer.RESUME, new byte[] {0, 9});
+            assertClosed(broken);
+        }
+        try (Socket alice = login("alice");
+             Socket bob = login("bob")) {
+            assertChatDelivered(alice, bob);
+        }
+    }
+
+    @Test
+    void truncatedPublishClosesOnlyThatConnection() throws IOException {
+        try (Socket alice = login("alice");
+             Socket bob = login("bob")) {
+            try (Socket broken = login("alice")) {
+                send(broken, SyncServer.PUBLISH, new byte[] {0, 3, 'G'});
+                assertClosed(broken);
+            }
+            try (Socket broken = login("alice")) {
+                // グループIDまでで、内容の種別がない
+                send(broken, SyncServer.PUBLISH, string("G01"));
+                assertClosed(broken);
+            }
+            assertChatDelivered(alice, bob);
+        }
+    }
+
+    // --- 補助 ---
+
+    private static User user(String id, String username, Group group) {
+        User user = new User();
+        user.id = id;
+        user.username = username;
+        user.groups = new Group[] {group};
+        return user;
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private Socket login(String username) throws IOException {
+        Socket socket = connect();
+        send(socket, SyncServer.LOGIN, loginBody(username, username));
+        assertEquals(SyncServer.LOGIN_OK, readFrame(socket).get());
+        return socket;
+    }
+
+    // from が送ったチャットが to に届く
+    private static void assertChatDelivered(Socket from, Socket to) throws IOException {
+        byte[] group = string("G01");
+        byte[] text = "届く".getBytes(StandardCharsets.UTF_8);
+        send(from, SyncServer.PUBLISH, ByteBuffer.allocate(group.length + 1 + text.length)
+                .put(group).put(SyncServer.KIND_CHAT).put(text).array());
+        ByteBuffer deliver = readFrame(to);
+        assertEquals(SyncServer.DELIVER, deliver.get());
+        assertEquals("G01", SyncServer.readString(deliver));
+        SyncServer.readString(deliver);
+        assertEquals(SyncServer.KIND_CHAT, deliver.get());
+        byte[] received = new byte[deliver.remaining()];
+        deliver.get(received);
+        assertArrayEquals(text, received);
+    }
+
+    private static void assertClosed(Socket socket) {
+        assertThrows(EOFException.class, () -> readFrame(socket));
+    }
+
+    private static byte[] loginBody(String username, String password) {
+        byte[] name = string(username);
+        byte[] pass = string(password);
+        return ByteBuffer.allocate(name.length + pass.length).put(name).put(pass).array();
+    }
+
+    private static byte[] string(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 + bytes.length).putShort((short) bytes.length).put(bytes).array();
+    }
+
+    private static void send(Socket socket, byte type, byte[] body) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(SyncServer.frame(type, body).array());
+        out.flush();
+    }
+
+    private static ByteBuffer readFrame(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return ByteBuffer.wrap(body);
+    }
+}